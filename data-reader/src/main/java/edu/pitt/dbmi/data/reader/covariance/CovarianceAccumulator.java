@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2018 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.data.reader.covariance;
+
+import edu.pitt.dbmi.data.reader.tabular.ContinuousRowHandler;
+
+/**
+ * Accumulates the means and the sums of the cross products of deviations from
+ * the means, one row at a time, so that a covariance matrix can be computed
+ * without holding the data in memory.
+ *
+ * Rows are buffered in blocks. The deviations of each block are taken from the
+ * block's own means and the block is then merged into the running totals with
+ * the pairwise update of Chan, Golub and LeVeque, the block form of Welford's
+ * update. Accumulators of different parts of the data can be merged the same
+ * way.
+ *
+ * Rows with missing values (NaN) are skipped, i.e., missing values are handled
+ * by listwise deletion.
+ *
+ * This class is not thread-safe. Use one accumulator per thread and merge them.
+ * Each accumulator takes {@link #getMemorySize(int)} bytes, which grows with
+ * the square of the number of variables.
+ */
+public class CovarianceAccumulator implements ContinuousRowHandler {
+
+    private static final int BLOCK_SIZE = 256;
+
+    private final int numOfVariables;
+
+    private long numOfCases;
+    private long numOfSkippedCases;
+    private final double[] means;
+
+    // upper triangle, row by row, of the sums of the cross products of deviations
+    private final double[] sums;
+
+    // block of buffered rows, column by column
+    private final double[] block;
+    private final double[] blockMeans;
+    private int blockSize;
+
+    public CovarianceAccumulator(int numOfVariables) {
+        this.numOfVariables = numOfVariables;
+        this.means = new double[numOfVariables];
+        this.sums = new double[numOfVariables * (numOfVariables + 1) / 2];
+        this.block = new double[numOfVariables * BLOCK_SIZE];
+        this.blockMeans = new double[numOfVariables];
+    }
+
+    /**
+     * @param numOfVariables the number of variables
+     * @return the approximate number of bytes taken by an accumulator of that
+     * many variables
+     */
+    public static long getMemorySize(int numOfVariables) {
+        long p = numOfVariables;
+
+        return 8 * (p * (p + 1) / 2 + p * (BLOCK_SIZE + 2));
+    }
+
+    @Override
+    public void handle(double[] values) {
+        add(values);
+    }
+
+    /**
+     * Add a row of data.
+     *
+     * @param values the values of the row, one for each variable
+     */
+    public void add(double[] values) {
+        for (int i = 0; i < numOfVariables; i++) {
+            if (Double.isNaN(values[i])) {
+                numOfSkippedCases++;
+                return;
+            }
+        }
+
+        for (int i = 0; i < numOfVariables; i++) {
+            block[i * BLOCK_SIZE + blockSize] = values[i];
+        }
+        blockSize++;
+
+        if (blockSize == BLOCK_SIZE) {
+            flush();
+        }
+    }
+
+    /**
+     * Merge the rows accumulated by the other accumulator into this one.
+     *
+     * @param other accumulator of the same variables
+     * @return this accumulator
+     */
+    public CovarianceAccumulator merge(CovarianceAccumulator other) {
+        if (other.numOfVariables != numOfVariables) {
+            throw new IllegalArgumentException("Cannot merge accumulators of different numbers of variables.");
+        }
+
+        flush();
+        other.flush();
+
+        numOfSkippedCases += other.numOfSkippedCases;
+        merge(other.numOfCases, other.means, other.sums);
+
+        return this;
+    }
+
+    /**
+     * @return the number of rows accumulated, not counting the skipped ones
+     */
+    public long getNumberOfCases() {
+        flush();
+
+        return numOfCases;
+    }
+
+    /**
+     * @return the number of rows skipped because of missing values
+     */
+    public long getNumberOfSkippedCases() {
+        return numOfSkippedCases;
+    }
+
+    public double[] getMeans() {
+        flush();
+
+        return means.clone();
+    }
+
+    /**
+     * Compute the covariance matrix.
+     *
+     * @param biasCorrected true to divide by n - 1, false to divide by n
+     * @return the covariance matrix
+     */
+    public double[][] getCovariances(boolean biasCorrected) {
+        flush();
+
+        double denominator = biasCorrected ? numOfCases - 1 : numOfCases;
+        double[][] covariances = new double[numOfVariables][numOfVariables];
+        int index = 0;
+        for (int i = 0; i < numOfVariables; i++) {
+            for (int j = i; j < numOfVariables; j++) {
+                double covariance = sums[index++] / denominator;
+                covariances[i][j] = covariance;
+                covariances[j][i] = covariance;
+            }
+        }
+
+        return covariances;
+    }
+
+    /**
+     * Merge the buffered rows into the running totals.
+     */
+    private void flush() {
+        if (blockSize == 0) {
+            return;
+        }
+
+        for (int i = 0; i < numOfVariables; i++) {
+            int offset = i * BLOCK_SIZE;
+            double sum = 0;
+            for (int k = 0; k < blockSize; k++) {
+                sum += block[offset + k];
+            }
+            double mean = sum / blockSize;
+            for (int k = 0; k < blockSize; k++) {
+                block[offset + k] -= mean;
+            }
+            blockMeans[i] = mean;
+        }
+
+        long n = numOfCases + blockSize;
+        double weight = (double) numOfCases * blockSize / n;
+        int index = 0;
+        for (int i = 0; i < numOfVariables; i++) {
+            int offsetI = i * BLOCK_SIZE;
+            double deltaI = blockMeans[i] - means[i];
+            for (int j = i; j < numOfVariables; j++) {
+                int offsetJ = j * BLOCK_SIZE;
+                double sum = 0;
+                for (int k = 0; k < blockSize; k++) {
+                    sum += block[offsetI + k] * block[offsetJ + k];
+                }
+                sums[index++] += sum + deltaI * (blockMeans[j] - means[j]) * weight;
+            }
+        }
+
+        for (int i = 0; i < numOfVariables; i++) {
+            means[i] += (blockMeans[i] - means[i]) * blockSize / n;
+        }
+
+        numOfCases = n;
+        blockSize = 0;
+    }
+
+    private void merge(long otherNumOfCases, double[] otherMeans, double[] otherSums) {
+        if (otherNumOfCases == 0) {
+            return;
+        }
+
+        long n = numOfCases + otherNumOfCases;
+        double weight = (double) numOfCases * otherNumOfCases / n;
+        int index = 0;
+        for (int i = 0; i < numOfVariables; i++) {
+            double deltaI = otherMeans[i] - means[i];
+            for (int j = i; j < numOfVariables; j++) {
+                sums[index] += otherSums[index] + deltaI * (otherMeans[j] - means[j]) * weight;
+                index++;
+            }
+        }
+
+        for (int i = 0; i < numOfVariables; i++) {
+            means[i] += (otherMeans[i] - means[i]) * otherNumOfCases / n;
+        }
+
+        numOfCases = n;
+    }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2018 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.data.reader.covariance;
+
+import edu.pitt.dbmi.data.reader.DataColumn;
+import edu.pitt.dbmi.data.reader.DatasetFileReader;
+import edu.pitt.dbmi.data.reader.Delimiter;
+import edu.pitt.dbmi.data.reader.tabular.MappedTabularDataFileReader;
+import edu.pitt.dbmi.data.reader.tabular.TabularColumnFileReader;
+import edu.pitt.dbmi.data.reader.tabular.TabularColumnReader;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Computes the covariance matrix of continuous tabular data straight from the
+ * data file. The rows are streamed in parallel into
+ * {@link CovarianceAccumulator}s, so the data itself is never held in memory.
+ *
+ * Rows with missing values are skipped. The number of cases is the number of
+ * rows without missing values.
+ *
+ * Up to 2 * parallelism + 1 accumulators, each of p(p + 1) / 2 doubles for p
+ * variables, are alive at a time. The number of threads is lowered, down to
+ * one, so that they take at most a quarter of the maximum heap size.
+ */
+public class TabularCovarianceDataFileReader extends DatasetFileReader implements CovarianceDataReader {
+
+    private boolean hasHeader;
+    private char quoteChar;
+    private boolean biasCorrected;
+    private int parallelism;
+
+    public TabularCovarianceDataFileReader(Path dataFile, Delimiter delimiter) {
+        super(dataFile, delimiter);
+        this.hasHeader = true;
+        this.quoteChar = '"';
+        this.biasCorrected = true;
+        this.parallelism = Runtime.getRuntime().availableProcessors();
+    }
+
+    @Override
+    public CovarianceData readInData() throws IOException {
+        return readInData(Collections.EMPTY_SET);
+    }
+
+    public CovarianceData readInData(Set<String> namesOfColumnsToExclude) throws IOException {
+        TabularColumnReader columnReader = new TabularColumnFileReader(dataFile, delimiter);
+        columnReader.setCommentMarker(commentMarker);
+        columnReader.setQuoteCharacter(quoteChar);
+
+        boolean isDiscrete = false;
+        DataColumn[] dataColumns = hasHeader
+                ? columnReader.readInDataColumns(namesOfColumnsToExclude, isDiscrete)
+                : columnReader.generateColumns(new int[0], isDiscrete);
+
+        return readInData(dataColumns);
+    }
+
+    public CovarianceData readInData(int[] columnsToExclude) throws IOException {
+        TabularColumnReader columnReader = new TabularColumnFileReader(dataFile, delimiter);
+        columnReader.setCommentMarker(commentMarker);
+        columnReader.setQuoteCharacter(quoteChar);
+
+        boolean isDiscrete = false;
+        DataColumn[] dataColumns = hasHeader
+                ? columnReader.readInDataColumns(columnsToExclude, isDiscrete)
+                : columnReader.generateColumns(columnsToExclude, isDiscrete);
+
+        return readInData(dataColumns);
+    }
+
+    private CovarianceData readInData(DataColumn[] dataColumns) throws IOException {
+        MappedTabularDataFileReader dataReader = new MappedTabularDataFileReader(dataFile, delimiter);
+        dataReader.setCommentMarker(commentMarker);
+        dataReader.setQuoteCharacter(quoteChar);
+        dataReader.setMissingDataMarker(missingDataMarker);
+        int numOfVariables = dataColumns.length;
+        dataReader.setParallelism(getParallelism(numOfVariables));
+
+        CovarianceAccumulator accumulator = dataReader.read(dataColumns, hasHeader,
+                () -> new CovarianceAccumulator(numOfVariables),
+                CovarianceAccumulator::merge);
+
+        List<String> variables = Arrays.stream(dataColumns)
+                .map(DataColumn::getName)
+                .collect(Collectors.toList());
+
+        long numOfCases = accumulator.getNumberOfCases();
+        if (numOfCases > Integer.MAX_VALUE) {
+            throw new IllegalStateException(String.format("Too many cases: %d.", numOfCases));
+        }
+
+        return new TabularCovarianceData((int) numOfCases, variables, accumulator.getCovariances(biasCorrected));
+    }
+
+    /**
+     * @return the number of threads, lowered so that the accumulators alive at
+     * any time take at most a quarter of the maximum heap size
+     */
+    private int getParallelism(int numOfVariables) {
+        long maxNumOfAccumulators = (Runtime.getRuntime().maxMemory() / 4) / CovarianceAccumulator.getMemorySize(numOfVariables);
+
+        return (int) Math.max(1, Math.min(parallelism, (maxNumOfAccumulators - 1) / 2));
+    }
+
+    public void setHasHeader(boolean hasHeader) {
+        this.hasHeader = hasHeader;
+    }
+
+    @Override
+    public void setQuoteCharacter(char quoteCharacter) {
+        this.quoteChar = quoteCharacter;
+    }
+
+    /**
+     * @param biasCorrected true to divide by n - 1 (the default), false to
+     * divide by n
+     */
+    public void setBiasCorrected(boolean biasCorrected) {
+        this.biasCorrected = biasCorrected;
+    }
+
+    /**
+     * Set the number of threads used to read the data. The default is the
+     * number of available processors.
+     *
+     * @param parallelism the number of threads
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    private final class TabularCovarianceData implements CovarianceData {
+
+        private final int numberOfCases;
+        private final List<String> variables;
+        private final double[][] data;
+
+        private TabularCovarianceData(int numberOfCases, List<String> variables, double[][] data) {
+            this.numberOfCases = numberOfCases;
+            this.variables = variables;
+            this.data = data;
+        }
+
+        @Override
+        public int getNumberOfCases() {
+            return numberOfCases;
+        }
+
+        @Override
+        public List<String> getVariables() {
+            return variables;
+        }
+
+        @Override
+        public double[][] getData() {
+            return data;
+        }
+
+    }
+
+}
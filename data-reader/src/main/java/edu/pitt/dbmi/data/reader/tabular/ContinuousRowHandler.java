@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2018 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.data.reader.tabular;
+
+/**
+ * Receives the rows of continuous tabular data one at a time, without the
+ * data ever being held in memory as a whole.
+ */
+public interface ContinuousRowHandler {
+
+    /**
+     * Handle the next row of data.
+     *
+     * @param values the values of the row in the order of the data columns.
+     * The array is reused for the next row.
+     */
+    public void handle(double[] values);
+
+}
@@ -37,6 +37,7 @@ public class ContinuousTabularDatasetFileReader extends DatasetFileReader implem
 
     private boolean hasHeader;
     private char quoteChar;
+    private boolean memoryMapped;
 
     public ContinuousTabularDatasetFileReader(Path dataFile, Delimiter delimiter) {
         super(dataFile, delimiter);
@@ -60,7 +61,7 @@ public class ContinuousTabularDatasetFileReader extends DatasetFileReader implem
                 ? columnReader.readInDataColumns(namesOfColumnsToExclude, isDiscrete)
                 : columnReader.generateColumns(new int[0], isDiscrete);
 
-        TabularDataReader dataReader = new TabularDataFileReader(dataFile, delimiter);
+        TabularDataReader dataReader = createDataReader();
         dataReader.setCommentMarker(commentMarker);
         dataReader.setQuoteCharacter(quoteChar);
         dataReader.setMissingDataMarker(missingDataMarker);
@@ -79,7 +80,7 @@ public class ContinuousTabularDatasetFileReader extends DatasetFileReader implem
                 ? columnReader.readInDataColumns(columnsToExclude, isDiscrete)
                 : columnReader.generateColumns(columnsToExclude, isDiscrete);
 
-        TabularDataReader dataReader = new TabularDataFileReader(dataFile, delimiter);
+        TabularDataReader dataReader = createDataReader();
         dataReader.setCommentMarker(commentMarker);
         dataReader.setQuoteCharacter(quoteChar);
         dataReader.setMissingDataMarker(missingDataMarker);
@@ -87,6 +88,12 @@ public class ContinuousTabularDatasetFileReader extends DatasetFileReader implem
         return dataReader.read(dataColumns, hasHeader);
     }
 
+    private TabularDataReader createDataReader() {
+        return memoryMapped
+                ? new MappedTabularDataFileReader(dataFile, delimiter)
+                : new TabularDataFileReader(dataFile, delimiter);
+    }
+
     @Override
     public void setHasHeader(boolean hasHeader) {
         this.hasHeader = hasHeader;
@@ -97,4 +104,15 @@ public class ContinuousTabularDatasetFileReader extends DatasetFileReader implem
         this.quoteChar = quoteCharacter;
     }
 
+    /**
+     * Read the data with {@link MappedTabularDataFileReader}, which maps the
+     * file into memory and parses it in parallel. The data is then returned
+     * column by column as {@link VerticalContinuousTabularData}.
+     *
+     * @param memoryMapped true to use the memory-mapped reader
+     */
+    public void setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+    }
+
 }
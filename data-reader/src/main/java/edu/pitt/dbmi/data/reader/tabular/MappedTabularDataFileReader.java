@@ -0,0 +1,738 @@
+/*
+ * Copyright (C) 2018 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.data.reader.tabular;
+
+import edu.pitt.dbmi.data.reader.Data;
+import edu.pitt.dbmi.data.reader.DataColumn;
+import edu.pitt.dbmi.data.reader.DataReaderException;
+import edu.pitt.dbmi.data.reader.DatasetFileReader;
+import edu.pitt.dbmi.data.reader.Delimiter;
+import edu.pitt.dbmi.data.reader.metadata.ColumnMetadata;
+import edu.pitt.dbmi.data.reader.metadata.Metadata;
+import edu.pitt.dbmi.data.reader.util.DoubleParser;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A tabular data reader that memory-maps the data file and reads continuous
+ * data in parallel.
+ *
+ * The file is split into line-aligned chunks that are mapped into memory. The
+ * chunks are first scanned in parallel to count their lines, which gives each
+ * chunk the row it starts on. The chunks are then parsed in parallel straight
+ * into column-major arrays, so the data comes back as
+ * {@link VerticalContinuousTabularData}. Numbers are parsed from the mapped
+ * bytes by {@link DoubleParser} without creating strings.
+ *
+ * The continuous data is parsed exactly as {@link TabularDataFileReader} would
+ * parse it. Discrete and mixed data are handed over to
+ * {@link TabularDataFileReader}.
+ *
+ * The rows can also be streamed to {@link ContinuousRowHandler}s, one per
+ * chunk, without holding the data in memory. See
+ * {@link #read(DataColumn[], boolean, Supplier, BinaryOperator)}.
+ */
+public final class MappedTabularDataFileReader extends DatasetFileReader implements TabularDataReader {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedTabularDataFileReader.class);
+
+    private static final long MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private int parallelism;
+
+    public MappedTabularDataFileReader(Path dataFile, Delimiter delimiter) {
+        super(dataFile, delimiter);
+        this.parallelism = Runtime.getRuntime().availableProcessors();
+    }
+
+    @Override
+    public void determineDiscreteDataColumns(DataColumn[] dataColumns, int numberOfCategories, boolean hasHeader) throws IOException {
+        createTabularDataReader().determineDiscreteDataColumns(dataColumns, numberOfCategories, hasHeader);
+    }
+
+    @Override
+    public Data read(DataColumn[] dataColumns, boolean hasHeader) throws IOException {
+        if (dataColumns == null) {
+            return null;
+        }
+
+        if (dataColumns.length == 0 || hasDiscreteColumn(dataColumns)) {
+            return createTabularDataReader().read(dataColumns, hasHeader);
+        }
+
+        return readInContinuousData(dataColumns, hasHeader);
+    }
+
+    @Override
+    public Data read(DataColumn[] dataColumns, boolean hasHeader, Metadata metadata) throws IOException {
+        if (dataColumns == null) {
+            return null;
+        }
+
+        if (dataColumns.length == 0 || hasDiscreteColumn(dataColumns)) {
+            return createTabularDataReader().read(dataColumns, hasHeader, metadata);
+        }
+
+        Data data = readInContinuousData(dataColumns, hasHeader);
+
+        if (metadata != null) {
+            double[][] contData = ((VerticalContinuousTabularData) data).getColumnData();
+            metadata.getInterventionalColumns().forEach(column -> {
+                ColumnMetadata valCol = column.getValueColumn();
+                ColumnMetadata statCol = column.getStatusColumn();
+                int valColNum = valCol.getColumnNumber() - 1;
+                int statColNum = statCol.getColumnNumber() - 1;
+                double[] val = contData[valColNum];
+                double[] stat = contData[statColNum];
+                for (int i = 0; i < val.length; i++) {
+                    if (Double.isNaN(val[i])) {
+                        val[i] = 0.0;
+                        stat[i] = 0.0;
+                    } else if (dataColumns[statColNum].isGenerated()) {
+                        stat[i] = 1.0;
+                    }
+                }
+            });
+        }
+
+        return data;
+    }
+
+    /**
+     * Stream the rows of the data file to row handlers. All the columns are
+     * read as continuous. Each chunk of the file is parsed in parallel by its
+     * own handler from the supplier, and the handlers are combined in the order
+     * of the chunks in the file. At most twice as many handlers as threads, and
+     * the combined one, are alive at any time, so large handlers may call for
+     * fewer threads.
+     *
+     * @param <T> the type of the row handler
+     * @param dataColumns the columns to read
+     * @param hasHeader true if the first line of the file is a header
+     * @param handlerSupplier creates a new handler for each chunk
+     * @param combiner combines the handler of all the previous chunks with the
+     * handler of the next one
+     * @return the combined handler
+     * @throws IOException
+     */
+    public <T extends ContinuousRowHandler> T read(DataColumn[] dataColumns, boolean hasHeader, Supplier<T> handlerSupplier, BinaryOperator<T> combiner) throws IOException {
+        int numOfColsInDataFile = countNumberOfColumnsInDataFile(dataColumns);
+
+        try (FileChannel fileChannel = FileChannel.open(dataFile, StandardOpenOption.READ)) {
+            // the chunks start after the header so that none of them has to skip it
+            long start = hasHeader ? findEndOfHeader() : 0;
+            List<Chunk> chunks = createChunks(fileChannel, start);
+
+            ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, chunks.size())));
+            try {
+                T result = null;
+                Deque<Future<T>> futures = new ArrayDeque<>();
+                Iterator<Chunk> iterator = chunks.iterator();
+                while (iterator.hasNext() || !futures.isEmpty()) {
+                    while (iterator.hasNext() && futures.size() < 2 * parallelism) {
+                        Chunk chunk = iterator.next();
+                        futures.add(pool.submit(() -> {
+                            T handler = handlerSupplier.get();
+                            chunk.parse(dataColumns, false, numOfColsInDataFile, handler);
+
+                            return handler;
+                        }));
+                    }
+
+                    T handler = getResult(futures.removeFirst());
+                    result = (result == null) ? handler : combiner.apply(result, handler);
+                }
+
+                return (result == null) ? handlerSupplier.get() : result;
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    private Data readInContinuousData(DataColumn[] dataColumns, boolean hasHeader) throws IOException {
+        int numOfColsInDataFile = countNumberOfColumnsInDataFile(dataColumns);
+
+        try (FileChannel fileChannel = FileChannel.open(dataFile, StandardOpenOption.READ)) {
+            List<Chunk> chunks = createChunks(fileChannel, 0);
+
+            ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, chunks.size())));
+            try {
+                // first pass: count the lines in each chunk
+                List<Callable<Void>> tasks = new ArrayList<>(chunks.size());
+                chunks.forEach(chunk -> tasks.add(() -> {
+                    chunk.countLines();
+                    return null;
+                }));
+                invokeAll(pool, tasks);
+
+                int numOfLines = 0;
+                int lineNum = 1;
+                for (Chunk chunk : chunks) {
+                    chunk.firstDataLine = numOfLines;
+                    chunk.firstLineNum = lineNum;
+                    numOfLines += chunk.numOfDataLines;
+                    lineNum += chunk.numOfLineBreaks;
+                }
+
+                int numOfRows = (hasHeader && numOfLines > 0) ? numOfLines - 1 : numOfLines;
+                double[][] data = new double[dataColumns.length][numOfRows];
+
+                // second pass: parse the data in each chunk straight into its rows
+                tasks.clear();
+                chunks.forEach(chunk -> tasks.add(() -> {
+                    boolean hasHeaderLine = hasHeader && chunk.firstDataLine == 0;
+                    int firstRow = hasHeader ? Math.max(0, chunk.firstDataLine - 1) : chunk.firstDataLine;
+                    chunk.parse(dataColumns, hasHeaderLine, numOfColsInDataFile, new DataArrayWriter(data, firstRow));
+                    return null;
+                }));
+                invokeAll(pool, tasks);
+
+                return new VerticalContinuousTabularData(dataColumns, data);
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    private void invokeAll(ExecutorService pool, List<Callable<Void>> tasks) throws IOException {
+        List<Future<Void>> futures;
+        try {
+            futures = pool.invokeAll(tasks);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Reading of " + dataFile + " was interrupted.");
+        }
+
+        for (Future<Void> future : futures) {
+            getResult(future);
+        }
+    }
+
+    private <T> T getResult(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Reading of " + dataFile + " was interrupted.");
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            LOGGER.error(cause.getMessage(), cause);
+            if (cause instanceof DataReaderException) {
+                throw (DataReaderException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else {
+                throw new DataReaderException(cause.getMessage(), cause);
+            }
+        }
+    }
+
+    private int countNumberOfColumnsInDataFile(DataColumn[] dataColumns) {
+        return (int) Arrays.stream(dataColumns)
+                .filter(dataColumn -> !dataColumn.isGenerated())
+                .count();
+    }
+
+    /**
+     * Split the file, from the given position on, into chunks that end right
+     * after a line break or at the end of the file.
+     */
+    private List<Chunk> createChunks(FileChannel fileChannel, long start) throws IOException {
+        long fileSize = fileChannel.size();
+        long chunkSize = (fileSize - start) / ((long) parallelism * CHUNKS_PER_THREAD);
+        chunkSize = Math.min(MAX_CHUNK_SIZE, Math.max(BUFFER_SIZE, chunkSize));
+
+        List<Chunk> chunks = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        while (start < fileSize) {
+            long end = findEndOfLine(fileChannel, buffer, Math.min(start + chunkSize, fileSize) - 1, fileSize);
+            if (end - start > Integer.MAX_VALUE) {
+                String errMsg = String.format("Line starting at byte %d is too long to be mapped into memory.", start);
+                LOGGER.error(errMsg);
+                throw new DataReaderException(errMsg);
+            }
+
+            chunks.add(new Chunk(fileChannel, start, end));
+            start = end;
+        }
+
+        return chunks;
+    }
+
+    /**
+     * @return the position right after the first line break at or after the
+     * given position, treating CRLF as one line break, or the file size if
+     * there is none
+     */
+    private long findEndOfLine(FileChannel fileChannel, ByteBuffer buffer, long position, long fileSize) throws IOException {
+        boolean foundCarriageReturn = false;
+        while (position < fileSize) {
+            buffer.clear();
+            int len = fileChannel.read(buffer, position);
+            if (len <= 0) {
+                break;
+            }
+
+            for (int i = 0; i < len; i++, position++) {
+                byte currChar = buffer.get(i);
+                if (foundCarriageReturn) {
+                    return (currChar == LINE_FEED) ? position + 1 : position;
+                } else if (currChar == CARRIAGE_RETURN) {
+                    foundCarriageReturn = true;
+                } else if (currChar == LINE_FEED) {
+                    return position + 1;
+                }
+            }
+        }
+
+        return fileSize;
+    }
+
+    /**
+     * @return the position right after the line break that ends the first
+     * non-blank, non-commented line, or the file size if there is none
+     */
+    private long findEndOfHeader() throws IOException {
+        byte[] comment = commentMarker.getBytes();
+
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(dataFile, StandardOpenOption.READ))) {
+            boolean isHeader = false;
+            boolean skip = false;
+            boolean hasSeenNonblankChar = false;
+            int cmntIndex = 0;
+
+            long position = 0;
+            int value;
+            while ((value = in.read()) != -1) {
+                byte currChar = (byte) value;
+                position++;
+
+                if (currChar == CARRIAGE_RETURN || currChar == LINE_FEED) {
+                    if (isHeader || (cmntIndex > 0 && !skip)) {
+                        if (currChar == CARRIAGE_RETURN && in.read() == LINE_FEED) {
+                            position++;
+                        }
+
+                        return position;
+                    }
+
+                    // reset states
+                    skip = false;
+                    hasSeenNonblankChar = false;
+                    cmntIndex = 0;
+                } else if (!skip && !isHeader) {
+                    // skip blank chars at the begining of the line
+                    if (currChar <= SPACE_CHAR && !hasSeenNonblankChar) {
+                        continue;
+                    }
+                    hasSeenNonblankChar = true;
+
+                    if (cmntIndex < comment.length && currChar == comment[cmntIndex]) {
+                        cmntIndex++;
+                        skip = cmntIndex == comment.length;
+                    } else {
+                        isHeader = true;
+                    }
+                }
+            }
+
+            return position;
+        }
+    }
+
+    /**
+     * @return the number of line breaks before the given position, treating
+     * CRLF as one line break
+     */
+    private int countLineBreaks(long end) throws IOException {
+        int count = 0;
+        try (InputStream in = Files.newInputStream(dataFile, StandardOpenOption.READ)) {
+            byte prevChar = -1;
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long position = 0;
+            int len;
+            while (position < end && (len = in.read(buffer, 0, (int) Math.min(buffer.length, end - position))) != -1) {
+                for (int i = 0; i < len; i++) {
+                    byte currChar = buffer[i];
+                    if (currChar == CARRIAGE_RETURN || (currChar == LINE_FEED && prevChar != CARRIAGE_RETURN)) {
+                        count++;
+                    }
+                    prevChar = currChar;
+                }
+                position += len;
+            }
+        }
+
+        return count;
+    }
+
+    private boolean hasDiscreteColumn(DataColumn[] dataColumns) {
+        for (DataColumn dataColumn : dataColumns) {
+            if (dataColumn.isDiscrete()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private TabularDataReader createTabularDataReader() {
+        TabularDataReader dataReader = new TabularDataFileReader(dataFile, delimiter);
+        dataReader.setCommentMarker(commentMarker);
+        dataReader.setQuoteCharacter((char) quoteCharacter);
+        dataReader.setMissingDataMarker(missingDataMarker);
+
+        return dataReader;
+    }
+
+    /**
+     * Set the number of threads used to read the data. The default is the
+     * number of available processors.
+     *
+     * @param parallelism the number of threads
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Writes the rows of a chunk into column-major data arrays.
+     */
+    private static final class DataArrayWriter implements ContinuousRowHandler {
+
+        private final double[][] data;
+        private int row;
+
+        private DataArrayWriter(double[][] data, int firstRow) {
+            this.data = data;
+            this.row = firstRow;
+        }
+
+        @Override
+        public void handle(double[] values) {
+            for (int col = 0; col < values.length; col++) {
+                data[col][row] = values[col];
+            }
+            row++;
+        }
+
+    }
+
+    /**
+     * A part of the data file that starts at the beginning of a line and ends
+     * right after a line break or at the end of the file. It is mapped into
+     * memory only while it is being read.
+     */
+    private final class Chunk {
+
+        private final FileChannel fileChannel;
+        private final long start;
+        private final long end;
+
+        private MappedByteBuffer buffer;
+
+        private int numOfDataLines;
+        private int numOfLineBreaks;
+
+        // global index of the first non-blank, non-commented line in the chunk
+        private int firstDataLine;
+
+        // line number of the first line in the chunk, 0 if not known yet
+        private int firstLineNum;
+
+        // field buffer, reused by all the values
+        private byte[] field = new byte[64];
+        private int fieldLength;
+
+        private Chunk(FileChannel fileChannel, long start, long end) {
+            this.fileChannel = fileChannel;
+            this.start = start;
+            this.end = end;
+        }
+
+        private void countLines() throws IOException {
+            buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            try {
+                byte[] comment = commentMarker.getBytes();
+                int limit = buffer.limit();
+                int lineStart = 0;
+                while (lineStart < limit && !Thread.currentThread().isInterrupted()) {
+                    int lineEnd = findLineBreak(lineStart, limit);
+                    if (findData(lineStart, lineEnd, comment) >= 0) {
+                        numOfDataLines++;
+                    }
+
+                    lineStart = skipLineBreak(lineEnd, limit);
+                    if (lineEnd < limit) {
+                        numOfLineBreaks++;
+                    }
+                }
+            } finally {
+                buffer = null;
+            }
+        }
+
+        /**
+         * Parse the data lines of the chunk and hand each of them to the
+         * handler.
+         *
+         * @param hasHeaderLine true if the first data line of the chunk is the
+         * header of the file
+         */
+        private void parse(DataColumn[] dataColumns, boolean hasHeaderLine, int numOfColsInDataFile, ContinuousRowHandler handler) throws IOException {
+            buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            try {
+                byte[] comment = commentMarker.getBytes();
+                double[] values = new double[dataColumns.length];
+                boolean skipHeader = hasHeaderLine;
+                int lineIndex = 0;
+                int limit = buffer.limit();
+                int lineStart = 0;
+                while (lineStart < limit && !Thread.currentThread().isInterrupted()) {
+                    int lineEnd = findLineBreak(lineStart, limit);
+                    int dataStart = findData(lineStart, lineEnd, comment);
+                    if (dataStart >= 0) {
+                        if (skipHeader) {
+                            skipHeader = false;
+                        } else {
+                            parseLine(dataStart, lineEnd, dataColumns, numOfColsInDataFile, values, lineIndex);
+                            handler.handle(values);
+                        }
+                    }
+
+                    lineStart = skipLineBreak(lineEnd, limit);
+                    lineIndex++;
+                }
+            } finally {
+                buffer = null;
+            }
+        }
+
+        /**
+         * @return the line number in the file of the given line of the chunk
+         */
+        private int getLineNumber(int lineIndex) throws IOException {
+            if (firstLineNum == 0) {
+                firstLineNum = countLineBreaks(start) + 1;
+            }
+
+            return firstLineNum + lineIndex;
+        }
+
+        private void parseLine(int start, int end, DataColumn[] dataColumns, int numOfColsInDataFile, double[] values, int lineIndex) throws IOException {
+            int numOfCols = dataColumns.length;
+            byte delimChar = delimiter.getByteValue();
+            boolean hasQuoteChar = false;
+
+            int colNum = 0;
+            int columnIndex = 0;
+
+            fieldLength = 0;
+            byte prevChar = LINE_FEED;
+            for (int i = start; i < end; i++) {
+                byte currChar = buffer.get(i);
+
+                if (currChar == quoteCharacter) {
+                    hasQuoteChar = !hasQuoteChar;
+                } else if (hasQuoteChar) {
+                    append(currChar);
+                } else {
+                    boolean isDelimiter;
+                    switch (delimiter) {
+                        case WHITESPACE:
+                            isDelimiter = (currChar <= SPACE_CHAR) && (prevChar > SPACE_CHAR);
+                            break;
+                        default:
+                            isDelimiter = (currChar == delimChar);
+                    }
+
+                    if (isDelimiter) {
+                        colNum++;
+
+                        if (dataColumns[columnIndex].getColumnNumber() == colNum) {
+                            values[columnIndex] = toDouble(lineIndex, colNum);
+
+                            columnIndex++;
+                            if (columnIndex == numOfCols) {
+                                return;
+                            }
+                        }
+
+                        // clear data
+                        fieldLength = 0;
+                    } else {
+                        append(currChar);
+                    }
+                }
+
+                prevChar = currChar;
+            }
+
+            colNum++;
+            if (dataColumns[columnIndex].getColumnNumber() == colNum) {
+                values[columnIndex] = toDouble(lineIndex, colNum);
+                columnIndex++;
+            }
+
+            // ensure we have enough data
+            if (columnIndex < numOfColsInDataFile) {
+                String errMsg = String.format("Insufficient data on line %d.  Extracted %d value(s) but expected %d.", getLineNumber(lineIndex), columnIndex, numOfColsInDataFile);
+                throw new DataReaderException(errMsg);
+            }
+        }
+
+        private double toDouble(int lineIndex, int colNum) throws IOException {
+            // trim
+            int from = 0;
+            int to = fieldLength;
+            while (from < to && isBlank(field[from])) {
+                from++;
+            }
+            while (to > from && isBlank(field[to - 1])) {
+                to--;
+            }
+
+            if (from == to || isMissingDataMarker(from, to)) {
+                return CONTINUOUS_MISSING_VALUE;
+            }
+
+            try {
+                return DoubleParser.parseDouble(field, from, to);
+            } catch (NumberFormatException exception) {
+                StringBuilder value = new StringBuilder();
+                for (int i = from; i < to; i++) {
+                    value.append((char) field[i]);
+                }
+
+                String errMsg = String.format("Non-continuous number %s on line %d at column %d.", value, getLineNumber(lineIndex), colNum);
+                throw new DataReaderException(errMsg, exception);
+            }
+        }
+
+        private boolean isMissingDataMarker(int from, int to) {
+            if (missingDataMarker.length() != to - from) {
+                return false;
+            }
+
+            for (int i = from; i < to; i++) {
+                if ((char) field[i] != missingDataMarker.charAt(i - from)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Blank as in {@link String#trim()}.
+         */
+        private boolean isBlank(byte b) {
+            return b >= 0 && b <= SPACE_CHAR;
+        }
+
+        private void append(byte currChar) {
+            if (fieldLength == field.length) {
+                byte[] newField = new byte[field.length * 2];
+                System.arraycopy(field, 0, newField, 0, fieldLength);
+                field = newField;
+            }
+
+            field[fieldLength++] = currChar;
+        }
+
+        /**
+         * @return the position of the first non-blank character of the line in
+         * the range [start, end), or -1 if the line is blank or commented out
+         */
+        private int findData(int start, int end, byte[] comment) {
+            int i = start;
+            while (i < end && buffer.get(i) <= SPACE_CHAR) {
+                i++;
+            }
+            if (i == end) {
+                return -1;
+            }
+
+            if (comment.length > 0 && end - i >= comment.length) {
+                int j = 0;
+                while (j < comment.length && buffer.get(i + j) == comment[j]) {
+                    j++;
+                }
+                if (j == comment.length) {
+                    return -1;
+                }
+            }
+
+            return i;
+        }
+
+        private int findLineBreak(int start, int limit) {
+            int i = start;
+            while (i < limit) {
+                byte currChar = buffer.get(i);
+                if (currChar == CARRIAGE_RETURN || currChar == LINE_FEED) {
+                    break;
+                }
+                i++;
+            }
+
+            return i;
+        }
+
+        private int skipLineBreak(int position, int limit) {
+            if (position < limit && buffer.get(position) == CARRIAGE_RETURN) {
+                position++;
+                if (position < limit && buffer.get(position) == LINE_FEED) {
+                    position++;
+                }
+            } else if (position < limit) {
+                position++;
+            }
+
+            return position;
+        }
+
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2018 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.data.reader.tabular;
+
+import edu.pitt.dbmi.data.reader.ContinuousData;
+import edu.pitt.dbmi.data.reader.DataColumn;
+
+/**
+ * Continuous data stored column by column, i.e., data[column][row]. The
+ * columns are returned by {@link #getColumnData()}; {@link #getData()} keeps
+ * the row-major contract of {@link ContinuousData} and returns a copy.
+ */
+public class VerticalContinuousTabularData implements ContinuousData {
+
+    private final DataColumn[] dataColumns;
+    private final double[][] data;
+
+    public VerticalContinuousTabularData(DataColumn[] dataColumns, double[][] data) {
+        this.dataColumns = dataColumns;
+        this.data = data;
+    }
+
+    @Override
+    public DataColumn[] getDataColumns() {
+        return dataColumns;
+    }
+
+    /**
+     * @return a row-major copy of the data, i.e., data[row][column]
+     */
+    @Override
+    public double[][] getData() {
+        int numOfRows = (data.length == 0) ? 0 : data[0].length;
+        double[][] rowData = new double[numOfRows][data.length];
+        for (int col = 0; col < data.length; col++) {
+            double[] column = data[col];
+            for (int row = 0; row < numOfRows; row++) {
+                rowData[row][col] = column[row];
+            }
+        }
+
+        return rowData;
+    }
+
+    /**
+     * @return the data, column by column, i.e., data[column][row], without
+     * copying
+     */
+    public double[][] getColumnData() {
+        return data;
+    }
+
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2018 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.data.reader.util;
+
+import java.math.BigInteger;
+
+/**
+ * Parses decimal numbers directly from a byte array without creating any
+ * intermediate strings.
+ *
+ * Plain decimal numbers with at most 19 significant digits are converted with
+ * the Clinger fast path or, failing that, the Eisel-Lemire algorithm. Both
+ * give the correctly rounded result, the same as
+ * {@link Double#parseDouble(String)}. Anything else (hexadecimal numbers,
+ * "NaN", "Infinity", more than 19 significant digits, values that fall into
+ * the subnormal range, etc.) is handed over to
+ * {@link Double#parseDouble(String)}.
+ */
+public final class DoubleParser {
+
+    private static final int MIN_EXP10 = -348;
+    private static final int MAX_EXP10 = 347;
+
+    private static final int MAX_DIGITS = 19;
+
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * High and low 64 bits of the normalized 128-bit mantissas of 10^e,
+     * rounded down, for e in [MIN_EXP10, MAX_EXP10].
+     */
+    private static final long[] MANTISSA_HI = new long[MAX_EXP10 - MIN_EXP10 + 1];
+    private static final long[] MANTISSA_LO = new long[MAX_EXP10 - MIN_EXP10 + 1];
+
+    static {
+        BigInteger mask = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+        for (int e = MIN_EXP10; e <= MAX_EXP10; e++) {
+            BigInteger power = BigInteger.TEN.pow(Math.abs(e));
+            BigInteger mantissa;
+            if (e >= 0) {
+                int bitLength = power.bitLength();
+                mantissa = (bitLength > 128)
+                        ? power.shiftRight(bitLength - 128)
+                        : power.shiftLeft(128 - bitLength);
+            } else {
+                mantissa = BigInteger.ONE.shiftLeft(127 + power.bitLength()).divide(power);
+            }
+
+            MANTISSA_HI[e - MIN_EXP10] = mantissa.shiftRight(64).longValue();
+            MANTISSA_LO[e - MIN_EXP10] = mantissa.and(mask).longValue();
+        }
+    }
+
+    private DoubleParser() {
+    }
+
+    /**
+     * Parse the bytes in the range [from, to) as a double. Leading and
+     * trailing whitespaces are not allowed.
+     *
+     * @param bytes the bytes to parse
+     * @param from the index of the first byte, inclusive
+     * @param to the index of the last byte, exclusive
+     * @return the double value
+     * @throws NumberFormatException if the bytes do not represent a number
+     */
+    public static double parseDouble(byte[] bytes, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int numOfDigits = 0;
+        boolean hasDigits = false;
+        int exp10 = 0;
+
+        // integer part
+        for (; i < to && isDigit(bytes[i]); i++) {
+            hasDigits = true;
+            int digit = bytes[i] - '0';
+            if (numOfDigits > 0 || digit > 0) {
+                mantissa = 10 * mantissa + digit;
+                numOfDigits++;
+            }
+        }
+
+        // fraction part
+        if (i < to && bytes[i] == '.') {
+            i++;
+            for (; i < to && isDigit(bytes[i]); i++) {
+                hasDigits = true;
+                int digit = bytes[i] - '0';
+                if (numOfDigits > 0 || digit > 0) {
+                    mantissa = 10 * mantissa + digit;
+                    numOfDigits++;
+                }
+                exp10--;
+            }
+        }
+
+        // exponent part
+        if (hasDigits && i < to && (bytes[i] == 'e' || bytes[i] == 'E')) {
+            i++;
+            boolean negativeExp = false;
+            if (i < to && (bytes[i] == '-' || bytes[i] == '+')) {
+                negativeExp = bytes[i] == '-';
+                i++;
+            }
+
+            int exp = 0;
+            boolean hasExpDigits = false;
+            for (; i < to && isDigit(bytes[i]); i++) {
+                hasExpDigits = true;
+                if (exp < 100000) {
+                    exp = 10 * exp + (bytes[i] - '0');
+                }
+            }
+            if (!hasExpDigits) {
+                return fallback(bytes, from, to);
+            }
+
+            exp10 += negativeExp ? -exp : exp;
+        }
+
+        if (!hasDigits || i != to || numOfDigits > MAX_DIGITS) {
+            return fallback(bytes, from, to);
+        }
+
+        if (mantissa == 0) {
+            return negative ? -0.0 : 0.0;
+        }
+
+        // Clinger fast path: both the mantissa and the power of ten are exact
+        if (exp10 >= -22 && exp10 <= 22 && mantissa >= 0 && mantissa <= (1L << 53)) {
+            double value = (double) mantissa;
+            value = (exp10 < 0)
+                    ? value / POWERS_OF_TEN[-exp10]
+                    : value * POWERS_OF_TEN[exp10];
+
+            return negative ? -value : value;
+        }
+
+        if (exp10 >= MIN_EXP10 && exp10 <= MAX_EXP10) {
+            long bits = eiselLemire(mantissa, exp10);
+            if (bits >= 0) {
+                return Double.longBitsToDouble(negative ? (bits | Long.MIN_VALUE) : bits);
+            }
+        }
+
+        return fallback(bytes, from, to);
+    }
+
+    /**
+     * Convert mantissa * 10^exp10 to the bits of a positive double using the
+     * Eisel-Lemire algorithm.
+     *
+     * @param mantissa nonzero unsigned mantissa
+     * @param exp10 power of ten
+     * @return the bits of the double, or -1 if the result cannot be determined
+     */
+    private static long eiselLemire(long mantissa, int exp10) {
+        int index = exp10 - MIN_EXP10;
+
+        // normalization
+        int clz = Long.numberOfLeadingZeros(mantissa);
+        mantissa <<= clz;
+        long retExp2 = ((217706L * exp10) >> 16) + 64 + 1023 - clz;
+
+        // multiplication
+        long xHi = multiplyHighUnsigned(mantissa, MANTISSA_HI[index]);
+        long xLo = mantissa * MANTISSA_HI[index];
+
+        // wider approximation
+        if ((xHi & 0x1FF) == 0x1FF && Long.compareUnsigned(xLo + mantissa, mantissa) < 0) {
+            long yHi = multiplyHighUnsigned(mantissa, MANTISSA_LO[index]);
+            long yLo = mantissa * MANTISSA_LO[index];
+            long mergedHi = xHi;
+            long mergedLo = xLo + yHi;
+            if (Long.compareUnsigned(mergedLo, xLo) < 0) {
+                mergedHi++;
+            }
+            if ((mergedHi & 0x1FF) == 0x1FF && mergedLo + 1 == 0 && Long.compareUnsigned(yLo + mantissa, mantissa) < 0) {
+                return -1;
+            }
+            xHi = mergedHi;
+            xLo = mergedLo;
+        }
+
+        // shifting to 54 bits
+        long msb = xHi >>> 63;
+        long retMantissa = xHi >>> (msb + 9);
+        retExp2 -= 1 ^ msb;
+
+        // half-way ambiguity
+        if (xLo == 0 && (xHi & 0x1FF) == 0 && (retMantissa & 3) == 1) {
+            return -1;
+        }
+
+        // from 54 to 53 bits
+        retMantissa += retMantissa & 1;
+        retMantissa >>>= 1;
+        if ((retMantissa >>> 53) > 0) {
+            retMantissa >>>= 1;
+            retExp2++;
+        }
+
+        // subnormal, infinity or NaN
+        if (retExp2 <= 0 || retExp2 >= 0x7FF) {
+            return -1;
+        }
+
+        return (retExp2 << 52) | (retMantissa & 0x000FFFFFFFFFFFFFL);
+    }
+
+    /**
+     * @return the high 64 bits of the unsigned 128-bit product of x and y
+     */
+    private static long multiplyHighUnsigned(long x, long y) {
+        long x0 = x & 0xFFFFFFFFL;
+        long x1 = x >>> 32;
+        long y0 = y & 0xFFFFFFFFL;
+        long y1 = y >>> 32;
+
+        long p00 = x0 * y0;
+        long p01 = x0 * y1;
+        long p10 = x1 * y0;
+        long p11 = x1 * y1;
+
+        long middle = (p00 >>> 32) + (p10 & 0xFFFFFFFFL) + p01;
+
+        return p11 + (p10 >>> 32) + (middle >>> 32);
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static double fallback(byte[] bytes, int from, int to) {
+        char[] chars = new char[to - from];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) bytes[from + i];
+        }
+
+        return Double.parseDouble(new String(chars));
+    }
+
+}
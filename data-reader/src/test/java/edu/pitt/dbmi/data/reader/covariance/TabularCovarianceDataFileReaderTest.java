@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2018 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.data.reader.covariance;
+
+import edu.pitt.dbmi.data.reader.ContinuousData;
+import edu.pitt.dbmi.data.reader.DataColumn;
+import edu.pitt.dbmi.data.reader.Delimiter;
+import edu.pitt.dbmi.data.reader.tabular.TabularColumnFileReader;
+import edu.pitt.dbmi.data.reader.tabular.TabularColumnReader;
+import edu.pitt.dbmi.data.reader.tabular.TabularDataFileReader;
+import edu.pitt.dbmi.data.reader.tabular.TabularDataReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the covariance matrices computed straight from tabular data files
+ * against covariances computed from the data read in.
+ */
+public class TabularCovarianceDataFileReaderTest {
+
+    private final Delimiter delimiter = Delimiter.COMMA;
+    private final char quoteCharacter = '"';
+    private final String missingValueMarker = "*";
+    private final String commentMarker = "//";
+
+    private final Path[] dataFiles = {
+        Paths.get(getClass().getResource("/data/tabular/continuous/dos_sim_test_data.csv").getFile()),
+        Paths.get(getClass().getResource("/data/tabular/continuous/mac_sim_test_data.csv").getFile()),
+        Paths.get(getClass().getResource("/data/tabular/continuous/sim_test_data.csv").getFile()),
+        Paths.get(getClass().getResource("/data/tabular/continuous/quotes_sim_test_data.csv").getFile())
+    };
+
+    public TabularCovarianceDataFileReaderTest() {
+    }
+
+    /**
+     * Test of readInData method, of class TabularCovarianceDataFileReader.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testReadInData() throws IOException {
+        int[] columnsToExclude = {5, 3, 1, 8, 10};
+        for (Path dataFile : dataFiles) {
+            TabularCovarianceDataFileReader dataReader = createReader(dataFile, delimiter, 2);
+            CovarianceData covarianceData = dataReader.readInData(columnsToExclude);
+
+            long expected = 18;
+            long actual = covarianceData.getNumberOfCases();
+            Assert.assertEquals(expected, actual);
+
+            expected = 5;
+            actual = covarianceData.getVariables().size();
+            Assert.assertEquals(expected, actual);
+
+            assertCovariances(dataFile, delimiter, columnsToExclude, covarianceData);
+        }
+    }
+
+    /**
+     * Write a file big enough to be split into several chunks, with missing
+     * values and values far from zero, and compare the covariances with the
+     * ones computed from the data held in memory.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testReadInLargeData() throws IOException {
+        int numOfCols = 6;
+        int numOfRows = 100000;
+        Random random = new Random(42);
+
+        Path dataFile = Files.createTempFile("covariance_sim_test_data", ".txt");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(dataFile)) {
+                for (int col = 1; col <= numOfCols; col++) {
+                    writer.write(((col > 1) ? "\t" : "") + "X" + col);
+                }
+                writer.write("\n");
+
+                for (int row = 0; row < numOfRows; row++) {
+                    double x = random.nextGaussian();
+                    for (int col = 0; col < numOfCols; col++) {
+                        if (col > 0) {
+                            writer.write("\t");
+                        }
+
+                        if (random.nextInt(5000) == 0) {
+                            writer.write(missingValueMarker);
+                        } else {
+                            writer.write(Double.toString(1e6 * col + x * col + random.nextGaussian()));
+                        }
+                    }
+                    writer.write("\n");
+                }
+            }
+
+            int[] columnsToExclude = {};
+            CovarianceData covarianceData = createReader(dataFile, Delimiter.TAB, 4).readInData(columnsToExclude);
+
+            long expected = numOfRows;
+            long actual = covarianceData.getNumberOfCases();
+            Assert.assertTrue(actual < expected && actual > 0.99 * expected);
+
+            assertCovariances(dataFile, Delimiter.TAB, columnsToExclude, covarianceData);
+        } finally {
+            Files.deleteIfExists(dataFile);
+        }
+    }
+
+    @Test
+    public void testMerge() {
+        Random random = new Random(7);
+        double[][] rows = new double[1000][3];
+        for (double[] row : rows) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] = 100 * i + random.nextGaussian();
+            }
+        }
+
+        CovarianceAccumulator all = new CovarianceAccumulator(3);
+        CovarianceAccumulator first = new CovarianceAccumulator(3);
+        CovarianceAccumulator second = new CovarianceAccumulator(3);
+        for (int i = 0; i < rows.length; i++) {
+            all.add(rows[i]);
+            if (i < 300) {
+                first.add(rows[i]);
+            } else {
+                second.add(rows[i]);
+            }
+        }
+        first.merge(second);
+
+        long expected = all.getNumberOfCases();
+        long actual = first.getNumberOfCases();
+        Assert.assertEquals(expected, actual);
+
+        double[][] expectedCovariances = all.getCovariances(true);
+        double[][] actualCovariances = first.getCovariances(true);
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                Assert.assertEquals(expectedCovariances[i][j], actualCovariances[i][j], 1e-10);
+            }
+        }
+    }
+
+    private TabularCovarianceDataFileReader createReader(Path dataFile, Delimiter delimiter, int parallelism) {
+        TabularCovarianceDataFileReader dataReader = new TabularCovarianceDataFileReader(dataFile, delimiter);
+        dataReader.setCommentMarker(commentMarker);
+        dataReader.setQuoteCharacter(quoteCharacter);
+        dataReader.setMissingDataMarker(missingValueMarker);
+        dataReader.setParallelism(parallelism);
+
+        return dataReader;
+    }
+
+    /**
+     * Compare the covariances with the two-pass covariances of the complete
+     * rows of the data read into memory.
+     */
+    private void assertCovariances(Path dataFile, Delimiter delimiter, int[] columnsToExclude, CovarianceData covarianceData) throws IOException {
+        TabularColumnReader columnReader = new TabularColumnFileReader(dataFile, delimiter);
+        columnReader.setCommentMarker(commentMarker);
+        columnReader.setQuoteCharacter(quoteCharacter);
+        DataColumn[] dataColumns = columnReader.readInDataColumns(columnsToExclude, false);
+
+        TabularDataReader dataReader = new TabularDataFileReader(dataFile, delimiter);
+        dataReader.setCommentMarker(commentMarker);
+        dataReader.setQuoteCharacter(quoteCharacter);
+        dataReader.setMissingDataMarker(missingValueMarker);
+        double[][] data = ((ContinuousData) dataReader.read(dataColumns, true)).getData();
+
+        int numOfCols = dataColumns.length;
+        double[] means = new double[numOfCols];
+        int numOfCases = 0;
+        for (double[] row : data) {
+            if (isComplete(row)) {
+                for (int i = 0; i < numOfCols; i++) {
+                    means[i] += row[i];
+                }
+                numOfCases++;
+            }
+        }
+        for (int i = 0; i < numOfCols; i++) {
+            means[i] /= numOfCases;
+        }
+
+        long expected = numOfCases;
+        long actual = covarianceData.getNumberOfCases();
+        Assert.assertEquals(expected, actual);
+
+        double[][] covariances = covarianceData.getData();
+        for (int i = 0; i < numOfCols; i++) {
+            for (int j = 0; j < numOfCols; j++) {
+                double sum = 0;
+                for (double[] row : data) {
+                    if (isComplete(row)) {
+                        sum += (row[i] - means[i]) * (row[j] - means[j]);
+                    }
+                }
+                double covariance = sum / (numOfCases - 1);
+                Assert.assertEquals(covariance, covariances[i][j], 1e-9 * Math.max(1, Math.abs(covariance)));
+            }
+        }
+    }
+
+    private boolean isComplete(double[] row) {
+        for (double value : row) {
+            if (Double.isNaN(value)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+}
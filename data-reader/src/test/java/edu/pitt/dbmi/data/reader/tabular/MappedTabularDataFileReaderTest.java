@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2018 University of Pittsburgh.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package edu.pitt.dbmi.data.reader.tabular;
+
+import edu.pitt.dbmi.data.reader.ContinuousData;
+import edu.pitt.dbmi.data.reader.Data;
+import edu.pitt.dbmi.data.reader.DataColumn;
+import edu.pitt.dbmi.data.reader.DataColumns;
+import edu.pitt.dbmi.data.reader.DataReaderException;
+import edu.pitt.dbmi.data.reader.Delimiter;
+import edu.pitt.dbmi.data.reader.metadata.Metadata;
+import edu.pitt.dbmi.data.reader.metadata.MetadataFileReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that {@link MappedTabularDataFileReader} reads continuous data the
+ * same way as {@link TabularDataFileReader}.
+ */
+public class MappedTabularDataFileReaderTest {
+
+    private final Delimiter delimiter = Delimiter.COMMA;
+    private final char quoteCharacter = '"';
+    private final String missingValueMarker = "*";
+    private final String commentMarker = "//";
+    private final boolean hasHeader = true;
+
+    private final Path[] continuousDataFiles = {
+        Paths.get(getClass().getResource("/data/tabular/continuous/dos_sim_test_data.csv").getFile()),
+        Paths.get(getClass().getResource("/data/tabular/continuous/mac_sim_test_data.csv").getFile()),
+        Paths.get(getClass().getResource("/data/tabular/continuous/sim_test_data.csv").getFile()),
+        Paths.get(getClass().getResource("/data/tabular/continuous/quotes_sim_test_data.csv").getFile())
+    };
+
+    public MappedTabularDataFileReaderTest() {
+    }
+
+    @Test
+    public void testReadInContinuousData() throws IOException {
+        int[] columnsToExclude = {5, 3, 1, 8, 10, 11};
+        for (Path dataFile : continuousDataFiles) {
+            DataColumn[] dataColumns = readInDataColumns(dataFile, delimiter, columnsToExclude);
+
+            Data data = createMappedReader(dataFile, delimiter, 4).read(dataColumns, hasHeader);
+            Assert.assertTrue(data instanceof VerticalContinuousTabularData);
+
+            double[][] contData = ((VerticalContinuousTabularData) data).getColumnData();
+
+            long expected = 5;
+            long actual = contData.length;
+            Assert.assertEquals(expected, actual);
+
+            expected = 18;
+            actual = contData[0].length;
+            Assert.assertEquals(expected, actual);
+
+            assertSameData(dataFile, delimiter, dataColumns, contData);
+
+            // getData() is row-major, like every other ContinuousData.
+            double[][] rowData = ((ContinuousData) data).getData();
+            Assert.assertEquals(18, rowData.length);
+            for (int row = 0; row < rowData.length; row++) {
+                Assert.assertEquals(5, rowData[row].length);
+                for (int col = 0; col < rowData[row].length; col++) {
+                    Assert.assertEquals(contData[col][row], rowData[row][col], 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testReadInContinuousDataWitMetadata() throws IOException {
+        Path dataFile = Paths.get(getClass().getResource("/data/metadata/sim_continuous_intervention.txt").getFile());
+        Path metadataFile = Paths.get(getClass().getResource("/data/metadata/sim_continuous_intervention_metadata.json").getFile());
+
+        DataColumn[] dataColumns = new TabularColumnFileReader(dataFile, Delimiter.TAB).readInDataColumns(false);
+        Metadata metadata = new MetadataFileReader(metadataFile).read();
+        dataColumns = DataColumns.update(dataColumns, metadata);
+
+        Data data = createMappedReader(dataFile, Delimiter.TAB, 2).read(dataColumns, hasHeader, metadata);
+        Assert.assertTrue(data instanceof VerticalContinuousTabularData);
+
+        double[][] contData = ((VerticalContinuousTabularData) data).getColumnData();
+
+        long expected = 10;
+        long actual = contData.length;
+        Assert.assertEquals(expected, actual);
+
+        expected = 18;
+        actual = contData[0].length;
+        Assert.assertEquals(expected, actual);
+
+        for (double[] column : contData) {
+            for (double value : column) {
+                Assert.assertFalse(Double.isNaN(value));
+            }
+        }
+    }
+
+    /**
+     * Write a file big enough to be split into several chunks, with mixed line
+     * endings, blank lines, comments, quotes and missing values, and make sure
+     * it is read the same way as by {@link TabularDataFileReader}.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testReadInLargeContinuousData() throws IOException {
+        int numOfCols = 8;
+        int numOfRows = 60000;
+        String[] lineEndings = {"\n", "\r\n", "\r"};
+        Random random = new Random(42);
+
+        Path dataFile = Files.createTempFile("mapped_sim_test_data", ".txt");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(dataFile)) {
+                for (int col = 1; col <= numOfCols; col++) {
+                    writer.write(((col > 1) ? "\t" : "") + "X" + col);
+                }
+                writer.write("\n");
+
+                for (int row = 0; row < numOfRows; row++) {
+                    String lineEnding = lineEndings[random.nextInt(lineEndings.length)];
+                    if (random.nextInt(100) == 0) {
+                        writer.write("// comment" + lineEnding + "   " + lineEnding);
+                    }
+                    for (int col = 0; col < numOfCols; col++) {
+                        if (col > 0) {
+                            writer.write("\t");
+                        }
+
+                        int choice = random.nextInt(50);
+                        if (choice == 0) {
+                            writer.write(missingValueMarker);
+                        } else if (choice == 1) {
+                            writer.write(" \"" + random.nextGaussian() + "\" ");
+                        } else if (choice == 2) {
+                            writer.write(String.format("%.3e", random.nextGaussian() * 1000));
+                        } else {
+                            writer.write(Double.toString(random.nextGaussian()));
+                        }
+                    }
+                    writer.write(lineEnding);
+                }
+            }
+
+            DataColumn[] dataColumns = readInDataColumns(dataFile, Delimiter.TAB, new int[]{2, 7});
+
+            Data data = createMappedReader(dataFile, Delimiter.TAB, 8).read(dataColumns, hasHeader);
+            double[][] contData = ((VerticalContinuousTabularData) data).getColumnData();
+
+            long expected = numOfCols - 2;
+            long actual = contData.length;
+            Assert.assertEquals(expected, actual);
+
+            expected = numOfRows;
+            actual = contData[0].length;
+            Assert.assertEquals(expected, actual);
+
+            assertSameData(dataFile, Delimiter.TAB, dataColumns, contData);
+        } finally {
+            Files.deleteIfExists(dataFile);
+        }
+    }
+
+    @Test(expected = DataReaderException.class)
+    public void testReadInBadContinuousData() throws IOException {
+        Path dataFile = Paths.get(getClass().getResource("/data/tabular/continuous/bad_data_sim_test_data.csv").getFile());
+        DataColumn[] dataColumns = readInDataColumns(dataFile, delimiter, new int[0]);
+
+        createMappedReader(dataFile, delimiter, 2).read(dataColumns, hasHeader);
+    }
+
+    private DataColumn[] readInDataColumns(Path dataFile, Delimiter delimiter, int[] columnsToExclude) throws IOException {
+        TabularColumnReader columnReader = new TabularColumnFileReader(dataFile, delimiter);
+        columnReader.setCommentMarker(commentMarker);
+        columnReader.setQuoteCharacter(quoteCharacter);
+
+        return columnReader.readInDataColumns(columnsToExclude, false);
+    }
+
+    private TabularDataReader createMappedReader(Path dataFile, Delimiter delimiter, int parallelism) {
+        MappedTabularDataFileReader dataReader = new MappedTabularDataFileReader(dataFile, delimiter);
+        dataReader.setCommentMarker(commentMarker);
+        dataReader.setQuoteCharacter(quoteCharacter);
+        dataReader.setMissingDataMarker(missingValueMarker);
+        dataReader.setParallelism(parallelism);
+
+        return dataReader;
+    }
+
+    private void assertSameData(Path dataFile, Delimiter delimiter, DataColumn[] dataColumns, double[][] verticalData) throws IOException {
+        TabularDataReader dataReader = new TabularDataFileReader(dataFile, delimiter);
+        dataReader.setCommentMarker(commentMarker);
+        dataReader.setQuoteCharacter(quoteCharacter);
+        dataReader.setMissingDataMarker(missingValueMarker);
+
+        double[][] data = ((ContinuousData) dataReader.read(dataColumns, hasHeader)).getData();
+        for (int row = 0; row < data.length; row++) {
+            for (int col = 0; col < data[row].length; col++) {
+                Assert.assertEquals(data[row][col], verticalData[col][row], 0);
+            }
+        }
+    }
+
+}
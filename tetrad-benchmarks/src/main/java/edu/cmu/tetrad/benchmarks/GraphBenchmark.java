@@ -0,0 +1,115 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.benchmarks;
+
+import edu.cmu.tetrad.graph.EdgeListGraph;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.MeekRules;
+import edu.cmu.tetrad.search.SearchGraphUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Graph operations the searches lean on: adjacency and d-separation queries on
+ * EdgeListGraph, and orienting the unshielded colliders of a DAG into its
+ * pattern with the Meek rules.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GraphBenchmark {
+
+    private static final int NUM_QUERIES = 1024;
+
+    @Param({"50", "200", "1000"})
+    public int numMeasures;
+
+    @Param({"2", "6"})
+    public int avgDegree;
+
+    private Graph dag;
+
+    // The DAG with only its unshielded colliders oriented.
+    private Graph basicPattern;
+    private List<Node[]> pairs = new ArrayList<>();
+    private List<List<Node>> zs = new ArrayList<>();
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        dag = new EdgeListGraph(SimulatedData.continuous(numMeasures, avgDegree, 10).getTrueGraph());
+        basicPattern = new EdgeListGraph(dag);
+        SearchGraphUtils.basicPattern(basicPattern, false);
+
+        List<Node> nodes = dag.getNodes();
+
+        // The first two indices of each set are x and y, the rest z.
+        for (int[] set : SimulatedData.randomIndexSets(NUM_QUERIES, 5, numMeasures)) {
+            pairs.add(new Node[]{nodes.get(set[0]), nodes.get(set[1])});
+
+            List<Node> z = new ArrayList<>();
+            for (int i = 2; i < set.length; i++) z.add(nodes.get(set[i]));
+            zs.add(z);
+        }
+    }
+
+    @Benchmark
+    public boolean isAdjacentTo() {
+        next = (next + 1) % NUM_QUERIES;
+        Node[] pair = pairs.get(next);
+        return dag.isAdjacentTo(pair[0], pair[1]);
+    }
+
+    @Benchmark
+    public boolean isDSeparatedFrom() {
+        next = (next + 1) % NUM_QUERIES;
+        Node[] pair = pairs.get(next);
+        return dag.isDSeparatedFrom(pair[0], pair[1], zs.get(next));
+    }
+
+    @Benchmark
+    public Graph meekRules(BasicPattern basicPattern) {
+        new MeekRules().orientImplied(basicPattern.graph);
+        return basicPattern.graph;
+    }
+
+    /**
+     * A fresh copy of the basic pattern for each call, since the Meek rules
+     * orient it in place.
+     */
+    @State(Scope.Thread)
+    public static class BasicPattern {
+        private Graph graph;
+
+        @Setup(Level.Invocation)
+        public void setup(GraphBenchmark benchmark) {
+            graph = new EdgeListGraph(benchmark.basicPattern);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.benchmarks;
+
+import edu.cmu.tetrad.data.CovarianceMatrix;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.IndTestFisherZ;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fisher Z independence tests for random conditioning sets of a few sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IndTestBenchmark {
+
+    private static final int NUM_QUERIES = 1024;
+
+    @Param({"50", "200"})
+    public int numMeasures;
+
+    @Param({"1000", "10000"})
+    public int sampleSize;
+
+    @Param({"0", "2", "5"})
+    public int depth;
+
+    private IndTestFisherZ test;
+    private List<Node[]> xs = new ArrayList<>();
+    private List<List<Node>> zs = new ArrayList<>();
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        DataSet dataSet = SimulatedData.continuous(numMeasures, 4, sampleSize).getDataSet();
+        test = new IndTestFisherZ(new CovarianceMatrix(dataSet), 0.01);
+
+        List<Node> variables = dataSet.getVariables();
+
+        // The first two indices of each set are x and y, the rest z.
+        for (int[] set : SimulatedData.randomIndexSets(NUM_QUERIES, depth + 2, numMeasures)) {
+            xs.add(new Node[]{variables.get(set[0]), variables.get(set[1])});
+
+            List<Node> z = new ArrayList<>();
+            for (int i = 2; i < set.length; i++) z.add(variables.get(set[i]));
+            zs.add(z);
+        }
+    }
+
+    @Benchmark
+    public boolean fisherZIsIndependent() {
+        next = (next + 1) % NUM_QUERIES;
+        Node[] x = xs.get(next);
+        return test.isIndependent(x[0], x[1], zs.get(next));
+    }
+}
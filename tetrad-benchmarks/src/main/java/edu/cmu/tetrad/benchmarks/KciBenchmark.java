@@ -0,0 +1,110 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.benchmarks;
+
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.Kci;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * KCI tests with the exact kernel matrices (rank 0) and with low-rank factors of a few ranks, using the Gamma
+ * approximation of the null distribution. Each test is made with a new Kci, since Kci remembers its answers. At the
+ * end of each trial with rank > 0 the largest difference between the low-rank and exact p values over the queries is
+ * printed, as a measure of accuracy.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KciBenchmark {
+
+    private static final int NUM_QUERIES = 4;
+
+    @Param({"500", "2000"})
+    public int sampleSize;
+
+    @Param({"0", "10", "30"})
+    public int rank;
+
+    @Param({"0", "1"})
+    public int depth;
+
+    private DataSet dataSet;
+    private List<Node[]> xs = new ArrayList<>();
+    private List<List<Node>> zs = new ArrayList<>();
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        dataSet = SimulatedData.continuous(10, 2, sampleSize).getDataSet();
+        List<Node> variables = dataSet.getVariables();
+
+        // The first two indices of each set are x and y, the rest z.
+        for (int[] set : SimulatedData.randomIndexSets(NUM_QUERIES, depth + 2, variables.size())) {
+            xs.add(new Node[]{variables.get(set[0]), variables.get(set[1])});
+
+            List<Node> z = new ArrayList<>();
+            for (int i = 2; i < set.length; i++) z.add(variables.get(set[i]));
+            zs.add(z);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void reportAccuracy() {
+        if (rank == 0) return;
+
+        double maxError = 0.0;
+
+        for (int q = 0; q < NUM_QUERIES; q++) {
+            double exact = pValue(q, 0);
+            double lowRank = pValue(q, rank);
+            maxError = Math.max(maxError, Math.abs(exact - lowRank));
+        }
+
+        System.out.println("Rank " + rank + ", N = " + sampleSize + ", depth " + depth
+                + ": max |p(low rank) - p(exact)| = " + maxError);
+    }
+
+    @Benchmark
+    public double kciPValue() {
+        next = (next + 1) % NUM_QUERIES;
+        return pValue(next, rank);
+    }
+
+    private double pValue(int query, int rank) {
+        Kci kci = new Kci(dataSet, 0.01);
+        kci.setApproximate(true);
+        kci.setRank(rank);
+
+        Node[] x = xs.get(query);
+        kci.isIndependent(x[0], x[1], zs.get(query));
+
+        return kci.getPValue();
+    }
+}
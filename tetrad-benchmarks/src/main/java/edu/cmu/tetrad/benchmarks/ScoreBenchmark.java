@@ -0,0 +1,95 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.benchmarks;
+
+import edu.cmu.tetrad.data.CovarianceMatrix;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.search.BDeuScore;
+import edu.cmu.tetrad.search.SemBicScore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local score evaluations of SemBicScore and BDeuScore, for random parent
+ * sets of a few sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScoreBenchmark {
+
+    private static final int NUM_QUERIES = 1024;
+
+    @Param({"50", "200"})
+    public int numMeasures;
+
+    @Param({"1000", "10000"})
+    public int sampleSize;
+
+    @Param({"0", "2", "5"})
+    public int numParents;
+
+    private SemBicScore semBicScore;
+    private BDeuScore bDeuScore;
+    private List<int[]> queries;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        DataSet continuous = SimulatedData.continuous(numMeasures, 4, sampleSize).getDataSet();
+        DataSet discrete = SimulatedData.discrete(numMeasures, 4, sampleSize).getDataSet();
+
+        semBicScore = new SemBicScore(new CovarianceMatrix(continuous));
+        bDeuScore = new BDeuScore(discrete);
+
+        // The first index of each set is the child, the rest its parents.
+        queries = SimulatedData.randomIndexSets(NUM_QUERIES, numParents + 1, numMeasures);
+    }
+
+    @Benchmark
+    public double semBicLocalScore() {
+        int[] query = nextQuery();
+        return semBicScore.localScore(query[0], parents(query));
+    }
+
+    @Benchmark
+    public double bDeuLocalScore() {
+        int[] query = nextQuery();
+        return bDeuScore.localScore(query[0], parents(query));
+    }
+
+    private int[] nextQuery() {
+        next = (next + 1) % NUM_QUERIES;
+        return queries.get(next);
+    }
+
+    private static int[] parents(int[] query) {
+        int[] parents = new int[query.length - 1];
+        System.arraycopy(query, 1, parents, 0, parents.length);
+        return parents;
+    }
+}
@@ -0,0 +1,91 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.benchmarks;
+
+import edu.cmu.tetrad.data.CovarianceMatrix;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.search.FasConcurrent;
+import edu.cmu.tetrad.search.FasStable;
+import edu.cmu.tetrad.search.Fges;
+import edu.cmu.tetrad.search.IndTestFisherZ;
+import edu.cmu.tetrad.search.IndependenceTest;
+import edu.cmu.tetrad.search.SemBicScore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole searches on continuous data: the adjacency searches FasStable and
+ * FasConcurrent with Fisher Z, and Fges with the SEM BIC score. The covariance
+ * matrix is computed once, outside of the timing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+
+    @Param({"20", "50", "100"})
+    public int numMeasures;
+
+    @Param({"1000", "10000"})
+    public int sampleSize;
+
+    @Param({"2", "4"})
+    public int avgDegree;
+
+    private CovarianceMatrix covariances;
+    private IndependenceTest test;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        DataSet dataSet = SimulatedData.continuous(numMeasures, avgDegree, sampleSize).getDataSet();
+        covariances = new CovarianceMatrix(dataSet);
+        test = new IndTestFisherZ(covariances, 0.01);
+    }
+
+    @Benchmark
+    public Graph fasStable() {
+        FasStable fas = new FasStable(test);
+        fas.setVerbose(false);
+        return fas.search();
+    }
+
+    @Benchmark
+    public Graph fasConcurrent() {
+        FasConcurrent fas = new FasConcurrent(test);
+        fas.setVerbose(false);
+        return fas.search();
+    }
+
+    @Benchmark
+    public Graph fges() {
+        SemBicScore score = new SemBicScore(covariances);
+        score.setPenaltyDiscount(2);
+        Fges fges = new Fges(score);
+        fges.setVerbose(false);
+        return fges.search();
+    }
+}
@@ -0,0 +1,123 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.benchmarks;
+
+import edu.cmu.tetrad.algcomparison.graph.RandomForward;
+import edu.cmu.tetrad.algcomparison.simulation.BayesNetSimulation;
+import edu.cmu.tetrad.algcomparison.simulation.SemSimulation;
+import edu.cmu.tetrad.algcomparison.simulation.Simulation;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.util.Parameters;
+import edu.cmu.tetrad.util.Params;
+import edu.cmu.tetrad.util.RandomUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Seeded simulated data for the benchmarks, so that every run of a benchmark
+ * at a given size sees the same data and true graph.
+ */
+final class SimulatedData {
+
+    /**
+     * The seed used for all simulations.
+     */
+    static final long SEED = 29483845L;
+
+    private final DataSet dataSet;
+    private final Graph trueGraph;
+
+    private SimulatedData(Simulation simulation, Parameters parameters) {
+        RandomUtil.getInstance().setSeed(SEED);
+        simulation.createData(parameters);
+        this.dataSet = (DataSet) simulation.getDataModel(0);
+        this.trueGraph = simulation.getTrueGraph(0);
+    }
+
+    /**
+     * Linear Gaussian SEM data over a random forward DAG.
+     */
+    static SimulatedData continuous(int numMeasures, int avgDegree, int sampleSize) {
+        return new SimulatedData(new SemSimulation(new RandomForward()),
+                parameters(numMeasures, avgDegree, sampleSize));
+    }
+
+    /**
+     * Bayes net data with three categories per variable over a random forward
+     * DAG.
+     */
+    static SimulatedData discrete(int numMeasures, int avgDegree, int sampleSize) {
+        Parameters parameters = parameters(numMeasures, avgDegree, sampleSize);
+        parameters.set(Params.MIN_CATEGORIES, 3);
+        parameters.set(Params.MAX_CATEGORIES, 3);
+        return new SimulatedData(new BayesNetSimulation(new RandomForward()), parameters);
+    }
+
+    DataSet getDataSet() {
+        return dataSet;
+    }
+
+    Graph getTrueGraph() {
+        return trueGraph;
+    }
+
+    /**
+     * @return The given number of random sets of distinct indices in [0, n),
+     * each of the given size, drawn with a fixed seed.
+     */
+    static List<int[]> randomIndexSets(int numSets, int size, int n) {
+        RandomUtil.getInstance().setSeed(SEED);
+        List<int[]> sets = new ArrayList<>();
+
+        for (int s = 0; s < numSets; s++) {
+            int[] all = new int[n];
+            for (int i = 0; i < n; i++) all[i] = i;
+
+            for (int i = 0; i < size; i++) {
+                int j = i + RandomUtil.getInstance().nextInt(n - i);
+                int tmp = all[i];
+                all[i] = all[j];
+                all[j] = tmp;
+            }
+
+            int[] set = new int[size];
+            System.arraycopy(all, 0, set, 0, size);
+            sets.add(set);
+        }
+
+        return sets;
+    }
+
+    private static Parameters parameters(int numMeasures, int avgDegree, int sampleSize) {
+        Parameters parameters = new Parameters();
+        parameters.set(Params.NUM_MEASURES, numMeasures);
+        parameters.set(Params.AVG_DEGREE, avgDegree);
+        parameters.set(Params.SAMPLE_SIZE, sampleSize);
+        parameters.set(Params.NUM_RUNS, 1);
+        parameters.set(Params.NUM_LATENTS, 0);
+        parameters.set(Params.DIFFERENT_GRAPHS, false);
+        parameters.set(Params.RANDOMIZE_COLUMNS, false);
+        return parameters;
+    }
+}
@@ -54,7 +54,6 @@ import edu.cmu.tetrad.search.DagToPag2;
 import edu.cmu.tetrad.search.SearchGraphUtils;
 import edu.cmu.tetrad.util.CombinationGenerator;
 import edu.cmu.tetrad.util.Experimental;
-import edu.cmu.tetrad.util.ForkJoinPoolInstance;
 import edu.cmu.tetrad.util.ParamDescription;
 import edu.cmu.tetrad.util.ParamDescriptions;
 import edu.cmu.tetrad.util.Parameters;
@@ -69,9 +68,9 @@ import java.io.IOException;
 import java.io.PrintStream;
 import java.io.Writer;
 import java.lang.reflect.Constructor;
+import java.nio.file.Files;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -79,9 +78,15 @@ import java.util.Comparator;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import org.reflections.Reflections;
 
 /**
@@ -114,6 +119,13 @@ public class Comparison {
     //    private boolean saveTrueDags = false;
     private ArrayList<String> dirs = null;
     private ComparisonGraph comparisonGraph = ComparisonGraph.true_DAG;
+    private int maxConcurrentRuns = Runtime.getRuntime().availableProcessors();
+    private long runTimeout = 0;
+    private TimeUnit runTimeoutUnit = TimeUnit.MILLISECONDS;
+    private boolean resume = false;
+    private String outputFileName = "Comparison.txt";
+    private PrintStream runsOut = null;
+    private boolean[][] completedRuns = null;
 
     public void compareFromFiles(String filePath, Algorithms algorithms,
             Statistics statistics, Parameters parameters) {
@@ -238,6 +250,7 @@ public class Comparison {
     public void compareFromSimulations(String resultsPath, Simulations simulations, String outputFileName, Algorithms algorithms,
             Statistics statistics, Parameters parameters) {
         this.resultsPath = resultsPath;
+        this.outputFileName = outputFileName;
 
         PrintStream stdout = (PrintStream) parameters.get("printStream", System.out);
 
@@ -453,6 +466,8 @@ public class Comparison {
 
             out.println();
 
+            printCompletedRuns(algorithmSimulationWrappers, simulationWrappers);
+
             // Add utilities to table as the last column.
             for (int u = 0; u < numTables; u++) {
                 for (int t = 0; t < algorithmSimulationWrappers.size(); t++) {
@@ -1015,71 +1030,281 @@ public class Comparison {
 
         graphTypeUsed = new boolean[4];
 
+        // Runs that time out or fail leave NaN in their cells, which the tables skip.
         double[][][][] allStats = new double[4][algorithmSimulationWrappers.size()][statistics.size() + 1][numRuns];
 
+        for (double[][][] table : allStats) {
+            for (double[][] row : table) {
+                for (double[] cells : row) {
+                    Arrays.fill(cells, Double.NaN);
+                }
+            }
+        }
+
+        boolean[][] completed = new boolean[algorithmSimulationWrappers.size()][numRuns];
+        this.completedRuns = completed;
+
+        if (resume) {
+            loadCompletedRuns(allStats, completed, algorithmSimulationWrappers, algorithmWrappers,
+                    simulationWrappers, statistics, stdout);
+        }
+
+        openRunsFile(statistics);
+
         List<AlgorithmTask> tasks = new ArrayList<>();
         int index = 0;
 
         for (int algSimIndex = 0; algSimIndex < algorithmSimulationWrappers.size(); algSimIndex++) {
             for (int runIndex = 0; runIndex < numRuns; runIndex++) {
+                if (completed[algSimIndex][runIndex]) {
+                    continue;
+                }
+
                 AlgorithmSimulationWrapper algorithmSimulationWrapper = algorithmSimulationWrappers.get(algSimIndex);
                 Run run = new Run(algSimIndex, runIndex, index++, algorithmSimulationWrapper);
                 AlgorithmTask task = new AlgorithmTask(algorithmSimulationWrappers,
                         algorithmWrappers, simulationWrappers,
                         statistics, numGraphTypes, allStats, run, stdout);
-//                task.compute();
                 tasks.add(task);
             }
         }
 
-        if (!isParallelized()) {
-            for (AlgorithmTask task : tasks) {
-                task.compute();
+        try {
+            if (!isParallelized() && runTimeout <= 0) {
+                for (AlgorithmTask task : tasks) {
+                    task.call();
+                }
+            } else {
+                runConcurrently(tasks, isParallelized() ? maxConcurrentRuns : 1, stdout);
             }
-        } else {
-            class Task extends RecursiveTask<Boolean> {
+        } finally {
+            closeRunsFile();
+        }
 
-                List<AlgorithmTask> tasks;
+        return allStats;
+    }
 
-                public Task(List<AlgorithmTask> tasks) {
-                    this.tasks = tasks;
-                }
+    /**
+     * Runs the tasks on a pool of the given number of threads. A run that goes over the run timeout is interrupted;
+     * the algorithms check the interrupt flag and return early, and no statistics are recorded for the run.
+     */
+    private void runConcurrently(List<AlgorithmTask> tasks, int numThreads, final PrintStream stdout) {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, numThreads));
+        final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor();
+        List<Future<Boolean>> futures = new ArrayList<>();
+
+        try {
+            for (final AlgorithmTask task : tasks) {
+                futures.add(pool.submit(() -> {
+                    if (runTimeout <= 0) {
+                        return task.call();
+                    }
 
-                @Override
-                protected Boolean compute() {
-                    Queue<AlgorithmTask> tasks = new ArrayDeque<>();
+                    final Thread thread = Thread.currentThread();
 
-                    for (AlgorithmTask task : this.tasks) {
-                        tasks.add(task);
-                        task.fork();
+                    // The lock keeps the watchdog from interrupting the thread once it has moved on to another run.
+                    final Object lock = new Object();
+                    final boolean[] running = {true};
 
-                        for (AlgorithmTask _task : new ArrayList<>(tasks)) {
-                            if (_task.isDone()) {
-                                _task.join();
-                                tasks.remove(_task);
+                    ScheduledFuture<?> timer = watchdog.schedule(() -> {
+                        synchronized (lock) {
+                            if (running[0]) {
+                                task.timedOut = true;
+                                thread.interrupt();
                             }
                         }
+                    }, runTimeout, runTimeoutUnit);
+
+                    try {
+                        return task.call();
+                    } finally {
+                        timer.cancel(false);
 
-                        while (tasks.size() > Runtime.getRuntime().availableProcessors()) {
-                            AlgorithmTask _task = tasks.poll();
-                            _task.join();
+                        synchronized (lock) {
+                            running[0] = false;
+                            Thread.interrupted();
                         }
-                    }
 
-                    for (AlgorithmTask task : tasks) {
-                        task.join();
+                        if (task.timedOut) {
+                            stdout.println("Run " + (task.run.getRunIndex() + 1) + " of "
+                                    + task.run.getWrapper().getDescription() + " timed out.");
+                        }
                     }
+                }));
+            }
 
-                    return true;
+            for (Future<Boolean> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    e.getCause().printStackTrace();
                 }
             }
+        } catch (InterruptedException e) {
+            for (Future<Boolean> future : futures) {
+                future.cancel(true);
+            }
 
-            Task task = new Task(tasks);
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdownNow();
+            watchdog.shutdownNow();
+        }
+    }
 
-            ForkJoinPoolInstance.getInstance().getPool().invoke(task);
+    // The statistics for each finished run are appended to a file next to the results table as soon as the run is
+    // done, one row per run and graph type, so that a long comparison can be watched as it goes and resumed if it
+    // is stopped.
+    private File getRunsFile() {
+        String name = outputFileName;
+
+        if (name.endsWith(".txt")) {
+            name = name.substring(0, name.length() - 4);
         }
 
-        return allStats;
+        return new File(resultsPath, name + ".runs.txt");
+    }
+
+    private String getRunsHeader(Statistics statistics) {
+        StringBuilder header = new StringBuilder("sim\talg\trun\ttype");
+
+        for (Statistic stat : statistics.getStatistics()) {
+            header.append("\t").append(stat.getAbbreviation());
+        }
+
+        return header.toString();
+    }
+
+    private void openRunsFile(Statistics statistics) {
+        File file = getRunsFile();
+        boolean append = resume && file.exists();
+
+        try {
+            runsOut = new PrintStream(new FileOutputStream(file, append));
+        } catch (FileNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+
+        if (!append) {
+            runsOut.println(getRunsHeader(statistics));
+            runsOut.flush();
+        }
+    }
+
+    private synchronized void closeRunsFile() {
+        if (runsOut != null) {
+            runsOut.close();
+            runsOut = null;
+        }
+    }
+
+    private synchronized void recordRun(Run run, int simIndex, int algIndex, double[][][][] allStats,
+            Statistics statistics) {
+        if (runsOut == null) {
+            return;
+        }
+
+        for (int u = 0; u < graphTypeUsed.length; u++) {
+            if (!graphTypeUsed[u]) {
+                continue;
+            }
+
+            StringBuilder row = new StringBuilder();
+            row.append(simIndex).append("\t").append(algIndex).append("\t").append(run.getRunIndex() + 1)
+                    .append("\t").append(u);
+
+            for (int statIndex = 0; statIndex < statistics.size(); statIndex++) {
+                row.append("\t").append(allStats[u][run.getAlgSimIndex()][statIndex][run.getRunIndex()]);
+            }
+
+            runsOut.println(row);
+        }
+
+        runsOut.flush();
+    }
+
+    /**
+     * Reads the statistics of runs finished by an earlier, stopped comparison from the runs file. A run counts as
+     * finished if its row for the full graph was written. If the file was written for a different list of
+     * statistics, it is ignored and all runs are done again.
+     */
+    private void loadCompletedRuns(double[][][][] allStats, boolean[][] completed,
+            List<AlgorithmSimulationWrapper> algorithmSimulationWrappers, List<AlgorithmWrapper> algorithmWrappers,
+            List<SimulationWrapper> simulationWrappers, Statistics statistics, PrintStream stdout) {
+        File file = getRunsFile();
+
+        if (!file.exists()) {
+            return;
+        }
+
+        List<String> lines;
+
+        try {
+            lines = Files.readAllLines(file.toPath());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        if (lines.isEmpty() || !lines.get(0).equals(getRunsHeader(statistics))) {
+            stdout.println("Statistics in " + file + " don't match; starting over.");
+            file.delete();
+            return;
+        }
+
+        int numLoaded = 0;
+
+        for (String line : lines.subList(1, lines.size())) {
+            String[] tokens = line.split("\t");
+
+            if (tokens.length != 4 + statistics.size()) {
+                continue; // A row cut off when the earlier comparison was stopped.
+            }
+
+            try {
+                int simIndex = Integer.parseInt(tokens[0]) - 1;
+                int algIndex = Integer.parseInt(tokens[1]) - 1;
+                int runIndex = Integer.parseInt(tokens[2]) - 1;
+                int u = Integer.parseInt(tokens[3]);
+
+                if (simIndex < 0 || simIndex >= simulationWrappers.size()
+                        || algIndex < 0 || algIndex >= algorithmWrappers.size()
+                        || runIndex < 0 || runIndex >= completed[0].length
+                        || u < 0 || u >= graphTypeUsed.length) {
+                    continue;
+                }
+
+                int algSimIndex = -1;
+
+                for (int t = 0; t < algorithmSimulationWrappers.size(); t++) {
+                    AlgorithmSimulationWrapper wrapper = algorithmSimulationWrappers.get(t);
+
+                    if (wrapper.getSimulationWrapper() == simulationWrappers.get(simIndex)
+                            && wrapper.getAlgorithmWrapper() == algorithmWrappers.get(algIndex)) {
+                        algSimIndex = t;
+                        break;
+                    }
+                }
+
+                if (algSimIndex == -1) {
+                    continue;
+                }
+
+                for (int statIndex = 0; statIndex < statistics.size(); statIndex++) {
+                    allStats[u][algSimIndex][statIndex][runIndex] = Double.parseDouble(tokens[4 + statIndex]);
+                }
+
+                graphTypeUsed[u] = true;
+
+                if (u == 0 && !completed[algSimIndex][runIndex]) {
+                    completed[algSimIndex][runIndex] = true;
+                    numLoaded++;
+                }
+            } catch (NumberFormatException e) {
+                // Skip it.
+            }
+        }
+
+        stdout.println("Resuming: " + numLoaded + " finished runs read from " + file);
     }
 
     public boolean isShowSimulationIndices() {
@@ -1132,9 +1357,61 @@ public class Comparison {
         return parallelized;
     }
 
-//    public void setParallelized(boolean parallelized) {
-//        this.parallelized = parallelized;
-//    }
+    /**
+     * @param parallelized True if runs should be done concurrently, up to the maximum number of concurrent runs.
+     */
+    public void setParallelized(boolean parallelized) {
+        this.parallelized = parallelized;
+    }
+
+    /**
+     * @return The maximum number of runs done at once when parallelized.
+     */
+    public int getMaxConcurrentRuns() {
+        return maxConcurrentRuns;
+    }
+
+    /**
+     * @param maxConcurrentRuns The maximum number of runs done at once when parallelized; by default the number of
+     * processors.
+     */
+    public void setMaxConcurrentRuns(int maxConcurrentRuns) {
+        if (maxConcurrentRuns < 1) {
+            throw new IllegalArgumentException("Max concurrent runs must be at least 1: " + maxConcurrentRuns);
+        }
+
+        this.maxConcurrentRuns = maxConcurrentRuns;
+    }
+
+    /**
+     * Sets a limit on the time for each run (one algorithm with one set of parameters on one data set). A run that
+     * goes over is interrupted and left out of the statistics. Zero, the default, means no limit.
+     */
+    public void setRunTimeout(long timeout, TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Timeout must be non-negative: " + timeout);
+        }
+
+        this.runTimeout = timeout;
+        this.runTimeoutUnit = unit;
+    }
+
+    /**
+     * @return True if runs finished by an earlier comparison into the same results directory should be read back
+     * rather than done again.
+     */
+    public boolean isResume() {
+        return resume;
+    }
+
+    /**
+     * @param resume True if runs finished by an earlier comparison into the same results directory should be read
+     * back rather than done again. This only makes sense if the data are the same as before, as they are for
+     * compareFromFiles.
+     */
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
     /**
      * @return True if patterns should be saved out.
      */
@@ -1237,7 +1514,7 @@ public class Comparison {
         this.comparisonGraph = comparisonGraph;
     }
 
-    private class AlgorithmTask extends RecursiveTask<Boolean> {
+    private class AlgorithmTask implements Callable<Boolean> {
 
         private List<AlgorithmSimulationWrapper> algorithmSimulationWrappers;
         private List<AlgorithmWrapper> algorithmWrappers;
@@ -1247,6 +1524,7 @@ public class Comparison {
         private double[][][][] allStats;
         private final Run run;
         private final PrintStream stdout;
+        private volatile boolean timedOut = false;
 
         public AlgorithmTask(List<AlgorithmSimulationWrapper> algorithmSimulationWrappers,
                 List<AlgorithmWrapper> algorithmWrappers, List<SimulationWrapper> simulationWrappers,
@@ -1262,7 +1540,7 @@ public class Comparison {
         }
 
         @Override
-        protected Boolean compute() {
+        public Boolean call() {
             doRun(algorithmSimulationWrappers, algorithmWrappers,
                     simulationWrappers, statistics, numGraphTypes, allStats, run, stdout);
             return true;
@@ -1373,11 +1651,19 @@ public class Comparison {
                 graphOut = algorithm.search(dataModel, _params);
             }
         } catch (Exception e) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+
             stdout.println("Could not run " + algorithmWrapper.getDescription());
             e.printStackTrace();
             return;
         }
 
+        if (Thread.currentThread().isInterrupted()) {
+            return;
+        }
+
         int simIndex = simulationWrappers.indexOf(simulationWrapper) + 1;
         int algIndex = algorithmWrappers.indexOf(algorithmWrapper) + 1;
 
@@ -1465,6 +1751,9 @@ public class Comparison {
                         allStats[u][run.getAlgSimIndex()][statIndex][run.getRunIndex()] = stat;
                     }
                 }
+
+                recordRun(run, simIndex, algIndex, allStats, statistics);
+                completedRuns[run.getAlgSimIndex()][run.getRunIndex()] = true;
             }
 
         }
@@ -1586,17 +1875,22 @@ public class Comparison {
                         }
 
                         statTables[u][i][j] = stat;
-                    } else if (mode == Mode.Average) {
-                        final double mean = StatUtils.mean(allStats[u][i][j]);
-                        statTables[u][i][j] = mean;
-                    } else if (mode == Mode.WorstCase) {
-                        statTables[u][i][j] = StatUtils.min(allStats[u][i][j]);
-                    } else if (mode == Mode.StandardDeviation) {
-                        statTables[u][i][j] = StatUtils.sd(allStats[u][i][j]);
-                    } else if (mode == Mode.MedianCase) {
-                        statTables[u][i][j] = StatUtils.median(allStats[u][i][j]);
                     } else {
-                        throw new IllegalStateException();
+                        double[] values = withoutNaN(allStats[u][i][j]);
+
+                        if (values.length == 0) {
+                            statTables[u][i][j] = Double.NaN;
+                        } else if (mode == Mode.Average) {
+                            statTables[u][i][j] = StatUtils.mean(values);
+                        } else if (mode == Mode.WorstCase) {
+                            statTables[u][i][j] = StatUtils.min(values);
+                        } else if (mode == Mode.StandardDeviation) {
+                            statTables[u][i][j] = StatUtils.sd(values);
+                        } else if (mode == Mode.MedianCase) {
+                            statTables[u][i][j] = StatUtils.median(values);
+                        } else {
+                            throw new IllegalStateException();
+                        }
                     }
                 }
             }
@@ -1605,6 +1899,47 @@ public class Comparison {
         return statTables;
     }
 
+    // The values of a statistic for the runs that finished; runs that timed out or failed are NaN.
+    private static double[] withoutNaN(double[] values) {
+        return Arrays.stream(values).filter(v -> !Double.isNaN(v)).toArray();
+    }
+
+    /**
+     * Prints the number of runs finished for each algorithm and simulation, if some runs timed out or failed.
+     */
+    private void printCompletedRuns(List<AlgorithmSimulationWrapper> algorithmSimulationWrappers,
+            List<SimulationWrapper> simulationWrappers) {
+        boolean allCompleted = true;
+
+        for (boolean[] runs : completedRuns) {
+            for (boolean completed : runs) {
+                allCompleted &= completed;
+            }
+        }
+
+        if (allCompleted) {
+            return;
+        }
+
+        out.println("Runs completed (runs that timed out or failed are left out of the statistics):");
+        out.println();
+
+        for (int t = 0; t < algorithmSimulationWrappers.size(); t++) {
+            AlgorithmSimulationWrapper wrapper = algorithmSimulationWrappers.get(t);
+            int numCompleted = 0;
+
+            for (boolean completed : completedRuns[t]) {
+                if (completed) numCompleted++;
+            }
+
+            out.println((t + 1) + ". " + wrapper.getAlgorithmWrapper().getDescription() + ", simulation "
+                    + (simulationWrappers.indexOf(wrapper.getSimulationWrapper()) + 1) + ": "
+                    + numCompleted + " of " + completedRuns[t].length);
+        }
+
+        out.println();
+    }
+
     private void printStats(double[][][] statTables, Statistics statistics, Mode mode, int[] newOrder,
             List<AlgorithmSimulationWrapper> algorithmSimulationWrappers,
             List<AlgorithmWrapper> algorithmWrappers,
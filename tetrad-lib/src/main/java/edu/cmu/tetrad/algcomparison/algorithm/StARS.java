@@ -5,7 +5,7 @@ import edu.cmu.tetrad.data.*;
 import edu.cmu.tetrad.graph.Graph;
 import edu.cmu.tetrad.graph.GraphUtils;
 import edu.cmu.tetrad.graph.Node;
-import edu.cmu.tetrad.util.ForkJoinPoolInstance;
+import edu.cmu.tetrad.util.ExecutionService;
 import edu.cmu.tetrad.util.Parameters;
 
 import java.util.ArrayList;
@@ -156,7 +156,7 @@ public class StARS implements Algorithm, TakesInitialGraph {
 //            e = GraphUtils.replaceNodes(e, samples.get(0).getVariables());
 //            graphs.add(e);
 //        }
-        final ForkJoinPool pool = ForkJoinPoolInstance.getInstance().getPool();
+        final ForkJoinPool pool = ExecutionService.getInstance().getPool();
 
         class StabilityAction extends RecursiveAction {
 
@@ -6,7 +6,7 @@ import edu.cmu.tetrad.data.DataModel;
 import edu.cmu.tetrad.data.DataSet;
 import edu.cmu.tetrad.data.DataType;
 import edu.cmu.tetrad.graph.*;
-import edu.cmu.tetrad.util.ForkJoinPoolInstance;
+import edu.cmu.tetrad.util.ExecutionService;
 import edu.cmu.tetrad.util.Parameters;
 
 import java.util.ArrayList;
@@ -42,7 +42,7 @@ public class StabilitySelection implements Algorithm, TakesInitialGraph {
 
         List<Graph> graphs = new ArrayList<>();
 
-        final ForkJoinPool pool = ForkJoinPoolInstance.getInstance().getPool();
+        final ForkJoinPool pool = ExecutionService.getInstance().getPool();
 
         class StabilityAction extends RecursiveAction {
 
@@ -10,6 +10,7 @@ import edu.cmu.tetrad.graph.EdgeListGraph;
 import edu.cmu.tetrad.graph.Graph;
 import edu.cmu.tetrad.graph.GraphUtils;
 import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.BlockGlasso;
 import edu.cmu.tetrad.util.Parameters;
 import edu.cmu.tetrad.util.Params;
 import edu.cmu.tetrad.util.TetradMatrix;
@@ -37,16 +38,26 @@ public class Glasso implements Algorithm {
             DoubleMatrix2D cov = new DenseDoubleMatrix2D(DataUtils.getContinuousDataSet(ds)
                     .getCovarianceMatrix().toArray());
 
-            edu.cmu.tetrad.search.Glasso glasso = new edu.cmu.tetrad.search.Glasso(cov);
-            glasso.setMaxit((int) parameters.getInt(Params.MAXIT));
-            glasso.setIa(parameters.getBoolean(Params.IA));
-            glasso.setIs(parameters.getBoolean(Params.IS));
-            glasso.setItr(parameters.getBoolean(Params.ITR));
-            glasso.setIpen(parameters.getBoolean(Params.IPEN));
-            glasso.setThr(parameters.getDouble(Params.THR));
-            glasso.setRhoAllEqual(1.0);
+            edu.cmu.tetrad.search.Glasso.Result result;
+
+            if (parameters.getBoolean(Params.IA)) {
+                edu.cmu.tetrad.search.Glasso glasso = new edu.cmu.tetrad.search.Glasso(cov);
+                glasso.setMaxit((int) parameters.getInt(Params.MAXIT));
+                glasso.setIa(true);
+                glasso.setIs(parameters.getBoolean(Params.IS));
+                glasso.setItr(parameters.getBoolean(Params.ITR));
+                glasso.setIpen(parameters.getBoolean(Params.IPEN));
+                glasso.setThr(parameters.getDouble(Params.THR));
+                glasso.setRhoAllEqual(1.0);
+                result = glasso.search();
+            } else {
+                BlockGlasso glasso = new BlockGlasso(cov);
+                glasso.setMaxit(parameters.getInt(Params.MAXIT));
+                glasso.setPenalizeDiagonal(parameters.getBoolean(Params.IPEN));
+                glasso.setThr(parameters.getDouble(Params.THR));
+                result = glasso.search(1.0);
+            }
 
-            edu.cmu.tetrad.search.Glasso.Result result = glasso.search();
             TetradMatrix wwi = new TetradMatrix(result.getWwi().toArray());
 
             List<Node> variables = ds.getVariables();
@@ -3,6 +3,7 @@ package edu.cmu.tetrad.algcomparison.independence;
 import edu.cmu.tetrad.annotation.TestOfIndependence;
 import edu.cmu.tetrad.data.DataModel;
 import edu.cmu.tetrad.data.DataType;
+import edu.cmu.tetrad.graph.DSeparationOracle;
 import edu.cmu.tetrad.graph.Graph;
 import edu.cmu.tetrad.search.IndTestDSep;
 import edu.cmu.tetrad.search.IndependenceTest;
@@ -25,6 +26,9 @@ public class DSeparationTest implements IndependenceWrapper {
     static final long serialVersionUID = 23L;
     private Graph graph;
 
+    // Shared by the tests returned for the current graph, so they share remembered answers.
+    private transient DSeparationOracle oracle;
+
     /**
      * Use this empty constructor to satisfy the java reflection
      */
@@ -39,7 +43,11 @@ public class DSeparationTest implements IndependenceWrapper {
     @Override
     public IndependenceTest getTest(DataModel dataSet, Parameters parameters) {
         if (dataSet == null) {
-            return new IndTestDSep(graph);
+            if (oracle == null || oracle.getGraph() != graph) {
+                oracle = new DSeparationOracle(graph);
+            }
+
+            return new IndTestDSep(oracle);
         } else {
             throw new IllegalArgumentException("Expecting no data for a d-separation test.");
         }
@@ -62,6 +70,7 @@ public class DSeparationTest implements IndependenceWrapper {
 
     public void setGraph(Graph graph) {
         this.graph = graph;
+        this.oracle = null;
     }
     
 }
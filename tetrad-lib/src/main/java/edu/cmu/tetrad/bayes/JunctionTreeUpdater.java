@@ -0,0 +1,1168 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.bayes;
+
+import edu.cmu.tetrad.graph.Dag;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.Node;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Performs exact updating on a BayesIm by compiling it into a junction tree
+ * and propagating evidence through the tree (Hugin architecture). The moral
+ * graph of the manipulated DAG is triangulated using a min-fill elimination
+ * ordering, the elimination cliques are joined by a maximum-weight spanning
+ * tree, and evidence is propagated by collecting to and distributing from a
+ * root clique. Time and space are exponential in the size of the largest
+ * clique rather than in the number of variables, so sparse networks of a few
+ * hundred variables update interactively.
+ * <p>
+ * A compiled tree depends only on which variables are manipulated, and
+ * compiled trees are cached, so changing evidence without changing
+ * manipulations never recompiles. Evidence that only narrows the evidence the
+ * tree was last calibrated for (the usual sequence of what-if questions) is
+ * absorbed into the calibrated tree and propagated from the cliques it
+ * touches; any other change restarts propagation from the compiled
+ * potentials. Propagation is done lazily, when a marginal is first asked for.
+ * <p>
+ * Manipulated variables are handled as in RowSummingExactUpdater: their edges
+ * from parents are removed, and their allowed categories are made equally
+ * likely. Compiled trees copy the conditional probability tables of the
+ * BayesIm; if those are edited, construct a new updater.
+ *
+ * @see RowSummingExactUpdater
+ */
+public final class JunctionTreeUpdater implements ManipulatingBayesUpdater {
+    static final long serialVersionUID = 23L;
+
+    /**
+     * The number of compiled trees kept, one for each set of manipulated
+     * variables, least recently used first out.
+     */
+    private static final int MAX_CACHED_TREES = 8;
+
+    /**
+     * The BayesIm which this updater updates.
+     *
+     * @serial Cannot be null.
+     */
+    private BayesIm bayesIm;
+
+    /**
+     * Stores evidence for all variables.
+     *
+     * @serial Cannot be null.
+     */
+    private Evidence evidence;
+
+    /**
+     * The compiled trees, keyed by the set of manipulated variables.
+     */
+    private transient Map<BitSet, JunctionTree> trees;
+
+    /**
+     * The tree last calibrated for evidence; reused while evidence narrows.
+     */
+    private transient Calibration calibration;
+
+    /**
+     * The tree calibrated with no evidence and no manipulations.
+     */
+    private transient Calibration priorCalibration;
+
+    /**
+     * The allowed categories of each variable in the evidence.
+     */
+    private transient boolean[][] allowed;
+
+    /**
+     * The manipulated variables in the evidence.
+     */
+    private transient BitSet manipulated;
+
+    /**
+     * The last manipulated BayesIm, created when asked for.
+     */
+    private transient BayesIm manipulatedBayesIm;
+
+    /**
+     * The BayesIm after update, created when asked for.
+     */
+    private transient BayesIm updatedBayesIm;
+
+    //==============================CONSTRUCTORS===========================//
+
+    /**
+     * Constructs a new updater for the given Bayes net.
+     */
+    public JunctionTreeUpdater(BayesIm bayesIm) {
+        if (bayesIm == null) {
+            throw new NullPointerException();
+        }
+
+        this.bayesIm = bayesIm;
+        setEvidence(Evidence.tautology(bayesIm));
+    }
+
+    /**
+     * Constructs a new updater for the given Bayes net.
+     */
+    public JunctionTreeUpdater(BayesIm bayesIm, Evidence evidence) {
+        if (bayesIm == null) {
+            throw new NullPointerException();
+        }
+
+        this.bayesIm = bayesIm;
+        setEvidence(evidence);
+    }
+
+    /**
+     * Generates a simple exemplar of this class to test serialization.
+     */
+    public static JunctionTreeUpdater serializableInstance() {
+        return new JunctionTreeUpdater(MlBayesIm.serializableInstance());
+    }
+
+    //============================PUBLIC METHODS==========================//
+
+    /**
+     * The BayesIm that this updater bases its update on. This BayesIm is not
+     * modified.
+     */
+    public BayesIm getBayesIm() {
+        return bayesIm;
+    }
+
+    /**
+     * @return the BayesIm with manipulations applied: edges into manipulated
+     * variables are removed, and their allowed categories are given
+     * probability 1.
+     */
+    public BayesIm getManipulatedBayesIm() {
+        if (manipulatedBayesIm == null) {
+            Dag manipulatedGraph = createManipulatedGraph(bayesIm.getBayesPm().getDag());
+            BayesPm manipulatedPm = new BayesPm(manipulatedGraph, bayesIm.getBayesPm());
+            BayesIm manipulatedIm = new MlBayesIm(manipulatedPm, bayesIm, MlBayesIm.MANUAL);
+
+            for (int i = 0; i < evidence.getNumNodes(); i++) {
+                if (evidence.isManipulated(i)) {
+                    for (int j = 0; j < evidence.getNumCategories(i); j++) {
+                        boolean allowed = evidence.getProposition().isAllowed(i, j);
+                        manipulatedIm.setProbability(i, 0, j, allowed ? 1.0 : 0.0);
+                    }
+                }
+            }
+
+            this.manipulatedBayesIm = manipulatedIm;
+        }
+
+        return manipulatedBayesIm;
+    }
+
+    public Graph getManipulatedGraph() {
+        return getManipulatedBayesIm().getDag();
+    }
+
+    /**
+     * The updated BayesIm, in which each probability is that of the variable
+     * given its parents (in the manipulated graph) and the evidence. This is
+     * a different object from the source BayesIm.
+     *
+     * @see #getBayesIm
+     */
+    public BayesIm getUpdatedBayesIm() {
+        if (updatedBayesIm == null) {
+            updateAll();
+        }
+
+        return updatedBayesIm;
+    }
+
+    /**
+     * @return a defensive copy of the evidence.
+     */
+    public Evidence getEvidence() {
+        return new Evidence(this.evidence);
+    }
+
+    /**
+     * Sets new evidence. Nothing is propagated until a marginal or the
+     * updated BayesIm is asked for.
+     */
+    public final void setEvidence(Evidence evidence) {
+        if (evidence == null) {
+            throw new NullPointerException();
+        }
+
+        if (evidence.isIncompatibleWith(bayesIm)) {
+            throw new IllegalArgumentException("The variable list for the " +
+                    "given bayesIm must be compatible with the variable list " +
+                    "for this evidence.");
+        }
+
+        this.evidence = new Evidence(evidence);
+        this.allowed = null;
+        this.manipulated = null;
+        this.manipulatedBayesIm = null;
+        this.updatedBayesIm = null;
+    }
+
+    public boolean isJointMarginalSupported() {
+        return true;
+    }
+
+    /**
+     * @return P&lpar;variables[i] &equals; values[i] &vert; evidence&rpar;,
+     * calculated by the chain rule: each variable in turn is set to its value
+     * in a scratch copy of the calibrated tree, which is propagated from that
+     * variable's clique. NaN if the evidence has probability zero.
+     */
+    public double getJointMarginal(int[] variables, int[] values) {
+        if (variables.length != values.length) {
+            throw new IllegalArgumentException("Values must match variables.");
+        }
+
+        Calibration calibration = calibrated();
+        Calibration scratch = variables.length > 1 ? calibration.copy() : calibration;
+        double p = 1.0;
+
+        for (int i = 0; i < variables.length; i++) {
+            p *= scratch.getMarginal(variables[i])[values[i]];
+
+            if (p == 0.0 || Double.isNaN(p)) {
+                return p;
+            }
+
+            if (i < variables.length - 1) {
+                boolean[] value = new boolean[bayesIm.getNumColumns(variables[i])];
+                value[values[i]] = true;
+                scratch.restrict(variables[i], value);
+                scratch.distribute(scratch.tree.home[variables[i]]);
+            }
+        }
+
+        return p;
+    }
+
+    /**
+     * @return P&lpar;variable&equals;value &vbar; evidence&rpar; where evidence is
+     * getEvidence(), or NaN if the evidence has probability zero.
+     */
+    public double getMarginal(int variable, int value) {
+        return calibrated().getMarginal(variable)[value];
+    }
+
+    public double[] calculatePriorMarginals(int nodeIndex) {
+        if (priorCalibration == null) {
+            priorCalibration = new Calibration(tree(new BitSet()), tautology());
+        }
+
+        return Arrays.copyOf(priorCalibration.getMarginal(nodeIndex), bayesIm.getNumColumns(nodeIndex));
+    }
+
+    public double[] calculateUpdatedMarginals(int nodeIndex) {
+        return Arrays.copyOf(calibrated().getMarginal(nodeIndex), bayesIm.getNumColumns(nodeIndex));
+    }
+
+    /**
+     * @return the number of configurations of the largest clique in the tree
+     * for the current manipulations--a measure of the cost of updating.
+     */
+    public int getMaxCliqueSize() {
+        int max = 0;
+
+        for (double[] potential : tree(manipulated()).potentials) {
+            max = Math.max(max, potential.length);
+        }
+
+        return max;
+    }
+
+    /**
+     * Prints out the most recent marginal.
+     */
+    public String toString() {
+        return "Junction tree updater, evidence = " + evidence;
+    }
+
+    //==============================PRIVATE METHODS=======================//
+
+    /**
+     * @return the tree calibrated for the current evidence, reusing the last
+     * calibrated tree if the manipulations are the same and the evidence has
+     * only narrowed.
+     */
+    private Calibration calibrated() {
+        boolean[][] allowed = allowed();
+        JunctionTree tree = tree(manipulated());
+
+        if (calibration != null && calibration.tree == tree && calibration.narrowsTo(allowed)) {
+            calibration.absorb(allowed);
+        } else {
+            calibration = new Calibration(tree, allowed);
+        }
+
+        return calibration;
+    }
+
+    private JunctionTree tree(BitSet manipulated) {
+        if (trees == null) {
+            trees = new LinkedHashMap<BitSet, JunctionTree>(16, 0.75f, true) {
+                protected boolean removeEldestEntry(Map.Entry<BitSet, JunctionTree> eldest) {
+                    return size() > MAX_CACHED_TREES;
+                }
+            };
+        }
+
+        JunctionTree tree = trees.get(manipulated);
+
+        if (tree == null) {
+            tree = new JunctionTree(bayesIm, manipulated);
+            trees.put((BitSet) manipulated.clone(), tree);
+        }
+
+        return tree;
+    }
+
+    private boolean[][] allowed() {
+        if (allowed == null) {
+            Proposition proposition = evidence.getProposition();
+            boolean[][] allowed = new boolean[bayesIm.getNumNodes()][];
+
+            for (int i = 0; i < allowed.length; i++) {
+                allowed[i] = new boolean[bayesIm.getNumColumns(i)];
+
+                for (int j = 0; j < allowed[i].length; j++) {
+                    allowed[i][j] = proposition.isAllowed(i, j);
+                }
+            }
+
+            this.allowed = allowed;
+        }
+
+        return allowed;
+    }
+
+    private BitSet manipulated() {
+        if (manipulated == null) {
+            BitSet manipulated = new BitSet();
+
+            for (int i = 0; i < evidence.getNumNodes(); i++) {
+                if (evidence.isManipulated(i)) manipulated.set(i);
+            }
+
+            this.manipulated = manipulated;
+        }
+
+        return manipulated;
+    }
+
+    private boolean[][] tautology() {
+        boolean[][] allowed = new boolean[bayesIm.getNumNodes()][];
+
+        for (int i = 0; i < allowed.length; i++) {
+            allowed[i] = new boolean[bayesIm.getNumColumns(i)];
+            Arrays.fill(allowed[i], true);
+        }
+
+        return allowed;
+    }
+
+    /**
+     * Fills in the updated BayesIm from the calibrated tree: each family (a
+     * variable with its parents in the manipulated graph) lies in some clique,
+     * so P(variable | parents, evidence) is read from that clique's marginal.
+     */
+    private void updateAll() {
+        BayesIm manipulatedIm = getManipulatedBayesIm();
+        BayesIm updatedBayesIm = new MlBayesIm(manipulatedIm);
+        Calibration calibration = calibrated();
+        JunctionTree tree = calibration.tree;
+
+        for (int node = 0; node < manipulatedIm.getNumNodes(); node++) {
+            int v = bayesIm.getNodeIndex(bayesIm.getNode(manipulatedIm.getNode(node).getName()));
+            int[] family = tree.families[v];
+            double[] joint = calibration.marginalize(tree.familyCliques[v], family);
+
+            int[] familyStrides = strides(family, tree.dims);
+            int[] parents = manipulatedIm.getParents(node);
+            int[] parentOffsets = new int[parents.length];
+
+            for (int k = 0; k < parents.length; k++) {
+                int p = bayesIm.getNodeIndex(bayesIm.getNode(manipulatedIm.getNode(parents[k]).getName()));
+                parentOffsets[k] = familyStrides[Arrays.binarySearch(family, p)];
+            }
+
+            int nodeStride = familyStrides[Arrays.binarySearch(family, v)];
+
+            for (int row = 0; row < manipulatedIm.getNumRows(node); row++) {
+                int[] parentValues = manipulatedIm.getParentValues(node, row);
+                int offset = 0;
+
+                for (int k = 0; k < parents.length; k++) {
+                    offset += parentValues[k] * parentOffsets[k];
+                }
+
+                int numCols = manipulatedIm.getNumColumns(node);
+                double sum = 0.0;
+
+                for (int col = 0; col < numCols; col++) {
+                    sum += joint[offset + col * nodeStride];
+                }
+
+                for (int col = 0; col < numCols; col++) {
+                    double p = sum > 0 ? joint[offset + col * nodeStride] / sum : Double.NaN;
+                    updatedBayesIm.setProbability(node, row, col, p);
+                }
+            }
+        }
+
+        this.updatedBayesIm = updatedBayesIm;
+    }
+
+    private Dag createManipulatedGraph(Graph graph) {
+        Dag updatedGraph = new Dag(graph);
+
+        // alters graph for manipulated evidenceItems
+        for (int i = 0; i < evidence.getNumNodes(); ++i) {
+            if (evidence.isManipulated(i)) {
+                Node node = updatedGraph.getNode(evidence.getNode(i).getName());
+                List<Node> parents = updatedGraph.getParents(node);
+
+                for (Node parent : parents) {
+                    updatedGraph.removeEdge(node, parent);
+                }
+            }
+        }
+
+        return updatedGraph;
+    }
+
+    /**
+     * @return the strides of the given variables in a table laid out with the
+     * first variable varying fastest.
+     */
+    private static int[] strides(int[] vars, int[] dims) {
+        int[] strides = new int[vars.length];
+        long stride = 1;
+
+        for (int k = 0; k < vars.length; k++) {
+            strides[k] = (int) stride;
+            stride *= dims[vars[k]];
+
+            if (stride > Integer.MAX_VALUE) {
+                throw new IllegalStateException("A clique of the junction tree has more than " +
+                        Integer.MAX_VALUE + " configurations; this network is too densely connected " +
+                        "for exact updating.");
+            }
+        }
+
+        return strides;
+    }
+
+    private static int size(int[] vars, int[] dims) {
+        long size = 1;
+
+        for (int v : vars) {
+            size *= dims[v];
+
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalStateException("A clique of the junction tree has more than " +
+                        Integer.MAX_VALUE + " configurations; this network is too densely connected " +
+                        "for exact updating.");
+            }
+        }
+
+        return (int) size;
+    }
+
+    /**
+     * @return for each configuration of a table over vars, the index of the
+     * matching configuration in a table over subset, which must be a subset of
+     * vars. Both tables list variables in ascending order, first fastest.
+     */
+    private static int[] indexMap(int[] vars, int[] subset, int[] dims) {
+        int[] subsetStrides = strides(subset, dims);
+        int[] strideOf = new int[vars.length];
+
+        for (int k = 0; k < vars.length; k++) {
+            int s = Arrays.binarySearch(subset, vars[k]);
+            strideOf[k] = s >= 0 ? subsetStrides[s] : 0;
+        }
+
+        int[] map = new int[size(vars, dims)];
+        int[] values = new int[vars.length];
+        int index = 0;
+
+        for (int i = 0; i < map.length; i++) {
+            map[i] = index;
+
+            // Advance the odometer, keeping the subset index in step.
+            for (int k = 0; k < vars.length; k++) {
+                if (++values[k] < dims[vars[k]]) {
+                    index += strideOf[k];
+                    break;
+                }
+
+                index -= strideOf[k] * (values[k] - 1);
+                values[k] = 0;
+            }
+        }
+
+        return map;
+    }
+
+    private static int[] toArray(BitSet set) {
+        int[] array = new int[set.cardinality()];
+        int k = 0;
+
+        for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1)) {
+            array[k++] = i;
+        }
+
+        return array;
+    }
+
+    /**
+     * Adds semantic checks to the default deserialization method. This method
+     * must have the standard signature for a readObject method, and the body of
+     * the method must begin with "s.defaultReadObject();". Other than that, any
+     * semantic checks can be specified and do not need to stay the same from
+     * version to version. A readObject method of this form may be added to any
+     * class, even if Tetrad sessions were previously saved out using a version
+     * of the class that didn't include it. (That's what the
+     * "s.defaultReadObject();" is for. See J. Bloch, Effective Java, for help.
+     *
+     * @throws java.io.IOException
+     * @throws ClassNotFoundException
+     */
+    private void readObject(ObjectInputStream s)
+            throws IOException, ClassNotFoundException {
+        s.defaultReadObject();
+
+        if (bayesIm == null) {
+            throw new NullPointerException();
+        }
+
+        if (evidence == null) {
+            throw new NullPointerException();
+        }
+    }
+
+    //==============================CLASSES===============================//
+
+    /**
+     * A junction tree compiled from a BayesIm for a particular set of
+     * manipulated variables. Immutable once built; the potentials here are
+     * the products of the conditional probability tables assigned to each
+     * clique, before any evidence.
+     */
+    private static final class JunctionTree {
+
+        /**
+         * The number of categories of each variable.
+         */
+        final int[] dims;
+
+        /**
+         * The variables of each clique, ascending.
+         */
+        final int[][] cliques;
+
+        /**
+         * The strides of the variables of each clique.
+         */
+        final int[][] cliqueStrides;
+
+        /**
+         * The initial potential of each clique.
+         */
+        final double[][] potentials;
+
+        /**
+         * The neighbors of each clique, and the separator (edge) joining
+         * them.
+         */
+        final int[][] neighbors;
+        final int[][] neighborEdges;
+
+        /**
+         * For each edge, the clique at each end, the separator variables, and
+         * for each end, the map from clique configuration to separator
+         * configuration.
+         */
+        final int[][] edgeEnds;
+        final int[][] separators;
+        final int[][][] edgeMaps;
+
+        /**
+         * For each variable, its smallest clique, where evidence on it is
+         * entered, and its position in that clique.
+         */
+        final int[] home;
+        final int[] homePosition;
+
+        /**
+         * For each variable, its family (itself and its parents, ascending)
+         * and the clique its conditional probability table was assigned to.
+         */
+        final int[][] families;
+        final int[] familyCliques;
+
+        JunctionTree(BayesIm bayesIm, BitSet manipulated) {
+            int n = bayesIm.getNumNodes();
+            this.dims = new int[n];
+            int[][] parents = new int[n][];
+
+            for (int v = 0; v < n; v++) {
+                dims[v] = bayesIm.getNumColumns(v);
+                parents[v] = manipulated.get(v) ? new int[0] : bayesIm.getParents(v);
+            }
+
+            List<BitSet> cliques = triangulate(moralize(parents, n));
+            this.cliques = new int[cliques.size()][];
+            this.cliqueStrides = new int[cliques.size()][];
+            this.potentials = new double[cliques.size()][];
+
+            for (int c = 0; c < cliques.size(); c++) {
+                this.cliques[c] = toArray(cliques.get(c));
+                this.cliqueStrides[c] = strides(this.cliques[c], dims);
+                this.potentials[c] = new double[size(this.cliques[c], dims)];
+                Arrays.fill(this.potentials[c], 1.0);
+            }
+
+            // Join the cliques by a maximum-weight spanning tree (Prim), weighting each pair by the size of
+            // their intersection. Disconnected parts of the network are joined by empty separators.
+            int k = cliques.size();
+            int numEdges = Math.max(k - 1, 0);
+            this.edgeEnds = new int[numEdges][];
+            this.separators = new int[numEdges][];
+            this.edgeMaps = new int[numEdges][][];
+
+            boolean[] inTree = new boolean[k];
+            int[] best = new int[k];
+            int[] bestWeight = new int[k];
+            Arrays.fill(bestWeight, -1);
+            List<List<Integer>> neighbors = new ArrayList<>();
+            List<List<Integer>> neighborEdges = new ArrayList<>();
+            for (int c = 0; c < k; c++) {
+                neighbors.add(new ArrayList<>());
+                neighborEdges.add(new ArrayList<>());
+            }
+
+            for (int e = -1; e < numEdges; e++) {
+                int next = 0;
+
+                if (e >= 0) {
+                    next = -1;
+
+                    for (int c = 0; c < k; c++) {
+                        if (!inTree[c] && (next == -1 || bestWeight[c] > bestWeight[next])) next = c;
+                    }
+
+                    int other = best[next];
+                    BitSet separator = (BitSet) cliques.get(next).clone();
+                    separator.and(cliques.get(other));
+
+                    edgeEnds[e] = new int[]{other, next};
+                    separators[e] = toArray(separator);
+                    edgeMaps[e] = new int[][]{
+                            indexMap(this.cliques[other], separators[e], dims),
+                            indexMap(this.cliques[next], separators[e], dims)};
+
+                    neighbors.get(other).add(next);
+                    neighborEdges.get(other).add(e);
+                    neighbors.get(next).add(other);
+                    neighborEdges.get(next).add(e);
+                }
+
+                inTree[next] = true;
+
+                for (int c = 0; c < k; c++) {
+                    if (inTree[c]) continue;
+                    BitSet intersection = (BitSet) cliques.get(c).clone();
+                    intersection.and(cliques.get(next));
+                    int weight = intersection.cardinality();
+
+                    if (weight > bestWeight[c]) {
+                        bestWeight[c] = weight;
+                        best[c] = next;
+                    }
+                }
+            }
+
+            this.neighbors = new int[k][];
+            this.neighborEdges = new int[k][];
+
+            for (int c = 0; c < k; c++) {
+                this.neighbors[c] = neighbors.get(c).stream().mapToInt(Integer::intValue).toArray();
+                this.neighborEdges[c] = neighborEdges.get(c).stream().mapToInt(Integer::intValue).toArray();
+            }
+
+            // Each variable's evidence goes to the smallest clique containing it, and each conditional
+            // probability table to the smallest clique containing its family.
+            this.home = new int[n];
+            this.homePosition = new int[n];
+            this.families = new int[n][];
+            this.familyCliques = new int[n];
+
+            for (int v = 0; v < n; v++) {
+                BitSet family = new BitSet();
+                family.set(v);
+                for (int p : parents[v]) family.set(p);
+
+                families[v] = toArray(family);
+                home[v] = smallestContaining(cliques, single(v));
+                homePosition[v] = Arrays.binarySearch(this.cliques[home[v]], v);
+                familyCliques[v] = smallestContaining(cliques, family);
+
+                if (!manipulated.get(v)) {
+                    multiplyCpt(bayesIm, v, parents[v], familyCliques[v]);
+                }
+            }
+        }
+
+        /**
+         * Multiplies P(v | parents) into the potential of the given clique.
+         * Manipulated variables contribute nothing here; their allowed
+         * categories come in as evidence.
+         */
+        private void multiplyCpt(BayesIm bayesIm, int v, int[] parents, int clique) {
+            int[] family = families[v];
+            double[] table = new double[size(family, dims)];
+            int[] values = new int[family.length];
+            int[] parentPositions = new int[parents.length];
+            int[] parentValues = new int[parents.length];
+            int position = Arrays.binarySearch(family, v);
+
+            for (int k = 0; k < parents.length; k++) {
+                parentPositions[k] = Arrays.binarySearch(family, parents[k]);
+            }
+
+            for (int i = 0; i < table.length; i++) {
+                for (int k = 0; k < parents.length; k++) {
+                    parentValues[k] = values[parentPositions[k]];
+                }
+
+                int row = bayesIm.getRowIndex(v, parentValues);
+                table[i] = bayesIm.getProbability(v, row, values[position]);
+
+                for (int k = 0; k < family.length; k++) {
+                    if (++values[k] < dims[family[k]]) break;
+                    values[k] = 0;
+                }
+            }
+
+            int[] map = indexMap(cliques[clique], family, dims);
+            double[] potential = potentials[clique];
+
+            for (int i = 0; i < potential.length; i++) {
+                potential[i] *= table[map[i]];
+            }
+        }
+
+        private static BitSet[] moralize(int[][] parents, int n) {
+            BitSet[] adjacent = new BitSet[n];
+            for (int v = 0; v < n; v++) adjacent[v] = new BitSet(n);
+
+            for (int v = 0; v < n; v++) {
+                for (int i = 0; i < parents[v].length; i++) {
+                    int p = parents[v][i];
+                    adjacent[v].set(p);
+                    adjacent[p].set(v);
+
+                    for (int j = i + 1; j < parents[v].length; j++) {
+                        int q = parents[v][j];
+                        adjacent[p].set(q);
+                        adjacent[q].set(p);
+                    }
+                }
+            }
+
+            return adjacent;
+        }
+
+        /**
+         * Eliminates variables one at a time, each time choosing the one whose
+         * elimination adds the fewest fill-in edges (ties broken by the size
+         * of the resulting clique), and returns the maximal elimination
+         * cliques. The adjacency sets are consumed.
+         */
+        private List<BitSet> triangulate(BitSet[] adjacent) {
+            int n = adjacent.length;
+            boolean[] eliminated = new boolean[n];
+            List<BitSet> cliques = new ArrayList<>();
+
+            for (int step = 0; step < n; step++) {
+                int best = -1;
+                int bestFill = Integer.MAX_VALUE;
+                double bestWeight = Double.POSITIVE_INFINITY;
+
+                for (int v = 0; v < n; v++) {
+                    if (eliminated[v]) continue;
+
+                    int fill = 0;
+                    double weight = dims[v];
+                    BitSet neighbors = adjacent[v];
+
+                    for (int a = neighbors.nextSetBit(0); a >= 0; a = neighbors.nextSetBit(a + 1)) {
+                        weight *= dims[a];
+
+                        for (int b = neighbors.nextSetBit(a + 1); b >= 0; b = neighbors.nextSetBit(b + 1)) {
+                            if (!adjacent[a].get(b)) fill++;
+                        }
+
+                        if (fill > bestFill) break;
+                    }
+
+                    if (fill < bestFill || (fill == bestFill && weight < bestWeight)) {
+                        best = v;
+                        bestFill = fill;
+                        bestWeight = weight;
+                    }
+                }
+
+                BitSet neighbors = adjacent[best];
+
+                for (int a = neighbors.nextSetBit(0); a >= 0; a = neighbors.nextSetBit(a + 1)) {
+                    adjacent[a].or(neighbors);
+                    adjacent[a].clear(a);
+                    adjacent[a].clear(best);
+                }
+
+                BitSet clique = (BitSet) neighbors.clone();
+                clique.set(best);
+                eliminated[best] = true;
+
+                // A later elimination clique can't contain an earlier one, which has an eliminated variable,
+                // but it may be contained in one.
+                boolean contained = false;
+
+                for (BitSet other : cliques) {
+                    BitSet remainder = (BitSet) clique.clone();
+                    remainder.andNot(other);
+
+                    if (remainder.isEmpty()) {
+                        contained = true;
+                        break;
+                    }
+                }
+
+                if (!contained) cliques.add(clique);
+            }
+
+            return cliques;
+        }
+
+        private int smallestContaining(List<BitSet> cliques, BitSet vars) {
+            int best = -1;
+
+            for (int c = 0; c < cliques.size(); c++) {
+                BitSet remainder = (BitSet) vars.clone();
+                remainder.andNot(cliques.get(c));
+
+                if (remainder.isEmpty() && (best == -1 || potentials[c].length < potentials[best].length)) {
+                    best = c;
+                }
+            }
+
+            if (best == -1) {
+                throw new IllegalStateException("No clique contains " + vars + "; the triangulation is wrong.");
+            }
+
+            return best;
+        }
+
+        private static BitSet single(int v) {
+            BitSet set = new BitSet();
+            set.set(v);
+            return set;
+        }
+    }
+
+    /**
+     * A junction tree with potentials for particular evidence. After
+     * propagation, each clique potential is proportional to the joint
+     * distribution of its variables given the evidence.
+     */
+    private static final class Calibration {
+        final JunctionTree tree;
+        final double[][] potentials;
+        final double[][] separators;
+        final boolean[][] allowed;
+
+        /**
+         * The marginal of each variable, cached until the potentials change.
+         */
+        final double[][] marginals;
+
+        Calibration(JunctionTree tree, boolean[][] allowed) {
+            this.tree = tree;
+            this.potentials = new double[tree.potentials.length][];
+            this.separators = new double[tree.separators.length][];
+            this.allowed = new boolean[allowed.length][];
+            this.marginals = new double[allowed.length][];
+
+            for (int c = 0; c < potentials.length; c++) {
+                potentials[c] = tree.potentials[c].clone();
+            }
+
+            for (int e = 0; e < separators.length; e++) {
+                separators[e] = new double[size(tree.separators[e], tree.dims)];
+                Arrays.fill(separators[e], 1.0);
+            }
+
+            for (int v = 0; v < allowed.length; v++) {
+                this.allowed[v] = new boolean[allowed[v].length];
+                Arrays.fill(this.allowed[v], true);
+                restrict(v, allowed[v]);
+            }
+
+            if (potentials.length > 0) {
+                collect(0);
+                distribute(0);
+            }
+        }
+
+        private Calibration(Calibration calibration) {
+            this.tree = calibration.tree;
+            this.potentials = new double[calibration.potentials.length][];
+            this.separators = new double[calibration.separators.length][];
+            this.allowed = new boolean[calibration.allowed.length][];
+            this.marginals = new double[calibration.marginals.length][];
+
+            for (int c = 0; c < potentials.length; c++) potentials[c] = calibration.potentials[c].clone();
+            for (int e = 0; e < separators.length; e++) separators[e] = calibration.separators[e].clone();
+            for (int v = 0; v < allowed.length; v++) allowed[v] = calibration.allowed[v].clone();
+        }
+
+        Calibration copy() {
+            return new Calibration(this);
+        }
+
+        /**
+         * @return true if every category allowed by the given evidence is
+         * allowed by the evidence this tree was calibrated for.
+         */
+        boolean narrowsTo(boolean[][] allowed) {
+            for (int v = 0; v < allowed.length; v++) {
+                for (int j = 0; j < allowed[v].length; j++) {
+                    if (allowed[v][j] && !this.allowed[v][j]) return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Enters the given narrower evidence and recalibrates: from the one
+         * clique it touches if there is just one, otherwise from the root.
+         */
+        void absorb(boolean[][] allowed) {
+            BitSet changed = new BitSet();
+
+            for (int v = 0; v < allowed.length; v++) {
+                if (restrict(v, allowed[v])) {
+                    changed.set(tree.home[v]);
+                }
+            }
+
+            if (changed.cardinality() == 1) {
+                distribute(changed.nextSetBit(0));
+            } else if (changed.cardinality() > 1) {
+                collect(0);
+                distribute(0);
+            }
+        }
+
+        /**
+         * Zeroes out the configurations of v's home clique in which v has a
+         * category that is not allowed, unless already excluded. Doesn't
+         * propagate.
+         *
+         * @return true if anything was newly excluded.
+         */
+        boolean restrict(int v, boolean[] allowed) {
+            boolean changed = false;
+
+            for (int j = 0; j < allowed.length; j++) {
+                if (!allowed[j] && this.allowed[v][j]) {
+                    this.allowed[v][j] = false;
+                    changed = true;
+                }
+            }
+
+            if (!changed) return false;
+
+            int c = tree.home[v];
+            double[] potential = potentials[c];
+            int stride = tree.cliqueStrides[c][tree.homePosition[v]];
+            int dim = tree.dims[v];
+
+            for (int i = 0; i < potential.length; i++) {
+                if (!allowed[(i / stride) % dim]) potential[i] = 0.0;
+            }
+
+            Arrays.fill(marginals, null);
+            return true;
+        }
+
+        /**
+         * @return the marginal of v given the evidence, or NaNs if the
+         * evidence has probability zero. Not a copy.
+         */
+        double[] getMarginal(int v) {
+            if (marginals[v] == null) {
+                double[] marginal = marginalize(tree.home[v], new int[]{v});
+                double sum = 0.0;
+                for (double p : marginal) sum += p;
+
+                for (int j = 0; j < marginal.length; j++) {
+                    marginal[j] = sum > 0 ? marginal[j] / sum : Double.NaN;
+                }
+
+                marginals[v] = marginal;
+            }
+
+            return marginals[v];
+        }
+
+        /**
+         * @return the potential of the given clique summed onto the given
+         * variables (ascending), unnormalized.
+         */
+        double[] marginalize(int clique, int[] vars) {
+            int[] map = indexMap(tree.cliques[clique], vars, tree.dims);
+            double[] potential = potentials[clique];
+            double[] marginal = new double[size(vars, tree.dims)];
+
+            for (int i = 0; i < potential.length; i++) {
+                marginal[map[i]] += potential[i];
+            }
+
+            return marginal;
+        }
+
+        /**
+         * Passes messages toward the root, leaves first.
+         */
+        void collect(int root) {
+            int[] order = new int[potentials.length];
+            int[] parent = new int[potentials.length];
+            int[] parentEdge = new int[potentials.length];
+            search(root, order, parent, parentEdge);
+
+            for (int k = order.length - 1; k > 0; k--) {
+                int c = order[k];
+                pass(c, parent[c], parentEdge[c]);
+            }
+
+            Arrays.fill(marginals, null);
+        }
+
+        /**
+         * Passes messages away from the root, root first. If the tree was
+         * calibrated except for new evidence in the root, this recalibrates it.
+         */
+        void distribute(int root) {
+            int[] order = new int[potentials.length];
+            int[] parent = new int[potentials.length];
+            int[] parentEdge = new int[potentials.length];
+            search(root, order, parent, parentEdge);
+
+            for (int k = 1; k < order.length; k++) {
+                int c = order[k];
+                pass(parent[c], c, parentEdge[c]);
+            }
+
+            Arrays.fill(marginals, null);
+        }
+
+        /**
+         * Orders the cliques breadth first from the root, recording each
+         * clique's parent and the edge to it.
+         */
+        private void search(int root, int[] order, int[] parent, int[] parentEdge) {
+            boolean[] seen = new boolean[order.length];
+            order[0] = root;
+            seen[root] = true;
+            int end = 1;
+
+            for (int k = 0; k < end; k++) {
+                int c = order[k];
+
+                for (int i = 0; i < tree.neighbors[c].length; i++) {
+                    int d = tree.neighbors[c][i];
+                    if (seen[d]) continue;
+                    seen[d] = true;
+                    parent[d] = c;
+                    parentEdge[d] = tree.neighborEdges[c][i];
+                    order[end++] = d;
+                }
+            }
+        }
+
+        /**
+         * Hugin message pass: the separator gets the marginal of the sending
+         * clique (scaled to sum to 1, so long products don't underflow), and
+         * the receiving clique is multiplied by the ratio of the new separator
+         * to the old, with 0/0 = 0.
+         */
+        private void pass(int from, int to, int edge) {
+            int[] fromMap = tree.edgeMaps[edge][tree.edgeEnds[edge][0] == from ? 0 : 1];
+            int[] toMap = tree.edgeMaps[edge][tree.edgeEnds[edge][0] == to ? 0 : 1];
+            double[] old = separators[edge];
+            double[] separator = new double[old.length];
+            double[] potential = potentials[from];
+
+            for (int i = 0; i < potential.length; i++) {
+                separator[fromMap[i]] += potential[i];
+            }
+
+            double sum = 0.0;
+            for (double s : separator) sum += s;
+
+            double[] ratio = new double[separator.length];
+
+            for (int j = 0; j < separator.length; j++) {
+                if (sum > 0) separator[j] /= sum;
+                ratio[j] = old[j] == 0.0 ? 0.0 : separator[j] / old[j];
+            }
+
+            potential = potentials[to];
+
+            for (int i = 0; i < potential.length; i++) {
+                potential[i] *= ratio[toMap[i]];
+            }
+
+            separators[edge] = separator;
+        }
+    }
+}
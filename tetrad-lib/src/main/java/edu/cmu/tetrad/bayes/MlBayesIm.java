@@ -1242,7 +1242,7 @@ public final class MlBayesIm implements BayesIm {
 //
 //        int chunk = 25;
 //
-//        ForkJoinPool pool = ForkJoinPoolInstance.getInstance().getPool();
+//        ForkJoinPool pool = ExecutionService.getInstance().getPool();
 //        SimulationTask task = new SimulationTask(chunk, 0, sampleSize, tiers, dataSet, map);
 //        pool.invoke(task);
 
@@ -29,6 +29,7 @@ import edu.pitt.dbmi.data.reader.MixedData;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.nio.DoubleBuffer;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -882,13 +883,20 @@ public final class BoxDataSet implements DataSet, TetradSerializable {
      * returned.
      */
     public final double getDouble(int row, int column) {
-        Number value = dataBox.get(row, column);
+        return dataBox.getDouble(row, column);
+    }
 
-        if (value == null) {
-            return ContinuousVariable.getDoubleMissingValue();
-        } else {
-            return value.doubleValue();
+    /**
+     * @return a read-only view of the given column, without copying it, if
+     * the data box stores columns contiguously (see ColumnDataBox); otherwise
+     * null. Missing values in the view are Double.NaN.
+     */
+    public final DoubleBuffer getColumnView(int column) {
+        if (dataBox instanceof ColumnDataBox) {
+            return ((ColumnDataBox) dataBox).getColumn(column);
         }
+
+        return null;
     }
 
 //    /**
@@ -1009,13 +1017,18 @@ public final class BoxDataSet implements DataSet, TetradSerializable {
     public final TetradMatrix getDoubleData() {
         TetradMatrix copy = new TetradMatrix(dataBox.numRows(), dataBox.numCols());
 
-        for (int i = 0; i < dataBox.numRows(); i++) {
+        if (dataBox instanceof ColumnDataBox) {
             for (int j = 0; j < dataBox.numCols(); j++) {
-                Number number = dataBox.get(i, j);
-                if (number == null) {
-                    copy.set(i, j, Double.NaN);
-                } else {
-                    copy.set(i, j, number.doubleValue());
+                DoubleBuffer column = ((ColumnDataBox) dataBox).getColumn(j);
+
+                for (int i = 0; i < dataBox.numRows(); i++) {
+                    copy.set(i, j, column.get(i));
+                }
+            }
+        } else {
+            for (int i = 0; i < dataBox.numRows(); i++) {
+                for (int j = 0; j < dataBox.numCols(); j++) {
+                    copy.set(i, j, dataBox.getDouble(i, j));
                 }
             }
         }
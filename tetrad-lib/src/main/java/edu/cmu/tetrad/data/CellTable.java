@@ -89,6 +89,26 @@ public final class CellTable {
         }
     }
 
+    /**
+     * Fills the table with the counts of the given variables, looked up in the
+     * count index instead of scanning the data. Rows with missing values for
+     * any of the variables are not counted.
+     *
+     * @param countIndex the count index of the data set.
+     * @param indices    the indices of the variables in the data set.
+     */
+    public synchronized final void addToTable(DiscreteCountIndex countIndex, int[] indices) {
+        int[] dims = new int[indices.length];
+
+        for (int i = 0; i < indices.length; i++) {
+            dims[i] = countIndex.getNumCategories(indices[i]);
+        }
+
+        table.reset(dims);
+
+        countIndex.forEachCount(indices, (cellIndex, count) -> table.setCellValue((int) cellIndex, count));
+    }
+
     /**
      * @param varIndex the index of the variable in question.
      * @return the number of dimensions of the variable.
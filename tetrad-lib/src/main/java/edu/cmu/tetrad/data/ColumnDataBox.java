@@ -0,0 +1,41 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.data;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * A data box of continuous values that stores each column contiguously and
+ * can hand out a column without copying it. Code that works a column at a
+ * time (covariances, centering, standardization) should read through
+ * getColumn() rather than cell by cell.
+ */
+public interface ColumnDataBox extends DataBox {
+
+    /**
+     * @return a read-only view of the given column, indexed by row from 0 to
+     * numRows() - 1. Missing values are Double.NaN. The view is backed by the
+     * stored data, so later changes to the box show through it; read it with
+     * absolute gets.
+     */
+    DoubleBuffer getColumn(int col);
+}
@@ -0,0 +1,326 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Stores continuous data column by column, one DoubleBuffer per column. The
+ * buffers may be ordinary heap arrays, direct (off-heap) buffers, or regions
+ * of a memory-mapped file, so a data set need not fit in the Java heap.
+ * Values are read and written as primitive doubles; missing values are
+ * stored as Double.NaN. Unlike the other data boxes, writes are not
+ * synchronized; callers that write from several threads should write
+ * disjoint cells.
+ */
+public class ColumnDoubleDataBox implements ColumnDataBox {
+    static final long serialVersionUID = 23L;
+
+    /**
+     * The columns. Not serialized directly, since buffers aren't serializable;
+     * see writeObject and readObject.
+     */
+    private transient DoubleBuffer[] columns;
+
+    /**
+     * The number of rows (tracked because there may be no columns).
+     */
+    private final int numRows;
+
+    /**
+     * The number of columns.
+     */
+    private final int numCols;
+
+    /**
+     * Constructs a heap data box of the given dimensions consisting entirely
+     * of missing values (Double.NaN).
+     */
+    public ColumnDoubleDataBox(int rows, int cols) {
+        this(allocate(rows, cols, false), rows);
+    }
+
+    /**
+     * Constructs a data box that uses the given columns as its data, without
+     * copying them; data[j] is column j.
+     */
+    public ColumnDoubleDataBox(double[][] data) {
+        this(wrap(data), data.length == 0 ? 0 : data[0].length);
+    }
+
+    /**
+     * Copies the data from the given data box into a new heap data box.
+     */
+    public ColumnDoubleDataBox(DataBox dataBox) {
+        this(dataBox.numRows(), dataBox.numCols());
+
+        for (int j = 0; j < numCols; j++) {
+            DoubleBuffer column = columns[j];
+
+            for (int i = 0; i < numRows; i++) {
+                column.put(i, dataBox.getDouble(i, j));
+            }
+        }
+    }
+
+    private ColumnDoubleDataBox(DoubleBuffer[] columns, int rows) {
+        if (rows < 0) throw new IllegalArgumentException("Number of rows must be >= 0: " + rows);
+
+        for (DoubleBuffer column : columns) {
+            if (column.capacity() != rows) {
+                throw new IllegalArgumentException("All columns must have same length.");
+            }
+        }
+
+        this.columns = columns;
+        this.numRows = rows;
+        this.numCols = columns.length;
+    }
+
+    /**
+     * Constructs a data box of the given dimensions whose columns are direct
+     * buffers allocated outside the Java heap, consisting entirely of missing
+     * values (Double.NaN). As with mapped(), a column is limited to 2^28
+     * rows.
+     */
+    public static ColumnDoubleDataBox offHeap(int rows, int cols) {
+        if (rows < 0 || cols < 0) {
+            throw new IllegalArgumentException("Dimensions must be >= 0: " + rows + " x " + cols);
+        }
+
+        if (rows > Integer.MAX_VALUE / 8) {
+            throw new IllegalArgumentException("Too many rows for an off-heap column: " + rows);
+        }
+
+        return new ColumnDoubleDataBox(allocate(rows, cols, true), rows);
+    }
+
+    /**
+     * Constructs a data box backed by the given file, which is laid out as
+     * cols consecutive columns of rows little-endian doubles each (so the
+     * value at (i, j) is at byte 8 * (j * rows + i)). Each column is mapped
+     * separately, so a single column is limited to 2^28 rows but the file as
+     * a whole may be much larger than the heap. Values already in the file
+     * are kept; if the file is shorter than rows * cols * 8 bytes it is
+     * extended with zeros. Writes to the box go through to the file.
+     *
+     * @throws IOException if the file cannot be opened or mapped.
+     */
+    public static ColumnDoubleDataBox mapped(File file, int rows, int cols) throws IOException {
+        if (rows < 0 || cols < 0) {
+            throw new IllegalArgumentException("Dimensions must be >= 0: " + rows + " x " + cols);
+        }
+
+        if (rows > Integer.MAX_VALUE / 8) {
+            throw new IllegalArgumentException("Too many rows to map a column: " + rows);
+        }
+
+        DoubleBuffer[] columns = new DoubleBuffer[cols];
+        long columnBytes = 8L * rows;
+
+        // Mappings stay valid after the channel is closed.
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+             FileChannel channel = raf.getChannel()) {
+            for (int j = 0; j < cols; j++) {
+                columns[j] = channel.map(FileChannel.MapMode.READ_WRITE, j * columnBytes, columnBytes)
+                        .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+            }
+        }
+
+        return new ColumnDoubleDataBox(columns, rows);
+    }
+
+    /**
+     * Generates a simple exemplar of this class to test serialization.
+     */
+    public static ColumnDoubleDataBox serializableInstance() {
+        return new ColumnDoubleDataBox(4, 4);
+    }
+
+    /**
+     * @return the number of rows in this data box.
+     */
+    public int numRows() {
+        return numRows;
+    }
+
+    /**
+     * @return the number of columns in this data box.
+     */
+    public int numCols() {
+        return numCols;
+    }
+
+    /**
+     * Sets the value at the given row/column to the given Number value.
+     * The value used is number.doubleValue(); null is stored as Double.NaN.
+     */
+    public void set(int row, int col, Number value) {
+        setDouble(row, col, value == null ? Double.NaN : value.doubleValue());
+    }
+
+    /**
+     * Sets the value at the given row/column to the given double value.
+     */
+    public void setDouble(int row, int col, double value) {
+        columns[col].put(row, value);
+    }
+
+    /**
+     * @return the Number value at the given row and column. If the value
+     * is missing (Double.NaN), null is returned.
+     */
+    public Number get(int row, int col) {
+        double datum = columns[col].get(row);
+        return Double.isNaN(datum) ? null : datum;
+    }
+
+    /**
+     * @return the value at the given row and column, Double.NaN if missing.
+     */
+    @Override
+    public double getDouble(int row, int col) {
+        return columns[col].get(row);
+    }
+
+    /**
+     * @return a read-only view of the given column.
+     */
+    @Override
+    public DoubleBuffer getColumn(int col) {
+        return columns[col].asReadOnlyBuffer();
+    }
+
+    /**
+     * @return a heap copy of this data box.
+     */
+    public DataBox copy() {
+        double[][] copy = new double[numCols][numRows];
+
+        for (int j = 0; j < numCols; j++) {
+            getColumn(j).get(copy[j]);
+        }
+
+        return new ColumnDoubleDataBox(copy);
+    }
+
+    /**
+     * @return a heap ColumnDoubleDataBox with the same dimensions as this
+     * one, consisting entirely of missing values.
+     */
+    public DataBox like() {
+        return new ColumnDoubleDataBox(numRows, numCols);
+    }
+
+    /**
+     * @return a heap copy of this data box, restricted to the given rows and
+     * columns.
+     */
+    @Override
+    public DataBox viewSelection(int[] rows, int[] cols) {
+        double[][] data = new double[cols.length][rows.length];
+
+        for (int j = 0; j < cols.length; j++) {
+            DoubleBuffer column = columns[cols[j]];
+            double[] _column = data[j];
+
+            for (int i = 0; i < rows.length; i++) {
+                _column[i] = column.get(rows[i]);
+            }
+        }
+
+        return new ColumnDoubleDataBox(data);
+    }
+
+    private static DoubleBuffer[] allocate(int rows, int cols, boolean direct) {
+        DoubleBuffer[] columns = new DoubleBuffer[cols];
+
+        for (int j = 0; j < cols; j++) {
+            if (direct) {
+                columns[j] = ByteBuffer.allocateDirect(8 * rows).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+            } else {
+                columns[j] = DoubleBuffer.allocate(rows);
+            }
+
+            for (int i = 0; i < rows; i++) {
+                columns[j].put(i, Double.NaN);
+            }
+        }
+
+        return columns;
+    }
+
+    private static DoubleBuffer[] wrap(double[][] data) {
+        DoubleBuffer[] columns = new DoubleBuffer[data.length];
+
+        for (int j = 0; j < data.length; j++) {
+            columns[j] = DoubleBuffer.wrap(data[j]);
+        }
+
+        return columns;
+    }
+
+    /**
+     * Writes the dimensions and then the values column by column; the
+     * storage kind (heap, off-heap, mapped) is not kept.
+     */
+    private void writeObject(ObjectOutputStream s) throws IOException {
+        s.defaultWriteObject();
+
+        for (int j = 0; j < numCols; j++) {
+            DoubleBuffer column = columns[j];
+
+            for (int i = 0; i < numRows; i++) {
+                s.writeDouble(column.get(i));
+            }
+        }
+    }
+
+    /**
+     * Reads the values back into heap columns.
+     */
+    private void readObject(ObjectInputStream s) throws IOException, ClassNotFoundException {
+        s.defaultReadObject();
+
+        if (numRows < 0 || numCols < 0) {
+            throw new IllegalStateException("Dimensions must be >= 0: " + numRows + " x " + numCols);
+        }
+
+        double[][] data = new double[numCols][numRows];
+
+        for (int j = 0; j < numCols; j++) {
+            for (int i = 0; i < numRows; i++) {
+                data[j][i] = s.readDouble();
+            }
+        }
+
+        columns = wrap(data);
+    }
+}
@@ -0,0 +1,490 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+package edu.cmu.tetrad.data;
+
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.graph.OrderedPair;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A read-only view of a knowledge object compiled against a fixed list of
+ * variables. Forbidden and required edges between the variables are stored as
+ * bit matrices, so that isForbidden and isRequired are constant-time lookups
+ * instead of scans over the rules and tiers of the underlying knowledge. Names
+ * outside the list of variables, and all other queries, are passed through to
+ * the underlying knowledge.
+ * <p>
+ * Searches should compile their knowledge once at the start of a search, after
+ * the knowledge can no longer change, and use the compiled view in their inner
+ * loops. Changes made to the underlying knowledge after compilation are not
+ * reflected in the bit matrices.
+ */
+public final class CompiledKnowledge implements IKnowledge {
+
+    static final long serialVersionUID = 23L;
+
+    /**
+     * Knowledge over more variables than this is not compiled, since the bit
+     * matrices grow with the square of the number of variables.
+     */
+    public static final int MAX_VARIABLES = 10000;
+
+    private final IKnowledge knowledge;
+    private final List<Node> variables;
+    private final Map<String, Integer> indices;
+    private final long[][] forbidden;
+    private final long[][] required;
+
+    /**
+     * Compiles the given knowledge for the given variables.
+     *
+     * @param knowledge The knowledge to compile.
+     * @param variables The variables whose edges will be looked up by index.
+     */
+    public CompiledKnowledge(IKnowledge knowledge, List<Node> variables) {
+        if (knowledge == null) {
+            throw new NullPointerException("Knowledge must not be null.");
+        }
+
+        if (variables == null) {
+            throw new NullPointerException("Variables must not be null.");
+        }
+
+        this.knowledge = knowledge;
+        this.variables = new ArrayList<>(variables);
+        this.indices = new HashMap<>();
+
+        for (int i = 0; i < variables.size(); i++) {
+            indices.put(variables.get(i).getName(), i);
+        }
+
+        int numVars = variables.size();
+        int numWords = (numVars + 63) >>> 6;
+        this.forbidden = new long[numVars][numWords];
+        this.required = new long[numVars][numWords];
+
+        if (knowledge instanceof Knowledge2) {
+            Knowledge2 rules = (Knowledge2) knowledge;
+            setBits(required, rules.getRequiredRules(), false);
+            setBits(forbidden, rules.getForbiddenRules(), false);
+            setBits(forbidden, rules.getForbiddenTierRules(), true);
+
+            // Required edges override forbidden ones.
+            for (int i = 0; i < numVars; i++) {
+                for (int w = 0; w < numWords; w++) {
+                    forbidden[i][w] &= ~required[i][w];
+                }
+            }
+        } else {
+            for (int i = 0; i < numVars; i++) {
+                String x = variables.get(i).getName();
+
+                for (int j = 0; j < numVars; j++) {
+                    String y = variables.get(j).getName();
+
+                    if (knowledge.isRequired(x, y)) {
+                        set(required, i, j);
+                    }
+
+                    if (knowledge.isForbidden(x, y)) {
+                        set(forbidden, i, j);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Generates a simple exemplar of this class to test serialization.
+     */
+    public static CompiledKnowledge serializableInstance() {
+        return new CompiledKnowledge(new Knowledge2(), new ArrayList<>());
+    }
+
+    /**
+     * Returns knowledge suitable for lookups in the inner loops of a search
+     * over the given variables. Empty knowledge, knowledge that is already
+     * compiled, and knowledge over too many variables are returned as they
+     * are.
+     *
+     * @param knowledge The knowledge to compile; may be null.
+     * @param variables The variables of the search.
+     * @return The compiled knowledge, or the given knowledge.
+     */
+    public static IKnowledge compile(IKnowledge knowledge, List<Node> variables) {
+        if (knowledge == null || variables == null || variables.size() > MAX_VARIABLES) {
+            return knowledge;
+        }
+
+        if (knowledge instanceof CompiledKnowledge || knowledge.isEmpty()) {
+            return knowledge;
+        }
+
+        return new CompiledKnowledge(knowledge, variables);
+    }
+
+    /**
+     * @return the index of the variable with the given name, or -1 if there is
+     * no such variable.
+     */
+    public int getIndex(String name) {
+        Integer index = indices.get(name);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @return true just in case the edge from variable i to variable j is
+     * forbidden.
+     */
+    public boolean isForbidden(int i, int j) {
+        return get(forbidden, i, j);
+    }
+
+    /**
+     * @return true just in case the edge from variable i to variable j is
+     * required.
+     */
+    public boolean isRequired(int i, int j) {
+        return get(required, i, j);
+    }
+
+    /**
+     * @return the knowledge this was compiled from.
+     */
+    public IKnowledge getKnowledge() {
+        return knowledge;
+    }
+
+    //==========================QUERIES==========================//
+
+    @Override
+    public boolean isForbidden(String var1, String var2) {
+        int i = getIndex(var1);
+        int j = getIndex(var2);
+
+        if (i == -1 || j == -1) {
+            return knowledge.isForbidden(var1, var2);
+        }
+
+        return get(forbidden, i, j);
+    }
+
+    @Override
+    public boolean isRequired(String var1, String var2) {
+        int i = getIndex(var1);
+        int j = getIndex(var2);
+
+        if (i == -1 || j == -1) {
+            return knowledge.isRequired(var1, var2);
+        }
+
+        return get(required, i, j);
+    }
+
+    @Override
+    public boolean noEdgeRequired(String x, String y) {
+        return !(isRequired(x, y) || isRequired(y, x));
+    }
+
+    @Override
+    public boolean isForbiddenByGroups(String var1, String var2) {
+        return knowledge.isForbiddenByGroups(var1, var2);
+    }
+
+    @Override
+    public boolean isForbiddenByTiers(String var1, String var2) {
+        return knowledge.isForbiddenByTiers(var1, var2);
+    }
+
+    @Override
+    public boolean isRequiredByGroups(String var1, String var2) {
+        return knowledge.isRequiredByGroups(var1, var2);
+    }
+
+    @Override
+    public Iterator<KnowledgeEdge> explicitlyForbiddenEdgesIterator() {
+        return knowledge.explicitlyForbiddenEdgesIterator();
+    }
+
+    @Override
+    public Iterator<KnowledgeEdge> explicitlyRequiredEdgesIterator() {
+        return knowledge.explicitlyRequiredEdgesIterator();
+    }
+
+    @Override
+    public Iterator<KnowledgeEdge> forbiddenEdgesIterator() {
+        return knowledge.forbiddenEdgesIterator();
+    }
+
+    @Override
+    public Iterator<KnowledgeEdge> requiredEdgesIterator() {
+        return knowledge.requiredEdgesIterator();
+    }
+
+    @Override
+    public List<KnowledgeGroup> getKnowledgeGroups() {
+        return knowledge.getKnowledgeGroups();
+    }
+
+    @Override
+    public List<String> getVariables() {
+        return knowledge.getVariables();
+    }
+
+    @Override
+    public List<String> getVariablesNotInTiers() {
+        return knowledge.getVariablesNotInTiers();
+    }
+
+    @Override
+    public List<String> getTier(int tier) {
+        return knowledge.getTier(tier);
+    }
+
+    @Override
+    public int getNumTiers() {
+        return knowledge.getNumTiers();
+    }
+
+    @Override
+    public boolean isDefaultToKnowledgeLayout() {
+        return knowledge.isDefaultToKnowledgeLayout();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return knowledge.isEmpty();
+    }
+
+    @Override
+    public boolean isTierForbiddenWithin(int tier) {
+        return knowledge.isTierForbiddenWithin(tier);
+    }
+
+    @Override
+    public boolean isViolatedBy(Graph graph) {
+        return knowledge.isViolatedBy(graph);
+    }
+
+    @Override
+    public int getMaxTierForbiddenWithin() {
+        return knowledge.getMaxTierForbiddenWithin();
+    }
+
+    @Override
+    public int isInWhichTier(Node node) {
+        return knowledge.isInWhichTier(node);
+    }
+
+    @Override
+    public List<KnowledgeEdge> getListOfRequiredEdges() {
+        return knowledge.getListOfRequiredEdges();
+    }
+
+    @Override
+    public List<KnowledgeEdge> getListOfExplicitlyRequiredEdges() {
+        return knowledge.getListOfExplicitlyRequiredEdges();
+    }
+
+    @Override
+    public List<KnowledgeEdge> getListOfForbiddenEdges() {
+        return knowledge.getListOfForbiddenEdges();
+    }
+
+    @Override
+    public List<KnowledgeEdge> getListOfExplicitlyForbiddenEdges() {
+        return knowledge.getListOfExplicitlyForbiddenEdges();
+    }
+
+    @Override
+    public boolean isOnlyCanCauseNextTier(int tier) {
+        return knowledge.isOnlyCanCauseNextTier(tier);
+    }
+
+    /**
+     * @return a mutable copy of the underlying knowledge.
+     */
+    @Override
+    public IKnowledge copy() {
+        return knowledge.copy();
+    }
+
+    @Override
+    public int hashCode() {
+        return knowledge.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+
+        if (!(o instanceof CompiledKnowledge)) {
+            return false;
+        }
+
+        CompiledKnowledge that = (CompiledKnowledge) o;
+        return knowledge.equals(that.knowledge) && variables.equals(that.variables);
+    }
+
+    @Override
+    public String toString() {
+        return knowledge.toString();
+    }
+
+    //==========================MUTATORS==========================//
+
+    @Override
+    public void addToTier(int tier, String var) {
+        throw readOnly();
+    }
+
+    @Override
+    public void addToTiersByVarNames(List<String> varNames) {
+        throw readOnly();
+    }
+
+    @Override
+    public void addKnowledgeGroup(KnowledgeGroup group) {
+        throw readOnly();
+    }
+
+    @Override
+    public void addVariable(String varName) {
+        throw readOnly();
+    }
+
+    @Override
+    public void clear() {
+        throw readOnly();
+    }
+
+    @Override
+    public void removeFromTiers(String var) {
+        throw readOnly();
+    }
+
+    @Override
+    public void removeKnowledgeGroup(int index) {
+        throw readOnly();
+    }
+
+    @Override
+    public void removeVariable(String varName) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setForbidden(String var1, String var2) {
+        throw readOnly();
+    }
+
+    @Override
+    public void removeForbidden(String spec1, String spec2) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setRequired(String var1, String var2) {
+        throw readOnly();
+    }
+
+    @Override
+    public void removeRequired(String var1, String var2) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setKnowledgeGroup(int index, KnowledgeGroup group) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setTier(int tier, List<String> vars) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setTierForbiddenWithin(int tier, boolean forbidden) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setDefaultToKnowledgeLayout(boolean defaultToKnowledgeLayout) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setOnlyCanCauseNextTier(int tier, boolean onlyCausesNext) {
+        throw readOnly();
+    }
+
+    //==========================PRIVATE METHODS==========================//
+
+    private void setBits(long[][] bits, List<OrderedPair<Set<String>>> rules, boolean allowSelf) {
+        for (OrderedPair<Set<String>> rule : rules) {
+            List<Integer> from = indicesOf(rule.getFirst());
+            List<Integer> to = indicesOf(rule.getSecond());
+
+            for (int i : from) {
+                for (int j : to) {
+                    if (allowSelf || i != j) {
+                        set(bits, i, j);
+                    }
+                }
+            }
+        }
+    }
+
+    private List<Integer> indicesOf(Set<String> names) {
+        List<Integer> indices = new ArrayList<>(names.size());
+
+        for (String name : names) {
+            Integer index = this.indices.get(name);
+
+            if (index != null) {
+                indices.add(index);
+            }
+        }
+
+        return indices;
+    }
+
+    private static void set(long[][] bits, int i, int j) {
+        bits[i][j >>> 6] |= 1L << j;
+    }
+
+    private static boolean get(long[][] bits, int i, int j) {
+        return (bits[i][j >>> 6] & (1L << j)) != 0;
+    }
+
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("Compiled knowledge is read-only; "
+                + "modify the underlying knowledge and compile it again.");
+    }
+}
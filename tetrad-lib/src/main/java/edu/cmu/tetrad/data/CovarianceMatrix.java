@@ -21,14 +21,17 @@
 package edu.cmu.tetrad.data;
 
 import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.util.ExecutionService;
 import edu.cmu.tetrad.util.NumberFormatUtil;
 import edu.cmu.tetrad.util.TetradAlgebra;
 import edu.cmu.tetrad.util.TetradMatrix;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.nio.DoubleBuffer;
 import java.text.NumberFormat;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
 
 /**
@@ -102,10 +105,17 @@ public class CovarianceMatrix implements ICovarianceMatrix {
             throw new IllegalArgumentException("Not a continuous data set.");
         }
 
-        CovariancesDoubleForkJoin covariances = new CovariancesDoubleForkJoin(dataSet.getDoubleData().toArray(), biasCorrected);
+        DoubleBuffer[] columns = columnViews(dataSet);
+
+        if (columns != null) {
+            this._covariancesMatrix = new TetradMatrix(covariances(columns, dataSet.getNumRows(), biasCorrected));
+        } else {
+            CovariancesDoubleForkJoin covariances = new CovariancesDoubleForkJoin(dataSet.getDoubleData().toArray(), biasCorrected);
+            this._covariancesMatrix = new TetradMatrix(covariances.getMatrix());
+        }
+
         this.variables = Collections.unmodifiableList(dataSet.getVariables());
         this.sampleSize = dataSet.getNumRows();
-        this._covariancesMatrix = new TetradMatrix(covariances.getMatrix());
     }
 
     /**
@@ -510,4 +520,71 @@ public class CovarianceMatrix implements ICovarianceMatrix {
             selectedVariables = new HashSet<>();
         }
     }
+
+    /**
+     * @return views of the columns of the given data set, if its data box stores columns contiguously, or null.
+     */
+    private static DoubleBuffer[] columnViews(DataSet dataSet) {
+        if (!(dataSet instanceof BoxDataSet) || dataSet.getNumColumns() == 0) return null;
+
+        DoubleBuffer[] columns = new DoubleBuffer[dataSet.getNumColumns()];
+
+        for (int j = 0; j < columns.length; j++) {
+            columns[j] = ((BoxDataSet) dataSet).getColumnView(j);
+            if (columns[j] == null) return null;
+        }
+
+        return columns;
+    }
+
+    /**
+     * Calculates covariances directly from column views, one task per column of the lower triangle, so that the data
+     * is never copied into a row-major matrix. Means, running covariances and bias correction are computed as in
+     * RealCovarianceMatrixForkJoin, so the results are the same as for a copy of the data.
+     */
+    private static double[][] covariances(DoubleBuffer[] columns, int n, boolean biasCorrected) {
+        int numCols = columns.length;
+        double[] means = new double[numCols];
+
+        for (int j = 0; j < numCols; j++) {
+            DoubleBuffer column = columns[j];
+            double sum = 0;
+
+            for (int i = 0; i < n; i++) {
+                sum += column.get(i);
+            }
+
+            means[j] = sum / n;
+        }
+
+        double[][] covariances = new double[numCols][numCols];
+        double correction = biasCorrected ? n / (double) (n - 1) : 1.0;
+        List<Callable<Void>> tasks = new ArrayList<>();
+
+        for (int j = 0; j < numCols; j++) {
+            final int col = j;
+
+            tasks.add(() -> {
+                DoubleBuffer x = columns[col];
+
+                for (int col2 = 0; col2 <= col; col2++) {
+                    DoubleBuffer y = columns[col2];
+                    double covariance = 0;
+
+                    for (int i = 0; i < n; i++) {
+                        covariance += ((x.get(i) - means[col]) * (y.get(i) - means[col2]) - covariance) / (i + 1);
+                    }
+
+                    covariances[col][col2] = covariance * correction;
+                    covariances[col2][col] = covariance * correction;
+                }
+
+                return null;
+            });
+        }
+
+        ExecutionService.getInstance().invokeAllAndGet(tasks);
+
+        return covariances;
+    }
 }
@@ -58,6 +58,16 @@ public interface DataBox extends TetradSerializable {
      */
     Number get(int row, int col);
 
+    /**
+     * @return the value at the given row and column as a double, or NaN if
+     * the value is missing. Boxes that store doubles override this to avoid
+     * boxing the value.
+     */
+    default double getDouble(int row, int col) {
+        Number value = get(row, col);
+        return value == null ? Double.NaN : value.doubleValue();
+    }
+
     /**
      * @return a copy of this data box.
      */
@@ -29,6 +29,7 @@ import org.apache.commons.math3.linear.BlockRealMatrix;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.stat.correlation.Covariance;
 
+import java.nio.DoubleBuffer;
 import java.rmi.MarshalledObject;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
@@ -417,9 +418,7 @@ public final class DataUtils {
                 throw new IllegalArgumentException("Not a continuous data set: " + dataSet.getName());
             }
 
-            TetradMatrix data2 = DataUtils.standardizeData(dataSet.getDoubleData());
-
-            DataSet dataSet2 = new BoxDataSet(new VerticalDoubleDataBox(data2.transpose().toArray()), dataSet.getVariables());
+            DataSet dataSet2 = new BoxDataSet(centeredColumns(dataSet, true), dataSet.getVariables());
             outList.add(dataSet2);
         }
 
@@ -513,7 +512,6 @@ public final class DataUtils {
                 throw new IllegalArgumentException("Not a continuous data set: " + dataSet.getName());
             }
 
-            TetradMatrix data2 = DataUtils.centerData(dataSet.getDoubleData());
             List<Node> list = dataSet.getVariables();
             List<Node> list2 = new ArrayList<>();
 
@@ -521,13 +519,69 @@ public final class DataUtils {
                 list2.add(node);
             }
 
-            DataSet dataSet2 = new BoxDataSet(new VerticalDoubleDataBox(data2.transpose().toArray()), list2);
+            DataSet dataSet2 = new BoxDataSet(centeredColumns(dataSet, false), list2);
             outList.add(dataSet2);
         }
 
         return outList;
     }
 
+    /**
+     * @return the columns of the given continuous data set, centered and, if scaled is true, divided by their
+     * standard deviations (n - 1). Columns are read through the data box's column views when it has them, so the
+     * data set is never copied into a row-major matrix.
+     */
+    private static VerticalDoubleDataBox centeredColumns(DataSet dataSet, boolean scaled) {
+        int n = dataSet.getNumRows();
+
+        if (dataSet.getNumColumns() == 0) {
+            return new VerticalDoubleDataBox(n, 0);
+        }
+
+        double[][] columns = new double[dataSet.getNumColumns()][n];
+
+        for (int j = 0; j < columns.length; j++) {
+            double[] column = columns[j];
+            DoubleBuffer view = dataSet instanceof BoxDataSet ? ((BoxDataSet) dataSet).getColumnView(j) : null;
+
+            if (view != null) {
+                view.get(column);
+            } else {
+                for (int i = 0; i < n; i++) {
+                    column[i] = dataSet.getDouble(i, j);
+                }
+            }
+
+            double sum = 0.0;
+
+            for (double d : column) {
+                sum += d;
+            }
+
+            double mean = sum / n;
+
+            for (int i = 0; i < n; i++) {
+                column[i] -= mean;
+            }
+
+            if (scaled) {
+                double norm = 0.0;
+
+                for (double v : column) {
+                    norm += v * v;
+                }
+
+                norm = Math.sqrt(norm / (n - 1));
+
+                for (int i = 0; i < n; i++) {
+                    column[i] /= norm;
+                }
+            }
+        }
+
+        return new VerticalDoubleDataBox(columns);
+    }
+
 
     public static DataSet discretize(DataSet dataSet, int numCategories, boolean variablesCopied) {
         Discretizer discretizer = new Discretizer(dataSet);
@@ -1224,7 +1278,7 @@ public final class DataUtils {
 
         final int NTHREADS = Runtime.getRuntime().availableProcessors();
 
-        ForkJoinPool pool = ForkJoinPoolInstance.getInstance().getPool();
+        ForkJoinPool pool = ExecutionService.getInstance().getPool();
 
         for (int t = 0; t < NTHREADS; t++) {
             final int _t = t;
@@ -1509,6 +1563,59 @@ public final class DataUtils {
                 data.getVariables());
     }
 
+    /**
+     * @return a sample with replacement with the given sample size from the
+     * given dataset. For a BoxDataSet the sample is a view of the selected
+     * rows, so no data is copied.
+     */
+    public static DataSet getBootstrapView(DataSet data, int sampleSize) {
+        if (!(data instanceof BoxDataSet)) {
+            return getBootstrapSample(data, sampleSize);
+        }
+
+        int actualSampleSize = data.getNumRows();
+
+        int[] rows = new int[sampleSize];
+
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = RandomUtil.getInstance().nextInt(actualSampleSize);
+        }
+
+        return new BoxDataSet(new RowSelectionDataBox(((BoxDataSet) data).getDataBox(), rows),
+                data.getVariables());
+    }
+
+    /**
+     * @return a sample without replacement with the given sample size from the
+     * given dataset, or all of the rows in random order if the sample size is
+     * at least the number of rows. For a BoxDataSet the sample is a view of
+     * the selected rows, so no data is copied.
+     */
+    public static DataSet getResamplingView(DataSet data, int sampleSize) {
+        if (!(data instanceof BoxDataSet)) {
+            return getResamplingDataset(data, sampleSize);
+        }
+
+        int actualSampleSize = data.getNumRows();
+        int _size = Math.min(sampleSize, actualSampleSize);
+
+        int[] all = new int[actualSampleSize];
+        for (int i = 0; i < actualSampleSize; i++) all[i] = i;
+
+        // Partial Fisher-Yates shuffle.
+        for (int i = 0; i < _size; i++) {
+            int j = i + RandomUtil.getInstance().nextInt(actualSampleSize - i);
+            int tmp = all[i];
+            all[i] = all[j];
+            all[j] = tmp;
+        }
+
+        int[] rows = Arrays.copyOf(all, _size);
+
+        return new BoxDataSet(new RowSelectionDataBox(((BoxDataSet) data).getDataBox(), rows),
+                data.getVariables());
+    }
+
     /**
      * Subtracts the mean of each column from each datum that column.
      */
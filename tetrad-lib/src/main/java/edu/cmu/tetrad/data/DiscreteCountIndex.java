@@ -0,0 +1,534 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.data;
+
+import edu.cmu.tetrad.graph.Node;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Answers contingency count queries for discrete data. It is built once per
+ * data set and shared by the discrete scores and tests; see getInstance.
+ * <p>
+ * For every discrete variable and category, the index keeps a bitmap of the
+ * rows where the variable takes that category. The counts for a list of
+ * variables are found by intersecting the bitmaps depth first, one variable at
+ * a time, and taking the bit counts of the intersections with the bitmaps of
+ * the last variable. Branches whose intersection is empty are pruned, so
+ * sparse tables are cheap. Rows with a missing value for any of the variables
+ * are in none of the intersections and so are not counted.
+ * <p>
+ * The bitmaps take one bit per row per category. Variables are indexed in
+ * order until the memory cap is reached. Queries involving variables without
+ * bitmaps, or whose tables are so large that the intersections would cost more
+ * than a pass over the data, are answered by scanning the data instead.
+ * <p>
+ * getCounts returns a dense table. Queries whose tables may be much larger than
+ * the number of rows should use forEachCount, which visits only the nonzero
+ * cells and never allocates the full table above MAX_DENSE_CELLS cells.
+ * <p>
+ * The index is immutable after construction and may be queried concurrently.
+ */
+public final class DiscreteCountIndex {
+
+    // Relative cost of looking at one value of one row when scanning, in units
+    // of one 64-row word operation on the bitmaps.
+    private static final int SCAN_COST = 4;
+
+    /**
+     * Tables with more cells than this are not allocated by forEachCount; their
+     * nonzero cells are found by sorting the cell indices of the rows instead.
+     */
+    public static final int MAX_DENSE_CELLS = 1 << 20;
+
+    // The shared indices, one per data set, held until their data sets are
+    // collected. All of them together use at most a quarter of the heap for
+    // bitmaps.
+    private static final Map<DataSet, DiscreteCountIndex> INSTANCES = new WeakHashMap<>();
+
+    /**
+     * Visits the nonzero cells of a contingency table.
+     */
+    public interface CountVisitor {
+
+        /**
+         * @param cell  The index of the cell, with the category of the last
+         *              variable varying fastest.
+         * @param count The number of rows in the cell, which is positive.
+         */
+        void visit(long cell, int count);
+    }
+
+    /**
+     * Visits the rows of a conditional table.
+     */
+    public interface RowVisitor {
+
+        /**
+         * @param row    The index of the combination of categories of all
+         *               but the last variable.
+         * @param counts The counts of the categories of the last variable in
+         *               that row, not all zero. The array is reused from one
+         *               row to the next.
+         */
+        void visit(long row, int[] counts);
+    }
+
+    // The data, column by column.
+    private final int[][] data;
+
+    // The number of categories of each variable, 0 if not discrete.
+    private final int[] dims;
+
+    // bitmaps[v][c] has bit i set iff data[v][i] == c; null if v is not indexed.
+    private final long[][][] bitmaps;
+
+    private final int sampleSize;
+    private final int numWords;
+
+    // The number of bytes used by the bitmaps.
+    private final long memory;
+
+    // A hash of the data, to tell whether the data set behind a shared index
+    // has been changed.
+    private final long fingerprint;
+
+    /**
+     * Returns the shared index for the given data set, building it if there is
+     * none or if the data have changed since it was built. The bitmaps of all
+     * shared indices together take at most a quarter of the maximum heap size;
+     * variables that do not fit are answered by scanning.
+     */
+    public static DiscreteCountIndex getInstance(DataSet dataSet) {
+        int[][] columns = getColumns(dataSet);
+        int[] dims = getDims(dataSet.getVariables());
+        long fingerprint = fingerprint(columns, dims, dataSet.getNumRows());
+
+        synchronized (INSTANCES) {
+            DiscreteCountIndex index = INSTANCES.get(dataSet);
+
+            if (index != null && index.fingerprint == fingerprint) {
+                return index;
+            }
+
+            INSTANCES.remove(dataSet);
+            long used = 0;
+
+            for (DiscreteCountIndex other : INSTANCES.values()) {
+                used += other.memory;
+            }
+
+            long available = Math.max(0, Runtime.getRuntime().maxMemory() / 4 - used);
+            index = new DiscreteCountIndex(columns, dims, dataSet.getNumRows(), available);
+            INSTANCES.put(dataSet, index);
+            return index;
+        }
+    }
+
+    /**
+     * Constructs an index for the discrete variables of the given data set.
+     *
+     * @param maxMemory The maximum number of bytes to use for the bitmaps.
+     */
+    public DiscreteCountIndex(DataSet dataSet, long maxMemory) {
+        this(getColumns(dataSet), getDims(dataSet.getVariables()), dataSet.getNumRows(), maxMemory);
+    }
+
+    /**
+     * Constructs an index for the given data.
+     *
+     * @param data      The data, column by column. Missing values are
+     *                  DiscreteVariable.MISSING_VALUE.
+     * @param dims      The number of categories of each column, 0 for columns
+     *                  that are not discrete.
+     * @param maxMemory The maximum number of bytes to use for the bitmaps.
+     */
+    public DiscreteCountIndex(int[][] data, int[] dims, int sampleSize, long maxMemory) {
+        if (data.length != dims.length) {
+            throw new IllegalArgumentException("Expecting one dimension per column.");
+        }
+
+        this.data = data;
+        this.dims = dims;
+        this.sampleSize = sampleSize;
+        this.numWords = (sampleSize + 63) / 64;
+        this.bitmaps = new long[data.length][][];
+
+        long memory = 0;
+
+        for (int v = 0; v < data.length; v++) {
+            if (dims[v] <= 0) {
+                continue;
+            }
+
+            if (memory + 8L * dims[v] * numWords > maxMemory) {
+                break;
+            }
+
+            memory += 8L * dims[v] * numWords;
+
+            long[][] _bitmaps = new long[dims[v]][numWords];
+            int[] column = data[v];
+
+            for (int i = 0; i < sampleSize; i++) {
+                int category = column[i];
+
+                if (category >= 0 && category < dims[v]) {
+                    _bitmaps[category][i >> 6] |= 1L << i;
+                }
+            }
+
+            bitmaps[v] = _bitmaps;
+        }
+
+        this.memory = memory;
+        this.fingerprint = fingerprint(data, dims, sampleSize);
+    }
+
+    /**
+     * Counts the rows for every combination of categories of the given
+     * variables, skipping rows with missing values for any of them.
+     *
+     * @param vars Indices of discrete variables.
+     * @return The counts, indexed the same way as MultiDimIntTable cells:
+     * the category of the last variable varies fastest.
+     */
+    public int[] getCounts(int[] vars) {
+        int[] _dims = getDims(vars);
+        long size = getSize(_dims);
+
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Contingency table is too large: " + size + " cells.");
+        }
+
+        int[] counts = new int[(int) size];
+
+        if (vars.length == 0) {
+            counts[0] = sampleSize;
+        } else if (isBitmapCheaper(vars, _dims)) {
+            countIntersections(vars, _dims, (cell, count) -> counts[(int) cell] = count);
+        } else {
+            countRows(vars, _dims, counts);
+        }
+
+        return counts;
+    }
+
+    /**
+     * Visits the nonzero cells of the contingency table of the given
+     * variables, in increasing order of cell index, skipping rows with missing
+     * values for any of them. Unlike getCounts, this does not allocate the
+     * table if it has more than MAX_DENSE_CELLS cells, so it may be used for
+     * tables much larger than the number of rows.
+     *
+     * @param vars Indices of discrete variables.
+     */
+    public void forEachCount(int[] vars, CountVisitor visitor) {
+        int[] _dims = getDims(vars);
+        long size = getSize(_dims);
+
+        if (vars.length == 0) {
+            if (sampleSize > 0) visitor.visit(0, sampleSize);
+        } else if (isBitmapCheaper(vars, _dims)) {
+            countIntersections(vars, _dims, visitor);
+        } else if (size <= MAX_DENSE_CELLS) {
+            int[] counts = new int[(int) size];
+            countRows(vars, _dims, counts);
+
+            for (int cell = 0; cell < counts.length; cell++) {
+                if (counts[cell] > 0) visitor.visit(cell, counts[cell]);
+            }
+        } else {
+            countSortedRows(vars, _dims, visitor);
+        }
+    }
+
+    /**
+     * Visits the rows of the conditional table of the last of the given
+     * variables given the others that have any counts, in increasing order.
+     * Like forEachCount, this does not allocate the whole table when it is
+     * large.
+     *
+     * @param vars Indices of discrete variables, at least one.
+     */
+    public void forEachRow(int[] vars, RowVisitor visitor) {
+        int c = getNumCategories(vars[vars.length - 1]);
+        int[] counts = new int[c];
+        long[] row = {-1};
+
+        forEachCount(vars, (cell, count) -> {
+            if (cell / c != row[0]) {
+                if (row[0] != -1) {
+                    visitor.visit(row[0], counts);
+                    Arrays.fill(counts, 0);
+                }
+
+                row[0] = cell / c;
+            }
+
+            counts[(int) (cell % c)] = count;
+        });
+
+        if (row[0] != -1) {
+            visitor.visit(row[0], counts);
+        }
+    }
+
+    /**
+     * @return The number of rows.
+     */
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    /**
+     * @return The number of categories of the given variable, 0 if it is not
+     * discrete.
+     */
+    public int getNumCategories(int var) {
+        return dims[var];
+    }
+
+    //==============================PRIVATE METHODS=======================//
+
+    private int[] getDims(int[] vars) {
+        int[] _dims = new int[vars.length];
+
+        for (int p = 0; p < vars.length; p++) {
+            _dims[p] = dims[vars[p]];
+
+            if (_dims[p] <= 0) {
+                throw new IllegalArgumentException("Not a discrete variable: column " + vars[p]);
+            }
+        }
+
+        return _dims;
+    }
+
+    private static long getSize(int[] _dims) {
+        long size = 1;
+
+        for (int _dim : _dims) {
+            if (size > Long.MAX_VALUE / _dim) {
+                throw new IllegalArgumentException("Contingency table is too large.");
+            }
+
+            size *= _dim;
+        }
+
+        return size;
+    }
+
+    private boolean isBitmapCheaper(int[] vars, int[] _dims) {
+        for (int var : vars) {
+            if (bitmaps[var] == null) {
+                return false;
+            }
+        }
+
+        // Upper bound on the number of bitmap operations, before pruning.
+        long numIntersections = 0;
+        long numPrefixes = 1;
+
+        for (int _dim : _dims) {
+            numPrefixes *= _dim;
+            numIntersections += numPrefixes;
+
+            if (numIntersections * numWords > (long) SCAN_COST * sampleSize * vars.length) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void countIntersections(int[] vars, int[] _dims, CountVisitor visitor) {
+        long[][] scratch = new long[vars.length - 1][numWords];
+        countIntersections(vars, _dims, 0, null, 0, scratch, visitor);
+    }
+
+    private void countIntersections(int[] vars, int[] _dims, int depth, long[] mask, long prefix,
+                                    long[][] scratch, CountVisitor visitor) {
+        long[][] _bitmaps = bitmaps[vars[depth]];
+        long offset = prefix * _dims[depth];
+
+        if (depth == vars.length - 1) {
+            for (int c = 0; c < _dims[depth]; c++) {
+                int count = mask == null ? cardinality(_bitmaps[c]) : andCardinality(mask, _bitmaps[c]);
+                if (count > 0) visitor.visit(offset + c, count);
+            }
+
+            return;
+        }
+
+        long[] next = scratch[depth];
+
+        for (int c = 0; c < _dims[depth]; c++) {
+            int cardinality;
+
+            if (mask == null) {
+                System.arraycopy(_bitmaps[c], 0, next, 0, numWords);
+                cardinality = cardinality(next);
+            } else {
+                cardinality = and(mask, _bitmaps[c], next);
+            }
+
+            if (cardinality > 0) {
+                countIntersections(vars, _dims, depth + 1, next, offset + c, scratch, visitor);
+            }
+        }
+    }
+
+    private void countRows(int[] vars, int[] _dims, int[] counts) {
+        int[][] columns = new int[vars.length][];
+
+        for (int p = 0; p < vars.length; p++) {
+            columns[p] = data[vars[p]];
+        }
+
+        ROW:
+        for (int i = 0; i < sampleSize; i++) {
+            int index = 0;
+
+            for (int p = 0; p < vars.length; p++) {
+                int category = columns[p][i];
+                if (category == DiscreteVariable.MISSING_VALUE) continue ROW;
+                index = index * _dims[p] + category;
+            }
+
+            counts[index]++;
+        }
+    }
+
+    // For tables too large to allocate: sorts the cell indices of the rows
+    // and visits the runs of equal indices.
+    private void countSortedRows(int[] vars, int[] _dims, CountVisitor visitor) {
+        long[] cells = new long[sampleSize];
+        int numCells = 0;
+
+        ROW:
+        for (int i = 0; i < sampleSize; i++) {
+            long cell = 0;
+
+            for (int p = 0; p < vars.length; p++) {
+                int category = data[vars[p]][i];
+                if (category == DiscreteVariable.MISSING_VALUE) continue ROW;
+                cell = cell * _dims[p] + category;
+            }
+
+            cells[numCells++] = cell;
+        }
+
+        Arrays.sort(cells, 0, numCells);
+
+        for (int i = 0; i < numCells; ) {
+            int j = i + 1;
+            while (j < numCells && cells[j] == cells[i]) j++;
+            visitor.visit(cells[i], j - i);
+            i = j;
+        }
+    }
+
+    private static long fingerprint(int[][] data, int[] dims, int sampleSize) {
+        long hash = sampleSize;
+
+        for (int v = 0; v < data.length; v++) {
+            hash = 31 * hash + dims[v];
+            if (dims[v] <= 0 || data[v] == null) continue;
+
+            for (int i = 0; i < sampleSize; i++) {
+                hash = 31 * hash + data[v][i];
+            }
+        }
+
+        return hash;
+    }
+
+    private int cardinality(long[] bits) {
+        int cardinality = 0;
+
+        for (int w = 0; w < numWords; w++) {
+            cardinality += Long.bitCount(bits[w]);
+        }
+
+        return cardinality;
+    }
+
+    private int andCardinality(long[] a, long[] b) {
+        int cardinality = 0;
+
+        for (int w = 0; w < numWords; w++) {
+            cardinality += Long.bitCount(a[w] & b[w]);
+        }
+
+        return cardinality;
+    }
+
+    private int and(long[] a, long[] b, long[] result) {
+        int cardinality = 0;
+
+        for (int w = 0; w < numWords; w++) {
+            long word = a[w] & b[w];
+            result[w] = word;
+            cardinality += Long.bitCount(word);
+        }
+
+        return cardinality;
+    }
+
+    private static int[][] getColumns(DataSet dataSet) {
+        if (dataSet instanceof BoxDataSet && ((BoxDataSet) dataSet).getDataBox() instanceof VerticalIntDataBox) {
+            return ((VerticalIntDataBox) ((BoxDataSet) dataSet).getDataBox()).getVariableVectors();
+        }
+
+        int[][] data = new int[dataSet.getNumColumns()][];
+
+        for (int j = 0; j < dataSet.getNumColumns(); j++) {
+            if (!(dataSet.getVariable(j) instanceof DiscreteVariable)) {
+                continue;
+            }
+
+            data[j] = new int[dataSet.getNumRows()];
+
+            for (int i = 0; i < dataSet.getNumRows(); i++) {
+                data[j][i] = dataSet.getInt(i, j);
+            }
+        }
+
+        return data;
+    }
+
+    private static int[] getDims(List<Node> variables) {
+        int[] dims = new int[variables.size()];
+
+        for (int j = 0; j < variables.size(); j++) {
+            if (variables.get(j) instanceof DiscreteVariable) {
+                dims[j] = ((DiscreteVariable) variables.get(j)).getNumCategories();
+            }
+        }
+
+        return dims;
+    }
+}
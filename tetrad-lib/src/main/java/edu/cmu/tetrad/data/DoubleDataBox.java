@@ -137,6 +137,15 @@ public class DoubleDataBox implements DataBox {
         }
     }
 
+    /**
+     * @return the double value at the given row and column, without boxing;
+     * Double.NaN if missing.
+     */
+    @Override
+    public double getDouble(int row, int col) {
+        return data[row][col];
+    }
+
     /**
      * @return a copy of this data box.
      */
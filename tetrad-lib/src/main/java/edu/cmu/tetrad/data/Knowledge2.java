@@ -207,6 +207,28 @@ public final class Knowledge2 implements TetradSerializable, IKnowledge {
         return rules;
     }
 
+    /**
+     * @return the explicit rules forbidding edges; used by CompiledKnowledge.
+     */
+    List<OrderedPair<Set<String>>> getForbiddenRules() {
+        return new ArrayList<>(forbiddenRulesSpecs);
+    }
+
+    /**
+     * @return the rules forbidding edges implied by the tiers; used by
+     * CompiledKnowledge.
+     */
+    List<OrderedPair<Set<String>>> getForbiddenTierRules() {
+        return new ArrayList<>(forbiddenTierRules());
+    }
+
+    /**
+     * @return the rules requiring edges; used by CompiledKnowledge.
+     */
+    List<OrderedPair<Set<String>>> getRequiredRules() {
+        return new ArrayList<>(requiredRulesSpecs);
+    }
+
     /**
      * Adds the given variable or wildcard pattern to the given tier. The tier
      * is a non-negative integer.
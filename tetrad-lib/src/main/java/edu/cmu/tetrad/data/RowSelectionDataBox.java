@@ -0,0 +1,201 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.data;
+
+import edu.cmu.tetrad.graph.Node;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A view of selected rows of another data box: row i of the view is row
+ * rows[i] of the underlying box, so that resamples of a data set can be taken
+ * without copying the data. Rows may be selected more than once. The first
+ * call to set() copies the selected rows, so writes never reach the
+ * underlying box.
+ */
+public class RowSelectionDataBox implements DataBox {
+    static final long serialVersionUID = 23L;
+
+    /**
+     * The underlying data box and the selected rows of it, or the private copy
+     * once written to, with null rows. Replaced as a whole, so that get() sees
+     * either the view or the copy, never a mix of the two.
+     */
+    private volatile Selection selection;
+
+    /**
+     * The number of rows (tracked because the selection is dropped on copy).
+     */
+    private final int numRows;
+
+    /**
+     * Constructs a view of the given rows of the given data box.
+     */
+    public RowSelectionDataBox(DataBox dataBox, int[] rows) {
+        if (dataBox == null) {
+            throw new NullPointerException("Data box not provided.");
+        }
+
+        for (int row : rows) {
+            if (row < 0 || row >= dataBox.numRows()) {
+                throw new IllegalArgumentException("Row out of range: " + row);
+            }
+        }
+
+        this.selection = new Selection(dataBox, rows);
+        this.numRows = rows.length;
+    }
+
+    /**
+     * Generates a simple exemplar of this class to test serialization.
+     */
+    public static BoxDataSet serializableInstance() {
+        List<Node> vars = new ArrayList<>();
+        for (int i = 0; i < 4; i++) vars.add(new ContinuousVariable("X" + i));
+        return new BoxDataSet(new RowSelectionDataBox(new ShortDataBox(4, 4), new int[]{0, 0, 2, 3}), vars);
+    }
+
+    /**
+     * @return the number of rows in this data box.
+     */
+    public int numRows() {
+        return numRows;
+    }
+
+    /**
+     * @return the number of columns in this data box.
+     */
+    public int numCols() {
+        return selection.dataBox.numCols();
+    }
+
+    /**
+     * Sets the value at the given row/column to the given Number value,
+     * copying the selected rows first if this is the first write.
+     */
+    public synchronized void set(int row, int col, Number value) {
+        Selection selection = this.selection;
+
+        if (selection.rows != null) {
+            selection = new Selection(selection.dataBox.viewSelection(selection.rows, allColumns()), null);
+            this.selection = selection;
+        }
+
+        selection.dataBox.set(row, col, value);
+    }
+
+    /**
+     * @return the Number value at the given row and column.
+     */
+    public Number get(int row, int col) {
+        Selection selection = this.selection;
+        return selection.rows == null
+                ? selection.dataBox.get(row, col)
+                : selection.dataBox.get(selection.rows[row], col);
+    }
+
+    /**
+     * @return a copy of this data box, not backed by the underlying box.
+     */
+    public DataBox copy() {
+        Selection selection = this.selection;
+        return selection.rows == null
+                ? selection.dataBox.copy()
+                : selection.dataBox.viewSelection(selection.rows, allColumns());
+    }
+
+    /**
+     * @return a data box of the type of the underlying box, with the same
+     * dimensions as this one and all values missing.
+     */
+    public DataBox like() {
+        DataBox like = selection.dataBox.viewSelection(new int[numRows], allColumns());
+
+        for (int i = 0; i < like.numRows(); i++) {
+            for (int j = 0; j < like.numCols(); j++) {
+                like.set(i, j, null);
+            }
+        }
+
+        return like;
+    }
+
+    /**
+     * @return this data box, restricted to the given rows and columns. A
+     * selection of rows only is again a view of the underlying box.
+     */
+    @Override
+    public DataBox viewSelection(int[] rows, int[] cols) {
+        Selection selection = this.selection;
+        int[] _rows = new int[rows.length];
+
+        for (int i = 0; i < rows.length; i++) {
+            _rows[i] = selection.rows == null ? rows[i] : selection.rows[rows[i]];
+        }
+
+        if (selection.rows != null && isAllColumns(cols)) {
+            return new RowSelectionDataBox(selection.dataBox, _rows);
+        }
+
+        return selection.dataBox.viewSelection(_rows, cols);
+    }
+
+    /**
+     * @return The underlying data box, or the private copy if this box has
+     * been written to.
+     */
+    public DataBox getDataBox() {
+        return selection.dataBox;
+    }
+
+    private int[] allColumns() {
+        int[] cols = new int[numCols()];
+        for (int j = 0; j < cols.length; j++) cols[j] = j;
+        return cols;
+    }
+
+    private boolean isAllColumns(int[] cols) {
+        if (cols.length != numCols()) {
+            return false;
+        }
+
+        for (int j = 0; j < cols.length; j++) {
+            if (cols[j] != j) return false;
+        }
+
+        return true;
+    }
+
+    private static final class Selection implements Serializable {
+        static final long serialVersionUID = 23L;
+
+        private final DataBox dataBox;
+        private final int[] rows;
+
+        private Selection(DataBox dataBox, int[] rows) {
+            this.dataBox = dataBox;
+            this.rows = rows;
+        }
+    }
+}
@@ -23,6 +23,7 @@ package edu.cmu.tetrad.data;
 
 import edu.cmu.tetrad.graph.Node;
 
+import java.nio.DoubleBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -31,7 +32,7 @@ import java.util.List;
  *
  * @author Joseph Ramsey
  */
-public class VerticalDoubleDataBox implements DataBox {
+public class VerticalDoubleDataBox implements ColumnDataBox {
     static final long serialVersionUID = 23L;
 
     /**
@@ -91,7 +92,7 @@ public class VerticalDoubleDataBox implements DataBox {
 
         for (int i = 0; i < dataBox.numRows(); i++) {
             for (int j = 0; j < dataBox.numCols(); j++) {
-                data[j][i] = dataBox.get(i, j).doubleValue();
+                data[j][i] = dataBox.getDouble(i, j);
             }
         }
 
@@ -146,6 +147,22 @@ public class VerticalDoubleDataBox implements DataBox {
         return data[col][row];
     }
 
+    /**
+     * @return the double value at the given row and column, without boxing.
+     */
+    @Override
+    public double getDouble(int row, int col) {
+        return data[col][row];
+    }
+
+    /**
+     * @return a read-only view of the given column, without copying.
+     */
+    @Override
+    public DoubleBuffer getColumn(int col) {
+        return DoubleBuffer.wrap(data[col]).asReadOnlyBuffer();
+    }
+
     public double[][] getVariableVectors() {
         if (numCols == 0 || numRows == 0) {
             return new double[0][0];
@@ -0,0 +1,348 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.graph;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Answers d-separation questions about a fixed graph, giving the same answers as GraphUtils.isDConnectedTo but
+ * much faster when many questions are asked of the same graph, as for an oracle independence test. Nodes are
+ * given integer indices and edges are held in flat arrays, the ancestors of each node are computed once (on first
+ * use) as a bitset, the breadth first search reuses per-thread work arrays, and answers are remembered, so a
+ * repeated question costs a hash lookup.
+ * <p>
+ * The graph is read when the oracle is constructed; later changes to it are not seen. Safe to use from several
+ * threads.
+ *
+ * @see GraphUtils#isDConnectedTo(Node, Node, List, Graph)
+ */
+public final class DSeparationOracle {
+
+    /**
+     * The default maximum number of answers to remember.
+     */
+    public static final int DEFAULT_MAX_CACHED = 1000000;
+
+    // The graph.
+    private final Graph graph;
+
+    // Node indices.
+    private final Map<Node, Integer> indices = new HashMap<>();
+
+    // The edges at node i occupy slots offsets[i] to offsets[i + 1] - 1; for slot s, neighbor[s] is the other node,
+    // owner[s] is i, and near[s] and far[s] are the endpoints at i and at the other node.
+    private final int[] offsets;
+    private final int[] neighbor;
+    private final int[] owner;
+    private final Endpoint[] near;
+    private final Endpoint[] far;
+
+    // Underlined triples (a, b, c), both ways around, keyed as (a * n + b) * n + c.
+    private final Set<Long> underlines = new HashSet<>();
+
+    // ancestors.get(i) is the set of ancestors of node i, including i, as a bitset.
+    private final AtomicReferenceArray<long[]> ancestors;
+
+    // Remembered answers.
+    private final ConcurrentMap<Query, Boolean> answers = new ConcurrentHashMap<>();
+
+    // The maximum number of answers to remember.
+    private final int maxCached;
+
+    // Work arrays for the search.
+    private final ThreadLocal<Work> work;
+
+    public DSeparationOracle(Graph graph) {
+        this(graph, DEFAULT_MAX_CACHED);
+    }
+
+    /**
+     * @param graph     The graph, which is read now.
+     * @param maxCached The maximum number of answers to remember; when this is exceeded the remembered answers are
+     *                  dropped.
+     */
+    public DSeparationOracle(Graph graph, int maxCached) {
+        if (graph == null) throw new NullPointerException("Graph not specified.");
+        if (maxCached < 0) throw new IllegalArgumentException("Max cached must be >= 0: " + maxCached);
+
+        this.graph = graph;
+        this.maxCached = maxCached;
+
+        List<Node> nodes = graph.getNodes();
+        int n = nodes.size();
+
+        for (int i = 0; i < n; i++) {
+            indices.put(nodes.get(i), i);
+        }
+
+        this.offsets = new int[n + 1];
+        List<List<Edge>> edges = new ArrayList<>();
+
+        for (int i = 0; i < n; i++) {
+            List<Edge> _edges = graph.getEdges(nodes.get(i));
+            if (_edges == null) _edges = Collections.emptyList();
+            edges.add(_edges);
+            offsets[i + 1] = offsets[i] + _edges.size();
+        }
+
+        int numSlots = offsets[n];
+        this.neighbor = new int[numSlots];
+        this.owner = new int[numSlots];
+        this.near = new Endpoint[numSlots];
+        this.far = new Endpoint[numSlots];
+
+        for (int i = 0; i < n; i++) {
+            Node node = nodes.get(i);
+            int s = offsets[i];
+
+            for (Edge edge : edges.get(i)) {
+                neighbor[s] = indices.get(edge.getDistalNode(node));
+                owner[s] = i;
+                near[s] = edge.getProximalEndpoint(node);
+                far[s] = edge.getDistalEndpoint(node);
+                s++;
+            }
+        }
+
+        for (Triple triple : graph.getUnderLines()) {
+            Integer a = indices.get(triple.getX());
+            Integer b = indices.get(triple.getY());
+            Integer c = indices.get(triple.getZ());
+            if (a == null || b == null || c == null) continue;
+            underlines.add(tripleKey(a, b, c, n));
+            underlines.add(tripleKey(c, b, a, n));
+        }
+
+        this.ancestors = new AtomicReferenceArray<>(n);
+        this.work = ThreadLocal.withInitial(() -> new Work(numSlots, n));
+    }
+
+    /**
+     * @return the graph.
+     */
+    public Graph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @return true iff x is d-connected to y given z.
+     * @throws IllegalArgumentException if x, y or some node in z is not in the graph.
+     */
+    public boolean isDConnectedTo(Node x, Node y, List<Node> z) {
+        int _x = index(x);
+        int _y = index(y);
+        int[] _z = new int[z.size()];
+
+        for (int i = 0; i < z.size(); i++) {
+            _z[i] = index(z.get(i));
+        }
+
+        if (maxCached == 0) {
+            return isDConnectedTo(_x, _y, _z);
+        }
+
+        // D-connection is symmetric in x and y and does not depend on the order of z.
+        int[] key = new int[_z.length + 2];
+        key[0] = Math.min(_x, _y);
+        key[1] = Math.max(_x, _y);
+        System.arraycopy(_z, 0, key, 2, _z.length);
+        Arrays.sort(key, 2, key.length);
+        Query query = new Query(key);
+
+        Boolean answer = answers.get(query);
+
+        if (answer == null) {
+            answer = isDConnectedTo(_x, _y, _z);
+
+            if (answers.size() >= maxCached) {
+                answers.clear();
+            }
+
+            answers.put(query, answer);
+        }
+
+        return answer;
+    }
+
+    /**
+     * @return true iff x is d-separated from y given z.
+     * @throws IllegalArgumentException if x, y or some node in z is not in the graph.
+     */
+    public boolean isDSeparatedFrom(Node x, Node y, List<Node> z) {
+        return !isDConnectedTo(x, y, z);
+    }
+
+    //===============================PRIVATE METHODS==========================//
+
+    private int index(Node node) {
+        Integer i = indices.get(node);
+        if (i == null) throw new IllegalArgumentException("Not a node in the graph: " + node);
+        return i;
+    }
+
+    // Breadth first over (edge, node we came from) pairs, as in GraphUtils.
+    private boolean isDConnectedTo(int x, int y, int[] z) {
+        if (x == y) return true;
+
+        Work w = work.get();
+        int stamp = w.nextStamp();
+        int[] visited = w.visited;
+        int[] queue = w.queue;
+        long[] inZ = w.inZ;
+        long[] zAncestors = w.zAncestors;
+
+        Arrays.fill(inZ, 0L);
+        Arrays.fill(zAncestors, 0L);
+
+        for (int _z : z) {
+            inZ[_z >> 6] |= 1L << _z;
+            long[] a = ancestors(_z);
+            for (int i = 0; i < a.length; i++) zAncestors[i] |= a[i];
+        }
+
+        int n = offsets.length - 1;
+        boolean hasUnderlines = !underlines.isEmpty();
+        int head = 0, tail = 0;
+
+        for (int s = offsets[x]; s < offsets[x + 1]; s++) {
+            if (neighbor[s] == y) return true;
+            visited[s] = stamp;
+            queue[tail++] = s;
+        }
+
+        while (head < tail) {
+            int s1 = queue[head++];
+            int a = owner[s1];
+            int b = neighbor[s1];
+            boolean arrowAtB = far[s1] == Endpoint.ARROW;
+            boolean bInZ = (inZ[b >> 6] & (1L << b)) != 0;
+            boolean bAncestor = (zAncestors[b >> 6] & (1L << b)) != 0;
+
+            for (int s2 = offsets[b]; s2 < offsets[b + 1]; s2++) {
+                int c = neighbor[s2];
+                if (c == a) continue;
+
+                boolean collider = arrowAtB && near[s2] == Endpoint.ARROW;
+                boolean reachable;
+
+                if ((!collider || (hasUnderlines && underlines.contains(tripleKey(a, b, c, n)))) && !bInZ) {
+                    reachable = true;
+                } else {
+                    reachable = collider && bAncestor;
+                }
+
+                if (!reachable) continue;
+                if (c == y) return true;
+
+                if (visited[s2] != stamp) {
+                    visited[s2] = stamp;
+                    queue[tail++] = s2;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    // The ancestors of node i, including i, computed on first use.
+    private long[] ancestors(int i) {
+        long[] a = ancestors.get(i);
+        if (a != null) return a;
+
+        int n = offsets.length - 1;
+        a = new long[(n + 63) >> 6];
+        int[] queue = new int[n];
+        int head = 0, tail = 0;
+
+        a[i >> 6] |= 1L << i;
+        queue[tail++] = i;
+
+        while (head < tail) {
+            int t = queue[head++];
+
+            for (int s = offsets[t]; s < offsets[t + 1]; s++) {
+                if (near[s] != Endpoint.ARROW || far[s] != Endpoint.TAIL) continue;
+                int p = neighbor[s];
+
+                if ((a[p >> 6] & (1L << p)) == 0) {
+                    a[p >> 6] |= 1L << p;
+                    queue[tail++] = p;
+                }
+            }
+        }
+
+        ancestors.compareAndSet(i, null, a);
+        return ancestors.get(i);
+    }
+
+    private static long tripleKey(int a, int b, int c, int n) {
+        return ((long) a * n + b) * n + c;
+    }
+
+    // Per-thread work arrays. A slot has been visited in the current search iff its entry in visited is the
+    // current stamp, so visited need not be cleared between searches.
+    private static final class Work {
+        final int[] visited;
+        final int[] queue;
+        final long[] inZ;
+        final long[] zAncestors;
+        int stamp = 0;
+
+        Work(int numSlots, int numNodes) {
+            visited = new int[numSlots];
+            queue = new int[numSlots];
+            inZ = new long[(numNodes + 63) >> 6];
+            zAncestors = new long[(numNodes + 63) >> 6];
+        }
+
+        int nextStamp() {
+            if (++stamp == Integer.MAX_VALUE) {
+                Arrays.fill(visited, 0);
+                stamp = 1;
+            }
+
+            return stamp;
+        }
+    }
+
+    // A question, as {min(x, y), max(x, y), sorted z}.
+    private static final class Query {
+        private final int[] key;
+        private final int hash;
+
+        Query(int[] key) {
+            this.key = key;
+            this.hash = Arrays.hashCode(key);
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object o) {
+            return o instanceof Query && Arrays.equals(key, ((Query) o).key);
+        }
+    }
+}
@@ -24,7 +24,7 @@ import edu.cmu.tetrad.data.DataSet;
 import edu.cmu.tetrad.graph.Edge.Property;
 import edu.cmu.tetrad.graph.EdgeTypeProbability.EdgeType;
 import edu.cmu.tetrad.util.ChoiceGenerator;
-import edu.cmu.tetrad.util.ForkJoinPoolInstance;
+import edu.cmu.tetrad.util.ExecutionService;
 import edu.cmu.tetrad.util.JsonUtils;
 import edu.cmu.tetrad.util.PointXy;
 import edu.cmu.tetrad.util.RandomUtil;
@@ -60,6 +60,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.RecursiveTask;
 import java.util.regex.Matcher;
 import nu.xom.Builder;
@@ -3892,11 +3893,11 @@ public final class GraphUtils {
         List<Edge> edges = new ArrayList<>(edgeSet);
 
 //        System.out.println("Finding pool");
-        ForkJoinPoolInstance pool = ForkJoinPoolInstance.getInstance();
+        ForkJoinPool pool = ExecutionService.getInstance().getPool();
 
 //        System.out.println("Starting count task");
         CountTask task = new CountTask(500, 0, edges.size(), edges, leftGraph, topGraph, new int[1]);
-        Counts counts = pool.getPool().invoke(task);
+        Counts counts = pool.invoke(task);
 
 //        System.out.println("Finishing count task");
         return counts.countArray();
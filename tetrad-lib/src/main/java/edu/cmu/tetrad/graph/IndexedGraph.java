@@ -0,0 +1,1636 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.graph;
+
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * <p>A graph for use in search that gives each node an integer index and
+ * stores, for each node, arrays of adjacent node indices, incident edges and
+ * endpoint codes. A primitive hash from ordered index pairs to adjacency
+ * positions makes adjacency, edge and endpoint lookups constant time, and
+ * none of the single-pair queries (isAdjacentTo, getEdge, getEndpoint,
+ * isDefCollider, isParentOf, ...) allocate. Methods taking int indices are
+ * provided for inner loops that want to avoid Node hashing altogether.</p>
+ *
+ * <p>At most one edge is allowed between any pair of nodes, and edges from a
+ * node to itself are not allowed, as for EdgeListGraphSingleConnections. Edge
+ * objects are stored as given, so edge properties and colors are kept.
+ * Reads are not synchronized; they may run concurrently with one another but
+ * not with modifications. Convert to and from EdgeListGraph with the copy
+ * constructors of either class.</p>
+ *
+ * @see EdgeListGraph
+ */
+public class IndexedGraph implements Graph, TripleClassifier {
+    static final long serialVersionUID = 23L;
+
+    // Endpoint codes are one plus the index of the endpoint in Endpoint.TYPES; 0 means no edge.
+    private static final byte TAIL = code(Endpoint.TAIL);
+    private static final byte ARROW = code(Endpoint.ARROW);
+    private static final byte CIRCLE = code(Endpoint.CIRCLE);
+
+    /**
+     * The nodes of the graph; the index of a node is its position in this list.
+     *
+     * @serial
+     */
+    private List<Node> nodes = new ArrayList<>();
+
+    /**
+     * Map from nodes to their indices.
+     *
+     * @serial
+     */
+    private Map<Node, Integer> indices = new HashMap<>();
+
+    /**
+     * A hash from node names to nodes.
+     *
+     * @serial
+     */
+    private Map<String, Node> namesHash = new HashMap<>();
+
+    // adjacent[i][k] is the index of the k'th node adjacent to node i, for k < degree[i].
+    private int[][] adjacent = new int[0][];
+
+    // edges[i][k] is the edge between node i and node adjacent[i][k].
+    private Edge[][] edges = new Edge[0][];
+
+    // near[i][k] is the endpoint code at node i of edges[i][k]; far[i][k] is the code at the other end.
+    private byte[][] near = new byte[0][];
+    private byte[][] far = new byte[0][];
+
+    private int[] degree = new int[0];
+
+    // Maps the ordered index pair (i, j) to the position of j in i's adjacency arrays.
+    private PositionMap positions = new PositionMap();
+
+    private int numEdges = 0;
+
+    /**
+     * Fires property change events; null until a listener is added.
+     */
+    private transient PropertyChangeSupport pcs;
+
+    private Set<Triple> ambiguousTriples = new HashSet<>();
+    private Set<Triple> underLineTriples = new HashSet<>();
+    private Set<Triple> dottedUnderLineTriples = new HashSet<>();
+
+    private Set<Edge> highlightedEdges = new HashSet<>();
+
+    private boolean pattern = false;
+
+    private boolean pag = false;
+
+    private Map<String, Object> attributes = new HashMap<>();
+
+    //==============================CONSTUCTORS===========================//
+
+    /**
+     * Constructs a new (empty) IndexedGraph.
+     */
+    public IndexedGraph() {
+    }
+
+    /**
+     * Constructs a new graph, with no edges, using the the given nodes.
+     */
+    public IndexedGraph(List<Node> nodes) {
+        if (nodes == null) {
+            throw new NullPointerException();
+        }
+
+        ensureCapacity(nodes.size());
+
+        for (Node node : nodes) {
+            if (!addNode(node)) {
+                throw new IllegalArgumentException();
+            }
+        }
+    }
+
+    /**
+     * Constructs an IndexedGraph using the nodes and edges of the given graph.
+     *
+     * @throws IllegalArgumentException if the given graph has more than one
+     *                                  edge between some pair of nodes or an
+     *                                  edge from a node to itself.
+     */
+    public IndexedGraph(Graph graph) throws IllegalArgumentException {
+        if (graph == null) {
+            throw new NullPointerException("Graph must not be null.");
+        }
+
+        ensureCapacity(graph.getNumNodes());
+        transferNodesAndEdges(graph);
+        transferAttributes(graph);
+
+        this.ambiguousTriples = graph.getAmbiguousTriples();
+        this.underLineTriples = graph.getUnderLines();
+        this.dottedUnderLineTriples = graph.getDottedUnderlines();
+
+        for (Edge edge : graph.getEdges()) {
+            if (graph.isHighlighted(edge)) {
+                setHighlighted(edge, true);
+            }
+        }
+
+        this.pag = graph.isPag();
+        this.pattern = graph.isPattern();
+    }
+
+    /**
+     * Generates a simple exemplar of this class to test serialization.
+     */
+    public static IndexedGraph serializableInstance() {
+        return new IndexedGraph();
+    }
+
+    //===========================INDEX METHODS============================//
+
+    /**
+     * @return the index of the given node, or -1 if it is not in the graph.
+     */
+    public int getIndex(Node node) {
+        Integer index = indices.get(node);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @return the node with the given index.
+     */
+    public Node getNode(int index) {
+        return nodes.get(index);
+    }
+
+    /**
+     * @return the number of nodes adjacent to node i.
+     */
+    public int getDegree(int i) {
+        return degree[i];
+    }
+
+    /**
+     * @return the index of the k'th node adjacent to node i, 0 &lt;= k &lt; getDegree(i).
+     */
+    public int getAdjacent(int i, int k) {
+        if (k >= degree[i]) throw new IndexOutOfBoundsException("" + k);
+        return adjacent[i][k];
+    }
+
+    public boolean isAdjacentTo(int i, int j) {
+        return positions.get(i, j) >= 0;
+    }
+
+    /**
+     * @return the endpoint at node j of the edge between nodes i and j, or
+     * null if they are not adjacent.
+     */
+    public Endpoint getEndpoint(int i, int j) {
+        int k = positions.get(i, j);
+        return k < 0 ? null : endpoint(far[i][k]);
+    }
+
+    /**
+     * @return true iff i --> j.
+     */
+    public boolean isParentOf(int i, int j) {
+        int k = positions.get(i, j);
+        return k >= 0 && near[i][k] == TAIL && far[i][k] == ARROW;
+    }
+
+    /**
+     * @return true iff i *-> j <-* k.
+     */
+    public boolean isDefCollider(int i, int j, int k) {
+        int a = positions.get(j, i);
+        if (a < 0) return false;
+        int b = positions.get(j, k);
+        return b >= 0 && near[j][a] == ARROW && near[j][b] == ARROW;
+    }
+
+    //===============================PUBLIC METHODS========================//
+
+    public boolean addDirectedEdge(Node node1, Node node2) {
+        return addEdge(Edges.directedEdge(node1, node2));
+    }
+
+    public boolean addUndirectedEdge(Node node1, Node node2) {
+        return addEdge(Edges.undirectedEdge(node1, node2));
+    }
+
+    public boolean addNondirectedEdge(Node node1, Node node2) {
+        return addEdge(Edges.nondirectedEdge(node1, node2));
+    }
+
+    public boolean addPartiallyOrientedEdge(Node node1, Node node2) {
+        return addEdge(Edges.partiallyOrientedEdge(node1, node2));
+    }
+
+    public boolean addBidirectedEdge(Node node1, Node node2) {
+        return addEdge(Edges.bidirectedEdge(node1, node2));
+    }
+
+    /**
+     * Adds an edge to the graph.
+     *
+     * @param edge the edge to be added
+     * @return true if the edge was added or is already in the graph.
+     * @throws IllegalArgumentException if its nodes are already adjacent by a
+     *                                  different edge, or if it is an edge
+     *                                  from a node to itself.
+     */
+    public synchronized boolean addEdge(Edge edge) {
+        if (edge == null) throw new NullPointerException();
+
+        int i = getIndex(edge.getNode1());
+        int j = getIndex(edge.getNode2());
+
+        if (i == -1 || j == -1) {
+            throw new NullPointerException("Can't add an edge unless both " +
+                    "nodes are in the graph: " + edge);
+        }
+
+        if (i == j) {
+            throw new IllegalArgumentException("Edges from a node to itself are not allowed: " + edge);
+        }
+
+        int k = positions.get(i, j);
+
+        if (k >= 0) {
+            if (edges[i][k].equals(edge)) return true;
+            throw new IllegalArgumentException("Already adjacent: " + edges[i][k]);
+        }
+
+        byte code1 = code(edge.getEndpoint1());
+        byte code2 = code(edge.getEndpoint2());
+
+        append(i, j, edge, code1, code2);
+        append(j, i, edge, code2, code1);
+        numEdges++;
+
+        if (pcs != null) {
+            if (Edges.isDirectedEdge(edge)) {
+                Node node = Edges.getDirectedEdgeTail(edge);
+
+                if (node.getNodeType() == NodeType.ERROR) {
+                    pcs.firePropertyChange("nodeAdded", null, node);
+                }
+            }
+
+            pcs.firePropertyChange("edgeAdded", null, edge);
+        }
+
+        return true;
+    }
+
+    /**
+     * Adds a node to the graph.
+     *
+     * @return true if the node was added or is already in the graph.
+     */
+    public synchronized boolean addNode(Node node) {
+        if (node == null) {
+            throw new NullPointerException();
+        }
+
+        if (indices.containsKey(node)) return true;
+
+        int i = nodes.size();
+        ensureCapacity(i + 1);
+
+        nodes.add(node);
+        indices.put(node, i);
+        namesHash.put(node.getName(), node);
+
+        adjacent[i] = new int[4];
+        edges[i] = new Edge[4];
+        near[i] = new byte[4];
+        far[i] = new byte[4];
+        degree[i] = 0;
+
+        if (pcs != null && node.getNodeType() != NodeType.ERROR) {
+            pcs.firePropertyChange("nodeAdded", null, node);
+        }
+
+        return true;
+    }
+
+    public void addPropertyChangeListener(PropertyChangeListener l) {
+        getPcs().addPropertyChangeListener(l);
+    }
+
+    /**
+     * Removes all nodes (and therefore all edges) from the graph.
+     */
+    public synchronized void clear() {
+        Set<Edge> _edges = getEdges();
+        List<Node> _nodes = new ArrayList<>(nodes);
+
+        rebuild(new ArrayList<Node>(), new HashSet<Edge>());
+        namesHash.clear();
+        highlightedEdges.clear();
+
+        if (pcs != null) {
+            for (Edge edge : _edges) {
+                pcs.firePropertyChange("edgeRemoved", edge, null);
+            }
+
+            for (Node node : _nodes) {
+                pcs.firePropertyChange("nodeRemoved", node, null);
+            }
+        }
+    }
+
+    public boolean containsEdge(Edge edge) {
+        int i = getIndex(edge.getNode1());
+        int j = getIndex(edge.getNode2());
+        if (i == -1 || j == -1) return false;
+        int k = positions.get(i, j);
+        return k >= 0 && edges[i][k].equals(edge);
+    }
+
+    public boolean containsNode(Node node) {
+        return indices.containsKey(node);
+    }
+
+    public boolean existsDirectedCycle() {
+        int n = nodes.size();
+        int[] indegree = new int[n];
+
+        for (int i = 0; i < n; i++) {
+            for (int k = 0; k < degree[i]; k++) {
+                if (near[i][k] == ARROW && far[i][k] == TAIL) indegree[i]++;
+            }
+        }
+
+        int[] queue = new int[n];
+        int head = 0, tail = 0;
+
+        for (int i = 0; i < n; i++) {
+            if (indegree[i] == 0) queue[tail++] = i;
+        }
+
+        // Nodes left over after repeatedly removing nodes with no parents lie on or downstream of a cycle.
+        while (head < tail) {
+            int i = queue[head++];
+
+            for (int k = 0; k < degree[i]; k++) {
+                if (near[i][k] == TAIL && far[i][k] == ARROW) {
+                    if (--indegree[adjacent[i][k]] == 0) queue[tail++] = adjacent[i][k];
+                }
+            }
+        }
+
+        return tail < n;
+    }
+
+    /**
+     * @return true iff there is a directed path from node1 to node2.
+     */
+    public boolean existsDirectedPathFromTo(Node node1, Node node2) {
+        int i = getIndex(node1);
+        int j = getIndex(node2);
+        return i != -1 && j != -1 && reaches(i, j, DIRECTED);
+    }
+
+    public boolean existsUndirectedPathFromTo(Node node1, Node node2) {
+        int i = getIndex(node1);
+        int j = getIndex(node2);
+        return i != -1 && j != -1 && reaches(i, j, ANY);
+    }
+
+    public boolean existsSemiDirectedPathFromTo(Node node1, Set<Node> nodes) {
+        int i = getIndex(node1);
+        if (i == -1) return false;
+
+        boolean[] targets = new boolean[this.nodes.size()];
+
+        for (Node node : nodes) {
+            int j = getIndex(node);
+            if (j != -1) targets[j] = true;
+        }
+
+        return reaches(i, targets, SEMI_DIRECTED);
+    }
+
+    public boolean existsInducingPath(Node node1, Node node2) {
+        return node1 == node2 || existsDirectedPathFromTo(node2, node1);
+    }
+
+    /**
+     * Determines whether a trek exists between two nodes in the graph, that is,
+     * whether they have a common ancestor.
+     */
+    public boolean existsTrek(Node node1, Node node2) {
+        int i = getIndex(node1);
+        int j = getIndex(node2);
+        if (i == -1 || j == -1) return false;
+
+        boolean[] ancestors1 = ancestors(new int[]{i});
+        boolean[] ancestors2 = ancestors(new int[]{j});
+
+        for (int k = 0; k < ancestors1.length; k++) {
+            if (ancestors1[k] && ancestors2[k]) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Resets the graph so that it is fully connected using #-# edges, where #
+     * is the given endpoint.
+     */
+    public synchronized void fullyConnect(Endpoint endpoint) {
+        for (Edge edge : getEdges()) {
+            removeEdge(edge);
+        }
+
+        for (int i = 0; i < nodes.size(); i++) {
+            for (int j = i + 1; j < nodes.size(); j++) {
+                addEdge(new Edge(nodes.get(i), nodes.get(j), endpoint, endpoint));
+            }
+        }
+    }
+
+    public synchronized void reorientAllWith(Endpoint endpoint) {
+        for (Edge edge : getEdges()) {
+            replaceEdge(edge, new Edge(edge.getNode1(), edge.getNode2(), endpoint, endpoint));
+        }
+    }
+
+    public List<Node> getAdjacentNodes(Node node) {
+        int i = getIndex(node);
+        if (i == -1) return new ArrayList<>();
+
+        List<Node> adj = new ArrayList<>(degree[i]);
+
+        for (int k = 0; k < degree[i]; k++) {
+            adj.add(nodes.get(adjacent[i][k]));
+        }
+
+        return adj;
+    }
+
+    public List<Node> getAncestors(List<Node> nodes) {
+        return toNodes(ancestors(indices(nodes)));
+    }
+
+    public List<Node> getChildren(Node node) {
+        return getNodes(node, TAIL, ARROW);
+    }
+
+    public int getConnectivity() {
+        int connectivity = 0;
+
+        for (int i = 0; i < nodes.size(); i++) {
+            connectivity = Math.max(connectivity, degree[i]);
+        }
+
+        return connectivity;
+    }
+
+    public List<Node> getDescendants(List<Node> nodes) {
+        return toNodes(descendants(indices(nodes)));
+    }
+
+    /**
+     * @return the edge connecting node1 and node2, or null if there is none.
+     */
+    public Edge getEdge(Node node1, Node node2) {
+        int i = getIndex(node1);
+        int j = getIndex(node2);
+        if (i == -1 || j == -1) return null;
+        int k = positions.get(i, j);
+        return k < 0 ? null : edges[i][k];
+    }
+
+    public Edge getDirectedEdge(Node node1, Node node2) {
+        int i = getIndex(node1);
+        int j = getIndex(node2);
+        if (i == -1 || j == -1) return null;
+        int k = positions.get(i, j);
+        return k >= 0 && near[i][k] == TAIL && far[i][k] == ARROW ? edges[i][k] : null;
+    }
+
+    public List<Edge> getEdges(Node node) {
+        int i = getIndex(node);
+        if (i == -1) return new ArrayList<>();
+        return new ArrayList<>(Arrays.asList(edges[i]).subList(0, degree[i]));
+    }
+
+    public List<Edge> getEdges(Node node1, Node node2) {
+        List<Edge> _edges = new ArrayList<>(1);
+        Edge edge = getEdge(node1, node2);
+        if (edge != null) _edges.add(edge);
+        return _edges;
+    }
+
+    public Set<Edge> getEdges() {
+        Set<Edge> _edges = new HashSet<>();
+
+        for (int i = 0; i < nodes.size(); i++) {
+            for (int k = 0; k < degree[i]; k++) {
+                if (adjacent[i][k] > i) _edges.add(edges[i][k]);
+            }
+        }
+
+        return _edges;
+    }
+
+    /**
+     * @return the endpoint along the edge from node to node2 at the node2 end.
+     */
+    public Endpoint getEndpoint(Node node1, Node node2) {
+        int i = getIndex(node1);
+        int j = getIndex(node2);
+        if (i == -1 || j == -1) return null;
+        return getEndpoint(i, j);
+    }
+
+    public Endpoint[][] getEndpointMatrix() {
+        int size = nodes.size();
+        Endpoint[][] endpoints = new Endpoint[size][size];
+
+        for (int i = 0; i < size; i++) {
+            for (int k = 0; k < degree[i]; k++) {
+                endpoints[i][adjacent[i][k]] = endpoint(far[i][k]);
+            }
+        }
+
+        return endpoints;
+    }
+
+    public int getIndegree(Node node) {
+        return count(node, ARROW, TAIL);
+    }
+
+    public int getDegree(Node node) {
+        return getNumEdges(node);
+    }
+
+    public Node getNode(String name) {
+        return namesHash.get(name);
+    }
+
+    public List<Node> getNodes() {
+        return new ArrayList<>(nodes);
+    }
+
+    public List<String> getNodeNames() {
+        List<String> names = new ArrayList<>();
+
+        for (Node node : nodes) {
+            names.add(node.getName());
+        }
+
+        return names;
+    }
+
+    public int getNumEdges() {
+        return numEdges;
+    }
+
+    public int getNumEdges(Node node) {
+        int i = getIndex(node);
+        return i == -1 ? 0 : degree[i];
+    }
+
+    public int getNumNodes() {
+        return nodes.size();
+    }
+
+    public int getOutdegree(Node node) {
+        return count(node, TAIL, ARROW);
+    }
+
+    public List<Node> getParents(Node node) {
+        return getNodes(node, ARROW, TAIL);
+    }
+
+    public boolean isAdjacentTo(Node node1, Node node2) {
+        int i = getIndex(node1);
+        int j = getIndex(node2);
+        return i != -1 && j != -1 && positions.get(i, j) >= 0;
+    }
+
+    public boolean isAncestorOf(Node node1, Node node2) {
+        if (node1 == node2) return true;
+        int i = getIndex(node1);
+        int j = getIndex(node2);
+        return i != -1 && j != -1 && reaches(j, i, REVERSE_DIRECTED);
+    }
+
+    public boolean possibleAncestor(Node node1, Node node2) {
+        return existsSemiDirectedPathFromTo(node1, Collections.singleton(node2));
+    }
+
+    public boolean isChildOf(Node node1, Node node2) {
+        return isParentOf(node2, node1);
+    }
+
+    public boolean isParentOf(Node node1, Node node2) {
+        int i = getIndex(node1);
+        int j = getIndex(node2);
+        return i != -1 && j != -1 && isParentOf(i, j);
+    }
+
+    public boolean isProperAncestorOf(Node node1, Node node2) {
+        return node1 != node2 && isAncestorOf(node1, node2);
+    }
+
+    public boolean isProperDescendentOf(Node node1, Node node2) {
+        return node1 != node2 && isAncestorOf(node2, node1);
+    }
+
+    public boolean isDescendentOf(Node node1, Node node2) {
+        return isAncestorOf(node2, node1);
+    }
+
+    public boolean defNonDescendent(Node node1, Node node2) {
+        return !possibleAncestor(node1, node2);
+    }
+
+    public boolean isDefNoncollider(Node node1, Node node2, Node node3) {
+        int i = getIndex(node1);
+        int j = getIndex(node2);
+        int k = getIndex(node3);
+        if (i == -1 || j == -1 || k == -1) return false;
+
+        int a = positions.get(j, i);
+        int b = positions.get(j, k);
+        if (a < 0 || b < 0) return false;
+
+        if (pointsAway(j, a) || pointsAway(j, b)) return true;
+        return near[j][a] == CIRCLE && near[j][b] == CIRCLE;
+    }
+
+    public boolean isDefCollider(Node node1, Node node2, Node node3) {
+        int i = getIndex(node1);
+        int j = getIndex(node2);
+        int k = getIndex(node3);
+        return i != -1 && j != -1 && k != -1 && isDefCollider(i, j, k);
+    }
+
+    /**
+     * Determines whether x is d-connected to y given z, as for
+     * GraphUtils.isDConnectedTo, searching over (node, edge) pairs with index
+     * arrays.
+     */
+    public boolean isDConnectedTo(Node x, Node y, List<Node> z) {
+        if (x == y) return true;
+
+        int _x = getIndex(x);
+        int _y = getIndex(y);
+        if (_x == -1 || _y == -1) return false;
+
+        int[] _z = indices(z);
+        boolean[] inZ = new boolean[nodes.size()];
+        for (int i : _z) inZ[i] = true;
+
+        return isDConnectedTo(_x, _y, inZ, ancestors(_z));
+    }
+
+    public boolean isPattern() {
+        return pattern;
+    }
+
+    public void setPattern(boolean pattern) {
+        this.pattern = pattern;
+    }
+
+    public boolean isPag() {
+        return pag;
+    }
+
+    public void setPag(boolean pag) {
+        this.pag = pag;
+    }
+
+    public boolean isDSeparatedFrom(Node node1, Node node2, List<Node> z) {
+        return !isDConnectedTo(node1, node2, z);
+    }
+
+    /**
+     * Determines whether there is a path from node1 to node2 on which every
+     * definite noncollider is not in z and every definite collider is a
+     * possible ancestor of some node in z.
+     */
+    public boolean possDConnectedTo(Node node1, Node node2, List<Node> z) {
+        int x = getIndex(node1);
+        int y = getIndex(node2);
+        if (x == -1 || y == -1) return false;
+
+        int[] offsets = slotOffsets();
+        boolean[] visited = new boolean[offsets[nodes.size()]];
+        Queue<int[]> queue = new ArrayDeque<>();
+
+        for (int k = 0; k < degree[x]; k++) {
+            if (adjacent[x][k] == y) return true;
+            visited[offsets[x] + k] = true;
+            queue.offer(new int[]{x, k});
+        }
+
+        while (!queue.isEmpty()) {
+            int[] t = queue.poll();
+            int a = t[0];
+            int b = adjacent[a][t[1]];
+            Node _b = nodes.get(b);
+
+            for (int m = 0; m < degree[b]; m++) {
+                int c = adjacent[b][m];
+                if (c == a || visited[offsets[b] + m]) continue;
+
+                Node _a = nodes.get(a);
+                Node _c = nodes.get(c);
+
+                if (!((isDefNoncollider(_a, _b, _c) && !z.contains(_b))
+                        || (isDefCollider(a, b, c) && possibleAncestorSet(_b, z)))) {
+                    continue;
+                }
+
+                if (c == y) return true;
+
+                visited[offsets[b] + m] = true;
+                queue.offer(new int[]{b, m});
+            }
+        }
+
+        return false;
+    }
+
+    public boolean isDirectedFromTo(Node node1, Node node2) {
+        int i = getIndex(node1);
+        int j = getIndex(node2);
+        if (i == -1 || j == -1) return false;
+        int k = positions.get(i, j);
+        return k >= 0 && pointsAway(i, k);
+    }
+
+    public boolean isUndirectedFromTo(Node node1, Node node2) {
+        int i = getIndex(node1);
+        int j = getIndex(node2);
+        if (i == -1 || j == -1) return false;
+        int k = positions.get(i, j);
+        return k >= 0 && near[i][k] == TAIL && far[i][k] == TAIL;
+    }
+
+    /**
+     * @return true if the given edge is definitely visible (Jiji, pg 25)
+     * @throws IllegalArgumentException if the given edge is not a directed edge
+     *                                  in the graph
+     */
+    public boolean defVisible(Edge edge) {
+        if (!containsEdge(edge)) {
+            throw new IllegalArgumentException("Given edge is not in the graph.");
+        }
+
+        Node A = Edges.getDirectedEdgeTail(edge);
+        Node B = Edges.getDirectedEdgeHead(edge);
+        int a = getIndex(A);
+        int b = getIndex(B);
+
+        for (int k = 0; k < degree[a]; k++) {
+            int c = adjacent[a][k];
+
+            if (c != b && !isAdjacentTo(c, b) && near[a][k] == ARROW) {
+                return true;
+            }
+        }
+
+        return EdgeListGraph.visibleEdgeHelper(A, B, this);
+    }
+
+    public boolean isExogenous(Node node) {
+        return getIndegree(node) == 0;
+    }
+
+    public List<Node> getNodesInTo(Node node, Endpoint endpoint) {
+        return getNodes(node, code(endpoint), (byte) -1);
+    }
+
+    public List<Node> getNodesOutTo(Node node, Endpoint endpoint) {
+        return getNodes(node, (byte) -1, code(endpoint));
+    }
+
+    public synchronized boolean removeEdge(Edge edge) {
+        int i = getIndex(edge.getNode1());
+        int j = getIndex(edge.getNode2());
+        if (i == -1 || j == -1) return false;
+
+        int k = positions.get(i, j);
+        if (k < 0 || !edges[i][k].equals(edge)) return false;
+
+        Edge removed = edges[i][k];
+        remove(i, k);
+        remove(j, positions.get(j, i));
+        numEdges--;
+
+        highlightedEdges.remove(removed);
+
+        if (pcs != null) {
+            pcs.firePropertyChange("edgeRemoved", removed, null);
+        }
+
+        return true;
+    }
+
+    public boolean removeEdge(Node node1, Node node2) {
+        return removeEdges(node1, node2);
+    }
+
+    public synchronized boolean removeEdges(Node node1, Node node2) {
+        Edge edge = getEdge(node1, node2);
+        return edge != null && removeEdge(edge);
+    }
+
+    public synchronized boolean removeEdges(Collection<Edge> edges) {
+        boolean change = false;
+
+        for (Edge edge : edges) {
+            boolean _change = removeEdge(edge);
+            change = change || _change;
+        }
+
+        return change;
+    }
+
+    /**
+     * Removes a node from the graph. Nodes after it in the node list have
+     * their indices shifted down by one.
+     */
+    public synchronized boolean removeNode(Node node) {
+        int i = getIndex(node);
+        if (i == -1) return false;
+
+        boolean changed = degree[i] > 0;
+
+        for (Edge edge : getEdges(node)) {
+            removeEdge(edge);
+        }
+
+        Set<Edge> remaining = getEdges();
+        List<Node> _nodes = new ArrayList<>(nodes);
+        _nodes.remove(i);
+
+        rebuild(_nodes, remaining);
+        namesHash.remove(node.getName());
+
+        if (pcs != null) {
+            pcs.firePropertyChange("nodeRemoved", node, null);
+        }
+
+        return changed;
+    }
+
+    public synchronized boolean removeNodes(List<Node> nodes) {
+        boolean changed = false;
+
+        for (Node node : nodes) {
+            boolean _changed = removeNode(node);
+            changed = changed || _changed;
+        }
+
+        return changed;
+    }
+
+    /**
+     * If there is currently an edge from node1 to node2, sets the endpoint at
+     * node2 to the given endpoint; if there is no such edge, adds an edge --#
+     * where # is the given endpoint.
+     */
+    public synchronized boolean setEndpoint(Node from, Node to, Endpoint endPoint) {
+        if (endPoint == null) {
+            throw new NullPointerException();
+        }
+
+        Edge edge = getEdge(from, to);
+
+        if (edge == null) {
+            return addEdge(new Edge(from, to, Endpoint.TAIL, endPoint));
+        }
+
+        replaceEdge(edge, new Edge(from, to, edge.getProximalEndpoint(from), endPoint));
+        return true;
+    }
+
+    public Graph subgraph(List<Node> nodes) {
+        IndexedGraph graph = new IndexedGraph(nodes);
+
+        for (Edge edge : getEdges()) {
+            if (graph.containsNode(edge.getNode1()) && graph.containsNode(edge.getNode2())) {
+                graph.addEdge(edge);
+            }
+        }
+
+        return graph;
+    }
+
+    public String toString() {
+        return GraphUtils.graphToText(this);
+    }
+
+    public void transferNodesAndEdges(Graph graph) throws IllegalArgumentException {
+        if (graph == null) {
+            throw new NullPointerException("No graph was provided.");
+        }
+
+        for (Node node : graph.getNodes()) {
+            if (!addNode(node)) {
+                throw new IllegalArgumentException();
+            }
+        }
+
+        for (Edge edge : graph.getEdges()) {
+            addEdge(edge);
+        }
+    }
+
+    public void transferAttributes(Graph graph) throws IllegalArgumentException {
+        if (graph == null) {
+            throw new NullPointerException("No graph was provided.");
+        }
+
+        this.attributes.putAll(graph.getAllAttributes());
+    }
+
+    public Set<Triple> getAmbiguousTriples() {
+        return new HashSet<>(ambiguousTriples);
+    }
+
+    public Set<Triple> getUnderLines() {
+        return new HashSet<>(underLineTriples);
+    }
+
+    public Set<Triple> getDottedUnderlines() {
+        return new HashSet<>(dottedUnderLineTriples);
+    }
+
+    public boolean isAmbiguousTriple(Node x, Node y, Node z) {
+        return ambiguousTriples.contains(new Triple(x, y, z));
+    }
+
+    public boolean isUnderlineTriple(Node x, Node y, Node z) {
+        return underLineTriples.contains(new Triple(x, y, z));
+    }
+
+    public boolean isDottedUnderlineTriple(Node x, Node y, Node z) {
+        return dottedUnderLineTriples.contains(new Triple(x, y, z));
+    }
+
+    public void addAmbiguousTriple(Node x, Node y, Node z) {
+        ambiguousTriples.add(new Triple(x, y, z));
+    }
+
+    public void addUnderlineTriple(Node x, Node y, Node z) {
+        Triple triple = new Triple(x, y, z);
+        if (!triple.alongPathIn(this)) return;
+        underLineTriples.add(triple);
+    }
+
+    public void addDottedUnderlineTriple(Node x, Node y, Node z) {
+        Triple triple = new Triple(x, y, z);
+        if (!triple.alongPathIn(this)) return;
+        dottedUnderLineTriples.add(triple);
+    }
+
+    public void removeAmbiguousTriple(Node x, Node y, Node z) {
+        ambiguousTriples.remove(new Triple(x, y, z));
+    }
+
+    public void removeUnderlineTriple(Node x, Node y, Node z) {
+        underLineTriples.remove(new Triple(x, y, z));
+    }
+
+    public void removeDottedUnderlineTriple(Node x, Node y, Node z) {
+        dottedUnderLineTriples.remove(new Triple(x, y, z));
+    }
+
+    public void setAmbiguousTriples(Set<Triple> triples) {
+        ambiguousTriples.clear();
+
+        for (Triple triple : triples) {
+            addAmbiguousTriple(triple.getX(), triple.getY(), triple.getZ());
+        }
+    }
+
+    public void setUnderLineTriples(Set<Triple> triples) {
+        underLineTriples.clear();
+
+        for (Triple triple : triples) {
+            addUnderlineTriple(triple.getX(), triple.getY(), triple.getZ());
+        }
+    }
+
+    public void setDottedUnderLineTriples(Set<Triple> triples) {
+        dottedUnderLineTriples.clear();
+
+        for (Triple triple : triples) {
+            addDottedUnderlineTriple(triple.getX(), triple.getY(), triple.getZ());
+        }
+    }
+
+    public void removeTriplesNotInGraph() {
+        removeTriplesNotInGraph(ambiguousTriples);
+        removeTriplesNotInGraph(underLineTriples);
+        removeTriplesNotInGraph(dottedUnderLineTriples);
+    }
+
+    public List<Node> getCausalOrdering() {
+        return GraphUtils.getCausalOrdering(this);
+    }
+
+    public void setHighlighted(Edge edge, boolean highlighted) {
+        highlightedEdges.add(edge);
+    }
+
+    public boolean isHighlighted(Edge edge) {
+        return highlightedEdges.contains(edge);
+    }
+
+    public boolean isParameterizable(Node node) {
+        return true;
+    }
+
+    public boolean isTimeLagModel() {
+        return false;
+    }
+
+    public TimeLagGraph getTimeLagGraph() {
+        return null;
+    }
+
+    public List<Node> getSepset(Node x, Node y) {
+        return GraphUtils.getSepset(x, y, this);
+    }
+
+    /**
+     * Replaces the nodes of the graph, position by position, with the given
+     * nodes, rewriting the edges to use the new nodes.
+     */
+    public synchronized void setNodes(List<Node> nodes) {
+        if (nodes.size() != this.nodes.size()) {
+            throw new IllegalArgumentException("Sorry, there is a mismatch in the number of variables " +
+                    "you are trying to set.");
+        }
+
+        Set<Edge> _edges = new HashSet<>();
+
+        for (Edge edge : getEdges()) {
+            Node node1 = nodes.get(getIndex(edge.getNode1()));
+            Node node2 = nodes.get(getIndex(edge.getNode2()));
+            _edges.add(new Edge(node1, node2, edge.getEndpoint1(), edge.getEndpoint2()));
+        }
+
+        namesHash.clear();
+        rebuild(new ArrayList<>(nodes), _edges);
+    }
+
+    public Map<String, Object> getAllAttributes() {
+        return attributes;
+    }
+
+    public Object getAttribute(String key) {
+        return attributes.get(key);
+    }
+
+    public void removeAttribute(String key) {
+        attributes.remove(key);
+    }
+
+    public void addAttribute(String key, Object value) {
+        attributes.put(key, value);
+    }
+
+    public List<String> getTriplesClassificationTypes() {
+        List<String> names = new ArrayList<>();
+        names.add("Underlines");
+        names.add("Dotted Underlines");
+        names.add("Ambiguous Triples");
+        return names;
+    }
+
+    public List<List<Triple>> getTriplesLists(Node node) {
+        List<List<Triple>> triplesList = new ArrayList<>();
+        triplesList.add(GraphUtils.getUnderlinedTriplesFromGraph(node, this));
+        triplesList.add(GraphUtils.getDottedUnderlinedTriplesFromGraph(node, this));
+        triplesList.add(GraphUtils.getAmbiguousTriplesFromGraph(node, this));
+        return triplesList;
+    }
+
+    public int hashCode() {
+        int hashCode = 0;
+        int sum = 0;
+
+        for (Node node : nodes) {
+            sum += node.hashCode();
+        }
+
+        hashCode += 23 * sum;
+        sum = 0;
+
+        for (Edge edge : getEdges()) {
+            sum += edge.hashCode();
+        }
+
+        hashCode += 41 * sum;
+
+        return hashCode;
+    }
+
+    /**
+     * @return true iff the given object is a graph with the same node names
+     * and the same edges.
+     */
+    public boolean equals(Object o) {
+        if (o == this) return true;
+        if (!(o instanceof Graph)) return false;
+        Graph graph = (Graph) o;
+        return new HashSet<>(graph.getNodeNames()).equals(new HashSet<>(getNodeNames())) &&
+                graph.getEdges().equals(getEdges());
+    }
+
+    //===============================PRIVATE METHODS======================//
+
+    private static byte code(Endpoint endpoint) {
+        for (int i = 0; i < Endpoint.TYPES.length; i++) {
+            if (Endpoint.TYPES[i] == endpoint) return (byte) (i + 1);
+        }
+
+        throw new IllegalArgumentException("Unrecognized endpoint: " + endpoint);
+    }
+
+    private static Endpoint endpoint(byte code) {
+        return Endpoint.TYPES[code - 1];
+    }
+
+    private PropertyChangeSupport getPcs() {
+        if (pcs == null) {
+            pcs = new PropertyChangeSupport(this);
+        }
+        return pcs;
+    }
+
+    private void ensureCapacity(int n) {
+        if (n <= adjacent.length) return;
+        int capacity = Math.max(n, 2 * adjacent.length);
+        adjacent = Arrays.copyOf(adjacent, capacity);
+        edges = Arrays.copyOf(edges, capacity);
+        near = Arrays.copyOf(near, capacity);
+        far = Arrays.copyOf(far, capacity);
+        degree = Arrays.copyOf(degree, capacity);
+    }
+
+    private void append(int i, int j, Edge edge, byte nearCode, byte farCode) {
+        int k = degree[i];
+
+        if (k == adjacent[i].length) {
+            int capacity = 2 * k;
+            adjacent[i] = Arrays.copyOf(adjacent[i], capacity);
+            edges[i] = Arrays.copyOf(edges[i], capacity);
+            near[i] = Arrays.copyOf(near[i], capacity);
+            far[i] = Arrays.copyOf(far[i], capacity);
+        }
+
+        adjacent[i][k] = j;
+        edges[i][k] = edge;
+        near[i][k] = nearCode;
+        far[i][k] = farCode;
+        positions.put(i, j, k);
+        degree[i]++;
+    }
+
+    // Removes position k from i's arrays by moving the last entry into it.
+    private void remove(int i, int k) {
+        int last = degree[i] - 1;
+        positions.remove(i, adjacent[i][k]);
+
+        if (k != last) {
+            adjacent[i][k] = adjacent[i][last];
+            edges[i][k] = edges[i][last];
+            near[i][k] = near[i][last];
+            far[i][k] = far[i][last];
+            positions.put(i, adjacent[i][k], k);
+        }
+
+        edges[i][last] = null;
+        degree[i] = last;
+    }
+
+    // Swaps in a new edge between the same two nodes, keeping positions.
+    private void replaceEdge(Edge edge, Edge newEdge) {
+        int i = getIndex(newEdge.getNode1());
+        int j = getIndex(newEdge.getNode2());
+        int a = positions.get(i, j);
+        int b = positions.get(j, i);
+
+        byte code1 = code(newEdge.getEndpoint1());
+        byte code2 = code(newEdge.getEndpoint2());
+
+        edges[i][a] = newEdge;
+        near[i][a] = code1;
+        far[i][a] = code2;
+        edges[j][b] = newEdge;
+        near[j][b] = code2;
+        far[j][b] = code1;
+
+        highlightedEdges.remove(edge);
+
+        if (pcs != null) {
+            pcs.firePropertyChange("edgeRemoved", edge, null);
+            pcs.firePropertyChange("edgeAdded", null, newEdge);
+        }
+    }
+
+    private void rebuild(List<Node> nodes, Set<Edge> edges) {
+        PropertyChangeSupport _pcs = this.pcs;
+        this.pcs = null;
+
+        this.nodes = new ArrayList<>();
+        this.indices = new HashMap<>();
+        this.adjacent = new int[0][];
+        this.edges = new Edge[0][];
+        this.near = new byte[0][];
+        this.far = new byte[0][];
+        this.degree = new int[0];
+        this.positions = new PositionMap();
+        this.numEdges = 0;
+
+        ensureCapacity(nodes.size());
+
+        for (Node node : nodes) {
+            addNode(node);
+        }
+
+        for (Edge edge : edges) {
+            addEdge(edge);
+        }
+
+        this.pcs = _pcs;
+    }
+
+    // True iff the edge at position k of node i points away from i (i --> j or i o-> j).
+    private boolean pointsAway(int i, int k) {
+        return far[i][k] == ARROW && (near[i][k] == TAIL || near[i][k] == CIRCLE);
+    }
+
+    private List<Node> getNodes(Node node, byte nearCode, byte farCode) {
+        int i = getIndex(node);
+        List<Node> _nodes = new ArrayList<>(4);
+        if (i == -1) return _nodes;
+
+        for (int k = 0; k < degree[i]; k++) {
+            if ((nearCode == -1 || near[i][k] == nearCode) && (farCode == -1 || far[i][k] == farCode)) {
+                _nodes.add(nodes.get(adjacent[i][k]));
+            }
+        }
+
+        return _nodes;
+    }
+
+    private int count(Node node, byte nearCode, byte farCode) {
+        int i = getIndex(node);
+        if (i == -1) return 0;
+        int count = 0;
+
+        for (int k = 0; k < degree[i]; k++) {
+            if (near[i][k] == nearCode && far[i][k] == farCode) count++;
+        }
+
+        return count;
+    }
+
+    private int[] indices(List<Node> nodes) {
+        int[] _indices = new int[nodes.size()];
+        int n = 0;
+
+        for (Node node : nodes) {
+            int i = getIndex(node);
+            if (i != -1) _indices[n++] = i;
+        }
+
+        return Arrays.copyOf(_indices, n);
+    }
+
+    private List<Node> toNodes(boolean[] marked) {
+        List<Node> _nodes = new ArrayList<>();
+
+        for (int i = 0; i < marked.length; i++) {
+            if (marked[i]) _nodes.add(nodes.get(i));
+        }
+
+        return _nodes;
+    }
+
+    // Edge directions that may be followed in a search.
+    private static final int ANY = 0;
+    private static final int DIRECTED = 1;
+    private static final int REVERSE_DIRECTED = 2;
+    private static final int SEMI_DIRECTED = 3;
+
+    private boolean follows(int i, int k, int direction) {
+        switch (direction) {
+            case DIRECTED:
+                return near[i][k] == TAIL && far[i][k] == ARROW;
+            case REVERSE_DIRECTED:
+                return near[i][k] == ARROW && far[i][k] == TAIL;
+            case SEMI_DIRECTED:
+                return near[i][k] == TAIL || near[i][k] == CIRCLE;
+            default:
+                return true;
+        }
+    }
+
+    private boolean reaches(int from, int to, int direction) {
+        boolean[] targets = new boolean[nodes.size()];
+        targets[to] = true;
+        return reaches(from, targets, direction);
+    }
+
+    // Breadth first search from the given node, not counting the node itself unless it is revisited.
+    private boolean reaches(int from, boolean[] targets, int direction) {
+        boolean[] visited = new boolean[nodes.size()];
+        int[] queue = new int[nodes.size()];
+        int head = 0, tail = 0;
+        queue[tail++] = from;
+
+        while (head < tail) {
+            int i = queue[head++];
+
+            for (int k = 0; k < degree[i]; k++) {
+                if (!follows(i, k, direction)) continue;
+                int j = adjacent[i][k];
+                if (targets[j]) return true;
+                if (visited[j]) continue;
+                visited[j] = true;
+                queue[tail++] = j;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean[] closure(int[] from, int direction) {
+        boolean[] visited = new boolean[nodes.size()];
+        int[] queue = new int[nodes.size()];
+        int head = 0, tail = 0;
+
+        for (int i : from) {
+            if (visited[i]) continue;
+            visited[i] = true;
+            queue[tail++] = i;
+        }
+
+        while (head < tail) {
+            int i = queue[head++];
+
+            for (int k = 0; k < degree[i]; k++) {
+                if (!follows(i, k, direction)) continue;
+                int j = adjacent[i][k];
+                if (visited[j]) continue;
+                visited[j] = true;
+                queue[tail++] = j;
+            }
+        }
+
+        return visited;
+    }
+
+    private boolean[] ancestors(int[] nodes) {
+        return closure(nodes, REVERSE_DIRECTED);
+    }
+
+    private boolean[] descendants(int[] nodes) {
+        return closure(nodes, DIRECTED);
+    }
+
+    private boolean possibleAncestorSet(Node node, List<Node> nodes) {
+        return existsSemiDirectedPathFromTo(node, new HashSet<>(nodes)) || nodes.contains(node);
+    }
+
+    // offsets[i] is the number of adjacency slots of nodes before i, so each (i, k) gets a unique slot.
+    private int[] slotOffsets() {
+        int n = nodes.size();
+        int[] offsets = new int[n + 1];
+
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] = offsets[i] + degree[i];
+        }
+
+        return offsets;
+    }
+
+    // Breadth first search over (node, adjacency position) pairs; see GraphUtils.isDConnectedTo.
+    private boolean isDConnectedTo(int x, int y, boolean[] inZ, boolean[] zAncestors) {
+        int[] offsets = slotOffsets();
+        boolean[] visited = new boolean[offsets[nodes.size()]];
+        int[] queue = new int[offsets[nodes.size()]];
+        int head = 0, tail = 0;
+        boolean underlines = !underLineTriples.isEmpty();
+
+        for (int k = 0; k < degree[x]; k++) {
+            if (adjacent[x][k] == y) return true;
+            visited[offsets[x] + k] = true;
+            queue[tail++] = offsets[x] + k;
+        }
+
+        while (head < tail) {
+            int slot = queue[head++];
+            int a = nodeOfSlot(offsets, slot);
+            int k = slot - offsets[a];
+            int b = adjacent[a][k];
+
+            for (int m = 0; m < degree[b]; m++) {
+                int c = adjacent[b][m];
+                if (c == a) continue;
+
+                boolean collider = far[a][k] == ARROW && near[b][m] == ARROW;
+                boolean reachable;
+
+                if ((!collider || (underlines && isUnderlineTriple(nodes.get(a), nodes.get(b), nodes.get(c))))
+                        && !inZ[b]) {
+                    reachable = true;
+                } else {
+                    reachable = collider && zAncestors[b];
+                }
+
+                if (!reachable) continue;
+                if (c == y) return true;
+
+                int next = offsets[b] + m;
+
+                if (!visited[next]) {
+                    visited[next] = true;
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static int nodeOfSlot(int[] offsets, int slot) {
+        int lo = 0, hi = offsets.length - 2;
+
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (offsets[mid] <= slot) lo = mid;
+            else hi = mid - 1;
+        }
+
+        return lo;
+    }
+
+    private void removeTriplesNotInGraph(Set<Triple> triples) {
+        for (Triple triple : new HashSet<>(triples)) {
+            if (!containsNode(triple.getX()) || !containsNode(triple.getY()) || !containsNode(triple.getZ())) {
+                triples.remove(triple);
+                continue;
+            }
+
+            if (!isAdjacentTo(triple.getX(), triple.getY()) || !isAdjacentTo(triple.getY(), triple.getZ())) {
+                triples.remove(triple);
+            }
+        }
+    }
+
+    private void readObject(ObjectInputStream s)
+            throws IOException, ClassNotFoundException {
+        s.defaultReadObject();
+
+        if (nodes == null || indices == null || adjacent == null || positions == null) {
+            throw new NullPointerException();
+        }
+    }
+
+    /**
+     * Open addressing hash from ordered pairs of node indices to adjacency
+     * positions, with linear probing and backward shift deletion.
+     */
+    private static class PositionMap implements Serializable {
+        static final long serialVersionUID = 23L;
+
+        private static final long EMPTY = -1L;
+
+        private long[] keys;
+        private int[] values;
+        private int size = 0;
+
+        PositionMap() {
+            keys = new long[16];
+            values = new int[16];
+            Arrays.fill(keys, EMPTY);
+        }
+
+        private static long key(int i, int j) {
+            return ((long) i << 32) | (j & 0xffffffffL);
+        }
+
+        private static int hash(long key) {
+            key ^= key >>> 33;
+            key *= 0xff51afd7ed558ccdL;
+            key ^= key >>> 33;
+            return (int) key;
+        }
+
+        /**
+         * @return the position stored for (i, j), or -1 if there is none.
+         */
+        int get(int i, int j) {
+            long key = key(i, j);
+            int mask = keys.length - 1;
+
+            for (int p = hash(key) & mask; ; p = (p + 1) & mask) {
+                if (keys[p] == key) return values[p];
+                if (keys[p] == EMPTY) return -1;
+            }
+        }
+
+        void put(int i, int j, int value) {
+            if (2 * (size + 1) > keys.length) resize();
+
+            long key = key(i, j);
+            int mask = keys.length - 1;
+            int p = hash(key) & mask;
+
+            while (keys[p] != EMPTY && keys[p] != key) {
+                p = (p + 1) & mask;
+            }
+
+            if (keys[p] == EMPTY) size++;
+            keys[p] = key;
+            values[p] = value;
+        }
+
+        void remove(int i, int j) {
+            long key = key(i, j);
+            int mask = keys.length - 1;
+            int p = hash(key) & mask;
+
+            while (keys[p] != key) {
+                if (keys[p] == EMPTY) return;
+                p = (p + 1) & mask;
+            }
+
+            // Shift later entries of the probe run back so lookups never stop early.
+            for (int q = (p + 1) & mask; keys[q] != EMPTY; q = (q + 1) & mask) {
+                int home = hash(keys[q]) & mask;
+
+                if (((q - home) & mask) >= ((q - p) & mask)) {
+                    keys[p] = keys[q];
+                    values[p] = values[q];
+                    p = q;
+                }
+            }
+
+            keys[p] = EMPTY;
+            size--;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+
+            keys = new long[2 * oldKeys.length];
+            values = new int[2 * oldKeys.length];
+            Arrays.fill(keys, EMPTY);
+            size = 0;
+
+            int mask = keys.length - 1;
+
+            for (int q = 0; q < oldKeys.length; q++) {
+                if (oldKeys[q] == EMPTY) continue;
+                int p = hash(oldKeys[q]) & mask;
+                while (keys[p] != EMPTY) p = (p + 1) & mask;
+                keys[p] = oldKeys[q];
+                values[p] = oldValues[q];
+                size++;
+            }
+        }
+    }
+}
@@ -764,6 +764,78 @@ public class PerformanceTests {
         out.close();
     }
 
+    /**
+     * Compares the sequential possible-d-sep step of FCI with PossibleDsepStable on the same graph, the FAS
+     * skeleton of a latent variable simulation with colliders oriented.
+     */
+    public void testPossibleDsep(int numVars, double edgeFactor, int numCases, int numLatents) {
+        double alpha = 0.01;
+        int depth = 3;
+        int maxPathLength = 3;
+
+        init(new File("possible.dsep." + numVars + "." + (int) (edgeFactor * numVars) + "."
+                + numCases + "." + numLatents + ".txt"), "Tests performance of the possible-d-sep step of FCI");
+
+        List<Node> vars = new ArrayList<>();
+
+        for (int i = 0; i < numVars; i++) {
+            vars.add(new ContinuousVariable("X" + (i + 1)));
+        }
+
+        Graph dag = getLatentGraph(vars, edgeFactor, numLatents);
+
+        LargeScaleSimulation simulator = new LargeScaleSimulation(dag);
+        simulator.setCoefRange(.5, 1.5);
+        simulator.setVarRange(1, 3);
+
+        DataSet data = simulator.simulateDataFisher(numCases);
+        data = DataUtils.restrictToMeasured(data);
+
+        IndTestFisherZ independenceTest = new IndTestFisherZ(new CovarianceMatrix(data), alpha);
+
+        FasStable fas = new FasStable(independenceTest);
+        fas.setDepth(depth);
+        Graph skeleton = fas.search();
+        skeleton.reorientAllWith(Endpoint.CIRCLE);
+        new FciOrient(new SepsetsSet(fas.getSepsets(), independenceTest)).ruleR0(skeleton);
+
+        out.println("# Vars = " + numVars);
+        out.println("# Edges = " + (int) (numVars * edgeFactor));
+        out.println("# Cases = " + numCases);
+        out.println("# Latents = " + numLatents);
+        out.println("# Edges after FAS = " + skeleton.getNumEdges());
+
+        Graph sequentialGraph = new EdgeListGraph(skeleton);
+        SepsetProducer sequential = new SepsetsPossibleDsep(sequentialGraph, independenceTest,
+                new Knowledge2(), depth, maxPathLength);
+
+        long time1 = System.currentTimeMillis();
+
+        for (Edge edge : new ArrayList<>(sequentialGraph.getEdges())) {
+            if (sequential.getSepset(edge.getNode1(), edge.getNode2()) != null) {
+                sequentialGraph.removeEdge(edge);
+            }
+        }
+
+        long time2 = System.currentTimeMillis();
+
+        Graph stableGraph = new EdgeListGraph(skeleton);
+        PossibleDsepStable stable = new PossibleDsepStable(independenceTest);
+        stable.setDepth(depth);
+        stable.setMaxPathLength(maxPathLength);
+        stable.search(stableGraph, new SepsetMap());
+
+        long time3 = System.currentTimeMillis();
+
+        out.println("# Edges after sequential possible-d-sep = " + sequentialGraph.getNumEdges());
+        out.println("# Edges after stable possible-d-sep = " + stableGraph.getNumEdges());
+        out.println("# Tests, stable = " + stable.getNumIndependenceTests());
+        out.println("Elapsed (sequential possible-d-sep) " + (time2 - time1) + " ms");
+        out.println("Elapsed (stable possible-d-sep) " + (time3 - time2) + " ms");
+
+        out.close();
+    }
+
     public void testFgesComparisonContinuous(int numVars, double edgeFactor, int numCases, int numRuns) {
         testFges(numVars, edgeFactor, numCases, numRuns, true);
     }
@@ -2344,6 +2416,14 @@ public class PerformanceTests {
 //        }
         else if (args.length == 5) {
             switch (args[0]) {
+                case "PossibleDsep": {
+                    final int numVars = Integer.parseInt(args[1]);
+                    final double edgeFactor = Double.parseDouble(args[2]);
+                    final int numCases = Integer.parseInt(args[3]);
+                    final int numLatents = Integer.parseInt(args[4]);
+                    performanceTests.testPossibleDsep(numVars, edgeFactor, numCases, numLatents);
+                    break;
+                }
                 case "PC": {
                     final int numVars = Integer.parseInt(args[1]);
                     final double edgeFactor = Double.parseDouble(args[2]);
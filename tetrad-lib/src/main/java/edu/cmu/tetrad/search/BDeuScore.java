@@ -40,6 +40,9 @@ public class BDeuScore implements LocalDiscreteScore, IBDeuScore, Score {
 
     private int[] numCategories;
 
+    // Answers the count queries.
+    private final DiscreteCountIndex countIndex;
+
     public BDeuScore(DataSet dataSet) {
         if (dataSet == null) {
             throw new NullPointerException("Data was not provided.");
@@ -78,6 +81,8 @@ public class BDeuScore implements LocalDiscreteScore, IBDeuScore, Score {
         for (int i = 0; i < variables.size(); i++) {
             numCategories[i] = (getVariable(i)).getNumCategories();
         }
+
+        this.countIndex = DiscreteCountIndex.getInstance(dataSet);
     }
 
     private DiscreteVariable getVariable(int i) {
@@ -97,6 +102,10 @@ public class BDeuScore implements LocalDiscreteScore, IBDeuScore, Score {
             dims[p] = numCategories[parents[p]];
         }
 
+        if (numCells(c, dims) > DiscreteCountIndex.MAX_DENSE_CELLS) {
+            return localScoreSparse(node, parents, c, numCells(1, dims));
+        }
+
         // Number of parent states.
         int r = 1;
 
@@ -108,35 +117,13 @@ public class BDeuScore implements LocalDiscreteScore, IBDeuScore, Score {
         int n_jk[][] = new int[r][c];
         int n_j[] = new int[r];
 
-        int[] parentValues = new int[parents.length];
-
-        int[][] myParents = new int[parents.length][];
-        for (int i = 0; i < parents.length; i++) {
-            myParents[i] = data[parents[i]];
-        }
-
-        int[] myChild = data[node];
-
+        int[] counts = countIndex.getCounts(append(parents, node));
 
-        ROW:
-        for (int i = 0; i < sampleSize; i++) {
-            for (int p = 0; p < parents.length; p++) {
-                if (myParents[p][i] == -99) continue ROW;
-                parentValues[p] = myParents[p][i];
-            }
-
-            int childValue = myChild[i];
-
-            if (childValue == -99) {
-                continue ROW;
-//                throw new IllegalStateException("Please remove or impute missing " +
-//                        "values (record " + i + " column " + i + ")");
+        for (int j = 0; j < r; j++) {
+            for (int k = 0; k < c; k++) {
+                n_jk[j][k] = counts[j * c + k];
+                n_j[j] += n_jk[j][k];
             }
-
-            int rowIndex = getRowIndex(dims, parentValues);
-
-            n_jk[rowIndex][childValue]++;
-            n_j[rowIndex]++;
         }
 
         //Finally, compute the score
@@ -161,6 +148,34 @@ public class BDeuScore implements LocalDiscreteScore, IBDeuScore, Score {
         return score;
     }
 
+    // The same score for tables too large to allocate, from the parent states that occur in the data. For the
+    // others n_j and the n_jk are 0, and their terms in the sums above cancel.
+    private double localScoreSparse(int node, int[] parents, int c, double r) {
+        final double cellPrior = getSamplePrior() / (c * r);
+        final double rowPrior = getSamplePrior() / r;
+        final double[] score = {getPriorForStructure(parents.length)};
+
+        countIndex.forEachRow(append(parents, node), (j, n_jk) -> {
+            int n_j = 0;
+
+            for (int k = 0; k < c; k++) {
+                n_j += n_jk[k];
+                score[0] += Gamma.logGamma(cellPrior + n_jk[k]) - Gamma.logGamma(cellPrior);
+            }
+
+            score[0] -= Gamma.logGamma(rowPrior + n_j) - Gamma.logGamma(rowPrior);
+        });
+
+        return score[0];
+    }
+
+    // The number of cells in a table with the given dimensions and c columns, as a double so as not to overflow.
+    private static double numCells(int c, int[] dims) {
+        double cells = c;
+        for (int dim : dims) cells *= dim;
+        return cells;
+    }
+
     private double getPriorForStructure(int numParents) {
         double e = getStructurePrior();
         int vm = data.length - 1;
@@ -215,15 +230,6 @@ public class BDeuScore implements LocalDiscreteScore, IBDeuScore, Score {
         throw new UnsupportedOperationException();
     }
 
-    private static int getRowIndex(int[] dim, int[] values) {
-        int rowIndex = 0;
-        for (int i = 0; i < dim.length; i++) {
-            rowIndex *= dim[i];
-            rowIndex += values[i];
-        }
-        return rowIndex;
-    }
-
     @Override
     public double getStructurePrior() {
         return structurePrior;
@@ -40,6 +40,9 @@ public class BicScore implements LocalDiscreteScore, IBDeuScore {
 
     private int[] numCategories;
 
+    // Answers the count queries.
+    private final DiscreteCountIndex countIndex;
+
     public BicScore(DataSet dataSet) {
         if (dataSet == null) {
             throw new NullPointerException();
@@ -82,6 +85,8 @@ public class BicScore implements LocalDiscreteScore, IBDeuScore {
                 numCategories[i] = variable.getNumCategories();
             }
         }
+
+        this.countIndex = DiscreteCountIndex.getInstance(dataSet);
     }
 
     private DiscreteVariable getVariable(int i) {
@@ -115,6 +120,10 @@ public class BicScore implements LocalDiscreteScore, IBDeuScore {
             dims[p] = numCategories[parents[p]];
         }
 
+        if (numCells(c, dims) > DiscreteCountIndex.MAX_DENSE_CELLS) {
+            return localScoreSparse(node, parents, c, numCells(1, dims));
+        }
+
         // Number of parent states.
         int r = 1;
 
@@ -126,34 +135,13 @@ public class BicScore implements LocalDiscreteScore, IBDeuScore {
         int n_jk[][] = new int[r][c];
         int n_j[] = new int[r];
 
-        int[] parentValues = new int[parents.length];
-
-        int[][] myParents = new int[parents.length][];
-        for (int i = 0; i < parents.length; i++) {
-            myParents[i] = data[parents[i]];
-        }
-
-        int[] myChild = data[node];
-
-        ROW:
-        for (int i = 0; i < sampleSize; i++) {
-            for (int p = 0; p < parents.length; p++) {
-                if (myParents[p][i] == -99) continue ROW;
-                parentValues[p] = myParents[p][i];
-            }
-
-            int childValue = myChild[i];
+        int[] counts = countIndex.getCounts(append(parents, node));
 
-            if (childValue == -99) {
-                continue ROW;
-//                throw new IllegalStateException("Please remove or impute missing " +
-//                        "values (record " + i + " column " + i + ")");
+        for (int j = 0; j < r; j++) {
+            for (int k = 0; k < c; k++) {
+                n_jk[j][k] = counts[j * c + k];
+                n_j[j] += n_jk[j][k];
             }
-
-            int rowIndex = getRowIndex(dims, parentValues);
-
-            n_jk[rowIndex][childValue]++;
-            n_j[rowIndex]++;
         }
 
         //Finally, compute the score
@@ -175,6 +163,32 @@ public class BicScore implements LocalDiscreteScore, IBDeuScore {
         return 2 * lik - penaltyDiscount * params * Math.log(n);
     }
 
+    // The same score for tables too large to allocate, from the parent states that occur in the data; the others
+    // add nothing to the likelihood.
+    private double localScoreSparse(int node, int[] parents, int c, double r) {
+        final double[] lik = {0.0};
+
+        countIndex.forEachRow(append(parents, node), (j, n_jk) -> {
+            int n_j = 0;
+            for (int k = 0; k < c; k++) n_j += n_jk[k];
+
+            for (int k = 0; k < c; k++) {
+                if (n_jk[k] == 0) continue;
+                lik[0] += n_jk[k] * Math.log(n_jk[k] / (double) n_j);
+            }
+        });
+
+        double params = r * (c - 1);
+        return 2 * lik[0] - penaltyDiscount * params * Math.log(getSampleSize());
+    }
+
+    // The number of cells in a table with the given dimensions and c columns, as a double so as not to overflow.
+    private static double numCells(int c, int[] dims) {
+        double cells = c;
+        for (int dim : dims) cells *= dim;
+        return cells;
+    }
+
     private double getPriorForStructure(int numParents) {
         double e = getStructurePrior();
         int vm = data.length - 1;
@@ -229,15 +243,6 @@ public class BicScore implements LocalDiscreteScore, IBDeuScore {
         throw new UnsupportedOperationException();
     }
 
-    private static int getRowIndex(int[] dim, int[] values) {
-        int rowIndex = 0;
-        for (int i = 0; i < dim.length; i++) {
-            rowIndex *= dim[i];
-            rowIndex += values[i];
-        }
-        return rowIndex;
-    }
-
     @Override
     public double getStructurePrior() {
         throw new UnsupportedOperationException();
@@ -0,0 +1,390 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import cern.colt.matrix.DoubleMatrix2D;
+import cern.colt.matrix.impl.DenseDoubleMatrix2D;
+import edu.cmu.tetrad.util.ExecutionService;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+
+/**
+ * Glasso for a single penalty on the off-diagonal entries, by the block coordinate descent of Friedman, Hastie
+ * and Tibshirani (2008), with two additions for large problems.
+ * <p>
+ * First, the variables are screened into blocks: the glasso solution for penalty lambda is block diagonal, with
+ * the blocks being the connected components of the graph having an edge i--j wherever |S(i, j)| &gt; lambda (Witten,
+ * Friedman and Simon 2011; Mazumder and Hastie 2012). This is exact, not a heuristic. Each block is solved
+ * separately, in parallel, and singletons are solved in closed form.
+ * <p>
+ * Second, each search starts from the solution of the previous search, if there was one, so a path of penalties
+ * can be solved for much less than the cost of solving each penalty from scratch. The path is cheapest from large
+ * penalties to small, which is the order searchPath uses.
+ * <p>
+ * Works on plain arrays. Not safe to use from several threads at once, since the last solution is kept.
+ *
+ * @see Glasso
+ */
+public class BlockGlasso {
+
+    /**
+     * The sample covariance matrix.
+     */
+    private final double[][] ss;
+
+    /**
+     * Convergence threshold: a sweep stops the search when no column of the covariance estimate changes by more
+     * (in summed absolute value) than thr times the average summed absolute off-diagonal column of ss.
+     */
+    private double thr = 1.0e-4;
+
+    /**
+     * Maximum number of sweeps over the columns of a block.
+     */
+    private int maxit = 10000;
+
+    /**
+     * True if the diagonal is penalized.
+     */
+    private boolean penalizeDiagonal = false;
+
+    /**
+     * True if each search starts from the previous solution.
+     */
+    private boolean warmStart = true;
+
+    // The last solution, for warm starts; null if there is none.
+    private double[][] lastWw = null;
+    private double[][] lastWwi = null;
+
+    /**
+     * @param cov The sample covariance matrix.
+     */
+    public BlockGlasso(DoubleMatrix2D cov) {
+        if (cov == null) throw new NullPointerException("Covariance matrix not specified.");
+        if (cov.rows() != cov.columns()) throw new IllegalArgumentException("Covariance matrix not square.");
+        this.ss = cov.toArray();
+    }
+
+    /**
+     * Solves glasso for the given penalty.
+     *
+     * @param lambda The penalty on the off-diagonal entries (and on the diagonal, if penalizeDiagonal is set).
+     * @return the solution, in which getWw() is the estimated covariance matrix, getWwi() the estimated
+     * inverse covariance matrix, getNiter() the largest number of sweeps any block took and getDel() the
+     * largest average change in the last sweep of any block.
+     */
+    public Glasso.Result search(double lambda) {
+        if (lambda < 0) throw new IllegalArgumentException("Lambda must be >= 0: " + lambda);
+
+        final int n = ss.length;
+        final double[][] ww = new double[n][n];
+        final double[][] wwi = new double[n][n];
+        final double[][] warmWw = warmStart ? lastWw : null;
+        final double[][] warmWwi = warmStart ? lastWwi : null;
+
+        List<int[]> blocks = blocks(lambda);
+        List<Callable<double[]>> tasks = new ArrayList<>();
+        int niter = 0;
+        double del = 0.0;
+
+        for (final int[] block : blocks) {
+            if (block.length == 1) {
+                int i = block[0];
+                ww[i][i] = ss[i][i] + (penalizeDiagonal ? lambda : 0.0);
+                wwi[i][i] = 1.0 / ww[i][i];
+            } else {
+                tasks.add(() -> solveBlock(block, lambda, warmWw, warmWwi, ww, wwi));
+            }
+        }
+
+        for (double[] info : ExecutionService.getInstance().invokeAllAndGet(tasks)) {
+            niter = Math.max(niter, (int) info[0]);
+            del = Math.max(del, info[1]);
+        }
+
+        this.lastWw = ww;
+        this.lastWwi = wwi;
+
+        return new Glasso.Result(new DenseDoubleMatrix2D(ww), new DenseDoubleMatrix2D(wwi), niter, del);
+    }
+
+    /**
+     * Solves glasso for each of the given penalties, largest first, each starting from the solution for the one
+     * before. Each solution holds two dense n x n matrices, so memory grows with the length of the path.
+     *
+     * @return the solutions, in the order of the given penalties.
+     */
+    public List<Glasso.Result> searchPath(double[] lambdas) {
+        Integer[] order = new Integer[lambdas.length];
+        for (int i = 0; i < lambdas.length; i++) order[i] = i;
+        Arrays.sort(order, (i, j) -> Double.compare(lambdas[j], lambdas[i]));
+
+        Glasso.Result[] results = new Glasso.Result[lambdas.length];
+
+        for (int i : order) {
+            results[i] = search(lambdas[i]);
+        }
+
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Forgets the last solution, so that the next search starts from scratch.
+     */
+    public void clearWarmStart() {
+        this.lastWw = null;
+        this.lastWwi = null;
+    }
+
+    public double getThr() {
+        return thr;
+    }
+
+    public void setThr(double thr) {
+        if (thr < 0) throw new IllegalArgumentException("Threshold must be >= 0: " + thr);
+        this.thr = thr;
+    }
+
+    public int getMaxit() {
+        return maxit;
+    }
+
+    public void setMaxit(int maxit) {
+        if (maxit <= 0) throw new IllegalArgumentException("Max iterations must be > 0: " + maxit);
+        this.maxit = maxit;
+    }
+
+    public boolean isPenalizeDiagonal() {
+        return penalizeDiagonal;
+    }
+
+    public void setPenalizeDiagonal(boolean penalizeDiagonal) {
+        this.penalizeDiagonal = penalizeDiagonal;
+    }
+
+    public boolean isWarmStart() {
+        return warmStart;
+    }
+
+    public void setWarmStart(boolean warmStart) {
+        this.warmStart = warmStart;
+    }
+
+    //===============================PRIVATE METHODS==========================//
+
+    // The connected components of the graph with an edge i--j wherever |ss(i, j)| > lambda, each in increasing
+    // order.
+    private List<int[]> blocks(double lambda) {
+        int n = ss.length;
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++) parent[i] = i;
+
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                if (Math.abs(ss[i][j]) > lambda) {
+                    int a = root(parent, i);
+                    int b = root(parent, j);
+                    if (a != b) parent[Math.max(a, b)] = Math.min(a, b);
+                }
+            }
+        }
+
+        Map<Integer, List<Integer>> components = new LinkedHashMap<>();
+
+        for (int i = 0; i < n; i++) {
+            components.computeIfAbsent(root(parent, i), k -> new ArrayList<>()).add(i);
+        }
+
+        List<int[]> blocks = new ArrayList<>();
+
+        for (List<Integer> component : components.values()) {
+            int[] block = new int[component.size()];
+            for (int k = 0; k < block.length; k++) block[k] = component.get(k);
+            blocks.add(block);
+        }
+
+        return blocks;
+    }
+
+    private static int root(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+
+        return i;
+    }
+
+    // Solves glasso for one block by block coordinate descent, writing the block of the solution into ww and wwi.
+    // Returns {number of sweeps, average change in the last sweep}.
+    private double[] solveBlock(int[] block, double lambda, double[][] warmWw, double[][] warmWwi,
+                                double[][] ww, double[][] wwi) {
+        int p = block.length;
+        double[][] s = new double[p][p];
+        double[][] w = new double[p][p];
+
+        // beta[m][k] is the coefficient of k in the lasso regression for column m.
+        double[][] beta = new double[p][p];
+
+        for (int a = 0; a < p; a++) {
+            for (int b = 0; b < p; b++) {
+                s[a][b] = ss[block[a]][block[b]];
+                w[a][b] = warmWw != null ? warmWw[block[a]][block[b]] : s[a][b];
+            }
+
+            w[a][a] = s[a][a] + (penalizeDiagonal ? lambda : 0.0);
+        }
+
+        if (warmWwi != null) {
+            for (int m = 0; m < p; m++) {
+                double tmm = warmWwi[block[m]][block[m]];
+                if (tmm <= 0) continue;
+
+                for (int k = 0; k < p; k++) {
+                    if (k != m) beta[m][k] = -warmWwi[block[k]][block[m]] / tmm;
+                }
+            }
+        }
+
+        double shr = 0.0;
+
+        for (int a = 0; a < p; a++) {
+            for (int b = 0; b < p; b++) {
+                if (a != b) shr += Math.abs(s[a][b]);
+            }
+        }
+
+        shr = thr * shr / (p - 1);
+
+        double[] r = new double[p];
+        int niter = 0;
+        double dlx;
+
+        while (true) {
+            dlx = 0.0;
+
+            double sumAbsW = 0.0;
+
+            for (int a = 0; a < p; a++) {
+                for (int b = 0; b < p; b++) {
+                    sumAbsW += Math.abs(w[a][b]);
+                }
+            }
+
+            for (int m = 0; m < p; m++) {
+                if (Thread.currentThread().isInterrupted()) break;
+
+                double[] x = beta[m];
+
+                // r = s12 - W11 x, the residual of the lasso for column m.
+                for (int k = 0; k < p; k++) r[k] = s[k][m];
+
+                for (int l = 0; l < p; l++) {
+                    if (l == m || x[l] == 0.0) continue;
+                    double xl = x[l];
+                    double[] wl = w[l];
+                    for (int k = 0; k < p; k++) r[k] -= wl[k] * xl;
+                }
+
+                double sumAbsColumn = 0.0;
+                for (int k = 0; k < p; k++) if (k != m) sumAbsColumn += Math.abs(w[k][m]);
+                double sumAbsV = sumAbsW - 2.0 * sumAbsColumn - Math.abs(w[m][m]);
+
+                lasso(m, w, r, x, lambda, sumAbsV > 0 ? shr / sumAbsV : shr);
+
+                double change = 0.0;
+
+                for (int k = 0; k < p; k++) {
+                    if (k == m) continue;
+                    double updated = s[k][m] - r[k];
+                    change += Math.abs(updated - w[k][m]);
+                    sumAbsW += 2.0 * (Math.abs(updated) - Math.abs(w[k][m]));
+                    w[k][m] = updated;
+                    w[m][k] = updated;
+                }
+
+                dlx = Math.max(dlx, change);
+            }
+
+            niter++;
+            if (niter >= maxit) break;
+            if (dlx < shr) break;
+            if (Thread.currentThread().isInterrupted()) break;
+        }
+
+        for (int m = 0; m < p; m++) {
+            double dot = 0.0;
+
+            for (int k = 0; k < p; k++) {
+                if (k != m) dot += w[k][m] * beta[m][k];
+            }
+
+            double tmm = 1.0 / (w[m][m] - dot);
+            wwi[block[m]][block[m]] = tmm;
+
+            for (int k = 0; k < p; k++) {
+                if (k != m) wwi[block[k]][block[m]] = -beta[m][k] * tmm;
+            }
+
+            for (int k = 0; k < p; k++) {
+                ww[block[k]][block[m]] = w[k][m];
+            }
+        }
+
+        return new double[]{niter, dlx / (p - 1)};
+    }
+
+    // Coordinate descent for the lasso min 1/2 x'Vx - s'x + lambda |x|_1 over the coordinates other than m, where
+    // V is w without row and column m and the residual r = s - Vx is kept up to date. At most maxit passes.
+    private void lasso(int m, double[][] w, double[] r, double[] x, double lambda, double thr) {
+        int p = w.length;
+
+        for (int iter = 0; iter < maxit; iter++) {
+            double dlx = 0.0;
+
+            for (int j = 0; j < p; j++) {
+                if (j == m) continue;
+
+                double xj = x[j];
+                double wjj = w[j][j];
+                double t = r[j] + wjj * xj;
+                double updated = Math.abs(t) > lambda ? Math.signum(t) * (Math.abs(t) - lambda) / wjj : 0.0;
+
+                if (updated == xj) continue;
+
+                double del = updated - xj;
+                x[j] = updated;
+                dlx = Math.max(dlx, Math.abs(del));
+
+                double[] wj = w[j];
+
+                for (int i = 0; i < p; i++) {
+                    r[i] -= del * wj[i];
+                }
+            }
+
+            if (dlx < thr) break;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.graph.Node;
+
+import java.util.List;
+
+/**
+ * Wraps a score and remembers the local scores and local score differences it has computed, so that a search
+ * asking the same question more than once (as FGES does across its forward and backward passes) only pays for it
+ * once. Any score may be wrapped. The cache is bounded and safe to share among threads; see LocalScoreCache.
+ * Fges, and so GFci, wraps its score in one for each search.
+ * <p>
+ * Cached values are only correct so long as the wrapped score is not reconfigured (penalty discount, structure
+ * prior, etc.) while the wrapper is in use.
+ */
+public class CachingScore implements Score {
+
+    private static final int[] EMPTY = new int[0];
+
+    // The wrapped score.
+    private final Score score;
+
+    // Local scores, keyed by (node, parents).
+    private final LocalScoreCache localScores;
+
+    // Local score differences, keyed by (y, z + {-x - 1}); x is negated to keep it apart from the z's.
+    private final LocalScoreCache scoreDiffs;
+
+    public CachingScore(Score score) {
+        this(score, LocalScoreCache.DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param score   The score to wrap.
+     * @param maxSize The maximum number of local scores and, separately, local score differences to remember.
+     */
+    public CachingScore(Score score, int maxSize) {
+        if (score == null) {
+            throw new NullPointerException("Score not specified.");
+        }
+
+        this.score = score;
+        this.localScores = new LocalScoreCache(maxSize);
+        this.scoreDiffs = new LocalScoreCache(maxSize);
+    }
+
+    @Override
+    public double localScore(int node, int... parents) {
+        return localScores.computeIfAbsent(node, parents, () -> score.localScore(node, parents));
+    }
+
+    @Override
+    public double localScoreDiff(int x, int y, int[] z) {
+        int[] key = new int[z.length + 1];
+        System.arraycopy(z, 0, key, 0, z.length);
+        key[z.length] = -x - 1;
+
+        return scoreDiffs.computeIfAbsent(y, key, () -> score.localScoreDiff(x, y, z));
+    }
+
+    @Override
+    public double localScoreDiff(int x, int y) {
+        return localScoreDiff(x, y, EMPTY);
+    }
+
+    @Override
+    public double localScore(int node, int parent) {
+        return localScore(node, new int[]{parent});
+    }
+
+    @Override
+    public double localScore(int node) {
+        return localScore(node, EMPTY);
+    }
+
+    @Override
+    public List<Node> getVariables() {
+        return score.getVariables();
+    }
+
+    @Override
+    public boolean isEffectEdge(double bump) {
+        return score.isEffectEdge(bump);
+    }
+
+    @Override
+    public int getSampleSize() {
+        return score.getSampleSize();
+    }
+
+    @Override
+    public Node getVariable(String targetName) {
+        return score.getVariable(targetName);
+    }
+
+    @Override
+    public int getMaxDegree() {
+        return score.getMaxDegree();
+    }
+
+    @Override
+    public boolean determines(List<Node> z, Node y) {
+        return score.determines(z, y);
+    }
+
+    /**
+     * @return the wrapped score.
+     */
+    public Score getScore() {
+        return score;
+    }
+
+    /**
+     * @return the number of lookups that were answered from the cache.
+     */
+    public long getHits() {
+        return localScores.getHits() + scoreDiffs.getHits();
+    }
+
+    /**
+     * @return the number of lookups that had to be passed on to the wrapped score.
+     */
+    public long getMisses() {
+        return localScores.getMisses() + scoreDiffs.getMisses();
+    }
+
+    public void clear() {
+        localScores.clear();
+        scoreDiffs.clear();
+    }
+
+    public String toString() {
+        return "Caching " + score + ": local scores (" + localScores + "), score differences (" + scoreDiffs + ")";
+    }
+}
+
+
+
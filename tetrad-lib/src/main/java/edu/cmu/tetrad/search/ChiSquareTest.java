@@ -23,6 +23,7 @@ package edu.cmu.tetrad.search;
 
 import edu.cmu.tetrad.data.CellTable;
 import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.DiscreteCountIndex;
 import edu.cmu.tetrad.data.DiscreteVariable;
 import edu.cmu.tetrad.util.CombinationIterator;
 import edu.cmu.tetrad.util.ProbUtils;
@@ -55,6 +56,11 @@ public class ChiSquareTest {
      */
     private CellTable cellTable;
 
+    /**
+     * Answers the count queries for the cell table.
+     */
+    private DiscreteCountIndex countIndex;
+
     /**
      * The significance level of the test.
      */
@@ -86,6 +92,7 @@ public class ChiSquareTest {
         this.alpha = alpha;
         this.cellTable = new CellTable(null);
         this.getCellTable().setMissingValue(DiscreteVariable.MISSING_VALUE);
+        this.countIndex = DiscreteCountIndex.getInstance(dataSet);
     }
 
     /**
@@ -97,7 +104,7 @@ public class ChiSquareTest {
 
         // Reset the cell table for the columns referred to in
         // 'testIndices.' Do cell coefs for those columns.
-        this.getCellTable().addToTable(getDataSet(), testIndices);
+        this.getCellTable().addToTable(getCountIndex(), testIndices);
 
         // Indicator arrays to tell the cell table which margins
         // to calculate. For x _||_ y | z1, z2, ..., we want to
@@ -223,7 +230,7 @@ public class ChiSquareTest {
 
         // Reset the cell table for the columns referred to in
         // 'testIndices.' Do cell coefs for those columns.
-        this.getCellTable().addToTable(getDataSet(), testIndices);
+        this.getCellTable().addToTable(getCountIndex(), testIndices);
 
         // Indicator arrays to tell the cell table which margins
         // to calculate. For x _||_ y | z1, z2, ..., we want to
@@ -393,6 +400,10 @@ public class ChiSquareTest {
         return cellTable;
     }
 
+    public DiscreteCountIndex getCountIndex() {
+        return countIndex;
+    }
+
     //===============================CLASSES==============================//
 
     /**
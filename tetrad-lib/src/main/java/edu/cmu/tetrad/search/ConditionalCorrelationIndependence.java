@@ -23,11 +23,14 @@ package edu.cmu.tetrad.search;
 
 import edu.cmu.tetrad.data.DataSet;
 import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.util.KdTree;
 import edu.cmu.tetrad.util.RandomUtil;
 import edu.cmu.tetrad.util.StatUtils;
 import org.apache.commons.math3.distribution.NormalDistribution;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static edu.cmu.tetrad.util.StatUtils.*;
 import static java.lang.Math.*;
@@ -50,6 +53,8 @@ import static java.lang.Math.pow;
  * Biometrika, 67(3), 581-590.
  * <p>
  * We use Nadaraya-Watson kernel regression, though we further restrict the sample size to nearby points.
+ * The nearby points are found with a k-d tree over the conditioning variables, which is built once per
+ * conditioning set and remembered for later tests with the same conditioning set.
  *
  * @author Joseph Ramsey
  */
@@ -60,15 +65,15 @@ public final class ConditionalCorrelationIndependence {
     public enum Basis {Polynomial, Cosine}
 
     /**
-     * The matrix of data, N x M, where N is the number of samples, M the number
-     * of variables, gotten from dataSet.
+     * The maximum number of conditioning sets for which neighbor indices are remembered.
      */
-    private final double[][] data;
+    private static final int MAX_NEIGHBOR_INDICES = 200;
 
     /**
-     * The ith array gives indices into the ith variables in sorted order.
+     * The matrix of data, N x M, where N is the number of samples, M the number
+     * of variables, gotten from dataSet.
      */
-    private final ArrayList<List<Integer>> sortedIndices;
+    private final double[][] data;
 
     /**
      * The significance level of the independence tests.
@@ -81,9 +86,9 @@ public final class ConditionalCorrelationIndependence {
     private final double[] h;
 
     /**
-     * Looks up the index of a record in the the sorted order for each variable z.
+     * Neighbor indices over the conditioning variables, by sorted conditioning set.
      */
-    private final List<Map<Integer, Integer>> reverseLookup;
+    private final ConcurrentMap<List<Integer>, KdTree> neighborIndices = new ConcurrentHashMap<>();
 
     /**
      * Depth 0 residuals for reuse.
@@ -189,16 +194,6 @@ public final class ConditionalCorrelationIndependence {
 
         this.cutoff = getZForAlpha(alpha);
 
-        sortedIndices = new ArrayList<>();
-
-        for (double[] x : data) {
-            List<Integer> sorted = new ArrayList<>();
-            for (int t = 0; t < x.length; t++) sorted.add(t);
-
-            sorted.sort(Comparator.comparingDouble(o -> x[o]));
-            sortedIndices.add(sorted);
-        }
-
         double[] means = new double[data.length];
 
         for (int r = 0; r < data.length; r++) {
@@ -214,18 +209,6 @@ public final class ConditionalCorrelationIndependence {
                 depth0Residuals[z][i] = data[z][i] - means[z];
             }
         }
-
-        reverseLookup = new ArrayList<>();
-
-        for (int z2 = 0; z2 < data.length; z2++) {
-            Map<Integer, Integer> m = new HashMap<>();
-
-            for (int j = 0; j < data[z2].length; j++) {
-                m.put(sortedIndices.get(z2).get(j), j);
-            }
-
-            reverseLookup.add(m);
-        }
     }
 
     //=================PUBLIC METHODS====================//
@@ -234,8 +217,17 @@ public final class ConditionalCorrelationIndependence {
      * @return true iff x is independent of y conditional on z.
      */
     public double isIndependent(String x, String y, List<String> z) {
-        double[] rx = residuals(x, z);
-        double[] ry = residuals(y, z);
+        double[] rx;
+        double[] ry;
+
+        if (z.isEmpty()) {
+            rx = residuals(x, z);
+            ry = residuals(y, z);
+        } else {
+            double[][] r = residuals(new int[]{indices.get(x), indices.get(y)}, zIndices(z));
+            rx = r[0];
+            ry = r[1];
+        }
 
         double score = independent(rx, ry);
         this.score = score;
@@ -246,29 +238,27 @@ public final class ConditionalCorrelationIndependence {
         } else {
             final int N = data[0].length;
 
-            int[] _z = new int[z.size()];
-
-            for (int m = 0; m < z.size(); m++) {
-                _z[m] = indices.get(z.get(m));
-            }
-
             // X _||_ Y ?
             if (z.isEmpty() || numDependenceSpotChecks == 0) {
                 return getPValue(score);
             } else {
+                KdTree tree = getNeighborIndex(zIndices(z));
+                int sampleSize = getSampleSize();
+                int[] js = new int[sampleSize];
+                double[] ds = new double[sampleSize];
                 double min = Double.POSITIVE_INFINITY;
 
                 // X _||_ Y | Z ? Look for a dependence rx ~_||_ ry | Z = _z
                 for (int i = 0; i < numDependenceSpotChecks; i++) {
-                    List<Integer> js = new ArrayList<>(getCloseZs(data, _z,
-                            RandomUtil.getInstance().nextInt(N), kernelRegressionSampleSize));
+                    int count = tree.nearest(RandomUtil.getInstance().nextInt(N), sampleSize,
+                            Double.POSITIVE_INFINITY, js, ds);
 
-                    double[] rx2 = new double[js.size()];
-                    double[] ry2 = new double[js.size()];
+                    double[] rx2 = new double[count];
+                    double[] ry2 = new double[count];
 
-                    for (int k = 0; k < js.size(); k++) {
-                        rx2[k] = rx[js.get(k)];
-                        ry2[k] = ry[js.get(k)];
+                    for (int k = 0; k < count; k++) {
+                        rx2[k] = rx[js[k]];
+                        ry2[k] = ry[js[k]];
                     }
 
                     double _score = independent(rx2, ry2);
@@ -301,59 +291,7 @@ public final class ConditionalCorrelationIndependence {
             return depth0Residuals[indices.get(x)];
         }
 
-        int N = data[0].length;
-
-        int _x = indices.get(x);
-
-        double[] residualsx = new double[N];
-
-        double[] xdata = Arrays.copyOf(data[_x], data[_x].length);
-
-        double[] sumx = new double[N];
-
-        double[] totalWeightx = new double[N];
-
-        int[] _z = new int[z.size()];
-
-        for (int m = 0; m < z.size(); m++) {
-            _z[m] = indices.get(z.get(m));
-        }
-
-        double h = getH(_z);
-
-        for (int i = 0; i < N; i++) {
-            Set<Integer> js = getCloseZs(data, _z, i, kernelRegressionSampleSize);
-
-            for (int j : js) {
-                double xj = xdata[j];
-                double d = distance(data, _z, i, j);
-
-                double k;
-
-                if (getKernelMultiplier() == Kernel.Epinechnikov) {
-                    k = kernelEpinechnikov(d, h);
-                } else if (getKernelMultiplier() == Kernel.Gaussian) {
-                    k = kernelGaussian(d, h);
-                } else {
-                    throw new IllegalStateException("Unsupported kernel type: " + getKernelMultiplier());
-                }
-
-                sumx[i] += k * xj;
-                totalWeightx[i] += k;
-            }
-        }
-
-        for (int i = 0; i < N; i++) {
-            if (totalWeightx[i] == 0) totalWeightx[i] = 1;
-
-            residualsx[i] = xdata[i] - sumx[i] / totalWeightx[i];
-
-            if (Double.isNaN(residualsx[i])) {
-                residualsx[i] = 0;
-            }
-        }
-
-        return residualsx;
+        return residuals(new int[]{indices.get(x)}, zIndices(z))[0];
     }
 
     /**
@@ -554,21 +492,6 @@ public final class ConditionalCorrelationIndependence {
         return Math.exp(-z * z);
     }
 
-    // Euclidean distance.
-    private double distance(double[][] data, int[] z, int i, int j) {
-        double sum = 0.0;
-
-        for (int _z : z) {
-            double d = (data[_z][i] - data[_z][j]) / 2.0;
-
-            if (!Double.isNaN(d)) {
-                sum += d * d;
-            }
-        }
-
-        return sqrt(sum);
-    }
-
     // Standardizes the given data array. No need to make a copy here.
     private double[] standardize(double[] data) {
         double sum = 0.0;
@@ -599,85 +522,103 @@ public final class ConditionalCorrelationIndependence {
         return data;
     }
 
-//    private Set<Integer> getCloseZs(double[][] data, int[] _z, int i, int sampleSize) {
-//        try {
-//            Set<Integer> js = new HashSet<>();
-//
-//            if (sampleSize > data[0].length) sampleSize = (int) ceil(0.8 * data.length);
-//            if (_z.length == 0) return new HashSet<>();
-//
-//            int[] left = new int[_z.length];
-//            int[] right = new int[_z.length];
-//
-//            while (true) {
-//                for (int k = 0; k < _z.length; k++) {
-//                    int z1 = _z[k];
-//                    int l = -1, r = -1;
-//
-//                    int q = reverseLookup.get(z1).get(k);
-//                    int qq = sortedIndices.get(z1).get(q);
-//
-//                    if (q - left[k] >= 0 && q - left[k] < data[z1].length) {
-//                        l = sortedIndices.get(z1).get(q - left[k]);
-//                    }
-//
-//                    if (q + right[k] >= 0 && q + right[k] < data[z1].length) {
-//                        r = sortedIndices.get(z1).get(q + right[k]);
-//                    }
-//
-//                    final double L = l == -1 ? 0 : data[z1][qq] - data[z1][l];
-//                    final double R = r == -1 ? 0 : data[z1][r] - data[z1][qq];
-//
-//                    if (L == 0 && R == 0) {
-//                        js.add(qq);
-//                        if (js.size() >= sampleSize) return js;
-//                        left[k]++;
-//                        right[k]++;
-//                    } else if (L > R) {
-//                        js.add(l);
-//                        if (js.size() >= sampleSize) return js;
-//                        left[k]++;
-//                    } else {
-//                        js.add(r);
-//                        if (js.size() >= sampleSize) return js;
-//                        right[k]++;
-//                    }
-//                }
-//            }
-//        } catch (Exception e) {
-//            e.printStackTrace();
-//            throw new RuntimeException(e);
-//        }
-//    }
-
-    private Set<Integer> getCloseZs(double[][] data, int[] _z, int i, int sampleSize) {
-        Set<Integer> js = new HashSet<>();
-
-        if (sampleSize > data[0].length) sampleSize = (int) ceil(0.8 * data.length);
-        if (_z.length == 0) return new HashSet<>();
-
-        int radius = 0;
-
-        while (true) {
-            for (int z1 : _z) {
-                int q = reverseLookup.get(z1).get(i);
-
-                if (q - radius >= 0 && q - radius < data[z1].length) {
-                    final int r2 = sortedIndices.get(z1).get(q - radius);
-                    js.add(r2);
-                }
+    // Residuals of each of the xs regressed nonparametrically onto _z, sharing the neighbor query for each
+    // point among the xs.
+    private double[][] residuals(int[] xs, int[] _z) {
+        int N = data[0].length;
 
-                if (q + radius >= 0 && q + radius < data[z1].length) {
-                    final int r2 = sortedIndices.get(z1).get(q + radius);
-                    js.add(r2);
+        KdTree tree = getNeighborIndex(_z);
+        double h = getH(_z);
+        int sampleSize = getSampleSize();
+
+        // Distances below are half the Euclidean distance in the k-d tree; the Epinechnikov kernel vanishes
+        // beyond width * h, so there is no need to look farther than that.
+        double radius = getKernelMultiplier() == Kernel.Epinechnikov
+                ? 2.0 * getWidth() * h : Double.POSITIVE_INFINITY;
+
+        int[] js = new int[sampleSize];
+        double[] ds = new double[sampleSize];
+        double[] sum = new double[xs.length];
+        double[][] residuals = new double[xs.length][N];
+
+        for (int i = 0; i < N; i++) {
+            int count = tree.nearest(i, sampleSize, radius, js, ds);
+
+            Arrays.fill(sum, 0.0);
+            double totalWeight = 0.0;
+
+            for (int m = 0; m < count; m++) {
+                double k = kernel(ds[m] / 2.0, h);
+
+                for (int t = 0; t < xs.length; t++) {
+                    sum[t] += k * data[xs[t]][js[m]];
                 }
 
+                totalWeight += k;
             }
 
-            if (js.size() >= sampleSize) return js;
+            if (totalWeight == 0) totalWeight = 1;
+
+            for (int t = 0; t < xs.length; t++) {
+                residuals[t][i] = data[xs[t]][i] - sum[t] / totalWeight;
 
-            radius++;
+                if (Double.isNaN(residuals[t][i])) {
+                    residuals[t][i] = 0;
+                }
+            }
         }
+
+        return residuals;
+    }
+
+    private double kernel(double d, double h) {
+        if (getKernelMultiplier() == Kernel.Epinechnikov) {
+            return kernelEpinechnikov(d, h);
+        } else if (getKernelMultiplier() == Kernel.Gaussian) {
+            return kernelGaussian(d, h);
+        } else {
+            throw new IllegalStateException("Unsupported kernel type: " + getKernelMultiplier());
+        }
+    }
+
+    private int[] zIndices(List<String> z) {
+        int[] _z = new int[z.size()];
+
+        for (int m = 0; m < z.size(); m++) {
+            _z[m] = indices.get(z.get(m));
+        }
+
+        return _z;
+    }
+
+    // The number of nearby points to use for each kernel regression.
+    private int getSampleSize() {
+        int N = data[0].length;
+        if (kernelRegressionSampleSize > N) return (int) ceil(0.8 * N);
+        return kernelRegressionSampleSize;
+    }
+
+    // The k-d tree over the given conditioning variables, built on first use.
+    private KdTree getNeighborIndex(int[] _z) {
+        int[] sorted = Arrays.copyOf(_z, _z.length);
+        Arrays.sort(sorted);
+
+        List<Integer> key = new ArrayList<>();
+        for (int c : sorted) key.add(c);
+
+        KdTree tree = neighborIndices.get(key);
+
+        if (tree == null) {
+            if (neighborIndices.size() >= MAX_NEIGHBOR_INDICES) {
+                neighborIndices.clear();
+            }
+
+            tree = new KdTree(data, sorted);
+            KdTree existing = neighborIndices.putIfAbsent(key, tree);
+            if (existing != null) tree = existing;
+        }
+
+        return tree;
     }
 
     private double getH(int[] _z) {
@@ -74,8 +74,20 @@ public final class ContinuousTetradTest implements TetradTest {
     private List<Node> variables;
     DeltaTetradTest deltaTest;
 
+    // Fourth moments for the delta test, shared with other tests on the same data, or null to make them.
+    private FourthMoments fourthMoments;
+
     public ContinuousTetradTest(DataSet dataSet, TestType sigTestType,
                                 double sig) {
+        this(dataSet, sigTestType, sig, null);
+    }
+
+    /**
+     * Constructs a test that takes the fourth moments of its delta tests from the given store, which must have
+     * been built from the same data set, so that it shares them with other tests; if null, a new store is made.
+     */
+    public ContinuousTetradTest(DataSet dataSet, TestType sigTestType,
+                                double sig, FourthMoments fourthMoments) {
         if (sigTestType == TestType.TETRAD_BOLLEN || sigTestType == null) {
             sigTestType = TestType.TETRAD_DELTA;
         }
@@ -94,6 +106,7 @@ public final class ContinuousTetradTest implements TetradTest {
 
         covMatrix = new CovarianceMatrix(dataSet);
         this.dataSet = dataSet;
+        this.fourthMoments = fourthMoments;
         this.sigTestType = sigTestType;
         setSignificance(sig);
         this.sampleSize = dataSet.getNumRows();
@@ -607,7 +620,7 @@ public final class ContinuousTetradTest implements TetradTest {
 
         if (deltaTest == null) {
             if (dataSet != null) {
-                deltaTest = new DeltaTetradTest(dataSet);
+                deltaTest = new DeltaTetradTest(dataSet, fourthMoments);
             } else {
                 deltaTest = new DeltaTetradTest(covMatrix);
             }
@@ -653,7 +666,7 @@ public final class ContinuousTetradTest implements TetradTest {
 
         if (deltaTest == null) {
             if (dataSet != null) {
-                deltaTest = new DeltaTetradTest(dataSet);
+                deltaTest = new DeltaTetradTest(dataSet, fourthMoments);
             } else {
                 deltaTest = new DeltaTetradTest(covMatrix);
             }
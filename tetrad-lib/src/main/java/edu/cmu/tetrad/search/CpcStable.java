@@ -369,7 +369,7 @@ public final class CpcStable implements GraphSearch {
 
 //    private void orientUnshieldedTriplesConcurrent(final IKnowledge knowledge,
 //                                                   final IndependenceTest test, final int depth) {
-//        ForkJoinPool pool = ForkJoinPoolInstance.getInstance().getPool();
+//        ForkJoinPool pool = ExecutionService.getInstance().getPool();
 //
 //        TetradLogger.getInstance().log("info", "Starting Collider Orientation:");
 //
@@ -36,18 +36,15 @@ import java.util.*;
  * @author Joseph Ramsey
  */
 public class DeltaTetradTest {
-    private DataSet dataSet;
-    private double[][] data;
     private int N;
     private ICovarianceMatrix cov;
     private int df;
     private double chisq;
-    //    private double[][][][] fourthMoment;
-//    private int numVars;
-//    private double[] means;
+
+    // The fourth moments of the data, or null if only a covariance matrix is available.
+    private FourthMoments fourthMoments;
     private List<Node> variables;
     private Map<Node, Integer> variablesHash;
-//    private boolean cacheFourthMoments = false;
 
 
     // As input we require a data set and a list of non-redundant Tetrads.
@@ -62,6 +59,15 @@ public class DeltaTetradTest {
      * statistics can be calculated (p. 160); otherwise, it must be assumed that the data are multivariate Gaussian.
      */
     public DeltaTetradTest(DataSet dataSet) {
+        this(dataSet, null);
+    }
+
+    /**
+     * Constructs a test using a given data set, taking fourth moments from the given store, which must have been
+     * built from the same data set. Tests built this way share fourth moments with one another. If the store is
+     * null, a new one is made.
+     */
+    public DeltaTetradTest(DataSet dataSet, FourthMoments fourthMoments) {
         if (dataSet == null) {
             throw new NullPointerException();
         }
@@ -70,30 +76,23 @@ public class DeltaTetradTest {
             throw new IllegalArgumentException();
         }
 
-        this.cov = new CovarianceMatrix(dataSet);
-
-        List<DataSet> data1 = new ArrayList<>();
-        data1.add(dataSet);
-        List<DataSet> data2 = DataUtils.center(data1);
-
-        this.dataSet = data2.get(0);
+        if (fourthMoments == null) {
+            fourthMoments = new FourthMoments(dataSet);
+        } else if (fourthMoments.getNumVariables() != dataSet.getNumColumns()
+                || fourthMoments.getSampleSize() != dataSet.getNumRows()) {
+            throw new IllegalArgumentException("Fourth moments are for different data.");
+        }
 
-        this.data = this.dataSet.getDoubleData().transpose().toArray();
+        this.cov = new CovarianceMatrix(dataSet);
+        this.fourthMoments = fourthMoments;
         this.N = dataSet.getNumRows();
         this.variables = dataSet.getVariables();
-//        this.numVars = dataSet.getNumColumns();
 
         this.variablesHash = new HashMap<>();
 
         for (int i = 0; i < variables.size(); i++) {
             variablesHash.put(variables.get(i), i);
         }
-
-//        this.means = new double[numVars];
-//
-//        for (int i = 0; i < numVars; i++) {
-//            means[i] = mean(data[i], N);
-//        }
     }
 
     /**
@@ -116,21 +115,43 @@ public class DeltaTetradTest {
         }
     }
 
-//    private void initializeForthMomentMatrix(List<Node> variables) {
-//        int n = variables.size();
-//        fourthMoment = new double[n][n][n][n];
-//    }
-
     /**
      * Takes a list of tetrads for the given data set and returns the chi square value for the test. We assume that the
      * tetrads are non-redundant; if not, a matrix exception will be thrown.
      * <p>
      * Calculates the T statistic (Bollen and Ting, p. 161). This is significant if tests as significant using the Chi
      * Square distribution with degrees of freedom equal to the number of nonredundant tetrads tested.
+     * <p>
+     * The statistic and degrees of freedom are remembered for getPValue(), so this pair of calls must not be made
+     * from several threads at once on the same test; use getPValue(Tetrad...) for that.
      */
     public double calcChiSquare(Tetrad... tetrads) {
+        double chisq = chiSquare(tetrads);
         this.df = tetrads.length;
+        this.chisq = chisq;
+        return chisq;
+    }
 
+    /**
+     * @return the p value for the most recent call to calcChiSquare.
+     */
+    public double getPValue() {
+        double cdf = new ChiSquaredDistribution(this.df).cumulativeProbability(this.chisq);
+        return 1.0 - cdf;
+    }
+
+    /**
+     * @return the p value for the given tetrads. Unlike calcChiSquare followed by getPValue(), this reads and writes
+     * no state of the test, so it may be called from several threads at once.
+     */
+    public double getPValue(Tetrad... tetrads) {
+        double chisq = chiSquare(tetrads);
+        double cdf = new ChiSquaredDistribution(tetrads.length).cumulativeProbability(chisq);
+        return 1.0 - cdf;
+    }
+
+    // The T statistic for the given tetrads, computed without touching the fields of the test.
+    private double chiSquare(Tetrad... tetrads) {
         // Need a list of symbolic covariances--i.e. covariances that appear in tetrads.
         Set<Sigma> boldSigmaSet = new LinkedHashSet<>();
         List<Sigma> boldSigma = new ArrayList<>();
@@ -149,6 +170,21 @@ public class DeltaTetradTest {
         // Need a matrix of variances and covariances of sample covariances.
         TetradMatrix sigma_ss = new TetradMatrix(boldSigma.size(), boldSigma.size());
 
+        // The fourth moments needed, computed together.
+        double[][] moments = null;
+
+        if (fourthMoments != null && !(cov instanceof CorrelationMatrix)) {
+            int[] first = new int[boldSigma.size()];
+            int[] second = new int[boldSigma.size()];
+
+            for (int i = 0; i < boldSigma.size(); i++) {
+                first[i] = variablesHash.get(boldSigma.get(i).getA());
+                second[i] = variablesHash.get(boldSigma.get(i).getB());
+            }
+
+            moments = fourthMoments.getPairMoments(first, second);
+        }
+
         for (int i = 0; i < boldSigma.size(); i++) {
             for (int j = 0; j < boldSigma.size(); j++) {
                 Sigma sigmaef = boldSigma.get(i);
@@ -170,13 +206,13 @@ public class DeltaTetradTest {
                             - sxy(g, h) * (sxy(f, g) * sxy(e, g) + sxy(f, h) * sxy(e, h));
 
                     sigma_ss.set(i, j, rr);
-                } else if (cov != null && dataSet == null) {
+                } else if (cov != null && fourthMoments == null) {
 
                     // Assumes multinormality--see p. 160.
                     double _ss = sxy(e, g) * sxy(f, h) - sxy(e, h) * sxy(f, g);   // + or -? Different advise. + in the code.
                     sigma_ss.set(i, j, _ss);
                 } else {
-                    double _ss = sxyzw(e, f, g, h) - sxy(e, f) * sxy(g, h);
+                    double _ss = moments[i][j] - sxy(e, f) * sxy(g, h);
                     sigma_ss.set(i, j, _ss);
                 }
             }
@@ -229,103 +265,16 @@ public class DeltaTetradTest {
         TetradMatrix v0 = sigma_tt.inverse();
         TetradMatrix v1 = t.transpose().times(v0);
         TetradMatrix v2 = v1.times(t);
-        double chisq = N * v2.get(0, 0);
-
-        this.chisq = chisq;
-
-        return chisq;
+        return N * v2.get(0, 0);
     }
 
     /**
-     * @return the p value for the most recent test.
-     */
-    public double getPValue() {
-        double cdf = new ChiSquaredDistribution(this.df).cumulativeProbability(this.chisq);
-        return 1.0 - cdf;
-    }
-
-    public double getPValue(Tetrad... tetrads) {
-        calcChiSquare(tetrads);
-        return getPValue();
-    }
-
-    private double sxyzw(Node e, Node f, Node g, Node h) {
-        if (dataSet == null) {
-            throw new IllegalArgumentException("To calculate sxyzw, tabular data is needed.");
-        }
-
-        int x = variablesHash.get(e);
-        int y = variablesHash.get(f);
-        int z = variablesHash.get(g);
-        int w = variablesHash.get(h);
-
-        return getForthMoment(x, y, z, w);
-    }
-
-//    private void setForthMoment(int x, int y, int z, int w, double sxyzw) {
-//        fourthMoment[x][y][z][w] = sxyzw;
-//        fourthMoment[x][y][w][z] = sxyzw;
-//        fourthMoment[x][w][z][y] = sxyzw;
-//        fourthMoment[x][w][y][z] = sxyzw;
-//        fourthMoment[x][z][y][w] = sxyzw;
-//        fourthMoment[x][z][w][y] = sxyzw;
-//
-//        fourthMoment[y][x][z][w] = sxyzw;
-//        fourthMoment[y][x][w][z] = sxyzw;
-//        fourthMoment[y][z][x][w] = sxyzw;
-//        fourthMoment[y][z][w][x] = sxyzw;
-//        fourthMoment[y][w][x][z] = sxyzw;
-//        fourthMoment[y][w][z][x] = sxyzw;
-//
-//        fourthMoment[z][x][y][w] = sxyzw;
-//        fourthMoment[z][x][w][y] = sxyzw;
-//        fourthMoment[z][y][x][w] = sxyzw;
-//        fourthMoment[z][y][w][x] = sxyzw;
-//        fourthMoment[z][w][x][y] = sxyzw;
-//        fourthMoment[z][w][y][x] = sxyzw;
-//
-//        fourthMoment[w][x][y][z] = sxyzw;
-//        fourthMoment[w][x][z][y] = sxyzw;
-//        fourthMoment[w][y][x][z] = sxyzw;
-//        fourthMoment[w][y][z][x] = sxyzw;
-//        fourthMoment[w][z][x][y] = sxyzw;
-//        fourthMoment[w][z][y][x] = sxyzw;
-//    }
-
-    private double getForthMoment(int x, int y, int z, int w) {
-//        if (cacheFourthMoments) {
-//            if (fourthMoment == null) {
-//                initializeForthMomentMatrix(dataSet.getVariable());
-//            }
-//
-//            double sxyzw = fourthMoment[x][y][z][w];
-//
-//            if (sxyzw == 0.0) {
-//                sxyzw = sxyzw(x, y, z, w);
-////                setForthMoment(x, y, z, w, sxyzw);
-//            }
-//
-//            return sxyzw;
-//        } else {
-        return sxyzw(x, y, z, w);
-//        }
-    }
-
-    /**
-     * If using a covariance matrix or a correlation matrix, just returns the lookups. Otherwise calculates the
-     * covariance.
+     * Looks up the covariance (or correlation) of the two nodes.
      */
     private double sxy(Node _node1, Node _node2) {
         int i = variablesHash.get(_node1);
         int j = variablesHash.get(_node2);
-
-        if (cov != null) {
-            return cov.getValue(i, j);
-        } else {
-            double[] arr1 = data[i];
-            double[] arr2 = data[j];
-            return sxy(arr1, arr2, arr1.length);
-        }
+        return cov.getValue(i, j);
     }
 
     private double getDerivative(Node node1, Node node2, Node node3, Node node4, Node a, Node b) {
@@ -364,9 +313,13 @@ public class DeltaTetradTest {
         return 0.0;
     }
 
-//    public void setCacheFourthMoments(boolean cacheFourthMoments) {
-//        this.cacheFourthMoments = cacheFourthMoments;
-//    }
+    /**
+     * @return the fourth moments used by this test, or null if the test was constructed from a covariance matrix.
+     * These may be passed to other tests on the same data set so that the tests share them.
+     */
+    public FourthMoments getFourthMoments() {
+        return fourthMoments;
+    }
 
     private static class Sigma {
         private Node a;
@@ -402,47 +355,4 @@ public class DeltaTetradTest {
             return "Sigma(" + getA() + ", " + getB() + ")";
         }
     }
-
-    private double sxyzw(int x, int y, int z, int w) {
-        double sxyzw = 0.0;
-
-        double[] _x = data[x];
-        double[] _y = data[y];
-        double[] _z = data[z];
-        double[] _w = data[w];
-
-        int N = _x.length;
-
-        for (int j = 0; j < N; j++) {
-            sxyzw += _x[j] * _y[j] * _z[j] * _w[j];
-        }
-
-        return (1.0 / N) * sxyzw;
-    }
-
-    private double sxy(double array1[], double array2[], int N) {
-        int i;
-        double sum = 0.0;
-
-        for (i = 0; i < N; i++) {
-//            sum += (array1[i] - meanX) * (array2[i] - meanY);
-            sum += array1[i] * array2[i];
-        }
-
-        return (1.0 / N) * sum;
-    }
-
-//    private double mean(double array[], int N) {
-//        int i;
-//        double sum = 0;
-//
-//        for (i = 0; i < N; i++) {
-//            sum += array[i];
-//        }
-//
-//        return sum / N;
-//    }
 }
-
-
-
@@ -21,6 +21,7 @@
 
 package edu.cmu.tetrad.search;
 
+import edu.cmu.tetrad.data.CompiledKnowledge;
 import edu.cmu.tetrad.data.IKnowledge;
 import edu.cmu.tetrad.data.Knowledge2;
 import edu.cmu.tetrad.graph.*;
@@ -65,6 +66,11 @@ public class Fas implements IFas {
      */
     private IKnowledge knowledge = new Knowledge2();
 
+    /**
+     * The knowledge used during search; this is the knowledge, compiled for the nodes of the search.
+     */
+    private IKnowledge searchKnowledge = knowledge;
+
     /**
      * The maximum number of variables conditioned on in any conditional independence test. If the depth is -1, it will
      * be taken to be the maximum value, which is 1000. Otherwise, it should be set to a non-negative integer.
@@ -167,6 +173,7 @@ public class Fas implements IFas {
         }
 
         Map<Node, Set<Node>> adjacencies = new HashMap<>();
+        searchKnowledge = CompiledKnowledge.compile(knowledge, nodes);
 
         for (Node node : nodes) {
             adjacencies.put(node, new TreeSet<Node>());
@@ -218,6 +225,7 @@ public class Fas implements IFas {
 
         Map<Node, Set<Node>> adjacencies = new HashMap<>();
         List<Node> nodes = graph.getNodes();
+        searchKnowledge = CompiledKnowledge.compile(knowledge, nodes);
 
         for (Node node : nodes) {
             adjacencies.put(node, new TreeSet<Node>());
@@ -262,6 +270,7 @@ public class Fas implements IFas {
             throw new NullPointerException("Cannot set knowledge to null");
         }
         this.knowledge = knowledge;
+        this.searchKnowledge = knowledge;
     }
 
     //==============================PRIVATE METHODS======================/
@@ -309,7 +318,7 @@ public class Fas implements IFas {
                 }
 
                 boolean noEdgeRequired =
-                        knowledge.noEdgeRequired(x.getName(), y.getName());
+                        searchKnowledge.noEdgeRequired(x.getName(), y.getName());
 
 
                 if (independent && noEdgeRequired) {
@@ -363,8 +372,8 @@ public class Fas implements IFas {
         String name1 = x.getName();
         String name2 = y.getName();
 
-        if (knowledge.isForbidden(name1, name2) &&
-                knowledge.isForbidden(name2, name1)) {
+        if (searchKnowledge.isForbidden(name1, name2) &&
+                searchKnowledge.isForbidden(name2, name1)) {
 //            this.logger.log("edgeRemoved", "Removed " + Edges.undirectedEdge(x, y) + " because it was " +
 //                    "forbidden by background knowledge.");
             System.out.println(Edges.undirectedEdge(x, y) + " because it was " +
@@ -394,7 +403,7 @@ public class Fas implements IFas {
             for (Node y : adjx) {
                 List<Node> _adjx = new ArrayList<>(adjacencies.get(x));
                 _adjx.remove(y);
-                List<Node> ppx = possibleParents(x, _adjx, knowledge);
+                List<Node> ppx = possibleParents(x, _adjx, searchKnowledge);
 
                 if (ppx.size() >= depth) {
                     ChoiceGenerator cg = new ChoiceGenerator(ppx.size(), depth);
@@ -427,7 +436,7 @@ public class Fas implements IFas {
                         }
 
                         boolean noEdgeRequired =
-                                knowledge.noEdgeRequired(x.getName(), y.getName());
+                                searchKnowledge.noEdgeRequired(x.getName(), y.getName());
 
                         if (independent && noEdgeRequired) {
                             adjacencies.get(x).remove(y);
@@ -21,11 +21,12 @@ package edu.cmu.tetrad.search;
 // Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
 ///////////////////////////////////////////////////////////////////////////////
 
+import edu.cmu.tetrad.data.CompiledKnowledge;
 import edu.cmu.tetrad.data.IKnowledge;
 import edu.cmu.tetrad.data.Knowledge2;
 import edu.cmu.tetrad.graph.*;
 import edu.cmu.tetrad.util.ChoiceGenerator;
-import edu.cmu.tetrad.util.ForkJoinPoolInstance;
+import edu.cmu.tetrad.util.ExecutionService;
 import edu.cmu.tetrad.util.TetradLogger;
 
 import java.io.PrintStream;
@@ -60,6 +61,11 @@ public class FasConcurrent implements IFas {
      */
     private IKnowledge knowledge = new Knowledge2();
 
+    /**
+     * The knowledge used during search; this is the knowledge, compiled for the nodes of the search.
+     */
+    private IKnowledge searchKnowledge = knowledge;
+
     /**
      * The maximum number of variables conditioned on in any conditional independence test. If the depth is -1, it will
      * be taken to be the maximum value, which is 1000. Otherwise, it should be set to a non-negative integer.
@@ -93,7 +99,7 @@ public class FasConcurrent implements IFas {
     private boolean verbose = false;
 
     // The concurrency pool.
-    private ForkJoinPool pool = ForkJoinPoolInstance.getInstance().getPool();
+    private ForkJoinPool pool = ExecutionService.getInstance().getPool();
 
     /**
      * Where verbose output is sent.
@@ -154,6 +160,7 @@ public class FasConcurrent implements IFas {
 
         Map<Node, Set<Node>> adjacencies = new ConcurrentHashMap<>();
         List<Node> nodes = graph.getNodes();
+        searchKnowledge = CompiledKnowledge.compile(knowledge, nodes);
 
         for (Node node : nodes) {
             adjacencies.put(node, new HashSet<Node>());
@@ -345,6 +352,7 @@ public class FasConcurrent implements IFas {
             throw new NullPointerException("Cannot set knowledge to null");
         }
         this.knowledge = knowledge;
+        this.searchKnowledge = knowledge;
     }
 
     //==============================PRIVATE METHODS======================/
@@ -389,7 +397,7 @@ public class FasConcurrent implements IFas {
             }
 
             boolean noEdgeRequired =
-                    knowledge.noEdgeRequired(x.getName(), y.getName());
+                    searchKnowledge.noEdgeRequired(x.getName(), y.getName());
 
 
             if (independent && noEdgeRequired) {
@@ -419,7 +427,7 @@ public class FasConcurrent implements IFas {
         for (Node y : adjx) {
             List<Node> _adjx = new ArrayList<>(adjacencies.get(x));
             _adjx.remove(y);
-            List<Node> ppx = possibleParents(x, _adjx, knowledge);
+            List<Node> ppx = possibleParents(x, _adjx, searchKnowledge);
 
             if (ppx.size() >= depth) {
                 ChoiceGenerator cg = new ChoiceGenerator(ppx.size(), depth);
@@ -442,7 +450,7 @@ public class FasConcurrent implements IFas {
                     }
 
                     boolean noEdgeRequired =
-                            knowledge.noEdgeRequired(x.getName(), y.getName());
+                            searchKnowledge.noEdgeRequired(x.getName(), y.getName());
 
                     if (independent && noEdgeRequired) {
                         adjacencies.get(x).remove(y);
@@ -461,8 +469,8 @@ public class FasConcurrent implements IFas {
         String name1 = x.getName();
         String name2 = y.getName();
 
-        if (knowledge.isForbidden(name1, name2) &&
-                knowledge.isForbidden(name2, name1)) {
+        if (searchKnowledge.isForbidden(name1, name2) &&
+                searchKnowledge.isForbidden(name2, name1)) {
             if (verbose) {
                 this.logger.log("edgeRemoved", "Removed " + Edges.undirectedEdge(x, y) + " because it was " +
                         "forbidden by background knowledge.");
@@ -21,6 +21,7 @@
 
 package edu.cmu.tetrad.search;
 
+import edu.cmu.tetrad.data.CompiledKnowledge;
 import edu.cmu.tetrad.data.IKnowledge;
 import edu.cmu.tetrad.data.Knowledge2;
 import edu.cmu.tetrad.graph.*;
@@ -61,6 +62,11 @@ public class FasStable implements IFas {
      */
     private IKnowledge knowledge = new Knowledge2();
 
+    /**
+     * The knowledge used during search; this is the knowledge, compiled for the nodes of the search.
+     */
+    private IKnowledge searchKnowledge = knowledge;
+
     /**
      * The maximum number of variables conditioned on in any conditional independence test. If the depth is -1, it will
      * be taken to be the maximum value, which is 1000. Otherwise, it should be set to a non-negative integer.
@@ -162,6 +168,7 @@ public class FasStable implements IFas {
 
         Map<Node, Set<Node>> adjacencies = new HashMap<>();
         List<Node> nodes = graph.getNodes();
+        searchKnowledge = CompiledKnowledge.compile(knowledge, nodes);
 
         for (Node node : nodes) {
             adjacencies.put(node, new TreeSet<Node>());
@@ -214,6 +221,7 @@ public class FasStable implements IFas {
 
         Map<Node, Set<Node>> adjacencies = new HashMap<>();
         List<Node> nodes = graph.getNodes();
+        searchKnowledge = CompiledKnowledge.compile(knowledge, nodes);
 
         for (Node node : nodes) {
             adjacencies.put(node, new TreeSet<Node>());
@@ -258,6 +266,7 @@ public class FasStable implements IFas {
             throw new NullPointerException("Cannot set knowledge to null");
         }
         this.knowledge = knowledge;
+        this.searchKnowledge = knowledge;
     }
 
     //==============================PRIVATE METHODS======================/
@@ -305,7 +314,7 @@ public class FasStable implements IFas {
                 }
 
                 boolean noEdgeRequired =
-                        knowledge.noEdgeRequired(x.getName(), y.getName());
+                        searchKnowledge.noEdgeRequired(x.getName(), y.getName());
 
 
                 if (independent && noEdgeRequired) {
@@ -358,8 +367,8 @@ public class FasStable implements IFas {
         String name1 = x.getName();
         String name2 = y.getName();
 
-        if (knowledge.isForbidden(name1, name2) &&
-                knowledge.isForbidden(name2, name1)) {
+        if (searchKnowledge.isForbidden(name1, name2) &&
+                searchKnowledge.isForbidden(name2, name1)) {
             this.logger.log("edgeRemoved", "Removed " + Edges.undirectedEdge(x, y) + " because it was " +
                     "forbidden by background knowledge.");
 
@@ -389,7 +398,7 @@ public class FasStable implements IFas {
             for (Node y : adjx) {
                 List<Node> _adjx = new ArrayList<>(adjx);
                 _adjx.remove(y);
-                List<Node> ppx = possibleParents(x, _adjx, knowledge);
+                List<Node> ppx = possibleParents(x, _adjx, searchKnowledge);
 
                 if (ppx.size() >= depth) {
                     ChoiceGenerator cg = new ChoiceGenerator(ppx.size(), depth);
@@ -418,7 +427,7 @@ public class FasStable implements IFas {
                         }
 
                         boolean noEdgeRequired =
-                                knowledge.noEdgeRequired(x.getName(), y.getName());
+                                searchKnowledge.noEdgeRequired(x.getName(), y.getName());
 
                         if (independent && noEdgeRequired) {
                             adjacencies.get(x).remove(y);
@@ -84,6 +84,11 @@ public final class Fci implements GraphSearch {
      */
     private boolean possibleDsepSearchDone = true;
 
+    /**
+     * True iff the independence test may be called from several threads at once.
+     */
+    private boolean testThreadSafe = false;
+
     /**
      * The maximum length for any discriminating path. -1 if unlimited; otherwise, a positive integer.
      */
@@ -202,35 +207,21 @@ public final class Fci implements GraphSearch {
 
         graph.reorientAllWith(Endpoint.CIRCLE);
 
-        SepsetProducer sp = new SepsetsPossibleDsep(graph, independenceTest, knowledge, depth, maxPathLength);
-        sp.setVerbose(verbose);
-
         // The original FCI, with or without JiJi Zhang's orientation rules
         //        // Optional step: Possible Dsep. (Needed for correctness but very time consuming.)
         if (isPossibleDsepSearchDone()) {
 //            long time1 = System.currentTimeMillis();
             new FciOrient(new SepsetsSet(this.sepsets, independenceTest)).ruleR0(graph);
 
-            for (Edge edge : new ArrayList<>(graph.getEdges())) {
-                if (Thread.currentThread().isInterrupted()) {
-                    break;
-                }
-
-                Node x = edge.getNode1();
-                Node y = edge.getNode2();
-
-                List<Node> sepset = sp.getSepset(x, y);
-
-                if (sepset != null) {
-                    graph.removeEdge(x, y);
-                    sepsets.set(x, y, sepset);
-
-                    if (verbose) {
-                        System.out.println("Possible DSEP Removed " + x + "--- " + y + " sepset = " + sepset);
-                    }
-                }
-            }
-
+            // All edges are tested against the graph as oriented by R0, so the edges removed do not depend on
+            // the order in which they are visited.
+            PossibleDsepStable possibleDsep = new PossibleDsepStable(independenceTest);
+            possibleDsep.setKnowledge(knowledge);
+            possibleDsep.setDepth(depth);
+            possibleDsep.setMaxPathLength(maxPathLength);
+            possibleDsep.setVerbose(verbose);
+            if (testThreadSafe) possibleDsep.setTestThreadSafe(true);
+            possibleDsep.search(graph, sepsets);
 
 //            long time2 = System.currentTimeMillis();
 //            logger.log("info", "Step C: " + (time2 - time1) / 1000. + "s");
@@ -312,6 +303,18 @@ public final class Fci implements GraphSearch {
         this.possibleDsepSearchDone = possibleDsepSearchDone;
     }
 
+    public boolean isTestThreadSafe() {
+        return testThreadSafe;
+    }
+
+    /**
+     * @param testThreadSafe true iff the independence test may be called from several threads at once, in which case
+     *                       the possible-d-sep step tests edges concurrently. False by default.
+     */
+    public void setTestThreadSafe(boolean testThreadSafe) {
+        this.testThreadSafe = testThreadSafe;
+    }
+
     /**
      * @return the maximum length of any discriminating path, or -1 of unlimited.
      */
@@ -27,7 +27,7 @@ import edu.cmu.tetrad.data.KnowledgeEdge;
 import edu.cmu.tetrad.graph.*;
 import edu.cmu.tetrad.util.ChoiceGenerator;
 import edu.cmu.tetrad.util.DepthChoiceGenerator;
-import edu.cmu.tetrad.util.ForkJoinPoolInstance;
+import edu.cmu.tetrad.util.ExecutionService;
 import edu.cmu.tetrad.util.TetradLogger;
 
 import java.util.*;
@@ -258,7 +258,7 @@ public final class FciMax implements GraphSearch {
 
         Task task = new Task(nodes, graph, scores, 0, nodes.size());
 
-        ForkJoinPoolInstance.getInstance().getPool().invoke(task);
+        ExecutionService.getInstance().getPool().invoke(task);
 
         List<Triple> tripleList = new ArrayList<>(scores.keySet());
 
@@ -20,6 +20,7 @@
 ///////////////////////////////////////////////////////////////////////////////
 package edu.cmu.tetrad.search;
 
+import edu.cmu.tetrad.data.CompiledKnowledge;
 import edu.cmu.tetrad.data.IKnowledge;
 import edu.cmu.tetrad.data.Knowledge2;
 import edu.cmu.tetrad.data.KnowledgeEdge;
@@ -57,6 +58,9 @@ public final class FciOrient {
 
     private IKnowledge knowledge = new Knowledge2();
 
+    // The knowledge compiled for the nodes of the graph being oriented.
+    private IKnowledge searchKnowledge = knowledge;
+
     private boolean changeFlag = true;
 
     /**
@@ -149,6 +153,7 @@ public final class FciOrient {
         }
 
         this.knowledge = knowledge;
+        this.searchKnowledge = knowledge;
     }
 
     /**
@@ -181,6 +186,7 @@ public final class FciOrient {
      */
     public void ruleR0(Graph graph) {
         graph.reorientAllWith(Endpoint.CIRCLE);
+        searchKnowledge = CompiledKnowledge.compile(knowledge, graph.getNodes());
         fciOrientbk(knowledge, graph, graph.getNodes());
 
         List<Node> nodes = graph.getNodes();
@@ -251,6 +257,8 @@ public final class FciOrient {
      * Zhang's step F4, rules R1-R10.
      */
     public void doFinalOrientation(Graph graph) {
+        searchKnowledge = CompiledKnowledge.compile(knowledge, graph.getNodes());
+
         if (completeRuleSetUsed) {
             zhangFinalOrientation(graph);
         } else {
@@ -1498,13 +1506,13 @@ public final class FciOrient {
 
         if (graph.getEndpoint(y, x) == Endpoint.ARROW) {
 //            return true;
-            if (!knowledge.isForbidden(x.getName(), y.getName())) {
+            if (!searchKnowledge.isForbidden(x.getName(), y.getName())) {
                 return true;
             }
         }
 
         if (graph.getEndpoint(y, x) == Endpoint.TAIL) {
-            if (!knowledge.isForbidden(x.getName(), y.getName())) {
+            if (!searchKnowledge.isForbidden(x.getName(), y.getName())) {
                 return true;
             }
         }
@@ -130,8 +130,8 @@ public final class Fges implements GraphSearch, GraphScorer {
     // Map from variables to their column indices in the data set.
     private ConcurrentMap<Node, Integer> hashIndices;
 
-    // The static ForkJoinPool instance.
-    private final ForkJoinPool pool;
+    // Runs the parallel parts of the search.
+    private final ExecutionService executor = ExecutionService.getInstance();
 
     // A graph where X--Y means that X and Y have non-zero total effect on one another.
     private Graph effectEdgesGraph;
@@ -170,6 +170,15 @@ public final class Fges implements GraphSearch, GraphScorer {
     // The maximum number of threads to use.
     private final int maxThreads;
 
+    // The maximum number of local score differences to remember during a search; 0 turns caching off.
+    private int scoreCacheSize = LocalScoreCache.DEFAULT_MAX_SIZE;
+
+    // The score used during search; this is the score, wrapped in a cache if caching is on.
+    private Score searchScore;
+
+    // The knowledge used during search; this is the knowledge, compiled for the variables of the search.
+    private IKnowledge searchKnowledge = knowledge;
+
     //===========================CONSTRUCTORS=============================//
 
     /**
@@ -184,7 +193,8 @@ public final class Fges implements GraphSearch, GraphScorer {
     }
 
     /**
-     * Lets one construct with a score and a parallelism, that is, the number of threads to effectively use.
+     * Lets one construct with a score and a parallelism, that is, the number of pieces to split parallel
+     * work into. The threads themselves come from the shared ExecutionService.
      */
     public Fges(Score score, int parallelism) {
         if (score == null) {
@@ -192,8 +202,7 @@ public final class Fges implements GraphSearch, GraphScorer {
         }
         setScore(score);
         this.maxThreads = parallelism;
-        this.pool = new ForkJoinPool(parallelism);
-        this.graph = new EdgeListGraphSingleConnections(getVariables());
+        this.graph = new IndexedGraph(getVariables());
     }
 
     //==========================PUBLIC METHODS==========================//
@@ -227,19 +236,21 @@ public final class Fges implements GraphSearch, GraphScorer {
 
         lookupArrows = new ConcurrentHashMap<>();
         final List<Node> nodes = new ArrayList<>(variables);
-        graph = new EdgeListGraphSingleConnections(nodes);
+        graph = new IndexedGraph(nodes);
 
         if (adjacencies != null) {
             adjacencies = GraphUtils.replaceNodes(adjacencies, nodes);
         }
 
         if (initialGraph != null) {
-            graph = new EdgeListGraphSingleConnections(initialGraph);
-            graph = GraphUtils.replaceNodes(graph, nodes);
+            graph = new IndexedGraph(GraphUtils.replaceNodes(initialGraph, nodes));
         }
 
+        searchKnowledge = CompiledKnowledge.compile(knowledge, nodes);
         addRequiredEdges(graph);
 
+        searchScore = scoreCacheSize > 0 ? new CachingScore(score, scoreCacheSize) : score;
+
         if (faithfulnessAssumed) {
             initializeForwardEdgesFromEmptyGraph(getVariables());
 
@@ -272,6 +283,11 @@ public final class Fges implements GraphSearch, GraphScorer {
         this.elapsedTime = endTime - start;
 
         if (verbose) {
+            if (searchScore instanceof CachingScore) {
+                CachingScore cachingScore = (CachingScore) searchScore;
+                out.println("Score cache hits = " + cachingScore.getHits() + " misses = " + cachingScore.getMisses());
+            }
+
             this.logger.forceLogMessage("Returning this graph: " + graph);
 
             this.logger.log("info", "Elapsed time = " + (elapsedTime) / 1000. + " s");
@@ -300,6 +316,7 @@ public final class Fges implements GraphSearch, GraphScorer {
             throw new NullPointerException();
         }
         this.knowledge = knowledge;
+        this.searchKnowledge = knowledge;
     }
 
     public long getElapsedTime() {
@@ -479,6 +496,18 @@ public final class Fges implements GraphSearch, GraphScorer {
         this.maxDegree = maxDegree;
     }
 
+    /**
+     * Sets the maximum number of local score differences to remember during search, so that differences
+     * asked for again in later passes are not recomputed. Set to 0 to turn caching off.
+     */
+    public void setScoreCacheSize(int scoreCacheSize) {
+        if (scoreCacheSize < 0) {
+            throw new IllegalArgumentException("Score cache size must be >= 0: " + scoreCacheSize);
+        }
+
+        this.scoreCacheSize = scoreCacheSize;
+    }
+
     public void setSymmetricFirstStep(boolean symmetricFirstStep) {
         this.symmetricFirstStep = symmetricFirstStep;
     }
@@ -496,6 +525,7 @@ public final class Fges implements GraphSearch, GraphScorer {
     //Sets the discrete scoring function to use.
     private void setScore(Score totalScore) {
         this.score = totalScore;
+        this.searchScore = totalScore;
 
         this.variables = new ArrayList<>();
 
@@ -515,7 +545,13 @@ public final class Fges implements GraphSearch, GraphScorer {
     private int getMinChunk(int n) {
         // The minimum number of operations to do before parallelizing.
         int minChunk = 100;
-        return Math.max(n / maxThreads, minChunk);
+        return Math.max(n / getNumChunks(), minChunk);
+    }
+
+    // The number of pieces to split parallel work into; 1 if this search is itself running as
+    // a task (as in resampling) and there are no idle threads to give it.
+    private int getNumChunks() {
+        return executor.getParallelism(maxThreads) == 1 ? 1 : maxThreads;
     }
 
     class NodeTaskEmptyGraph implements Callable<Boolean> {
@@ -547,7 +583,7 @@ public final class Fges implements GraphSearch, GraphScorer {
                     Node x = nodes.get(j);
 
                     if (existsKnowledge()) {
-                        if (getKnowledge().isForbidden(x.getName(), y.getName()) && getKnowledge().isForbidden(y.getName(), x.getName())) {
+                        if (searchKnowledge.isForbidden(x.getName(), y.getName()) && searchKnowledge.isForbidden(y.getName(), x.getName())) {
                             continue;
                         }
 
@@ -567,13 +603,13 @@ public final class Fges implements GraphSearch, GraphScorer {
 
                     // if the initial graph graph is empty, proceed as usual
                     if (initialGraph == null){
-                        bump = score.localScoreDiff(parent, child);
+                        bump = searchScore.localScoreDiff(parent, child);
 
                     }
                     else{
                         // if x or y has no adjacency in the initial graph, then proceed as if initial graph is empty
                         if (initialGraph.getAdjacentNodes(x).isEmpty() && initialGraph.getAdjacentNodes(y).isEmpty()) {
-                            bump = score.localScoreDiff(parent, child);
+                            bump = searchScore.localScoreDiff(parent, child);
 
                         }
                         // if x or y has adjacencies in the initial graph, then that should be considered in scoring
@@ -586,7 +622,7 @@ public final class Fges implements GraphSearch, GraphScorer {
                                 parentIndicesY[c++] = hashIndices.get(p);
                             }
 
-                            bump  = score.localScoreDiff(parent, child, parentIndicesY);
+                            bump  = searchScore.localScoreDiff(parent, child, parentIndicesY);
 
 //							if (verbose2){
 //								System.out.println("bump: " + bump);
@@ -599,12 +635,12 @@ public final class Fges implements GraphSearch, GraphScorer {
                     // computing the bump of an edge from y (child) --> x (parent)
                     if (symmetricFirstStep) {
                         if (initialGraph == null){
-                            bump2 = score.localScoreDiff(child, parent);
+                            bump2 = searchScore.localScoreDiff(child, parent);
                         }
                         else{
                             // if x or y has no adjacency, then proceed as an empty initial graph
                             if (initialGraph.getAdjacentNodes(x).isEmpty() && initialGraph.getAdjacentNodes(y).isEmpty()) {
-                                bump2 = score.localScoreDiff(child, parent);
+                                bump2 = searchScore.localScoreDiff(child, parent);
 
                             }
                             else{
@@ -616,7 +652,7 @@ public final class Fges implements GraphSearch, GraphScorer {
                                     parentIndicesX[c++] = hashIndices.get(p);
                                 }
 
-                                bump2  = score.localScoreDiff(child, parent, parentIndicesX);
+                                bump2  = searchScore.localScoreDiff(child, parent, parentIndicesX);
 
 //								if (verbose2){
 //									System.out.println("bump2: " + bump2);
@@ -702,7 +738,7 @@ public final class Fges implements GraphSearch, GraphScorer {
 
         List<Callable<Boolean>> tasks = new ArrayList<>();
 
-        int numNodesPerTask = Math.max(100, nodes.size() / maxThreads);
+        int numNodesPerTask = Math.max(100, nodes.size() / getNumChunks());
 
         for (int i = 0; i < nodes.size() && !Thread.currentThread().isInterrupted(); i += numNodesPerTask) {
             NodeTaskEmptyGraph task = new NodeTaskEmptyGraph(i, Math.min(nodes.size(), i + numNodesPerTask),
@@ -710,7 +746,7 @@ public final class Fges implements GraphSearch, GraphScorer {
             tasks.add(task);
         }
 
-        pool.invokeAll(tasks);
+        executor.invokeAll(tasks);
 
         long stop = System.currentTimeMillis();
 
@@ -801,7 +837,7 @@ public final class Fges implements GraphSearch, GraphScorer {
                             }
 
                             if (existsKnowledge()) {
-                                if (getKnowledge().isForbidden(x.getName(), y.getName()) && getKnowledge().isForbidden(y.getName(), x.getName())) {
+                                if (searchKnowledge.isForbidden(x.getName(), y.getName()) && searchKnowledge.isForbidden(y.getName(), x.getName())) {
                                     continue;
                                 }
 
@@ -834,7 +870,7 @@ public final class Fges implements GraphSearch, GraphScorer {
             }
         }
 
-        pool.invoke(new InitializeFromExistingGraphTask(getMinChunk(nodes.size()), 0, nodes.size()));
+        executor.invoke(new InitializeFromExistingGraphTask(getMinChunk(nodes.size()), 0, nodes.size()));
     }
 
     private void initializeForwardEdgesFromExistingGraph(final List<Node> nodes) {
@@ -901,7 +937,7 @@ public final class Fges implements GraphSearch, GraphScorer {
                             }
 
                             if (existsKnowledge()) {
-                                if (getKnowledge().isForbidden(x.getName(), y.getName()) && getKnowledge().isForbidden(y.getName(), x.getName())) {
+                                if (searchKnowledge.isForbidden(x.getName(), y.getName()) && searchKnowledge.isForbidden(y.getName(), x.getName())) {
                                     continue;
                                 }
 
@@ -934,7 +970,7 @@ public final class Fges implements GraphSearch, GraphScorer {
             }
         }
 
-        pool.invoke(new InitializeFromExistingGraphTask(getMinChunk(nodes.size()), 0, nodes.size()));
+        executor.invoke(new InitializeFromExistingGraphTask(getMinChunk(nodes.size()), 0, nodes.size()));
     }
 
     private void fes() {
@@ -1080,7 +1116,7 @@ public final class Fges implements GraphSearch, GraphScorer {
             toProcess.addAll(newArrows);
         }
 
-        return meekOrientRestricted(new ArrayList<>(toProcess), getKnowledge());
+        return meekOrientRestricted(new ArrayList<>(toProcess), searchKnowledge);
     }
 
     // Returns true if knowledge is not empty.
@@ -1095,7 +1131,7 @@ public final class Fges implements GraphSearch, GraphScorer {
             Node y = edge.getNode2();
 
             if (existsKnowledge()) {
-                if (!getKnowledge().noEdgeRequired(x.getName(), y.getName())) {
+                if (!searchKnowledge.noEdgeRequired(x.getName(), y.getName())) {
                     continue;
                 }
             }
@@ -1184,14 +1220,14 @@ public final class Fges implements GraphSearch, GraphScorer {
 
         List<Callable<Boolean>> tasks = new ArrayList<>();
 
-        int numNodesPerTask = Math.max(100, nodes.size() / maxThreads);
+        int numNodesPerTask = Math.max(100, nodes.size() / getNumChunks());
 
         for (int i = 0; i < nodes.size() && !Thread.currentThread().isInterrupted(); i += numNodesPerTask) {
             AdjTask task = new AdjTask(new ArrayList<>(nodes), i, Math.min(nodes.size(), i + numNodesPerTask));
             tasks.add(task);
         }
 
-        pool.invokeAll(tasks);
+        executor.invokeAll(tasks);
     }
 
     // Calculates the new arrows for an a->b edge.
@@ -1211,7 +1247,7 @@ public final class Fges implements GraphSearch, GraphScorer {
         }
 
         if (existsKnowledge()) {
-            if (getKnowledge().isForbidden(a.getName(), b.getName())) {
+            if (searchKnowledge.isForbidden(a.getName(), b.getName())) {
                 return;
             }
         }
@@ -1342,7 +1378,7 @@ public final class Fges implements GraphSearch, GraphScorer {
         for (Node r : toProcess) {
             this.neighbors.put(r, getNeighbors(r));
             List<Node> adjacentNodes = graph.getAdjacentNodes(r);
-            pool.invoke(new BackwardTask(r, adjacentNodes, getMinChunk(adjacentNodes.size()), 0,
+            executor.invoke(new BackwardTask(r, adjacentNodes, getMinChunk(adjacentNodes.size()), 0,
                     adjacentNodes.size(), hashIndices));
         }
     }
@@ -1350,7 +1386,7 @@ public final class Fges implements GraphSearch, GraphScorer {
     // Calculates the arrows for the removal in the backward direction.
     private void calculateArrowsBackward(Node a, Node b) {
         if (existsKnowledge()) {
-            if (!getKnowledge().noEdgeRequired(a.getName(), b.getName())) {
+            if (!searchKnowledge.noEdgeRequired(a.getName(), b.getName())) {
                 return;
             }
         }
@@ -1670,12 +1706,12 @@ public final class Fges implements GraphSearch, GraphScorer {
         boolean violatesKnowledge = false;
 
         if (existsKnowledge()) {
-            if (knowledge.isForbidden(x.getName(), y.getName())) {
+            if (searchKnowledge.isForbidden(x.getName(), y.getName())) {
                 violatesKnowledge = true;
             }
 
             for (Node t : T) {
-                if (knowledge.isForbidden(t.getName(), y.getName())) {
+                if (searchKnowledge.isForbidden(t.getName(), y.getName())) {
                     violatesKnowledge = true;
                 }
             }
@@ -1693,11 +1729,11 @@ public final class Fges implements GraphSearch, GraphScorer {
 
         if (existsKnowledge()) {
             for (Node h : H) {
-                if (knowledge.isForbidden(x.getName(), h.getName())) {
+                if (searchKnowledge.isForbidden(x.getName(), h.getName())) {
                     violatesKnowledge = true;
                 }
 
-                if (knowledge.isForbidden(y.getName(), h.getName())) {
+                if (searchKnowledge.isForbidden(y.getName(), h.getName())) {
                     violatesKnowledge = true;
                 }
             }
@@ -1738,7 +1774,7 @@ public final class Fges implements GraphSearch, GraphScorer {
             final String A = edge.getNode1().getName();
             final String B = edge.getNode2().getName();
 
-            if (knowledge.isForbidden(A, B)) {
+            if (searchKnowledge.isForbidden(A, B)) {
                 Node nodeA = edge.getNode1();
                 Node nodeB = edge.getNode2();
                 if (nodeA == null || nodeB == null) {
@@ -1757,7 +1793,7 @@ public final class Fges implements GraphSearch, GraphScorer {
                     }
                 }
 
-                if (!graph.isChildOf(nodeA, nodeB) && getKnowledge().isForbidden(nodeA.getName(), nodeB.getName())) {
+                if (!graph.isChildOf(nodeA, nodeB) && searchKnowledge.isForbidden(nodeA.getName(), nodeB.getName())) {
                     if (!graph.isAncestorOf(nodeA, nodeB)) {
                         graph.removeEdges(nodeA, nodeB);
                         graph.addDirectedEdge(nodeB, nodeA);
@@ -1768,7 +1804,7 @@ public final class Fges implements GraphSearch, GraphScorer {
                         }
                     }
                 }
-            } else if (knowledge.isForbidden(B, A)) {
+            } else if (searchKnowledge.isForbidden(B, A)) {
                 Node nodeA = edge.getNode2();
                 Node nodeB = edge.getNode1();
                 if (nodeA == null || nodeB == null) {
@@ -1786,7 +1822,7 @@ public final class Fges implements GraphSearch, GraphScorer {
                         }
                     }
                 }
-                if (!graph.isChildOf(nodeA, nodeB) && getKnowledge().isForbidden(nodeA.getName(), nodeB.getName())) {
+                if (!graph.isChildOf(nodeA, nodeB) && searchKnowledge.isForbidden(nodeA.getName(), nodeB.getName())) {
                     if (!graph.isAncestorOf(nodeA, nodeB)) {
                         graph.removeEdges(nodeA, nodeB);
                         graph.addDirectedEdge(nodeB, nodeA);
@@ -1806,7 +1842,7 @@ public final class Fges implements GraphSearch, GraphScorer {
     // forbidden.
     private boolean invalidSetByKnowledge(Node y, Set<Node> subset) {
         for (Node node : subset) {
-            if (getKnowledge().isForbidden(node.getName(), y.getName())) {
+            if (searchKnowledge.isForbidden(node.getName(), y.getName())) {
                 return true;
             }
         }
@@ -2036,7 +2072,7 @@ public final class Fges implements GraphSearch, GraphScorer {
             parentIndices[count++] = hashIndices.get(parent);
         }
 
-        return score.localScoreDiff(hashIndices.get(x), yIndex, parentIndices);
+        return searchScore.localScoreDiff(hashIndices.get(x), yIndex, parentIndices);
     }
 
     private List<Node> getVariables() {
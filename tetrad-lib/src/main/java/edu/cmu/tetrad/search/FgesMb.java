@@ -25,7 +25,7 @@ import edu.cmu.tetrad.data.Knowledge2;
 import edu.cmu.tetrad.data.KnowledgeEdge;
 import edu.cmu.tetrad.graph.*;
 import edu.cmu.tetrad.util.ChoiceGenerator;
-import edu.cmu.tetrad.util.ForkJoinPoolInstance;
+import edu.cmu.tetrad.util.ExecutionService;
 import edu.cmu.tetrad.util.TaskManager;
 import edu.cmu.tetrad.util.TetradLogger;
 import java.io.PrintStream;
@@ -146,7 +146,7 @@ public final class FgesMb {
     private ConcurrentMap<Node, Integer> hashIndices;
 
     // The static ForkJoinPool instance.
-    private ForkJoinPool pool = ForkJoinPoolInstance.getInstance().getPool();
+    private ForkJoinPool pool = ExecutionService.getInstance().getPool();
 
     // A running tally of the total BIC totalScore.
     private double totalScore;
@@ -184,7 +184,7 @@ public final class FgesMb {
      */
     private boolean faithfulnessAssumed = true;
 
-    final int maxThreads = ForkJoinPoolInstance.getInstance().getPool().getParallelism();
+    final int maxThreads = ExecutionService.getInstance().getParallelism();
 
     //===========================CONSTRUCTORS=============================//
     /**
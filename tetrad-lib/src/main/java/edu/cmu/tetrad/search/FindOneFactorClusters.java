@@ -27,6 +27,7 @@ import edu.cmu.tetrad.sem.*;
 import edu.cmu.tetrad.util.*;
 
 import java.util.*;
+import java.util.concurrent.Callable;
 
 import static java.lang.Math.abs;
 import static java.lang.Math.sqrt;
@@ -75,6 +76,12 @@ public class FindOneFactorClusters {
     private boolean significanceCalculated = false;
     private Algorithm algorithm = Algorithm.GAP;
 
+    // P values of the tests of vanishing tetrads, by quartet, shared by the tasks of the search.
+    private TupleTestCache cache;
+
+    // zeroCorrelated[i] holds the variables whose correlation with variable i is not significant.
+    private BitSet[] zeroCorrelated;
+
     //========================================PUBLIC METHODS====================================//
 
     public FindOneFactorClusters(ICovarianceMatrix cov, TestType testType, Algorithm algorithm, double alpha) {
@@ -89,8 +96,7 @@ public class FindOneFactorClusters {
         this.algorithm = algorithm;
 
         this.corr = new CorrelationMatrix(cov);
-
-
+        this.cache = new TupleTestCache(variables.size(), 4, 2, 1000000);
     }
 
     public FindOneFactorClusters(DataSet dataSet, TestType testType, Algorithm algorithm, double alpha) {
@@ -99,11 +105,12 @@ public class FindOneFactorClusters {
         this.alpha = alpha;
         this.testType = testType;
         this.test = new DeltaTetradTest(dataSet);
-        this.test2 = new ContinuousTetradTest(dataSet, testType, alpha);
+        this.test2 = new ContinuousTetradTest(dataSet, testType, alpha, test.getFourthMoments());
         this.dataModel = dataSet;
         this.algorithm = algorithm;
 
         this.corr = new CorrelationMatrix(dataSet);
+        this.cache = new TupleTestCache(variables.size(), 4, 2, 1000000);
     }
 
     // renjiey
@@ -210,6 +217,8 @@ public class FindOneFactorClusters {
     public Graph search() {
         Set<List<Integer>> allClusters;
 
+        screenCorrelations();
+
         if (algorithm == Algorithm.SAG) {
             allClusters = estimateClustersTetradsFirst();
         } else if (algorithm == Algorithm.GAP) {
@@ -263,61 +272,72 @@ public class FindOneFactorClusters {
 
     }
 
-    private Set<Set<Integer>> findPuretriples(List<Integer> allVariables) {
+    private Set<Set<Integer>> findPuretriples(final List<Integer> allVariables) {
         if (allVariables.size() < 4) {
             return new HashSet<>();
         }
 
         log("Finding pure triples.");
 
-        ChoiceGenerator gen = new ChoiceGenerator(allVariables.size(), 3);
-        int[] choice;
-        Set<Set<Integer>> puretriples = new HashSet<>();
-        CHOICE:
-        while ((choice = gen.next()) != null) {
-            if (Thread.currentThread().isInterrupted()) {
-                break;
-            }
+        final int n = allVariables.size();
+        List<Callable<List<List<Integer>>>> tasks = new ArrayList<>();
 
-            int n1 = allVariables.get(choice[0]);
-            int n2 = allVariables.get(choice[1]);
-            int n3 = allVariables.get(choice[2]);
+        // The triples are split among tasks by their first variable. A pair of variables that is not significantly
+        // correlated rules out every triple containing it before any third variable is tried.
+        for (int i = 0; i < n - 2; i++) {
+            final int _i = i;
 
-            List<Integer> triple = triple(n1, n2, n3);
+            tasks.add(() -> {
+                List<List<Integer>> puretriples = new ArrayList<>();
+                int n1 = allVariables.get(_i);
 
-            if (zeroCorr(triple)) continue;
+                for (int j = _i + 1; j < n - 1; j++) {
+                    int n2 = allVariables.get(j);
 
-            for (int o : allVariables) {
-                if (Thread.currentThread().isInterrupted()) {
-                    break;
-                }
+                    if (zeroCorrelated[n1].get(n2)) continue;
 
-                if (triple.contains(o)) {
-                    continue;
-                }
+                    CHOICE:
+                    for (int k = j + 1; k < n; k++) {
+                        if (Thread.currentThread().isInterrupted()) {
+                            return puretriples;
+                        }
+
+                        int n3 = allVariables.get(k);
 
-                List<Integer> quartet = quartet(n1, n2, n3, o);
+                        if (zeroCorrelated[n1].get(n3) || zeroCorrelated[n2].get(n3)) continue;
 
-                boolean vanishes = vanishes(quartet);
+                        for (int o : allVariables) {
+                            if (o == n1 || o == n2 || o == n3) {
+                                continue;
+                            }
+
+                            if (!vanishes(n1, n2, n3, o)) {
+                                continue CHOICE;
+                            }
+                        }
 
-                if (!vanishes) {
-                    continue CHOICE;
+                        puretriples.add(triple(n1, n2, n3));
+                    }
                 }
 
-//                if (!(avgSumLnP(quartet) > -20)) {
-//                    continue CHOICE;
-//                }
-            }
+                return puretriples;
+            });
+        }
 
-            HashSet<Integer> _cluster = new HashSet<>(triple);
+        Set<Set<Integer>> puretriples = new HashSet<>();
 
-            if (verbose) {
-                log("++" + variablesForIndices(triple));
-            }
+        for (List<List<Integer>> triples : ExecutionService.getInstance().invokeAllAndGet(tasks)) {
+            for (List<Integer> triple : triples) {
+                if (verbose) {
+                    log("++" + variablesForIndices(triple));
+                }
 
-            puretriples.add(_cluster);
+                puretriples.add(new HashSet<>(triple));
+            }
         }
 
+        log(puretriples.size() + " pure triples; " + cache.size() + " tetrad tests cached.");
+
         return puretriples;
     }
 
@@ -1126,19 +1146,45 @@ public class FindOneFactorClusters {
     }
 
     private boolean zeroCorr(List<Integer> cluster) {
-        int count = 0;
-
         for (int i = 0; i < cluster.size(); i++) {
             for (int j = i + 1; j < cluster.size(); j++) {
-                double r = this.corr.getValue(cluster.get(i), cluster.get(j));
-                int N = this.corr.getSampleSize();
+                if (zeroCorrelated[cluster.get(i)].get(cluster.get(j))) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    // Records, for each pair of variables, whether their correlation is insignificant at level alpha.
+    private void screenCorrelations() {
+        if (zeroCorrelated != null) {
+            return;
+        }
+
+        int numVars = variables.size();
+        int N = this.corr.getSampleSize();
+        BitSet[] zeroCorrelated = new BitSet[numVars];
+
+        for (int i = 0; i < numVars; i++) {
+            zeroCorrelated[i] = new BitSet(numVars);
+        }
+
+        for (int i = 0; i < numVars; i++) {
+            for (int j = i + 1; j < numVars; j++) {
+                double r = this.corr.getValue(i, j);
                 double f = sqrt(N) * Math.log((1. + r) / (1. - r));
                 double p = 2.0 * (1.0 - RandomUtil.getInstance().normalCdf(0, 1, abs(f)));
-                if (p > alpha) count++;
+
+                if (p > alpha) {
+                    zeroCorrelated[i].set(j);
+                    zeroCorrelated[j].set(i);
+                }
             }
         }
 
-        return count >= 1;
+        this.zeroCorrelated = zeroCorrelated;
     }
 
     /**
@@ -1152,14 +1198,43 @@ public class FindOneFactorClusters {
         this.verbose = verbose;
     }
 
+    /**
+     * @param maxCachedTests The maximum number of tetrad test results kept for reuse during the search. By default
+     *                       1,000,000.
+     */
+    public void setMaxCachedTests(int maxCachedTests) {
+        cache.setMaxSize(maxCachedTests);
+    }
+
+    // The two tetrads tested for x, y, z, w are the two that share the pairing {x, y}, {z, w}, so p values are
+    // cached by the sorted quartet together with the partner of its least variable in that pairing.
     private boolean vanishes(int x, int y, int z, int w) {
+        int[] quartet = {x, y, z, w};
+        Arrays.sort(quartet);
+        int partner = quartet[0] == x ? y : quartet[0] == y ? x : quartet[0] == z ? w : z;
+        int tag = Arrays.binarySearch(quartet, partner);
+
+        long key = cache.key(quartet, tag);
+        double p = cache.get(key);
+
+        if (Double.isNaN(p)) {
+            p = tetradPValue(x, y, z, w);
+            cache.put(key, p);
+        }
+
+        return p > alpha;
+    }
+
+    private double tetradPValue(int x, int y, int z, int w) {
         if (testType == TestType.TETRAD_DELTA) {
             Tetrad t1 = new Tetrad(variables.get(x), variables.get(y), variables.get(z), variables.get(w));
             Tetrad t2 = new Tetrad(variables.get(x), variables.get(y), variables.get(w), variables.get(z));
 
-            return test.getPValue(t1, t2) > alpha;
+            return test.getPValue(t1, t2);
         } else if (testType == TestType.TETRAD_WISHART) {
-            return test2.tetradPValue(x, y, z, w) > alpha && test2.tetradPValue(x, y, w, z) > alpha;
+            synchronized (test2) {
+                return Math.min(test2.tetradPValue(x, y, z, w), test2.tetradPValue(x, y, w, z));
+            }
         }
 
         throw new IllegalArgumentException("Only the delta and wishart tests are being used: " + testType);
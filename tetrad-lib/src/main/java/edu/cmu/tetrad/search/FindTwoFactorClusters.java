@@ -27,6 +27,7 @@ import edu.cmu.tetrad.sem.*;
 import edu.cmu.tetrad.util.*;
 
 import java.util.*;
+import java.util.concurrent.Callable;
 
 import static java.lang.Math.abs;
 import static java.lang.Math.sqrt;
@@ -68,6 +69,12 @@ public class FindTwoFactorClusters {
     private boolean verbose = false;
     private Algorithm algorithm = Algorithm.GAP;
 
+    // P values of the tests of vanishing sextads, by ordered sextet, shared by the tasks of the search.
+    private TupleTestCache cache;
+
+    // zeroCorrelated[i] holds the variables whose correlation with variable i is not significant.
+    private BitSet[] zeroCorrelated;
+
     //========================================PUBLIC METHODS====================================//
 
     public FindTwoFactorClusters(ICovarianceMatrix cov, Algorithm algorithm, double alpha) {
@@ -79,8 +86,7 @@ public class FindTwoFactorClusters {
         this.algorithm = algorithm;
 
         this.corr = new CorrelationMatrix(cov);
-
-
+        this.cache = new TupleTestCache(variables.size(), 6, 0, 1000000);
     }
 
     public FindTwoFactorClusters(DataSet dataSet, Algorithm algorithm, double alpha) {
@@ -91,6 +97,7 @@ public class FindTwoFactorClusters {
         this.algorithm = algorithm;
 
         this.corr = new CorrelationMatrix(dataSet);
+        this.cache = new TupleTestCache(variables.size(), 6, 0, 1000000);
     }
 
     // renjiey
@@ -197,6 +204,8 @@ public class FindTwoFactorClusters {
     public Graph search() {
         Set<List<Integer>> allClusters;
 
+        screenCorrelations();
+
         if (algorithm == Algorithm.SAG) {
             allClusters = estimateClustersSAG();
         } else if (algorithm == Algorithm.GAP) {
@@ -246,57 +255,109 @@ public class FindTwoFactorClusters {
 
     }
 
-    private Set<List<Integer>> findPurepentads(List<Integer> variables) {
+    private Set<List<Integer>> findPurepentads(final List<Integer> variables) {
         if (variables.size() < 6) {
             return new HashSet<>();
         }
 
         log("Finding pure pentads.", true);
 
-        ChoiceGenerator gen = new ChoiceGenerator(variables.size(), 5);
-        int[] choice;
-        Set<List<Integer>> purePentads = new HashSet<>();
-        CHOICE:
-        while ((choice = gen.next()) != null) {
-            int n1 = variables.get(choice[0]);
-            int n2 = variables.get(choice[1]);
-            int n3 = variables.get(choice[2]);
-            int n4 = variables.get(choice[3]);
-            int n5 = variables.get(choice[4]);
+        final int n = variables.size();
+        List<Callable<List<List<Integer>>>> tasks = new ArrayList<>();
 
-            List<Integer> pentad = pentad(n1, n2, n3, n4, n5);
+        // The pentads are split among tasks by their first variable. A pentad with four or more pairs of variables
+        // that are not significantly correlated is skipped; the count is kept as the pentad is built up, so that
+        // every extension of a prefix that already has four such pairs is skipped at once.
+        for (int i1 = 0; i1 < n - 4; i1++) {
+            final int _i1 = i1;
 
-            if (zeroCorr(pentad, 4)) continue;
+            tasks.add(() -> {
+                List<List<Integer>> purePentads = new ArrayList<>();
+                int[] pentad = new int[5];
+                pentad[0] = variables.get(_i1);
 
-            for (int o : variables) {
-                if (pentad.contains(o)) {
-                    continue;
-                }
+                for (int i2 = _i1 + 1; i2 < n - 3; i2++) {
+                    pentad[1] = variables.get(i2);
+                    int z2 = numZeroCorrelated(pentad, 1);
+
+                    for (int i3 = i2 + 1; i3 < n - 2; i3++) {
+                        pentad[2] = variables.get(i3);
+                        int z3 = z2 + numZeroCorrelated(pentad, 2);
+
+                        if (z3 >= 4) continue;
+
+                        for (int i4 = i3 + 1; i4 < n - 1; i4++) {
+                            pentad[3] = variables.get(i4);
+                            int z4 = z3 + numZeroCorrelated(pentad, 3);
+
+                            if (z4 >= 4) continue;
+
+                            CHOICE:
+                            for (int i5 = i4 + 1; i5 < n; i5++) {
+                                if (Thread.currentThread().isInterrupted()) {
+                                    return purePentads;
+                                }
+
+                                pentad[4] = variables.get(i5);
+
+                                if (z4 + numZeroCorrelated(pentad, 4) >= 4) continue;
+
+                                List<Integer> _pentad = pentad(pentad[0], pentad[1], pentad[2], pentad[3], pentad[4]);
+
+                                for (int o : variables) {
+                                    if (_pentad.contains(o)) {
+                                        continue;
+                                    }
 
-                List<Integer> sextet = sextet(n1, n2, n3, n4, n5, o);
+                                    List<Integer> sextet = sextet(pentad[0], pentad[1], pentad[2], pentad[3],
+                                            pentad[4], o);
 
-                Collections.sort(sextet);
+                                    Collections.sort(sextet);
 
-                boolean vanishes = vanishes(sextet);
+                                    if (!vanishes(sextet)) {
+                                        continue CHOICE;
+                                    }
+                                }
 
-                if (!vanishes) {
-                    continue CHOICE;
+                                purePentads.add(_pentad);
+                            }
+                        }
+                    }
                 }
-            }
 
-            List<Integer> _cluster = new ArrayList<>(pentad);
+                return purePentads;
+            });
+        }
+
+        Set<List<Integer>> purePentads = new HashSet<>();
 
-            if (verbose) {
-                System.out.println(variablesForIndices(pentad));
-                log("++" + variablesForIndices(pentad), false);
-            }
+        for (List<List<Integer>> pentads : ExecutionService.getInstance().invokeAllAndGet(tasks)) {
+            for (List<Integer> pentad : pentads) {
+                if (verbose) {
+                    System.out.println(variablesForIndices(pentad));
+                    log("++" + variablesForIndices(pentad), false);
+                }
 
-            purePentads.add(_cluster);
+                purePentads.add(pentad);
+            }
         }
 
+        log(purePentads.size() + " pure pentads; " + cache.size() + " sextad tests cached.", true);
+
         return purePentads;
     }
 
+    // The number of variables among tuple[0], ..., tuple[k - 1] not significantly correlated with tuple[k].
+    private int numZeroCorrelated(int[] tuple, int k) {
+        int count = 0;
+
+        for (int i = 0; i < k; i++) {
+            if (zeroCorrelated[tuple[k]].get(tuple[i])) count++;
+        }
+
+        return count;
+    }
+
     private Set<List<Integer>> combinePurePentads(Set<List<Integer>> purePentads, List<Integer> _variables) {
         log("Growing pure pentads.", true);
         Set<List<Integer>> grown = new HashSet<>();
@@ -1034,15 +1095,41 @@ public class FindTwoFactorClusters {
 
         for (int i = 0; i < cluster.size(); i++) {
             for (int j = i + 1; j < cluster.size(); j++) {
-                double r = this.corr.getValue(cluster.get(i), cluster.get(j));
-                int N = this.corr.getSampleSize();
+                if (zeroCorrelated[cluster.get(i)].get(cluster.get(j))) count++;
+            }
+        }
+
+        return count >= n;
+    }
+
+    // Records, for each pair of variables, whether their correlation is insignificant at level alpha.
+    private void screenCorrelations() {
+        if (zeroCorrelated != null) {
+            return;
+        }
+
+        int numVars = variables.size();
+        int N = this.corr.getSampleSize();
+        BitSet[] zeroCorrelated = new BitSet[numVars];
+
+        for (int i = 0; i < numVars; i++) {
+            zeroCorrelated[i] = new BitSet(numVars);
+        }
+
+        for (int i = 0; i < numVars; i++) {
+            for (int j = i + 1; j < numVars; j++) {
+                double r = this.corr.getValue(i, j);
                 double f = sqrt(N) * Math.log((1. + r) / (1. - r));
                 double p = 2.0 * (1.0 - RandomUtil.getInstance().normalCdf(0, 1, abs(f)));
-                if (p > alpha) count++;
+
+                if (p > alpha) {
+                    zeroCorrelated[i].set(j);
+                    zeroCorrelated[j].set(i);
+                }
             }
         }
 
-        return count >= n;
+        this.zeroCorrelated = zeroCorrelated;
     }
 
     /**
@@ -1056,7 +1143,28 @@ public class FindTwoFactorClusters {
         this.verbose = verbose;
     }
 
+    /**
+     * @param maxCachedTests The maximum number of sextad test results kept for reuse during the search. By default
+     *                       1,000,000.
+     */
+    public void setMaxCachedTests(int maxCachedTests) {
+        cache.setMaxSize(maxCachedTests);
+    }
+
+    // P values are cached by the ordered sextet, since the sextads tested depend on the order.
     private boolean vanishes(int n1, int n2, int n3, int n4, int n5, int n6) {
+        long key = cache.key(new int[]{n1, n2, n3, n4, n5, n6}, 0);
+        double p = cache.get(key);
+
+        if (Double.isNaN(p)) {
+            p = sextadPValue(n1, n2, n3, n4, n5, n6);
+            cache.put(key, p);
+        }
+
+        return !Double.isNaN(p) && p >= alpha;
+    }
+
+    private double sextadPValue(int n1, int n2, int n3, int n4, int n5, int n6) {
         IntSextad t1 = new IntSextad(n1, n2, n3, n4, n5, n6);
         IntSextad t2 = new IntSextad(n1, n5, n6, n2, n3, n4);
         IntSextad t3 = new IntSextad(n1, n4, n6, n2, n3, n5);
@@ -1082,23 +1190,13 @@ public class FindTwoFactorClusters {
         // The four sextads implied by equation 5.17 in Harmann.
 //            independents.add(new IntSextad[]{t3, t7, t8, t9});
 
-        for (IntSextad[] sextads : independents) {
-            double p = test.getPValue(sextads);
-
-            if (Double.isNaN(p)) {
-                return false;
-            }
+        double p = 1.0;
 
-            if (p < alpha) return false;
+        for (IntSextad[] sextads : independents) {
+            p = Math.min(p, test.getPValue(sextads));
         }
 
-//        IntSextad[] sextads = new IntSextad[]{t1, t2, t3, t4, t5, t6, t7, t8, t9, t10};
-//
-//        for (IntSextad sextad : sextads) {
-//            if (test.getScore(sextad) < alpha) return false;
-//        }
-
-        return true;
+        return p;
     }
 
     private Graph convertSearchGraphNodes(Set<Set<Node>> clusters) {
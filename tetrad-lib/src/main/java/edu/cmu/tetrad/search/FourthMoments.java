@@ -0,0 +1,247 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.data.BoxDataSet;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.DataUtils;
+
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Fourth moments E(x_i x_j x_k x_l) of the mean-centered columns of a continuous data set, as used by the delta
+ * tetrad test for non-Gaussian data (Bollen and Ting, p. 160). Moments are computed on demand and stored by sorted
+ * index quadruple, up to a maximum number, so that tests over overlapping sets of variables share them. The store
+ * is thread-safe and may be shared across tests and threads.
+ * <p>
+ * Moments are computed in batches: all of the moments that a test needs and that are not already stored are
+ * accumulated together in a single pass over the rows, in blocks of rows small enough that the column segments and
+ * pairwise products for a block stay in cache.
+ */
+public final class FourthMoments {
+
+    // The number of rows per block.
+    private static final int BLOCK_SIZE = 512;
+
+    // The mean-centered data, by column.
+    private final double[][] columns;
+
+    // The sample size.
+    private final int N;
+
+    // The stored moments, by sorted index quadruple.
+    private final TupleTestCache moments;
+
+    /**
+     * Constructs a store for the given continuous data set, keeping at most 1,000,000 moments.
+     */
+    public FourthMoments(DataSet dataSet) {
+        this(dataSet, 1000000);
+    }
+
+    /**
+     * Constructs a store for the given continuous data set, keeping at most the given number of moments.
+     */
+    public FourthMoments(DataSet dataSet, int maxSize) {
+        if (dataSet == null) {
+            throw new NullPointerException();
+        }
+
+        if (!dataSet.isContinuous()) {
+            throw new IllegalArgumentException("Fourth moments require continuous data.");
+        }
+
+        DataSet centered = DataUtils.center(Collections.singletonList(dataSet)).get(0);
+
+        this.N = centered.getNumRows();
+        this.columns = new double[centered.getNumColumns()][];
+
+        for (int j = 0; j < columns.length; j++) {
+            DoubleBuffer view = centered instanceof BoxDataSet ? ((BoxDataSet) centered).getColumnView(j) : null;
+            double[] column = new double[N];
+
+            if (view != null) {
+                view.get(column);
+            } else {
+                for (int i = 0; i < N; i++) {
+                    column[i] = centered.getDouble(i, j);
+                }
+            }
+
+            columns[j] = column;
+        }
+
+        this.moments = new TupleTestCache(columns.length, 4, 0, maxSize);
+    }
+
+    /**
+     * @return E(x_i x_j x_k x_l), for the mean-centered columns i, j, k and l.
+     */
+    public double getValue(int i, int j, int k, int l) {
+        int[] quadruple = {i, j, k, l};
+        Arrays.sort(quadruple);
+        long key = moments.key(quadruple, 0);
+        double value = moments.get(key);
+
+        if (Double.isNaN(value)) {
+            List<int[]> missing = Collections.singletonList(new int[]{0, 1});
+            value = accumulate(new int[]{i, k}, new int[]{j, l}, missing)[0] / N;
+            moments.put(key, value);
+        }
+
+        return value;
+    }
+
+    /**
+     * Given pairs (first[s], second[s]) of column indices, returns the matrix m with m[s][t] equal to
+     * E(x_first[s] x_second[s] x_first[t] x_second[t]). Moments not already stored are computed together in one
+     * blocked pass over the data.
+     */
+    public double[][] getPairMoments(int[] first, int[] second) {
+        if (first.length != second.length) {
+            throw new IllegalArgumentException("Expecting the same number of first and second indices.");
+        }
+
+        int n = first.length;
+        double[][] m = new double[n][n];
+        long[] keys = new long[n * n];
+        List<int[]> missing = new ArrayList<>();
+        int[] quadruple = new int[4];
+
+        for (int s = 0; s < n; s++) {
+            for (int t = s; t < n; t++) {
+                quadruple[0] = first[s];
+                quadruple[1] = second[s];
+                quadruple[2] = first[t];
+                quadruple[3] = second[t];
+                Arrays.sort(quadruple);
+
+                long key = moments.key(quadruple, 0);
+                double value = moments.get(key);
+                keys[s * n + t] = key;
+
+                if (Double.isNaN(value)) {
+                    missing.add(new int[]{s, t});
+                } else {
+                    m[s][t] = value;
+                    m[t][s] = value;
+                }
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            double[] sums = accumulate(first, second, missing);
+
+            for (int q = 0; q < missing.size(); q++) {
+                int s = missing.get(q)[0];
+                int t = missing.get(q)[1];
+                double value = sums[q] / N;
+
+                m[s][t] = value;
+                m[t][s] = value;
+                moments.put(keys[s * n + t], value);
+            }
+        }
+
+        return m;
+    }
+
+    /**
+     * @return the number of moments stored.
+     */
+    public int size() {
+        return moments.size();
+    }
+
+    /**
+     * @param maxSize The maximum number of moments to store.
+     */
+    public void setMaxSize(int maxSize) {
+        moments.setMaxSize(maxSize);
+    }
+
+    public int getNumVariables() {
+        return columns.length;
+    }
+
+    public int getSampleSize() {
+        return N;
+    }
+
+    //==============================PRIVATE METHODS=============================//
+
+    // For each (s, t) in missing, sums x_first[s] x_second[s] x_first[t] x_second[t] over the rows, a block of rows
+    // at a time. The products x_first[s] x_second[s] for a block are formed once and reused for every t.
+    private double[] accumulate(int[] first, int[] second, List<int[]> missing) {
+        int n = first.length;
+        boolean[] needed = new boolean[n];
+
+        for (int[] pair : missing) {
+            needed[pair[0]] = true;
+            needed[pair[1]] = true;
+        }
+
+        double[][] products = new double[n][];
+
+        for (int s = 0; s < n; s++) {
+            if (needed[s]) {
+                products[s] = new double[Math.min(BLOCK_SIZE, N)];
+            }
+        }
+
+        double[] sums = new double[missing.size()];
+
+        for (int start = 0; start < N; start += BLOCK_SIZE) {
+            int length = Math.min(BLOCK_SIZE, N - start);
+
+            for (int s = 0; s < n; s++) {
+                if (!needed[s]) continue;
+
+                double[] a = columns[first[s]];
+                double[] b = columns[second[s]];
+                double[] p = products[s];
+
+                for (int r = 0; r < length; r++) {
+                    p[r] = a[start + r] * b[start + r];
+                }
+            }
+
+            for (int q = 0; q < sums.length; q++) {
+                double[] p1 = products[missing.get(q)[0]];
+                double[] p2 = products[missing.get(q)[1]];
+                double sum = 0.0;
+
+                for (int r = 0; r < length; r++) {
+                    sum += p1[r] * p2[r];
+                }
+
+                sums[q] += sum;
+            }
+        }
+
+        return sums;
+    }
+}
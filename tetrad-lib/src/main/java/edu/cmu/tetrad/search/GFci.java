@@ -80,6 +80,15 @@ public final class GFci implements GraphSearch {
     private SepsetProducer sepsets;
     private long elapsedTime;
 
+    // True iff the possible-d-sep step of FCI is run after the collider step. False by default.
+    private boolean possibleDsepSearchDone = false;
+
+    // True iff the independence test may be called from several threads at once. False by default.
+    private boolean testThreadSafe = false;
+
+    // Sepsets for edges removed by the possible-d-sep step.
+    private SepsetMap possibleDsepSepsets = new SepsetMap();
+
     //============================CONSTRUCTORS============================//
     public GFci(IndependenceTest test, Score score) {
         if (score == null) {
@@ -144,6 +153,22 @@ public final class GFci implements GraphSearch {
 
         modifiedR0(fgesGraph);
 
+        possibleDsepSepsets = new SepsetMap();
+
+        if (possibleDsepSearchDone) {
+            PossibleDsepStable possibleDsep = new PossibleDsepStable(independenceTest);
+            possibleDsep.setKnowledge(getKnowledge());
+            possibleDsep.setDepth(maxDegree);
+            possibleDsep.setMaxPathLength(maxPathLength);
+            possibleDsep.setVerbose(verbose);
+            possibleDsep.setOut(out);
+            if (testThreadSafe) possibleDsep.setTestThreadSafe(true);
+
+            if (possibleDsep.search(graph, possibleDsepSepsets) > 0) {
+                modifiedR0(fgesGraph);
+            }
+        }
+
         FciOrient fciOrient = new FciOrient(sepsets);
         fciOrient.setVerbose(verbose);
         fciOrient.setOut(out);
@@ -212,7 +237,11 @@ public final class GFci implements GraphSearch {
                     graph.setEndpoint(a, b, Endpoint.ARROW);
                     graph.setEndpoint(c, b, Endpoint.ARROW);
                 } else if (fgesGraph.isAdjacentTo(a, c) && !graph.isAdjacentTo(a, c)) {
-                    List<Node> sepset = sepsets.getSepset(a, c);
+                    List<Node> sepset = possibleDsepSepsets.get(a, c);
+
+                    if (sepset == null) {
+                        sepset = sepsets.getSepset(a, c);
+                    }
 
                     if (sepset != null && !sepset.contains(b)) {
                         graph.setEndpoint(a, b, Endpoint.ARROW);
@@ -223,6 +252,34 @@ public final class GFci implements GraphSearch {
         }
     }
 
+    /**
+     * @return true iff the possible-d-sep step of FCI is run after the collider step.
+     */
+    public boolean isPossibleDsepSearchDone() {
+        return possibleDsepSearchDone;
+    }
+
+    /**
+     * @param possibleDsepSearchDone true iff edges should also be removed, after colliders are oriented, if some
+     *                               subset of a possible-d-sep set separates their endpoints. This is needed for
+     *                               correctness when the greedy step leaves such edges in place. False by default.
+     */
+    public void setPossibleDsepSearchDone(boolean possibleDsepSearchDone) {
+        this.possibleDsepSearchDone = possibleDsepSearchDone;
+    }
+
+    public boolean isTestThreadSafe() {
+        return testThreadSafe;
+    }
+
+    /**
+     * @param testThreadSafe true iff the independence test may be called from several threads at once, in which case
+     *                       the possible-d-sep step tests edges concurrently. False by default.
+     */
+    public void setTestThreadSafe(boolean testThreadSafe) {
+        this.testThreadSafe = testThreadSafe;
+    }
+
     public IKnowledge getKnowledge() {
         return knowledge;
     }
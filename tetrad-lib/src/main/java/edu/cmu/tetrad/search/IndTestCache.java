@@ -0,0 +1,645 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.data.DataModel;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.ICovarianceMatrix;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.util.TetradMatrix;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Wraps an independence test and remembers its answers, so that questions asked again--by the adjacency search, then
+ * by sepset selection, possible-d-sep, orientation and so on--are answered without recomputing them. Facts are keyed
+ * on the unordered pair {x, y} together with the set z, so x _||_ y | z and y _||_ x | z' for any reordering z' of z
+ * share an entry. Each entry keeps the p-value, the judgment, the score and the alpha it was judged at.
+ * <p>
+ * If alpha is changed, remembered p-values are judged again at the new alpha as independent iff p &gt; alpha, which
+ * is how FisherZ, ChiSquare, the conditional Gaussian and KCI tests decide. For tests that decide some other way,
+ * call setDecidesByPValue(false); facts remembered at another alpha are then recomputed. Since scores depend on
+ * alpha, the score of a fact judged again is recomputed by the wrapped test if getScore() is called.
+ * <p>
+ * The cache is safe to share among threads and holds at most getMaxSize() facts, evicting facts that haven't been
+ * asked about recently (the clock, or second-chance, policy). Since most tests keep the p-value of their last
+ * judgment in a field, by default only one thread at a time calls the wrapped test, so that each judgment is stored
+ * with its own p-value and score; getPValue() and getScore() here report the last fact asked about by the calling
+ * thread. Facts can be saved
+ * to a file and loaded into a later run on the same data, for instance one with a different alpha.
+ */
+public final class IndTestCache implements IndependenceTest {
+
+    /**
+     * Marks files written by save().
+     */
+    private static final int MAGIC = 0x54434954;
+
+    /**
+     * The version of the file format.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * The wrapped test.
+     */
+    private final IndependenceTest test;
+
+    /**
+     * The variables of the wrapped test.
+     */
+    private final List<Node> variables;
+
+    /**
+     * The index of each variable of the wrapped test.
+     */
+    private final Map<Node, Integer> indices = new HashMap<>();
+
+    /**
+     * The remembered facts.
+     */
+    private final ConcurrentHashMap<Key, Fact> facts = new ConcurrentHashMap<>();
+
+    /**
+     * Held while evicting, so only one thread evicts at a time.
+     */
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    /**
+     * The last fact asked about, for each thread.
+     */
+    private final ThreadLocal<Fact> last = new ThreadLocal<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private volatile int maxSize = 1000000;
+    private volatile boolean decidesByPValue = true;
+    private volatile boolean testThreadSafe = false;
+
+    /**
+     * Wraps the given test.
+     */
+    public IndTestCache(IndependenceTest test) {
+        if (test == null) throw new NullPointerException();
+        this.test = test;
+        this.variables = new ArrayList<>(test.getVariables());
+
+        for (int i = 0; i < variables.size(); i++) {
+            indices.put(variables.get(i), i);
+        }
+    }
+
+    //===========================PUBLIC METHODS===========================//
+
+    /**
+     * @return an Independence test for a subset of the variables, cached separately.
+     */
+    public IndependenceTest indTestSubset(List<Node> vars) {
+        return new IndTestCache(test.indTestSubset(vars));
+    }
+
+    /**
+     * @return the remembered judgment of x _||_ y | z, asking the wrapped test if there is none.
+     */
+    public boolean isIndependent(Node x, Node y, List<Node> z) {
+        Key key = key(x, y, z);
+        double alpha = alpha();
+        Fact fact = facts.get(key);
+
+        if (fact != null) {
+            fact.used = true;
+
+            if (sameAlpha(fact.alpha, alpha)) {
+                hits.increment();
+                last.set(fact);
+                return fact.independent;
+            }
+
+            if (decidesByPValue && !Double.isNaN(fact.pValue)) {
+                hits.increment();
+                Fact judged = new Fact(key, fact.pValue > alpha, fact.pValue, alpha);
+                facts.put(key, judged);
+                last.set(judged);
+                return judged.independent;
+            }
+        }
+
+        misses.increment();
+        Fact fact2;
+
+        if (testThreadSafe) {
+            fact2 = ask(key, x, y, z, alpha);
+        } else {
+            synchronized (test) {
+                fact2 = ask(key, x, y, z, alpha);
+            }
+        }
+
+        facts.put(key, fact2);
+        last.set(fact2);
+
+        if (facts.size() > maxSize) {
+            evict();
+        }
+
+        return fact2.independent;
+    }
+
+    public boolean isIndependent(Node x, Node y, Node... z) {
+        return isIndependent(x, y, Arrays.asList(z));
+    }
+
+    public boolean isDependent(Node x, Node y, List<Node> z) {
+        return !isIndependent(x, y, z);
+    }
+
+    public boolean isDependent(Node x, Node y, Node... z) {
+        return isDependent(x, y, Arrays.asList(z));
+    }
+
+    /**
+     * @return the p-value of the last fact asked about by this thread.
+     */
+    public double getPValue() {
+        Fact fact = last.get();
+        return fact == null ? Double.NaN : fact.pValue;
+    }
+
+    public List<Node> getVariables() {
+        return test.getVariables();
+    }
+
+    public Node getVariable(String name) {
+        return test.getVariable(name);
+    }
+
+    public List<String> getVariableNames() {
+        return test.getVariableNames();
+    }
+
+    public boolean determines(List<Node> z, Node y) {
+        return test.determines(z, y);
+    }
+
+    public double getAlpha() {
+        return test.getAlpha();
+    }
+
+    /**
+     * Sets the significance level of the wrapped test. Remembered facts are kept; see the class comment.
+     */
+    public void setAlpha(double alpha) {
+        test.setAlpha(alpha);
+    }
+
+    public DataModel getData() {
+        return test.getData();
+    }
+
+    public ICovarianceMatrix getCov() {
+        return test.getCov();
+    }
+
+    public List<DataSet> getDataSets() {
+        return test.getDataSets();
+    }
+
+    public int getSampleSize() {
+        return test.getSampleSize();
+    }
+
+    public List<TetradMatrix> getCovMatrices() {
+        return test.getCovMatrices();
+    }
+
+    /**
+     * @return the score of the last fact asked about by this thread. If the fact was judged again at a new alpha, or
+     * loaded without a score, the wrapped test is asked again for it.
+     * @throws IllegalStateException if this thread hasn't asked about a fact.
+     */
+    public double getScore() {
+        Fact fact = last.get();
+
+        if (fact == null) {
+            throw new IllegalStateException("No independence fact has been asked about yet.");
+        }
+
+        if (fact.scored) {
+            return fact.score;
+        }
+
+        int[] vars = fact.key.vars;
+        List<Node> z = new ArrayList<>();
+        for (int k = 2; k < vars.length; k++) z.add(variables.get(vars[k]));
+        double score;
+
+        if (testThreadSafe) {
+            test.isIndependent(variables.get(vars[0]), variables.get(vars[1]), z);
+            score = test.getScore();
+        } else {
+            synchronized (test) {
+                test.isIndependent(variables.get(vars[0]), variables.get(vars[1]), z);
+                score = test.getScore();
+            }
+        }
+
+        if (sameAlpha(fact.alpha, alpha())) {
+            fact.score = score;
+            fact.scored = true;
+        }
+
+        return score;
+    }
+
+    public void setVerbose(boolean verbose) {
+        test.setVerbose(verbose);
+    }
+
+    public boolean isVerbose() {
+        return test.isVerbose();
+    }
+
+    /**
+     * @return the wrapped test.
+     */
+    public IndependenceTest getTest() {
+        return test;
+    }
+
+    /**
+     * @return the maximum number of facts remembered.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Sets the maximum number of facts remembered. Each takes roughly 100 bytes plus 4 per conditioning variable.
+     * Default 1,000,000.
+     */
+    public void setMaxSize(int maxSize) {
+        if (maxSize < 1) throw new IllegalArgumentException("Max size must be at least 1: " + maxSize);
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * True (the default) if the wrapped test judges independence iff p &gt; alpha, so remembered p-values can be
+     * judged again when alpha changes.
+     */
+    public void setDecidesByPValue(boolean decidesByPValue) {
+        this.decidesByPValue = decidesByPValue;
+    }
+
+    /**
+     * True if the wrapped test may be called from several threads at once, each getting the p-value of its own
+     * judgment from getPValue(). False by default.
+     */
+    public void setTestThreadSafe(boolean testThreadSafe) {
+        this.testThreadSafe = testThreadSafe;
+    }
+
+    /**
+     * @return the number of facts answered from the cache.
+     */
+    public long getNumHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of facts passed to the wrapped test.
+     */
+    public long getNumMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of facts evicted to stay within the maximum size.
+     */
+    public long getNumEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return the fraction of facts answered from the cache, or NaN if none have been asked.
+     */
+    public double getHitRate() {
+        long hits = this.hits.sum();
+        long total = hits + this.misses.sum();
+        return total == 0 ? Double.NaN : hits / (double) total;
+    }
+
+    /**
+     * @return the number of facts remembered.
+     */
+    public int size() {
+        return facts.size();
+    }
+
+    /**
+     * Forgets all facts and resets the counts.
+     */
+    public void clear() {
+        facts.clear();
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    /**
+     * Writes the remembered facts to the given file (gzipped), with the variable names and sample size, so that they
+     * can be loaded into a cache for a test on the same data. The file is replaced as a whole.
+     */
+    public void save(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(new FileOutputStream(temp))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(sampleSize());
+            out.writeInt(variables.size());
+
+            for (Node node : variables) {
+                out.writeUTF(node.getName());
+            }
+
+            for (Map.Entry<Key, Fact> entry : facts.entrySet()) {
+                int[] vars = entry.getKey().vars;
+                Fact fact = entry.getValue();
+
+                out.writeBoolean(true);
+                out.writeShort(vars.length);
+                for (int v : vars) out.writeInt(v);
+                out.writeBoolean(fact.independent);
+                out.writeDouble(fact.pValue);
+                out.writeDouble(fact.alpha);
+                out.writeBoolean(fact.scored);
+                out.writeDouble(fact.score);
+            }
+
+            out.writeBoolean(false);
+        }
+
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Adds the facts in the given file, written by save(), to this cache. Facts about variables the wrapped test
+     * doesn't have are skipped.
+     *
+     * @return the number of facts added.
+     * @throws IllegalArgumentException if the file was written for a different sample size.
+     */
+    public int load(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a saved independence test cache: " + file);
+
+            int version = in.readInt();
+            if (version != 1 && version != VERSION) throw new IOException("Unsupported cache version " + version + ": " + file);
+
+            int sampleSize = in.readInt();
+
+            if (sampleSize != sampleSize()) {
+                throw new IllegalArgumentException("The cache in " + file + " was saved for sample size "
+                        + sampleSize + ", not " + sampleSize());
+            }
+
+            int[] map = new int[in.readInt()];
+
+            for (int i = 0; i < map.length; i++) {
+                Node node = test.getVariable(in.readUTF());
+                Integer index = node == null ? null : indices.get(node);
+                map[i] = index == null ? -1 : index;
+            }
+
+            int added = 0;
+
+            while (in.readBoolean()) {
+                int[] vars = new int[in.readShort()];
+                boolean known = true;
+
+                for (int k = 0; k < vars.length; k++) {
+                    int v = in.readInt();
+                    vars[k] = v >= 0 && v < map.length ? map[v] : -1;
+                    if (vars[k] < 0) known = false;
+                }
+
+                boolean independent = in.readBoolean();
+                double pValue = in.readDouble();
+                double alpha = in.readDouble();
+                boolean scored = version >= 2 && in.readBoolean();
+                double score = version >= 2 ? in.readDouble() : Double.NaN;
+
+                if (known && vars.length >= 2) {
+                    Arrays.sort(vars, 2, vars.length);
+
+                    if (vars[0] > vars[1]) {
+                        int t = vars[0];
+                        vars[0] = vars[1];
+                        vars[1] = t;
+                    }
+
+                    Key key = new Key(vars);
+                    Fact fact = new Fact(key, independent, pValue, alpha);
+
+                    if (scored) {
+                        fact.score = score;
+                        fact.scored = true;
+                    }
+
+                    if (facts.putIfAbsent(key, fact) == null) {
+                        added++;
+                    }
+                }
+            }
+
+            if (facts.size() > maxSize) {
+                evict();
+            }
+
+            return added;
+        }
+    }
+
+    public String toString() {
+        return "Cached " + test + " (" + facts.size() + " facts, " + getNumHits() + " hits, "
+                + getNumMisses() + " misses)";
+    }
+
+    //===========================PRIVATE METHODS==========================//
+
+    private Key key(Node x, Node y, List<Node> z) {
+        int[] vars = new int[z.size() + 2];
+        int _x = index(x);
+        int _y = index(y);
+        vars[0] = Math.min(_x, _y);
+        vars[1] = Math.max(_x, _y);
+
+        for (int k = 0; k < z.size(); k++) {
+            vars[k + 2] = index(z.get(k));
+        }
+
+        Arrays.sort(vars, 2, vars.length);
+        return new Key(vars);
+    }
+
+    /**
+     * Asks the wrapped test about x _||_ y | z, recording its p-value and score.
+     */
+    private Fact ask(Key key, Node x, Node y, List<Node> z, double alpha) {
+        Fact fact = new Fact(key, test.isIndependent(x, y, z), test.getPValue(), alpha);
+
+        try {
+            fact.score = test.getScore();
+            fact.scored = true;
+        } catch (UnsupportedOperationException e) {
+            // Left unscored; getScore() asks again and lets the test throw.
+        }
+
+        return fact;
+    }
+
+    private static boolean sameAlpha(double alpha1, double alpha2) {
+        return alpha1 == alpha2 || Double.isNaN(alpha1) && Double.isNaN(alpha2);
+    }
+
+    private int index(Node node) {
+        Integer index = indices.get(node);
+
+        if (index == null) {
+            throw new IllegalArgumentException("Not a variable of the independence test: " + node);
+        }
+
+        return index;
+    }
+
+    private double alpha() {
+        try {
+            return test.getAlpha();
+        } catch (UnsupportedOperationException e) {
+            return Double.NaN;
+        }
+    }
+
+    private int sampleSize() {
+        try {
+            return test.getSampleSize();
+        } catch (UnsupportedOperationException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Removes facts until the cache is below its maximum size, giving each recently used fact a second chance.
+     */
+    private void evict() {
+        if (!evictionLock.tryLock()) return;
+
+        try {
+            int target = maxSize - maxSize / 8;
+            Iterator<Fact> iterator = facts.values().iterator();
+
+            while (facts.size() > target) {
+                if (!iterator.hasNext()) {
+                    iterator = facts.values().iterator();
+                    if (!iterator.hasNext()) break;
+                }
+
+                Fact fact = iterator.next();
+
+                if (fact.used) {
+                    fact.used = false;
+                } else {
+                    iterator.remove();
+                    evictions.increment();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * An unordered pair {x, y} with a set z, as variable indices: the smaller of x and y, the larger, then z sorted.
+     */
+    private static final class Key {
+        private final int[] vars;
+        private final int hash;
+
+        Key(int[] vars) {
+            this.vars = vars;
+            this.hash = Arrays.hashCode(vars);
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(vars, ((Key) o).vars);
+        }
+    }
+
+    /**
+     * A judgment, with the p-value and alpha it was made with and, once known, its score. The score is written
+     * before scored is set, so a thread that sees scored sees the score.
+     */
+    private static final class Fact {
+        private final Key key;
+        private final boolean independent;
+        private final double pValue;
+        private final double alpha;
+        private double score = Double.NaN;
+        private volatile boolean scored;
+        private volatile boolean used;
+
+        Fact(Key key, boolean independent, double pValue, double alpha) {
+            this.key = key;
+            this.independent = independent;
+            this.pValue = pValue;
+            this.alpha = alpha;
+        }
+    }
+}
@@ -23,6 +23,7 @@ package edu.cmu.tetrad.search;
 
 import edu.cmu.tetrad.data.DataSet;
 import edu.cmu.tetrad.data.ICovarianceMatrix;
+import edu.cmu.tetrad.graph.DSeparationOracle;
 import edu.cmu.tetrad.graph.Graph;
 import edu.cmu.tetrad.graph.IndependenceFact;
 import edu.cmu.tetrad.graph.Node;
@@ -34,6 +35,9 @@ import java.util.*;
 /**
  * Checks independence facts for variables associated with the nodes in a given graph by checking d-separation facts on
  * the underlying nodes.
+ * <p>
+ * The graph is taken to be fixed once the first fact has been checked; facts are checked by a DSeparationOracle
+ * over the graph, which remembers its answers. Call setGraph if the graph changes.
  *
  * @author Joseph Ramsey
  */
@@ -44,6 +48,11 @@ public class IndTestDSep implements IndependenceTest {
      */
     private Graph graph;
 
+    /**
+     * Answers d-separation questions about the graph; built on first use.
+     */
+    private DSeparationOracle oracle;
+
     /**
      * The list of observed variables (i.e. variables for observed nodes).
      */
@@ -71,6 +80,15 @@ public class IndTestDSep implements IndependenceTest {
         this.observedVars = new HashSet<>(_observedVars);
     }
 
+    /**
+     * Constructs a new independence test that returns d-separation facts for the graph of the given oracle, using
+     * that oracle, so that tests over the same graph can share remembered answers.
+     */
+    public IndTestDSep(DSeparationOracle oracle) {
+        this(oracle.getGraph(), false);
+        this.oracle = oracle;
+    }
+
     /**
      * Required by IndependenceTest.
      */
@@ -152,7 +170,7 @@ public class IndTestDSep implements IndependenceTest {
             }
         }
 
-        boolean dSeparated = !getGraph().isDConnectedTo(x, y, z);
+        boolean dSeparated = getOracle().isDSeparatedFrom(x, y, z);
 
         if (verbose) {
             if (dSeparated) {
@@ -207,7 +225,7 @@ public class IndTestDSep implements IndependenceTest {
             }
         }
 
-        return getGraph().isDSeparatedFrom(x, y, z);
+        return getOracle().isDSeparatedFrom(x, y, z);
     }
 
     /**
@@ -268,6 +286,18 @@ public class IndTestDSep implements IndependenceTest {
     
     public void setGraph(Graph graph) {
         this.graph = graph;
+        this.oracle = null;
+    }
+
+    private DSeparationOracle getOracle() {
+        DSeparationOracle oracle = this.oracle;
+
+        if (oracle == null) {
+            oracle = new DSeparationOracle(graph);
+            this.oracle = oracle;
+        }
+
+        return oracle;
     }
 
     public String toString() {
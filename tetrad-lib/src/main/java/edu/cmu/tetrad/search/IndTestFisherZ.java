@@ -72,6 +72,9 @@ public final class IndTestFisherZ implements IndependenceTest {
     private double cutoff = Double.NaN;
     private NormalDistribution normal = new NormalDistribution(0, 1);
 
+    // Computes partial correlations straight from the correlation matrix.
+    private final PartialCorrelationKernel kernel;
+
     //==========================CONSTRUCTORS=============================//
 
     /**
@@ -91,6 +94,7 @@ public final class IndTestFisherZ implements IndependenceTest {
         }
 
         this.cov = new CorrelationMatrix(dataSet);
+        this.kernel = new PartialCorrelationKernel(cov.getMatrix().toArray());
         List<Node> nodes = this.cov.getVariables();
 
         this.variables = Collections.unmodifiableList(nodes);
@@ -111,6 +115,7 @@ public final class IndTestFisherZ implements IndependenceTest {
     public IndTestFisherZ(TetradMatrix data, List<Node> variables, double alpha) {
         this.dataSet = new BoxDataSet(new VerticalDoubleDataBox(data.transpose().toArray()), variables);
         this.cov = new CorrelationMatrix(dataSet);
+        this.kernel = new PartialCorrelationKernel(cov.getMatrix().toArray());
         this.variables = Collections.unmodifiableList(variables);
         this.indexMap = indexMap(variables);
         this.nameMap = nameMap(variables);
@@ -123,6 +128,7 @@ public final class IndTestFisherZ implements IndependenceTest {
      */
     public IndTestFisherZ(ICovarianceMatrix covMatrix, double alpha) {
         this.cov = new CorrelationMatrix(covMatrix);
+        this.kernel = new PartialCorrelationKernel(cov.getMatrix().toArray());
         this.variables = covMatrix.getVariables();
         this.indexMap = indexMap(variables);
         this.nameMap = nameMap(variables);
@@ -186,15 +192,11 @@ public final class IndTestFisherZ implements IndependenceTest {
     }
 
     private double partialCorrelation(Node x, Node y, List<Node> z) throws SingularMatrixException {
-        int[] indices = new int[z.size() + 2];
-        indices[0] = indexMap.get(x);
-        indices[1] = indexMap.get(y);
-
-//        if (z.isEmpty()) return cov.getValue(indices[0], indices[1]);
-
-        for (int i = 0; i < z.size(); i++) indices[i + 2] = indexMap.get(z.get(i));
-        TetradMatrix submatrix = cov.getSubmatrix(indices).getMatrix();
-        return StatUtils.partialCorrelation(submatrix);
+        int[] _z = new int[z.size()];
+        for (int i = 0; i < z.size(); i++) _z[i] = indexMap.get(z.get(i));
+        double r = kernel.partialCorrelation(indexMap.get(x), indexMap.get(y), _z);
+        if (Double.isNaN(r)) throw new SingularMatrixException();
+        return r;
     }
 
     public boolean isIndependent(Node x, Node y, Node... z) {
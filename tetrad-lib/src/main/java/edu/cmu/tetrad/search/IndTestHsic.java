@@ -27,6 +27,7 @@ import edu.cmu.tetrad.graph.Node;
 import edu.cmu.tetrad.search.kernel.Kernel;
 import edu.cmu.tetrad.search.kernel.KernelGaussian;
 import edu.cmu.tetrad.search.kernel.KernelUtils;
+import edu.cmu.tetrad.search.kernel.LowRankGram;
 import edu.cmu.tetrad.util.NumberFormatUtil;
 import edu.cmu.tetrad.util.TetradLogger;
 import edu.cmu.tetrad.util.TetradMatrix;
@@ -96,6 +97,11 @@ public final class IndTestHsic implements IndependenceTest {
      * Use incomplete Choleksy decomposition to calculate Gram matrices
      */
     private double useIncompleteCholesky = 1e-18;
+
+    /**
+     * The maximum rank of the incomplete Cholesky factors, or 0 for no limit.
+     */
+    private int rank = 0;
     private boolean verbose = false;
 
     //==========================CONSTRUCTORS=============================//
@@ -188,10 +194,10 @@ public final class IndTestHsic implements IndependenceTest {
         TetradMatrix Kz = null;
         // use incomplete Cholesky to approximate
         if (useIncompleteCholesky > 0) {
-            Ky = KernelUtils.incompleteCholeskyGramMatrix(Arrays.asList(yKernel), this.dataSet, Arrays.asList(y), useIncompleteCholesky);
-            Kx = KernelUtils.incompleteCholeskyGramMatrix(Arrays.asList(xKernel), this.dataSet, Arrays.asList(x), useIncompleteCholesky);
+            Ky = KernelUtils.incompleteCholeskyGramMatrix(Arrays.asList(yKernel), this.dataSet, Arrays.asList(y), useIncompleteCholesky, rank);
+            Kx = KernelUtils.incompleteCholeskyGramMatrix(Arrays.asList(xKernel), this.dataSet, Arrays.asList(x), useIncompleteCholesky, rank);
             if (!z.isEmpty()) {
-                Kz = KernelUtils.incompleteCholeskyGramMatrix(zKernel, this.dataSet, z, useIncompleteCholesky);
+                Kz = KernelUtils.incompleteCholeskyGramMatrix(zKernel, this.dataSet, z, useIncompleteCholesky, rank);
             }
         }
         // otherwise compute directly
@@ -273,7 +279,7 @@ public final class IndTestHsic implements IndependenceTest {
             // Gram matrices
             TetradMatrix Kyn = null;
             if (useIncompleteCholesky > 0) {
-                Kyn = KernelUtils.incompleteCholeskyGramMatrix(Arrays.asList(yKernel), shuffleData, Arrays.asList(y), useIncompleteCholesky);
+                Kyn = KernelUtils.incompleteCholeskyGramMatrix(Arrays.asList(yKernel), shuffleData, Arrays.asList(y), useIncompleteCholesky, rank);
             } else {
                 Kyn = KernelUtils.constructCentralizedGramMatrix(Arrays.asList(yKernel), shuffleData, Arrays.asList(y));
 
@@ -281,7 +287,7 @@ public final class IndTestHsic implements IndependenceTest {
             TetradMatrix Kzn = null;
             if (!z.isEmpty()) {
                 if (useIncompleteCholesky > 0) {
-                    Kzn = KernelUtils.incompleteCholeskyGramMatrix(zKernel, shuffleData, z, useIncompleteCholesky);
+                    Kzn = KernelUtils.incompleteCholeskyGramMatrix(zKernel, shuffleData, z, useIncompleteCholesky, rank);
                 } else {
                     Kzn = KernelUtils.constructCentralizedGramMatrix(zKernel, shuffleData, z);
                 }
@@ -353,21 +359,11 @@ public final class IndTestHsic implements IndependenceTest {
      */
     public double empiricalHSICincompleteCholesky(TetradMatrix Gy, TetradMatrix Gx, int m) {
         // centralized Choleksy
-        int ky = Gy.columns();
-        int kx = Gx.columns();
-        TetradMatrix H = KernelUtils.constructH(m);
-        TetradMatrix Gcy = H.times(Gy);
-        TetradMatrix Gcx = H.times(Gx);
+        TetradMatrix Gcy = LowRankGram.fromMatrix(Gy).centered().toMatrix();
+        TetradMatrix Gcx = LowRankGram.fromMatrix(Gx).centered().toMatrix();
 
-        // multiply gram matrices
-        TetradMatrix Gcyt = Gcy.transpose();
-        TetradMatrix A = Gcyt.times(Gcx);
-        TetradMatrix B = Gcy.times(A);
-        TetradMatrix Gcxt = Gcx.transpose();
-        double empHSIC = 0.0;
-        for (int i = 0; i < m; i++) {
-            empHSIC += matrixProductEntry(B, Gcxt, i, i);
-        }
+        // trace(Gcy Gcy' Gcx Gcx') is the squared norm of Gcy' Gcx.
+        double empHSIC = LowRankGram.squaredNorm(Gcy.transpose().times(Gcx));
         empHSIC /= Math.pow(m - 1, 2);
         return empHSIC;
     }
@@ -429,79 +425,50 @@ public final class IndTestHsic implements IndependenceTest {
      */
     public double empiricalHSICincompleteCholesky(TetradMatrix Gy, TetradMatrix Gx, TetradMatrix Gz, int m) {
         // centralize Choleksy
-        int ky = Gy.columns();
-        int kx = Gx.columns();
-        int kz = Gz.columns();
-
-        TetradMatrix H = KernelUtils.constructH(m);
-        TetradMatrix Gcy = H.times(Gy);
-        TetradMatrix Gcx = H.times(Gx);
-        TetradMatrix Gcz = H.times(Gz);
+        TetradMatrix Gcy = LowRankGram.fromMatrix(Gy).centered().toMatrix();
+        TetradMatrix Gcx = LowRankGram.fromMatrix(Gx).centered().toMatrix();
+        TetradMatrix Gcz = LowRankGram.fromMatrix(Gz).centered().toMatrix();
 
-        // multiply gram matrices (first block)
-        TetradMatrix A = new TetradMatrix(ky, kx);
+        // Only products of the factors with one another are needed, so nothing larger than m x k is formed.
         TetradMatrix Gcyt = Gcy.transpose();
-        A = Gcyt.times(Gcx);
-        TetradMatrix B = Gcy.times(A);
-        TetradMatrix Kyx = new TetradMatrix(m, m);
-        TetradMatrix Gcxt = new TetradMatrix(kx, m);
-        Gcxt = Gcx.transpose();
-        Kyx = B.times(Gcxt);
-        double empHSIC = 0.0;
-        double xy = 0.0;
-        for (int i = 0; i < m; i++) {
-            empHSIC += matrixProductEntry(B, Gcxt, i, i);
-        }
-
-        // second block
-        TetradMatrix Gytz = Gcyt.times(Gcz);
         TetradMatrix Gczt = Gcz.transpose();
+        TetradMatrix Gytx = Gcyt.times(Gcx);
+        TetradMatrix Gytz = Gcyt.times(Gcz);
         TetradMatrix Gztx = Gczt.times(Gcx);
         TetradMatrix Gztz = Gczt.times(Gcz);
+
+        // Gz' (Kz + rI)^-2 Gz = Gz'Gz (Gz'Gz + rI)^-2, by the Woodbury identity.
         TetradMatrix Gztzr = Gztz.copy();
-        for (int i = 0; i < kz; i++) {
+        for (int i = 0; i < Gztz.rows(); i++) {
             Gztzr.set(i, i, Gztz.get(i, i) + this.regularizer);
         }
-        // invert matrix
         TetradMatrix ZI = Gztzr.inverse();
-        TetradMatrix ZIzt = ZI.times(Gczt);
-        TetradMatrix Gzr = Gcz.copy();
-        for (int i = 0; i < m; i++) {
-            for (int j = 0; j < kz; j++) {
-                Gzr.set(i, j, Gcz.get(i, j) * (-1.0 / this.regularizer));
-            }
-        }
-        TetradMatrix Zinv = Gzr.times(ZIzt);
-        for (int i = 0; i < m; i++) {
-            Zinv.set(i, i, Zinv.get(i, i) + (1.0 / this.regularizer));
-        }
-        TetradMatrix Gztzinv = Gczt.times(Zinv);
-        TetradMatrix Gzinvz = Zinv.times(Gcz);
-        TetradMatrix Gztinv2z = Gztzinv.times(Gzinvz);
-        TetradMatrix Gytzztzinv2z = Gytz.times(Gztinv2z);
-        TetradMatrix Gytzztzinv2zztx = Gytzztzinv2z.times(Gztx);
-        TetradMatrix Gyytzztzinv2zztx = Gcy.times(Gytzztzinv2zztx);
+        TetradMatrix Gztinv2z = Gztz.times(ZI).times(ZI);
+
+        // first block, trace(Ky Kx)
+        double empHSIC = LowRankGram.squaredNorm(Gytx);
+
+        // second block, trace(Ky Kz (Kz + rI)^-2 Kz Kx) = trace(A Gx'Gy)
+        TetradMatrix A = Gytz.times(Gztinv2z).times(Gztx);
         double second = 0.0;
-        for (int i = 0; i < m; i++) {
-            second += matrixProductEntry(Gyytzztzinv2zztx, Gcxt, i, i);
+        for (int i = 0; i < A.rows(); i++) {
+            for (int j = 0; j < A.columns(); j++) {
+                second += A.get(i, j) * Gytx.get(i, j);
+            }
         }
         empHSIC -= 2 * second;
 
-        // third block
-        TetradMatrix Gxtz = Gcxt.times(Gcz);
-        TetradMatrix Gxtzztinv2z = Gxtz.times(Gztinv2z);
-        TetradMatrix Gyytzztzinv2zztxxtzztinv2z = Gyytzztzinv2zztx.times(Gxtzztinv2z);
-        for (int i = 0; i < m; i++) {
-            empHSIC += matrixProductEntry(Gyytzztzinv2zztxxtzztinv2z, Gczt, i, i);
-        }
+        // third block, trace((Ky Kz (Kz + rI)^-2 Kz Kx)(Kz (Kz + rI)^-2 Kz)) = trace(A A')
+        empHSIC += LowRankGram.squaredNorm(A);
 
-        // beta z estimate
-        double betaz = 0.0;
-        for (int i = 0; i < (m - 1); i++) {
-            for (int j = (i + 1); j < m; j++) {
-                betaz += Math.pow(matrixProductEntry(Gcz, Gczt, i, j), 2);
-                betaz += Math.pow(matrixProductEntry(Gcz, Gczt, j, i), 2);
+        // beta z estimate, the sum of the squared off-diagonal entries of Kz
+        double betaz = LowRankGram.squaredNorm(Gztz);
+        for (int i = 0; i < m; i++) {
+            double d = 0.0;
+            for (int j = 0; j < Gcz.columns(); j++) {
+                d += Gcz.get(i, j) * Gcz.get(i, j);
             }
+            betaz -= d * d;
         }
 
         empHSIC *= (m / (betaz * (m - 1)));
@@ -705,6 +672,22 @@ public final class IndTestHsic implements IndependenceTest {
         this.useIncompleteCholesky = precision;
     }
 
+    /**
+     * Sets the maximum rank of the Incomplete Cholesky factors of the Gram matrices, so that the test takes O(m r^2)
+     * time and O(m r) memory for sample size m and rank r. A value of 0, the default, sets no limit.
+     */
+    public void setRank(int rank) {
+        if (rank < 0) throw new IllegalArgumentException("Rank must be >= 0: " + rank);
+        this.rank = rank;
+    }
+
+    /**
+     * Gets the maximum rank of the Incomplete Cholesky factors, or 0 if there is no limit.
+     */
+    public int getRank() {
+        return this.rank;
+    }
+
     /**
      * Set the number of bootstrap samples to use
      */
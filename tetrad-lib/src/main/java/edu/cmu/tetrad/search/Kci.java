@@ -7,6 +7,7 @@ import edu.cmu.tetrad.data.ICovarianceMatrix;
 import edu.cmu.tetrad.graph.IndependenceFact;
 import edu.cmu.tetrad.graph.Node;
 import edu.cmu.tetrad.search.IndependenceTest;
+import edu.cmu.tetrad.search.kernel.LowRankGram;
 import edu.cmu.tetrad.util.TetradLogger;
 import edu.cmu.tetrad.util.TetradMatrix;
 import edu.cmu.tetrad.util.TetradVector;
@@ -34,6 +35,12 @@ import static java.lang.Math.*;
  *
  * Please see that paper, especially Theorem 4 and Proposition 5.
  *
+ * For large samples the kernel matrices may be replaced by low-rank factors from incomplete Cholesky decomposition
+ * (see setRank), in which case the test statistics and the null distributions are computed from products of the
+ * factors instead of O(N^3) time and O(N^2) memory. The unconditional test then takes O(N r^2) time and O(N r)
+ * memory. The conditional test needs the eigenvalues of an r^2 x r^2 matrix, which is not formed; its top m
+ * eigenvalues are found by subspace iteration in O(N r^2 m) time and O((N + r^2) m) memory.
+ *
  * Using optimal kernel bandwidths suggested by Bowman and Azzalini (1997):
  *
  * Bowman, A. W., & Azzalini, A. (1997). Applied smoothing techniques for data analysis: the kernel
@@ -65,12 +72,18 @@ public class Kci implements IndependenceTest, ScoreForFact {
     // P value used to judge independence. This is the last p value calculated.
     private double p;
 
-    // Centering matrix.
+    // Centering matrix; made only when needed, for the exact test.
     private TetradMatrix H;
 
-    // Identity N x N
+    // Identity N x N; made only when needed, for the exact test.
     private TetradMatrix I;
 
+    // The rank of the low-rank factors of the kernel matrices, or 0 if the exact kernel matrices should be used.
+    private int rank = 0;
+
+    // Incomplete Cholesky decomposition stops when the remaining diagonal of a kernel matrix falls below this.
+    private static final double LOW_RANK_PRECISION = 1e-6;
+
     // A normal distribution with 1 degree of freedom.
     private NormalDistribution normal = new NormalDistribution(new SynchronizedRandomGenerator(
             new Well44497b(193924L)), 0, 1);
@@ -84,6 +97,13 @@ public class Kci implements IndependenceTest, ScoreForFact {
     // Eigenvalues greater than this time the maximum will be kept.
     private double threshold = 0.01;
 
+    // Largest cx cy for which U'U in Proposition 5 is formed and decomposed directly.
+    private static final int MAX_DENSE_UU = 256;
+
+    // Seed and number of power iterations for the subspace iteration used when U'U is not formed.
+    private static final long SUBSPACE_SEED = 40297L;
+    private static final int POWER_ITERATIONS = 2;
+
     // Number of bostraps for Theorem 4 and Proposition 5.
     private int numBootstraps = 5000;
 
@@ -116,12 +136,6 @@ public class Kci implements IndependenceTest, ScoreForFact {
         this.variables = data.getVariables();
         this._data = this.data.getDoubleData().transpose().toArray();
         this.N = this.data.getNumRows();
-        this.I = TetradMatrix.identity(N);
-
-        TetradMatrix Ones = new TetradMatrix(N, 1);
-        for (int j = 0; j < N; j++) Ones.set(j, 0, 1);
-
-        this.H = TetradMatrix.identity(N).minus(Ones.times(Ones.transpose()).scalarMult(1.0 / N));
 
         this.alpha = alpha;
         this.p = -1;
@@ -367,6 +381,20 @@ public class Kci implements IndependenceTest, ScoreForFact {
         this.epsilon = epsilon;
     }
 
+    public int getRank() {
+        return rank;
+    }
+
+    /**
+     * Sets the maximum rank of the incomplete Cholesky factors used in place of the N x N kernel matrices. With rank
+     * r > 0 the test is approximate and takes time and memory linear in N (see the class comment); with rank 0, the
+     * default, the exact kernel matrices are used.
+     */
+    public void setRank(int rank) {
+        if (rank < 0) throw new IllegalArgumentException("Rank must be >= 0: " + rank);
+        this.rank = rank;
+    }
+
     //====================================PRIVATE METHODS==================================//
 
     /**
@@ -375,6 +403,10 @@ public class Kci implements IndependenceTest, ScoreForFact {
      * @return true just in case independence holds.
      */
     private boolean isIndependentUnconditional(Node x, Node y, IndependenceFact fact) {
+        if (rank > 0) {
+            return isIndependentUnconditionalLowRank(x, y, fact);
+        }
+
         TetradMatrix kx = center(kernelMatrix(_data, x, null, getWidthMultiplier()));
         TetradMatrix ky = center(kernelMatrix(_data, y, null, getWidthMultiplier()));
 
@@ -438,6 +470,10 @@ public class Kci implements IndependenceTest, ScoreForFact {
      * @return true just in case independence holds.
      */
     private boolean isIndependentConditional(Node x, Node y, List<Node> z, IndependenceFact fact) {
+        if (rank > 0) {
+            return isIndependentConditionalLowRank(x, y, z, fact);
+        }
+
         TetradMatrix kx = null;
         TetradMatrix ky = null;
 
@@ -446,7 +482,7 @@ public class Kci implements IndependenceTest, ScoreForFact {
             TetradMatrix Ky = center(kernelMatrix(_data, y, null, getWidthMultiplier()));
             TetradMatrix KZ = center(kernelMatrix(_data, null, z, getWidthMultiplier()));
 
-            TetradMatrix Rz = (KZ.plus(I.scalarMult(epsilon)).inverse().scalarMult(epsilon));
+            TetradMatrix Rz = (KZ.plus(getI().scalarMult(epsilon)).inverse().scalarMult(epsilon));
 
             kx = symmetrized(Rz.times(KXZ).times(Rz.transpose()));
             ky = symmetrized(Rz.times(Ky).times(Rz.transpose()));
@@ -460,9 +496,297 @@ public class Kci implements IndependenceTest, ScoreForFact {
         }
     }
 
-    private boolean theorem4(TetradMatrix kx, TetradMatrix ky, IndependenceFact fact) {
+    /**
+     * KCI independence for the unconditional case using low-rank factors Gx and Gy of the centered kernel matrices.
+     * trace(kx ky) is the squared norm of Gx'Gy, and the nonzero eigenvalues of kx are those of Gx'Gx.
+     *
+     * @return true just in case independence holds.
+     */
+    private boolean isIndependentUnconditionalLowRank(Node x, Node y, IndependenceFact fact) {
+        try {
+            LowRankGram gx = lowRankKernel(x, null);
+            LowRankGram gy = lowRankKernel(y, null);
+
+            TetradMatrix xx = gx.crossProduct(gx);
+            TetradMatrix yy = gy.crossProduct(gy);
+            double sta = LowRankGram.squaredNorm(gx.crossProduct(gy));
+
+            if (isApproximate()) {
+                double mean_appr = xx.trace() * yy.trace() / N;
+                double var_appr = 2 * LowRankGram.squaredNorm(xx) * LowRankGram.squaredNorm(yy) / (N * N);
+                double k_appr = mean_appr * mean_appr / var_appr;
+                double theta_appr = var_appr / mean_appr;
+                p = 1.0 - new GammaDistribution(k_appr, theta_appr).cumulativeProbability(sta);
+                pValues.put(fact, p);
+
+                if (fastFDR) {
+                    final int d1 = 0; // reference
+                    final int d2 = fact.getZ().size();
+                    final int v = variables.size() - 2;
+
+                    double alpha2 = (exp(log(alpha) + logChoose(v, d1) - logChoose(v, d2)));
+                    return p > alpha2;
+                } else {
+                    return p > alpha;
+                }
+            } else {
+                List<Double> evx = new Eigendecomposition(xx).invoke().getTopEigenvalues();
+                List<Double> evy = new Eigendecomposition(yy).invoke().getTopEigenvalues();
+                return theorem4(sta, evx, evy, fact);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            pValues.put(fact, 0.0);
+            facts.put(fact, false);
+            return false;
+        }
+    }
+
+    /**
+     * KCI independence for the conditional case using low-rank factors of the centered kernel matrices. By the
+     * Woodbury identity Rz = epsilon (KZ + epsilon I)^-1 = I - Gz (Gz'Gz + epsilon I)^-1 Gz', so kx = Fx Fx' and
+     * ky = Fy Fy' for Fx = Rz Gxz and Fy = Rz Gy, and the columns of VD for kx are Fx W, for W the eigenvectors of
+     * Fx'Fx.
+     *
+     * @return true just in case independence holds.
+     */
+    private boolean isIndependentConditionalLowRank(Node x, Node y, List<Node> z, IndependenceFact fact) {
+        try {
+            LowRankGram gxz = lowRankKernel(x, z);
+            LowRankGram gy = lowRankKernel(y, null);
+            LowRankGram gz = lowRankKernel(null, z);
+
+            TetradMatrix zz = gz.crossProduct(gz);
+
+            for (int i = 0; i < zz.rows(); i++) {
+                zz.set(i, i, zz.get(i, i) + epsilon);
+            }
 
-        double T = (1.0 / N) * (kx.times(ky).trace());
+            TetradMatrix zzInverse = zz.inverse();
+
+            LowRankGram fx = gxz.minus(gz.times(zzInverse.times(gz.crossProduct(gxz))));
+            LowRankGram fy = gy.minus(gz.times(zzInverse.times(gz.crossProduct(gy))));
+
+            double sta = LowRankGram.squaredNorm(fx.crossProduct(fy));
+
+            LowRankGram vdx = fx.times(new Eigendecomposition(fx.crossProduct(fx)).invoke().getV());
+            LowRankGram vdy = fy.times(new Eigendecomposition(fy.crossProduct(fy)).invoke().getV());
+
+            if (vdx.rank() * vdy.rank() <= MAX_DENSE_UU) {
+                return proposition5(sta, uuProduct(vdx, vdy), fact);
+            }
+
+            List<Double> eigenu = uuEigenvalues(vdx, vdy);
+
+            if (isApproximate()) {
+                // trace((U'U)^2) from the eigenvalues kept; the ones dropped are below the threshold.
+                double sum2 = 0.0;
+                for (double lambda : eigenu) sum2 += lambda * lambda;
+                return proposition5Approximate(sta, uuTrace(vdx, vdy), 2.0 * sum2, fact);
+            }
+
+            return proposition5(sta, eigenu, fact);
+        } catch (Exception e) {
+            e.printStackTrace();
+            pValues.put(fact, 0.0);
+            facts.put(fact, false);
+            return false;
+        }
+    }
+
+    // The eigenvalues of U'U above the threshold, for U the matrix whose row k is the product of each entry of row k
+    // of vdx with each entry of row k of vdy. The top m eigenvalues are found by randomized subspace iteration, which
+    // applies U and U' to blocks of m vectors without forming either, in O(N cx cy m) time and O((N + cx cy) m)
+    // memory. m is doubled until the smallest eigenvalue found falls below the threshold. The starting block is
+    // seeded, so p-values are reproducible.
+    private List<Double> uuEigenvalues(LowRankGram vdx, LowRankGram vdy) {
+        final int prod = vdx.rank() * vdy.rank();
+        final int maxM = Math.min(prod, N);
+        int m = Math.min(maxM, Math.max(16, vdx.rank() + vdy.rank()));
+
+        while (true) {
+            double[] ritz = ritzValues(vdx, vdy, m);
+            double max = ritz[ritz.length - 1];
+
+            if (m == maxM || ritz[0] <= max * getThreshold()) {
+                List<Double> eigenvalues = new ArrayList<>();
+
+                for (int i = ritz.length - 1; i >= 0; i--) {
+                    if (ritz[i] > max * getThreshold()) eigenvalues.add(ritz[i]);
+                }
+
+                return eigenvalues;
+            }
+
+            m = Math.min(2 * m, maxM);
+        }
+    }
+
+    // Approximations to the top m eigenvalues of U'U, in increasing order.
+    private double[] ritzValues(LowRankGram vdx, LowRankGram vdy, int m) {
+        final int prod = vdx.rank() * vdy.rank();
+        Random random = new Random(SUBSPACE_SEED);
+        double[][] q = new double[m][prod];
+
+        for (double[] column : q) {
+            for (int j = 0; j < prod; j++) column[j] = random.nextGaussian();
+        }
+
+        orthonormalize(q);
+
+        for (int i = 0; i < POWER_ITERATIONS; i++) {
+            q = applyUt(vdx, vdy, applyU(vdx, vdy, q));
+            orthonormalize(q);
+        }
+
+        double[][] w = applyU(vdx, vdy, q);
+        TetradMatrix t = new TetradMatrix(m, m);
+
+        for (int a = 0; a < m; a++) {
+            for (int b = a; b < m; b++) {
+                double dot = 0.0;
+                for (int k = 0; k < N; k++) dot += w[a][k] * w[b][k];
+                t.set(a, b, dot);
+                t.set(b, a, dot);
+            }
+        }
+
+        double[] ritz = new EigenDecomposition(t.getRealMatrix()).getRealEigenvalues();
+        Arrays.sort(ritz);
+        return ritz;
+    }
+
+    // U times each of the given vectors of length cx cy.
+    private double[][] applyU(LowRankGram vdx, LowRankGram vdy, double[][] v) {
+        final int cx = vdx.rank();
+        final int cy = vdy.rank();
+        double[][] result = new double[v.length][N];
+        double[] a = new double[cx];
+        double[] b = new double[cy];
+
+        for (int k = 0; k < N; k++) {
+            for (int i = 0; i < cx; i++) a[i] = vdx.get(k, i);
+            for (int j = 0; j < cy; j++) b[j] = vdy.get(k, j);
+
+            for (int c = 0; c < v.length; c++) {
+                double[] _v = v[c];
+                double sum = 0.0;
+
+                for (int i = 0; i < cx; i++) {
+                    if (a[i] == 0) continue;
+                    double inner = 0.0;
+                    for (int j = 0; j < cy; j++) inner += _v[i * cy + j] * b[j];
+                    sum += a[i] * inner;
+                }
+
+                result[c][k] = sum;
+            }
+        }
+
+        return result;
+    }
+
+    // U' times each of the given vectors of length N.
+    private double[][] applyUt(LowRankGram vdx, LowRankGram vdy, double[][] w) {
+        final int cx = vdx.rank();
+        final int cy = vdy.rank();
+        double[][] result = new double[w.length][cx * cy];
+        double[] u = new double[cx * cy];
+
+        for (int k = 0; k < N; k++) {
+            for (int i = 0; i < cx; i++) {
+                for (int j = 0; j < cy; j++) {
+                    u[i * cy + j] = vdx.get(k, i) * vdy.get(k, j);
+                }
+            }
+
+            for (int c = 0; c < w.length; c++) {
+                double coef = w[c][k];
+                if (coef == 0) continue;
+                double[] _r = result[c];
+                for (int j = 0; j < u.length; j++) _r[j] += coef * u[j];
+            }
+        }
+
+        return result;
+    }
+
+    // Modified Gram-Schmidt, done twice for stability. Columns that are numerically dependent on the earlier ones
+    // are set to zero.
+    private static void orthonormalize(double[][] q) {
+        for (int pass = 0; pass < 2; pass++) {
+            for (int c = 0; c < q.length; c++) {
+                double[] v = q[c];
+                double before = norm(v);
+
+                for (int d = 0; d < c; d++) {
+                    double dot = 0.0;
+                    for (int j = 0; j < v.length; j++) dot += v[j] * q[d][j];
+                    for (int j = 0; j < v.length; j++) v[j] -= dot * q[d][j];
+                }
+
+                double after = norm(v);
+
+                if (after <= 1e-10 * before || after == 0) {
+                    Arrays.fill(v, 0.0);
+                } else {
+                    for (int j = 0; j < v.length; j++) v[j] /= after;
+                }
+            }
+        }
+    }
+
+    private static double norm(double[] v) {
+        double sum = 0.0;
+        for (double x : v) sum += x * x;
+        return Math.sqrt(sum);
+    }
+
+    // trace(U'U), the sum over rows k of the squared norm of row k of vdx times that of row k of vdy.
+    private double uuTrace(LowRankGram vdx, LowRankGram vdy) {
+        double[] dx = vdx.diagonal();
+        double[] dy = vdy.diagonal();
+        double trace = 0.0;
+        for (int k = 0; k < N; k++) trace += dx[k] * dy[k];
+        return trace;
+    }
+
+    // U'U, for U as above, accumulated a row at a time so that U is not stored. Used only when U'U is small.
+    private TetradMatrix uuProduct(LowRankGram vdx, LowRankGram vdy) {
+        final int cx = vdx.rank();
+        final int cy = vdy.rank();
+        final int prod = cx * cy;
+
+        double[][] uuprod = new double[prod][prod];
+        double[] u = new double[prod];
+
+        for (int k = 0; k < N; k++) {
+            for (int i = 0; i < cx; i++) {
+                for (int j = 0; j < cy; j++) {
+                    u[i * cy + j] = vdx.get(k, i) * vdy.get(k, j);
+                }
+            }
+
+            for (int a = 0; a < prod; a++) {
+                if (u[a] == 0) continue;
+
+                for (int b = a; b < prod; b++) {
+                    uuprod[a][b] += u[a] * u[b];
+                }
+            }
+        }
+
+        for (int a = 0; a < prod; a++) {
+            for (int b = 0; b < a; b++) {
+                uuprod[a][b] = uuprod[b][a];
+            }
+        }
+
+        return new TetradMatrix(uuprod);
+    }
+
+    private boolean theorem4(TetradMatrix kx, TetradMatrix ky, IndependenceFact fact) {
+        double sta = kx.times(ky).trace();
 
         // Eigen decomposition of kx and ky.
         Eigendecomposition eigendecompositionx = new Eigendecomposition(kx).invoke();
@@ -471,6 +795,13 @@ public class Kci implements IndependenceTest, ScoreForFact {
         Eigendecomposition eigendecompositiony = new Eigendecomposition(ky).invoke();
         List<Double> evy = eigendecompositiony.getTopEigenvalues();
 
+        return theorem4(sta, evx, evy, fact);
+    }
+
+    // sta is trace(kx ky); evx and evy are the top eigenvalues of kx and ky.
+    private boolean theorem4(double sta, List<Double> evx, List<Double> evy, IndependenceFact fact) {
+        double T = (1.0 / N) * sta;
+
         // Calculate formula (9).
         int sum = 0;
 
@@ -527,7 +858,7 @@ public class Kci implements IndependenceTest, ScoreForFact {
     }
 
     private boolean proposition5(TetradMatrix kx, TetradMatrix ky, IndependenceFact fact) {
-        double T = (1.0 / N) * kx.times(ky).trace();
+        double sta = kx.times(ky).trace();
 
         Eigendecomposition eigendecompositionx = new Eigendecomposition(kx).invoke();
         TetradMatrix vx = eigendecompositionx.getV();
@@ -555,74 +886,83 @@ public class Kci implements IndependenceTest, ScoreForFact {
 
         TetradMatrix uuprod = prod > N ? UU.times(UU.transpose()) : UU.transpose().times(UU);
 
+        return proposition5(sta, uuprod, fact);
+    }
+
+    // sta is trace(kx ky); uuprod is U'U or UU', for U as in Proposition 5.
+    private boolean proposition5(double sta, TetradMatrix uuprod, IndependenceFact fact) {
         if (isApproximate()) {
-            double sta = kx.times(ky).trace();
-            double mean_appr = uuprod.trace();
-            double var_appr = 2.0 * uuprod.times(uuprod).trace();
-            double k_appr = mean_appr * mean_appr / var_appr;
-            double theta_appr = var_appr / mean_appr;
-            double p = 1.0 - new GammaDistribution(k_appr, theta_appr).cumulativeProbability(sta);
-            pValues.put(fact, p);
-            return p > getAlpha();
+            return proposition5Approximate(sta, uuprod.trace(), 2.0 * uuprod.times(uuprod).trace(), fact);
         } else {
+            return proposition5(sta, new Eigendecomposition(uuprod).invoke().getTopEigenvalues(), fact);
+        }
+    }
 
-            // Get top eigenvalues of that.
-            Eigendecomposition eigendecompositionu = new Eigendecomposition(uuprod).invoke();
-            List<Double> eigenu = eigendecompositionu.getTopEigenvalues();
-
-            // We're going to reuse the samples.
-            int sampleCount = -1;
+    // The gamma approximation, with the mean and variance of the null distribution.
+    private boolean proposition5Approximate(double sta, double mean_appr, double var_appr, IndependenceFact fact) {
+        double k_appr = mean_appr * mean_appr / var_appr;
+        double theta_appr = var_appr / mean_appr;
+        p = 1.0 - new GammaDistribution(k_appr, theta_appr).cumulativeProbability(sta);
+        pValues.put(fact, p);
+        return p > getAlpha();
+    }
 
-            // Calculate formulas (13) and (14).
-            int sum = 0;
+    // sta is trace(kx ky); eigenu are the top eigenvalues of U'U.
+    private boolean proposition5(double sta, List<Double> eigenu, IndependenceFact fact) {
+        double T = (1.0 / N) * sta;
 
-            for (int j = 0; j < getNumBootstraps(); j++) {
-                double s = 0.0;
+        // We're going to reuse the samples.
+        int sampleCount = -1;
 
-                for (double lambdaStar : eigenu) {
-                    s += lambdaStar * getChisqSample();
-                }
+        // Calculate formulas (13) and (14).
+        int sum = 0;
 
-                s *= 1.0 / N;
+        for (int j = 0; j < getNumBootstraps(); j++) {
+            double s = 0.0;
 
-                if (s > T) sum++;
+            for (double lambdaStar : eigenu) {
+                s += lambdaStar * getChisqSample();
             }
 
-            this.p = sum / (double) getNumBootstraps();
-            pValues.put(fact, this.p);
+            s *= 1.0 / N;
 
-            if (fastFDR) {
-                final int d1 = 0; // reference
-                final int d2 = fact.getZ().size();
-                final int v = variables.size() - 2;
+            if (s > T) sum++;
+        }
 
-                double alpha2 = (exp(log(alpha) + logChoose(v, d1) - logChoose(v, d2)));
-                final boolean independent = p > alpha2;
+        this.p = sum / (double) getNumBootstraps();
+        pValues.put(fact, this.p);
 
-                if (independent) {
-                    System.out.println(fact + " INDEPENDENT p = " + p);
-                    TetradLogger.getInstance().log("info", fact + " Independent");
+        if (fastFDR) {
+            final int d1 = 0; // reference
+            final int d2 = fact.getZ().size();
+            final int v = variables.size() - 2;
 
-                } else {
-                    System.out.println(fact + " dependent p = " + p);
-                    TetradLogger.getInstance().log("info", fact.toString());
-                }
+            double alpha2 = (exp(log(alpha) + logChoose(v, d1) - logChoose(v, d2)));
+            final boolean independent = p > alpha2;
+
+            if (independent) {
+                System.out.println(fact + " INDEPENDENT p = " + p);
+                TetradLogger.getInstance().log("info", fact + " Independent");
 
-                return independent;
             } else {
-                final boolean independent = p > alpha;
+                System.out.println(fact + " dependent p = " + p);
+                TetradLogger.getInstance().log("info", fact.toString());
+            }
 
-                if (independent) {
-                    System.out.println(fact + " INDEPENDENT p = " + p);
-                    TetradLogger.getInstance().log("info", fact + " Independent");
+            return independent;
+        } else {
+            final boolean independent = p > alpha;
 
-                } else {
-                    System.out.println(fact + " dependent p = " + p);
-                    TetradLogger.getInstance().log("info", fact.toString());
-                }
+            if (independent) {
+                System.out.println(fact + " INDEPENDENT p = " + p);
+                TetradLogger.getInstance().log("info", fact + " Independent");
 
-                return independent;
+            } else {
+                System.out.println(fact + " dependent p = " + p);
+                TetradLogger.getInstance().log("info", fact.toString());
             }
+
+            return independent;
         }
     }
 
@@ -633,9 +973,29 @@ public class Kci implements IndependenceTest, ScoreForFact {
     }
 
     private TetradMatrix center(TetradMatrix K) {
+        TetradMatrix H = getH();
         return H.times(K).times(H);
     }
 
+    private TetradMatrix getH() {
+        if (H == null) {
+            TetradMatrix Ones = new TetradMatrix(N, 1);
+            for (int j = 0; j < N; j++) Ones.set(j, 0, 1);
+
+            H = TetradMatrix.identity(N).minus(Ones.times(Ones.transpose()).scalarMult(1.0 / N));
+        }
+
+        return H;
+    }
+
+    private TetradMatrix getI() {
+        if (I == null) {
+            I = TetradMatrix.identity(N);
+        }
+
+        return I;
+    }
+
     private double getChisqSample() {
         double z = normal.sample();
         return z * z;
@@ -671,19 +1031,7 @@ public class Kci implements IndependenceTest, ScoreForFact {
     }
 
     private TetradMatrix kernelMatrix(double[][] _data, Node x, List<Node> z, double widthMultiplier) {
-
-        List<Integer> _z = new ArrayList<>();
-
-        if (x != null) {
-            _z.add(hash.get(x));
-        }
-
-        if (z != null) {
-            for (Node z2 : z) {
-                _z.add(hash.get(z2));
-            }
-        }
-
+        List<Integer> _z = columns(x, z);
         double h = getH(_z);
 
         TetradMatrix result = new TetradMatrix(N, N);
@@ -706,6 +1054,31 @@ public class Kci implements IndependenceTest, ScoreForFact {
         return result;
     }
 
+    // Incomplete Cholesky factor of the centered kernel matrix.
+    private LowRankGram lowRankKernel(Node x, List<Node> z) {
+        List<Integer> _z = columns(x, z);
+        double width = getWidthMultiplier() * getH(_z);
+
+        return LowRankGram.incompleteCholesky((i, j) -> kernelGaussian(distance(_data, _z, i, j), width),
+                N, LOW_RANK_PRECISION, rank).centered();
+    }
+
+    private List<Integer> columns(Node x, List<Node> z) {
+        List<Integer> _z = new ArrayList<>();
+
+        if (x != null) {
+            _z.add(hash.get(x));
+        }
+
+        if (z != null) {
+            for (Node z2 : z) {
+                _z.add(hash.get(z2));
+            }
+        }
+
+        return _z;
+    }
+
     private double getH(List<Integer> _z) {
         double h = 0;
 
@@ -21,48 +21,416 @@
 
 package edu.cmu.tetrad.search;
 
-import org.apache.commons.collections4.map.MultiKeyMap;
-
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
 
 /**
- * Stores a map from (variable, parents) to score.
+ * Stores a map from (variable, parents) to score. The parents are treated as a set, so the order in which
+ * they are given does not matter.
+ * <p>
+ * Keys are held as primitive int arrays under a 64-bit hash that does not depend on the order of the parents,
+ * so lookups do not allocate. The cache is split into lock-striped segments so that it can be shared by the
+ * worker threads of a search, and it is bounded in size. Each segment keeps two generations of entries; when
+ * the current generation fills up it becomes the old generation and the previous old generation is dropped.
+ * Entries that are hit in the old generation are moved back into the current one, so frequently used scores
+ * survive eviction. Tables start small and grow as scores are added, so a cache that is only lightly used takes
+ * little memory whatever its bound.
+ * <p>
+ * Any score, NaN included, may be stored. get() returns NaN for a missing score; computeIfAbsent() tells a
+ * stored NaN apart from a missing score.
  *
  * @author Joseph Ramsey
  */
 public class LocalScoreCache {
-    private MultiKeyMap map;
+
+    /**
+     * The default bound on the number of stored scores.
+     */
+    public static final int DEFAULT_MAX_SIZE = 1000000;
+
+    // The lock-striped segments.
+    private final Segment[] segments;
+
+    // segments.length - 1; segments.length is a power of two.
+    private final int segmentMask;
+
+    // The maximum number of scores held.
+    private final int maxSize;
+
+    // Hit and miss counts for lookups.
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
 
     public LocalScoreCache() {
-        map = new MultiKeyMap();
+        this(DEFAULT_MAX_SIZE);
     }
 
-    public void add(int variable, int[] parents, double score) {
-        Set<Integer> _parents = new HashSet<>(parents.length);
+    /**
+     * @param maxSize The maximum number of scores to hold at any one time; must be positive.
+     */
+    public LocalScoreCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Max size must be positive: " + maxSize);
+        }
 
-        for (int parent : parents) {
-            _parents.add(parent);
+        this.maxSize = maxSize;
+
+        int numSegments = 1;
+
+        while (numSegments < 4 * Runtime.getRuntime().availableProcessors()
+                && maxSize / (2 * numSegments * 2) >= 16) {
+            numSegments *= 2;
+        }
+
+        int generationSize = Math.max(1, maxSize / (2 * numSegments));
+
+        this.segments = new Segment[numSegments];
+
+        for (int i = 0; i < numSegments; i++) {
+            segments[i] = new Segment(generationSize);
         }
 
-        map.put(variable, _parents, score);
+        this.segmentMask = numSegments - 1;
     }
 
+    public void add(int variable, int[] parents, double score) {
+        long hash = hash(variable, parents);
+        Segment segment = segments[(int) hash & segmentMask];
+
+        synchronized (segment) {
+            segment.put(hash, variable, parents, score);
+        }
+    }
+
+    /**
+     * @return the stored score for the given variable and parents, or NaN if none is stored.
+     */
     public double get(int variable, int[] parents) {
-        Set<Integer> _parents = new HashSet<>(parents.length);
+        long hash = hash(variable, parents);
+        Segment segment = segments[(int) hash & segmentMask];
 
-        for (int parent : parents) {
-            _parents.add(parent);
+        synchronized (segment) {
+            if (segment.lookup(hash, variable, parents)) {
+                hits.increment();
+                return segment.found;
+            }
+        }
+
+        misses.increment();
+        return Double.NaN;
+    }
+
+    /**
+     * @return the stored score for the given variable and parents; if none is stored, the score is computed
+     * using the given function and stored. The score is computed outside the lock, so two threads asking for the
+     * same missing score at once may both compute it.
+     */
+    public double computeIfAbsent(int variable, int[] parents, DoubleSupplier function) {
+        long hash = hash(variable, parents);
+        Segment segment = segments[(int) hash & segmentMask];
+
+        synchronized (segment) {
+            if (segment.lookup(hash, variable, parents)) {
+                hits.increment();
+                return segment.found;
+            }
+        }
+
+        misses.increment();
+        double score = function.getAsDouble();
+
+        synchronized (segment) {
+            segment.put(hash, variable, parents, score);
         }
 
-        Double _score = (Double) map.get(variable, _parents);
-        return _score == null ? Double.NaN : (_score);
+        return score;
     }
 
     public void clear() {
-        map.clear();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+
+        hits.reset();
+        misses.reset();
     }
-}
 
+    /**
+     * @return the number of scores currently stored.
+     */
+    public int size() {
+        int size = 0;
+
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.current.size + segment.old.size;
+            }
+        }
+
+        return size;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return the number of lookups that found a score.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of lookups that did not find a score.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public String toString() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        double rate = total == 0 ? 0.0 : hits / (double) total;
+        return "LocalScoreCache: size = " + size() + " hits = " + hits + " misses = " + getMisses()
+                + " hit rate = " + rate;
+    }
+
+    //==============================PRIVATE==============================//
+
+    // Order-independent hash of (variable, parents); parents are combined by summing their mixed values.
+    private static long hash(int variable, int[] parents) {
+        long sum = 0;
+
+        for (int parent : parents) {
+            sum += mix(parent + 0x9E3779B97F4A7C15L);
+        }
+
+        return mix(sum ^ mix(variable * 0xC2B2AE3D27D4EB4FL + parents.length));
+    }
+
+    // The murmur3 64-bit finalizer.
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    // A segment holding a current and an old generation of scores. Parents are sorted into a scratch array
+    // before they are compared with stored keys, which hold the variable followed by the sorted parents.
+    private static class Segment {
+        private final int generationSize;
+        private Table current;
+        private Table old;
+        private int[] sorted = new int[8];
+
+        // The score found by the last successful lookup.
+        private double found;
+
+        Segment(int generationSize) {
+            this.generationSize = generationSize;
+            this.current = new Table(generationSize);
+            this.old = new Table(generationSize);
+        }
+
+        // Returns true, setting found, if the key is stored.
+        boolean lookup(long hash, int variable, int[] parents) {
+            sort(parents);
+            int slot = current.find(hash, variable, sorted, parents.length);
+
+            if (slot >= 0) {
+                found = current.values[slot];
+                return true;
+            }
+
+            slot = old.find(hash, variable, sorted, parents.length);
+
+            if (slot >= 0) {
+                found = old.values[slot];
+                int[] key = old.keys[slot];
+                old.remove(slot);
+                insert(hash, key, found);
+                return true;
+            }
+
+            return false;
+        }
+
+        void put(long hash, int variable, int[] parents, double score) {
+            sort(parents);
+            int slot = current.find(hash, variable, sorted, parents.length);
+
+            if (slot >= 0) {
+                current.values[slot] = score;
+                return;
+            }
+
+            int[] key = new int[parents.length + 1];
+            key[0] = variable;
+            System.arraycopy(sorted, 0, key, 1, parents.length);
+            insert(hash, key, score);
+        }
+
+        void clear() {
+            current = new Table(generationSize);
+            old = new Table(generationSize);
+        }
+
+        private void sort(int[] parents) {
+            if (sorted.length < parents.length) {
+                sorted = new int[Math.max(parents.length, 2 * sorted.length)];
+            }
+
+            System.arraycopy(parents, 0, sorted, 0, parents.length);
+            Arrays.sort(sorted, 0, parents.length);
+        }
+
+        private void insert(long hash, int[] key, double score) {
+            if (current.size >= generationSize) {
+                Table t = old;
+                old = current;
+                current = t;
+                current.clear();
+            }
+
+            current.insert(hash, key, score);
+        }
+    }
+
+    // An open-addressed hash table with linear probing, kept at most half full. It starts small and doubles as
+    // entries are added, up to the capacity needed for its maximum number of entries.
+    private static class Table {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private final int maxCapacity;
+        private int mask;
+        private long[] hashes;
+        private int[][] keys;
+        private double[] values;
+        private int size = 0;
+
+        Table(int maxEntries) {
+            int capacity = 2;
+
+            while (capacity < 2 * maxEntries) {
+                capacity *= 2;
+            }
+
+            this.maxCapacity = capacity;
+            allocate(Math.min(INITIAL_CAPACITY, capacity));
+        }
+
+        // Returns the slot holding the key, or -1 if it is not present. The first numParents entries of
+        // sortedParents are the parents, sorted.
+        int find(long hash, int variable, int[] sortedParents, int numParents) {
+            int slot = (int) (hash >>> 32) & mask;
+
+            while (keys[slot] != null) {
+                if (hashes[slot] == hash && matches(keys[slot], variable, sortedParents, numParents)) {
+                    return slot;
+                }
 
+                slot = (slot + 1) & mask;
+            }
 
+            return -1;
+        }
+
+        void insert(long hash, int[] key, double score) {
+            if (2 * (size + 1) > hashes.length && hashes.length < maxCapacity) {
+                grow();
+            }
+
+            int slot = (int) (hash >>> 32) & mask;
+
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+
+            hashes[slot] = hash;
+            keys[slot] = key;
+            values[slot] = score;
+            size++;
+        }
+
+        // Removes the entry in the given slot, shifting later entries of its probe run back so that no lookup
+        // stops short at the emptied slot.
+        void remove(int slot) {
+            keys[slot] = null;
+            size--;
+
+            int empty = slot;
+            int next = slot;
+
+            while (true) {
+                next = (next + 1) & mask;
+
+                if (keys[next] == null) {
+                    return;
+                }
+
+                int home = (int) (hashes[next] >>> 32) & mask;
+
+                // An entry may stay if its home slot lies cyclically in (empty, next].
+                boolean stays = empty <= next ? empty < home && home <= next : empty < home || home <= next;
+
+                if (!stays) {
+                    hashes[empty] = hashes[next];
+                    keys[empty] = keys[next];
+                    values[empty] = values[next];
+                    keys[next] = null;
+                    empty = next;
+                }
+            }
+        }
+
+        void clear() {
+            if (size > 0) {
+                Arrays.fill(keys, null);
+                size = 0;
+            }
+        }
+
+        private void allocate(int capacity) {
+            this.mask = capacity - 1;
+            this.hashes = new long[capacity];
+            this.keys = new int[capacity][];
+            this.values = new double[capacity];
+        }
+
+        private void grow() {
+            long[] oldHashes = hashes;
+            int[][] oldKeys = keys;
+            double[] oldValues = values;
+
+            allocate(2 * hashes.length);
+            size = 0;
+
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    insert(oldHashes[i], oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static boolean matches(int[] key, int variable, int[] sortedParents, int numParents) {
+            if (key[0] != variable || key.length != numParents + 1) {
+                return false;
+            }
+
+            for (int i = 0; i < numParents; i++) {
+                if (key[i + 1] != sortedParents[i]) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
@@ -21,6 +21,7 @@
 
 package edu.cmu.tetrad.search;
 
+import edu.cmu.tetrad.data.CompiledKnowledge;
 import edu.cmu.tetrad.data.IKnowledge;
 import edu.cmu.tetrad.graph.*;
 import edu.cmu.tetrad.util.ChoiceGenerator;
@@ -93,7 +94,7 @@ public class MeekRules implements ImpliedOrientation {
         this.visited.addAll(nodes);
 
         TetradLogger.getInstance().log("impliedOrientations", "Starting Orientation Step D.");
-        orientUsingMeekRulesLocally(knowledge, graph);
+        orientUsingMeekRulesLocally(CompiledKnowledge.compile(knowledge, graph.getNodes()), graph);
         TetradLogger.getInstance().log("impliedOrientations", "Finishing Orientation Step D.");
 
     }
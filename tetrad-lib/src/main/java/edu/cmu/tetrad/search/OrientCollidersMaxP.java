@@ -28,7 +28,7 @@ import edu.cmu.tetrad.data.Knowledge2;
 import edu.cmu.tetrad.graph.*;
 import edu.cmu.tetrad.util.ChoiceGenerator;
 import edu.cmu.tetrad.util.DepthChoiceGenerator;
-import edu.cmu.tetrad.util.ForkJoinPoolInstance;
+import edu.cmu.tetrad.util.ExecutionService;
 import edu.cmu.tetrad.util.TetradLogger;
 
 import java.util.*;
@@ -135,7 +135,7 @@ public final class OrientCollidersMaxP {
 
 //        Task task = new Task(nodes, graph, scores, 0, nodes.size());
 //
-//        ForkJoinPoolInstance.getInstance().getPool().invoke(task);
+//        ExecutionService.getInstance().getPool().invoke(task);
 //
         for (int i = 0; i < nodes.size(); i++) {
             doNode(graph, scores, nodes.get(i));
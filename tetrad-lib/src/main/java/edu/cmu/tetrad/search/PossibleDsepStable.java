@@ -0,0 +1,460 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import edu.cmu.tetrad.data.IKnowledge;
+import edu.cmu.tetrad.data.Knowledge2;
+import edu.cmu.tetrad.graph.Edge;
+import edu.cmu.tetrad.graph.Endpoint;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphUtils;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.util.ChoiceGenerator;
+import edu.cmu.tetrad.util.ExecutionService;
+import edu.cmu.tetrad.util.TetradLogger;
+
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The possible-d-sep step of FCI, done in the manner of PC-stable. For each edge x *-* y of the graph, the search
+ * looks for a subset of Possible-D-Sep(x, y), or else of Possible-D-Sep(y, x), that renders x and y independent. All
+ * possible-d-sep sets are computed against a snapshot of the graph taken before any edge is removed, and all edges
+ * are tested against that snapshot, so the edges removed do not depend on the order in which edges are visited.
+ * Removals are applied in a batch once every edge has been tested. Edges are tested concurrently only if the test
+ * is declared thread-safe (see setTestThreadSafe) or is an IndTestCache, which serializes calls to the test it wraps;
+ * otherwise they are tested one at a time, with the same result.
+ * <p>
+ * A node z is in Possible-D-Sep(x, y) if z is not x or y and there is a path from x to z, not through y, such that
+ * every triple &lt;a, b, c&gt; along the path either is a definite collider at b or has a and c adjacent. The path
+ * length may be bounded using setMaxPathLength.
+ * <p>
+ * The graph passed in should have its unshielded colliders oriented already (FCI rule R0), since the colliders
+ * determine the possible-d-sep sets.
+ */
+public class PossibleDsepStable {
+
+    /**
+     * The independence test.
+     */
+    private final IndependenceTest test;
+
+    /**
+     * True iff the test may be called from several threads at once.
+     */
+    private boolean testThreadSafe;
+
+    /**
+     * Specification of which edges are forbidden or required, and of tiers.
+     */
+    private IKnowledge knowledge = new Knowledge2();
+
+    /**
+     * The maximum size of any conditioning set, or -1 if unlimited.
+     */
+    private int depth = -1;
+
+    /**
+     * The maximum length of any path used to build a possible-d-sep set, or -1 if unlimited.
+     */
+    private int maxPathLength = -1;
+
+    /**
+     * The number of independence tests done in the last search.
+     */
+    private int numIndependenceTests;
+
+    /**
+     * Elapsed time of the last search, in milliseconds.
+     */
+    private long elapsedTime;
+
+    /**
+     * The logger to use.
+     */
+    private TetradLogger logger = TetradLogger.getInstance();
+
+    /**
+     * True iff verbose output should be printed.
+     */
+    private boolean verbose = false;
+
+    private PrintStream out = System.out;
+
+    //==========================CONSTRUCTORS=============================//
+
+    public PossibleDsepStable(IndependenceTest test) {
+        if (test == null) {
+            throw new NullPointerException();
+        }
+
+        this.test = test;
+        this.testThreadSafe = test instanceof IndTestCache;
+    }
+
+    //==========================PUBLIC METHODS===========================//
+
+    /**
+     * Removes from the graph every edge x *-* y for which x and y are independent conditional on some subset of
+     * Possible-D-Sep(x, y) or of Possible-D-Sep(y, x), recording the conditioning set found in the given sepset map.
+     * Endpoints of the remaining edges are left unchanged.
+     *
+     * @return the number of edges removed.
+     */
+    public int search(Graph graph, SepsetMap sepsets) {
+        long start = System.currentTimeMillis();
+        numIndependenceTests = 0;
+
+        final Snapshot snapshot = new Snapshot(graph);
+        final List<Node> nodes = snapshot.nodes;
+        final List<int[]> edges = new ArrayList<>();
+
+        for (int x = 0; x < nodes.size(); x++) {
+            for (int y : snapshot.adj[x]) {
+                if (x < y) {
+                    edges.add(new int[]{x, y});
+                }
+            }
+        }
+
+        final AtomicInteger numTests = new AtomicInteger();
+        List<Callable<List<Node>>> tasks = new ArrayList<>();
+
+        for (final int[] edge : edges) {
+            tasks.add(() -> {
+                int x = edge[0];
+                int y = edge[1];
+
+                List<Node> sepset = getCondSet(snapshot, x, y, numTests);
+
+                if (sepset == null) {
+                    sepset = getCondSet(snapshot, y, x, numTests);
+                }
+
+                return sepset;
+            });
+        }
+
+        // Tests that are not thread safe are run one at a time.
+        List<List<Node>> results = ExecutionService.getInstance().invokeAllAndGet(tasks, testThreadSafe);
+
+        int removed = 0;
+
+        for (int i = 0; i < edges.size(); i++) {
+            List<Node> sepset = results.get(i);
+
+            if (sepset == null) {
+                continue;
+            }
+
+            Node x = nodes.get(edges.get(i)[0]);
+            Node y = nodes.get(edges.get(i)[1]);
+
+            graph.removeEdge(x, y);
+            sepsets.set(x, y, sepset);
+            removed++;
+
+            if (verbose) {
+                out.println("Possible DSEP Removed " + x + " --- " + y + " sepset = " + sepset);
+            }
+        }
+
+        numIndependenceTests = numTests.get();
+        elapsedTime = System.currentTimeMillis() - start;
+
+        logger.log("info", "Possible-D-Sep: " + removed + " of " + edges.size() + " edges removed, "
+                + numIndependenceTests + " tests, " + elapsedTime / 1000.0 + "s");
+
+        return removed;
+    }
+
+    /**
+     * @return Possible-D-Sep(x, y) in the given graph, in the order of the graph's nodes.
+     */
+    public List<Node> getPossibleDsep(Graph graph, Node x, Node y) {
+        Snapshot snapshot = new Snapshot(graph);
+        int[] pds = snapshot.possibleDsep(snapshot.indices.get(x), snapshot.indices.get(y), maxPathLength);
+        List<Node> possibleDsep = new ArrayList<>();
+
+        for (int z : pds) {
+            possibleDsep.add(snapshot.nodes.get(z));
+        }
+
+        return possibleDsep;
+    }
+
+    public IKnowledge getKnowledge() {
+        return knowledge;
+    }
+
+    public void setKnowledge(IKnowledge knowledge) {
+        if (knowledge == null) {
+            throw new NullPointerException();
+        }
+
+        this.knowledge = knowledge;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public void setDepth(int depth) {
+        if (depth < -1) {
+            throw new IllegalArgumentException(
+                    "Depth must be -1 (unlimited) or >= 0: " + depth);
+        }
+
+        this.depth = depth;
+    }
+
+    public int getMaxPathLength() {
+        return maxPathLength;
+    }
+
+    public void setMaxPathLength(int maxPathLength) {
+        if (maxPathLength < -1) {
+            throw new IllegalArgumentException("Max path length must be -1 (unlimited) or >= 0: " + maxPathLength);
+        }
+
+        this.maxPathLength = maxPathLength;
+    }
+
+    public boolean isTestThreadSafe() {
+        return testThreadSafe;
+    }
+
+    /**
+     * @param testThreadSafe true iff the test's isIndependent may be called from several threads at once, in which
+     *                       case edges are tested concurrently. False by default, unless the test is an
+     *                       IndTestCache.
+     */
+    public void setTestThreadSafe(boolean testThreadSafe) {
+        this.testThreadSafe = testThreadSafe;
+    }
+
+    public int getNumIndependenceTests() {
+        return numIndependenceTests;
+    }
+
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    public boolean isVerbose() {
+        return verbose;
+    }
+
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    public PrintStream getOut() {
+        return out;
+    }
+
+    public void setOut(PrintStream out) {
+        if (out == null) {
+            throw new NullPointerException();
+        }
+
+        this.out = out;
+    }
+
+    //==========================PRIVATE METHODS==========================//
+
+    /**
+     * Searches the subsets of Possible-D-Sep(x, y) for one that renders x and y independent, smallest subsets first.
+     * Nodes in a later tier than both x and y are never conditioned on.
+     */
+    private List<Node> getCondSet(Snapshot snapshot, int x, int y, AtomicInteger numTests) {
+        Node node1 = snapshot.nodes.get(x);
+        Node node2 = snapshot.nodes.get(y);
+
+        if (!knowledge.noEdgeRequired(node1.getName(), node2.getName())) {
+            return null;
+        }
+
+        int maxTier = Math.max(snapshot.tiers[x], snapshot.tiers[y]);
+        List<Node> possibleDsep = new ArrayList<>();
+
+        for (int z : snapshot.possibleDsep(x, y, maxPathLength)) {
+            if (snapshot.tiers[z] <= maxTier) {
+                possibleDsep.add(snapshot.nodes.get(z));
+            }
+        }
+
+        int _depth = depth == -1 ? 1000 : depth;
+
+        for (int d = 0; d <= Math.min(_depth, possibleDsep.size()); d++) {
+            ChoiceGenerator cg = new ChoiceGenerator(possibleDsep.size(), d);
+            int[] choice;
+
+            while ((choice = cg.next()) != null) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return null;
+                }
+
+                List<Node> condSet = GraphUtils.asList(choice, possibleDsep);
+                numTests.incrementAndGet();
+
+                if (test.isIndependent(node1, node2, condSet)) {
+                    return condSet;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * An immutable, index-based copy of the graph's adjacencies and of the arrowheads at each endpoint, shared by the
+     * concurrent tasks.
+     */
+    private class Snapshot {
+        final List<Node> nodes;
+        final Map<Node, Integer> indices = new HashMap<>();
+
+        // adj[b] lists the nodes adjacent to b in increasing order.
+        final int[][] adj;
+
+        // arrow[b][k] is true iff the edge between b and adj[b][k] has an arrowhead at b.
+        final boolean[][] arrow;
+
+        // offsets[b] + k numbers the directed edge from adj[b][k] into b.
+        final int[] offsets;
+        final BitSet[] adjacent;
+        final int[] tiers;
+        final int numDirectedEdges;
+
+        Snapshot(Graph graph) {
+            nodes = new ArrayList<>(graph.getNodes());
+            int n = nodes.size();
+
+            for (int i = 0; i < n; i++) {
+                indices.put(nodes.get(i), i);
+            }
+
+            adj = new int[n][];
+            arrow = new boolean[n][];
+            offsets = new int[n];
+            adjacent = new BitSet[n];
+            tiers = new int[n];
+            int offset = 0;
+
+            for (int b = 0; b < n; b++) {
+                Node _b = nodes.get(b);
+                List<Node> adjacentNodes = graph.getAdjacentNodes(_b);
+                int[] _adj = new int[adjacentNodes.size()];
+
+                for (int k = 0; k < _adj.length; k++) {
+                    _adj[k] = indices.get(adjacentNodes.get(k));
+                }
+
+                Arrays.sort(_adj);
+                adj[b] = _adj;
+                arrow[b] = new boolean[_adj.length];
+                adjacent[b] = new BitSet(n);
+
+                for (int k = 0; k < _adj.length; k++) {
+                    Edge edge = graph.getEdge(_b, nodes.get(_adj[k]));
+                    arrow[b][k] = edge.getProximalEndpoint(_b) == Endpoint.ARROW;
+                    adjacent[b].set(_adj[k]);
+                }
+
+                offsets[b] = offset;
+                offset += _adj.length;
+                tiers[b] = knowledge.isInWhichTier(_b);
+            }
+
+            numDirectedEdges = offset;
+        }
+
+        /**
+         * Breadth-first search over directed edges a -> b of the graph, starting from the edges out of x. An edge
+         * b -> c extends a -> b if c is not a, x or y and either &lt;a, b, c&gt; is a definite collider or a and c are
+         * adjacent. Since each directed edge is first reached along a shortest such path, the path length bound is
+         * respected.
+         *
+         * @return the indices of the nodes reached, in increasing order.
+         */
+        int[] possibleDsep(int x, int y, int maxPathLength) {
+            int maxLength = maxPathLength == -1 ? Integer.MAX_VALUE : maxPathLength;
+            BitSet reached = new BitSet(nodes.size());
+            BitSet visited = new BitSet(numDirectedEdges);
+            int[] queue = new int[numDirectedEdges];
+            int[] owners = new int[numDirectedEdges];
+            int[] lengths = new int[numDirectedEdges];
+            int head = 0;
+            int tail = 0;
+
+            if (maxLength >= 1) {
+                for (int b : adj[x]) {
+                    if (b == y) continue;
+                    int state = offsets[b] + Arrays.binarySearch(adj[b], x);
+                    visited.set(state);
+                    reached.set(b);
+                    queue[tail] = state;
+                    owners[tail] = b;
+                    lengths[tail++] = 1;
+                }
+            }
+
+            while (head < tail) {
+                int state = queue[head];
+                int b = owners[head];
+                int length = lengths[head++];
+
+                if (length >= maxLength) {
+                    continue;
+                }
+
+                int ka = state - offsets[b];
+                int a = adj[b][ka];
+
+                for (int kc = 0; kc < adj[b].length; kc++) {
+                    int c = adj[b][kc];
+
+                    if (c == a || c == x || c == y) continue;
+
+                    if (!(arrow[b][ka] && arrow[b][kc]) && !adjacent[a].get(c)) {
+                        continue;
+                    }
+
+                    int next = offsets[c] + Arrays.binarySearch(adj[c], b);
+
+                    if (!visited.get(next)) {
+                        visited.set(next);
+                        reached.set(c);
+                        queue[tail] = next;
+                        owners[tail] = c;
+                        lengths[tail++] = length + 1;
+                    }
+                }
+            }
+
+            return reached.stream().toArray();
+        }
+    }
+}
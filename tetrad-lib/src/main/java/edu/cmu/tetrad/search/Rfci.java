@@ -80,9 +80,15 @@ public final class Rfci implements GraphSearch {
     private boolean completeRuleSetUsed = false;
 
     /**
-     * True iff the possible dsep search is done.
+     * True iff the possible dsep search of FCI is done after the RFCI collider step. False by default, which gives
+     * RFCI proper.
      */
-    private boolean possibleDsepSearchDone = true;
+    private boolean possibleDsepSearchDone = false;
+
+    /**
+     * True iff the independence test may be called from several threads at once.
+     */
+    private boolean testThreadSafe = false;
 
     /**
      * The maximum length for any discriminating path. -1 if unlimited; otherwise, a positive integer.
@@ -205,6 +211,22 @@ public final class Rfci implements GraphSearch {
         // The original FCI, with or without JiJi Zhang's orientation rules
         fciOrientbk(getKnowledge(), graph, variables);
         ruleR0_RFCI(getRTuples());  // RFCI Algorithm 4.4
+
+        if (possibleDsepSearchDone) {
+            PossibleDsepStable possibleDsep = new PossibleDsepStable(independenceTest);
+            possibleDsep.setKnowledge(getKnowledge());
+            possibleDsep.setDepth(depth);
+            possibleDsep.setMaxPathLength(maxPathLength);
+            possibleDsep.setVerbose(verbose);
+            if (testThreadSafe) possibleDsep.setTestThreadSafe(true);
+
+            if (possibleDsep.search(graph, sepsets) > 0) {
+                graph.reorientAllWith(Endpoint.CIRCLE);
+                fciOrientbk(getKnowledge(), graph, variables);
+                ruleR0_RFCI(getRTuples());
+            }
+        }
+
         doFinalOrientation();
 
         long endTime = System.currentTimeMillis();
@@ -253,6 +275,33 @@ public final class Rfci implements GraphSearch {
         this.completeRuleSetUsed = completeRuleSetUsed;
     }
 
+    /**
+     * @return true iff the possible dsep search of FCI is done after the RFCI collider step.
+     */
+    public boolean isPossibleDsepSearchDone() {
+        return possibleDsepSearchDone;
+    }
+
+    /**
+     * @param possibleDsepSearchDone true iff the possible dsep search of FCI should be done after the RFCI collider
+     *                               step. False by default.
+     */
+    public void setPossibleDsepSearchDone(boolean possibleDsepSearchDone) {
+        this.possibleDsepSearchDone = possibleDsepSearchDone;
+    }
+
+    public boolean isTestThreadSafe() {
+        return testThreadSafe;
+    }
+
+    /**
+     * @param testThreadSafe true iff the independence test may be called from several threads at once, in which case
+     *                       the possible-d-sep step tests edges concurrently. False by default.
+     */
+    public void setTestThreadSafe(boolean testThreadSafe) {
+        this.testThreadSafe = testThreadSafe;
+    }
+
     //===========================PRIVATE METHODS=========================//
 
     private List<Node> getSepset(Node i, Node k) {
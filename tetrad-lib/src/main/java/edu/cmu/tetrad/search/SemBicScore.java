@@ -26,10 +26,8 @@ import edu.cmu.tetrad.data.DataSet;
 import edu.cmu.tetrad.data.ICovarianceMatrix;
 import edu.cmu.tetrad.graph.Node;
 import edu.cmu.tetrad.util.DepthChoiceGenerator;
-import edu.cmu.tetrad.util.StatUtils;
+import edu.cmu.tetrad.util.IncrementalCholesky;
 import edu.cmu.tetrad.util.TetradMatrix;
-import edu.cmu.tetrad.util.TetradVector;
-import org.apache.commons.math3.linear.SingularMatrixException;
 
 import java.io.PrintStream;
 import java.util.*;
@@ -43,6 +41,9 @@ import static java.lang.Math.*;
  */
 public class SemBicScore implements Score {
 
+    // The maximum number of Cholesky factors of parent sets to remember.
+    private static final int MAX_CACHED_FACTORS = 100000;
+
     // The dataset.
     private DataSet dataSet;
 
@@ -73,6 +74,9 @@ public class SemBicScore implements Score {
     // The structure prior, 0 for standard BIC.
     private double structurePrior = 0.0;
 
+    // Cholesky factors of parent covariance submatrices, extended one parent at a time.
+    private IncrementalCholesky cholesky;
+
     /**
      * Constructs the score using a covariance matrix.
      */
@@ -108,21 +112,9 @@ public class SemBicScore implements Score {
 
     @Override
     public double localScoreDiff(int x, int y, int[] z) {
-        double sp1 = getStructurePrior(z.length + 1);
-        double sp2 = getStructurePrior(z.length);
-
-        if (false) {
-            int n = covariances.getSampleSize();
-            Node _x = variables.get(x);
-            Node _y = variables.get(y);
-            List<Node> _z = getVariableList(z);
-            double r = partialCorrelation(_x, _y, _z);
-
-            return -n * Math.log(1.0 - r * r) - log(n)// - getErrorThreshold()
-                    +  signum(getStructurePrior()) * (sp1 - sp2);
-        } else {
-            return (localScore(y, append(z, x)) - localScore(y, z));// - getErrorThreshold();
-        }
+        double[] s2 = new double[2];
+        cholesky.residualVariances(x, y, z, s2);
+        return score(s2[1], z.length + 1) - score(s2[0], z.length);
     }
 
     @Override
@@ -131,41 +123,27 @@ public class SemBicScore implements Score {
     }
 
     public double localScore(int i, int... parents) {
+        return score(cholesky.residualVariance(i, parents), parents.length);
+    }
 
-        try {
-            final int p = parents.length;
-            int k = p + 1;
-            double n = getSampleSize();
-
-            int[] ii = {i};
-            TetradMatrix X = getCovariances().getSelection(parents, parents);
-            TetradMatrix Y = getCovariances().getSelection(parents, ii);
-            double s2 = getCovariances().getValue(i, i);
-
-            TetradVector coefs = getCoefs(X, Y).getColumn(0);
+    // The score for a node with the given residual variance and number of parents.
+    private double score(double s2, int p) {
+        if (Double.isNaN(s2)) {
+            return Double.NaN;
+        }
 
-            for (int q = 0; q < X.rows(); q++) {
-                for (int r = 0; r < X.columns(); r++) {
-                    s2 -= coefs.get(q) * coefs.get(r) * X.get(r, q);
-                }
-            }
+        int k = p + 1;
+        double n = getSampleSize();
 
-            if (s2 <= 0) {
-                if (isVerbose()) {
-                    out.println("Nonpositive residual varianceY: resVar / varianceY = " + (s2 / getCovariances().getValue(i, i)));
-                }
-                return Double.NaN;
+        if (s2 <= 0) {
+            if (isVerbose()) {
+                out.println("Nonpositive residual variance: " + s2);
             }
-
-            return -n * log(s2) - getPenaltyDiscount() * k * log(n)
-                    + signum(getStructurePrior()) * getStructurePrior(parents.length);
-        } catch (Exception e) {
             return Double.NaN;
         }
-    }
 
-    private TetradMatrix getCoefs(TetradMatrix x, TetradMatrix y) {
-        return (x.inverse()).times(y);
+        return -n * log(s2) - getPenaltyDiscount() * k * log(n)
+                + signum(getStructurePrior()) * getStructurePrior(p);
     }
 
     /**
@@ -270,6 +248,7 @@ public class SemBicScore implements Score {
 
     private void setCovariances(ICovarianceMatrix covariances) {
         this.covariances = covariances;
+        this.cholesky = new IncrementalCholesky(covariances.getMatrix().toArray(), MAX_CACHED_FACTORS);
     }
 
     private double getStructurePrior(int parents) {
@@ -282,23 +261,6 @@ public class SemBicScore implements Score {
         }
     }
 
-    private List<Node> getVariableList(int[] indices) {
-        List<Node> variables = new ArrayList<>();
-        for (int i : indices) {
-            variables.add(this.variables.get(i));
-        }
-        return variables;
-    }
-
-    private double partialCorrelation(Node x, Node y, List<Node> z) throws SingularMatrixException {
-        int[] indices = new int[z.size() + 2];
-        indices[0] = indexMap.get(x.getName());
-        indices[1] = indexMap.get(y.getName());
-        for (int i = 0; i < z.size(); i++) indices[i + 2] = indexMap.get(z.get(i).getName());
-        TetradMatrix submatrix = covariances.getSubmatrix(indices).getMatrix();
-        return StatUtils.partialCorrelationPrecisionMatrix(submatrix);
-    }
-
     private Map<String, Integer> indexMap(List<Node> variables) {
         Map<String, Integer> indexMap = new HashMap<>();
 
@@ -340,13 +302,6 @@ public class SemBicScore implements Score {
         return false;
     }
 
-    private int[] append(int[] parents, int extra) {
-        int[] all = new int[parents.length + 1];
-        System.arraycopy(parents, 0, all, 0, parents.length);
-        all[parents.length] = extra;
-        return all;
-    }
-
 //    // Might not be useful.
 //    private synchronized double getErrorThreshold() {
 //        if (Double.isNaN(errorThreshold)) {
@@ -180,6 +180,35 @@ public final class SepsetMap implements TetradSerializable {
         this.correlations = pairs;
     }
 
+    /**
+     * @return the set of correlated node pairs set by setCorrelations, or null if it was not set.
+     */
+    public Set<Set<Node>> getCorrelations() {
+        return correlations == null ? null : Collections.unmodifiableSet(correlations);
+    }
+
+    /**
+     * @return the sepsets that have been set, keyed by unordered pair {x, y}, without regard to the correlations or
+     * returnEmptyIfNotSet.
+     */
+    public Map<Set<Node>, List<Node>> getSepsets() {
+        return Collections.unmodifiableMap(sepsets);
+    }
+
+    /**
+     * @return the p-values that have been set, keyed by unordered pair {x, y}.
+     */
+    public Map<Set<Node>, Double> getPValues() {
+        return Collections.unmodifiableMap(pValues);
+    }
+
+    /**
+     * @return the nodes x for which parents have been set using set(x, z).
+     */
+    public Set<Node> getNodesWithParents() {
+        return Collections.unmodifiableSet(parents.keySet());
+    }
+
     public boolean isReturnEmptyIfNotSet() {
         return returnEmptyIfNotSet;
     }
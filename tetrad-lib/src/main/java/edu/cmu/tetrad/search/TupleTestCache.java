@@ -0,0 +1,142 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A bounded, thread-safe store of p values (or other statistics) for small sets of variable indices--the quartets of
+ * FindOneFactorClusters, the sextets of FindTwoFactorClusters or the fourth moments of FourthMoments--shared by all of
+ * the tasks of a search. Each set is packed into a single long, together with a small tag for callers that test more
+ * than one thing per set. Once the store holds its maximum number of p values, further p values are not stored; sets
+ * whose indices cannot be packed into a long are never stored.
+ */
+final class TupleTestCache {
+
+    // The number of bits used for each index.
+    private final int bits;
+
+    // The number of indices in each set.
+    private final int size;
+
+    // The number of bits used for the tag.
+    private final int tagBits;
+
+    // True iff sets of the given size fit in a long.
+    private final boolean packable;
+
+    // The maximum number of p values stored.
+    private volatile int maxSize;
+
+    private final ConcurrentHashMap<Long, Double> pValues = new ConcurrentHashMap<>();
+
+    /**
+     * @param numVariables The number of variables; indices range from 0 to numVariables - 1.
+     * @param size         The number of indices in each set.
+     * @param tagBits      The number of bits to reserve for tags.
+     * @param maxSize      The maximum number of p values to store.
+     */
+    TupleTestCache(int numVariables, int size, int tagBits, int maxSize) {
+        int bits = 1;
+
+        while ((1L << bits) < numVariables) {
+            bits++;
+        }
+
+        this.bits = bits;
+        this.size = size;
+        this.tagBits = tagBits;
+        this.packable = size * bits + tagBits < 64;
+        setMaxSize(maxSize);
+    }
+
+    /**
+     * @param indices The indices of the set, in a canonical order chosen by the caller--usually increasing.
+     * @param tag     A number less than 2^tagBits distinguishing tests on the same set.
+     * @return the key for the set and tag, or -1 if the set cannot be packed.
+     * @throws IllegalArgumentException if the tag or an index is out of range, so that keys never collide.
+     */
+    long key(int[] indices, int tag) {
+        if (!packable) {
+            return -1;
+        }
+
+        if (indices.length != size) {
+            throw new IllegalArgumentException("Expecting " + size + " indices: " + indices.length);
+        }
+
+        if (tag < 0 || tag >= 1L << tagBits) {
+            throw new IllegalArgumentException("Tag out of range: " + tag);
+        }
+
+        long key = tag;
+
+        for (int index : indices) {
+            if (index < 0 || index >= 1L << bits) {
+                throw new IllegalArgumentException("Index out of range: " + index);
+            }
+
+            key = (key << bits) | index;
+        }
+
+        return key;
+    }
+
+    /**
+     * @return the p value stored for the given key, or NaN if there is none.
+     */
+    double get(long key) {
+        if (key == -1) {
+            return Double.NaN;
+        }
+
+        Double p = pValues.get(key);
+        return p == null ? Double.NaN : p;
+    }
+
+    /**
+     * Stores the given p value for the given key, if the store is not full.
+     */
+    void put(long key, double p) {
+        if (key == -1 || Double.isNaN(p) || pValues.size() >= maxSize) {
+            return;
+        }
+
+        pValues.put(key, p);
+    }
+
+    int size() {
+        return pValues.size();
+    }
+
+    void clear() {
+        pValues.clear();
+    }
+
+    void setMaxSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Max size must be >= 0: " + maxSize);
+        }
+
+        this.maxSize = maxSize;
+    }
+}
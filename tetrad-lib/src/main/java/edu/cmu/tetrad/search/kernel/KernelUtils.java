@@ -105,89 +105,39 @@ public class KernelUtils {
     /**
      * Approximates Gram matrix using incomplete Cholesky factorization
      *
-     * @param kernels the kernels for each variable
-     * @param dataset the dataset containing each variable
-     * @param nodes   the variables to construct the Gram matrix for
+     * @param kernels   the kernels for each variable
+     * @param dataset   the dataset containing each variable
+     * @param nodes     the variables to construct the Gram matrix for
+     * @param precision the factorization stops when the remaining diagonal of the Gram matrix falls below this
      */
     public static TetradMatrix incompleteCholeskyGramMatrix(List<Kernel> kernels, DataSet dataset, List<Node> nodes, double precision) {
+        return incompleteCholeskyGramMatrix(kernels, dataset, nodes, precision, 0);
+    }
+
+    /**
+     * Approximates Gram matrix using incomplete Cholesky factorization, returning an m x r factor G with the Gram
+     * matrix ~ G G'. Only m r entries of the Gram matrix are evaluated. The rows of G are in the order of the rows of
+     * the data.
+     *
+     * @param kernels   the kernels for each variable
+     * @param dataset   the dataset containing each variable
+     * @param nodes     the variables to construct the Gram matrix for
+     * @param precision the factorization stops when the remaining diagonal of the Gram matrix falls below this
+     * @param maxRank   the maximum number of columns of G, or 0 for no limit
+     */
+    public static TetradMatrix incompleteCholeskyGramMatrix(List<Kernel> kernels, DataSet dataset, List<Node> nodes,
+                                                            double precision, int maxRank) {
         if (precision <= 0) {
             throw new IllegalArgumentException("Precision must be > 0");
         }
 
         int m = dataset.getNumRows();
-        TetradMatrix G = new TetradMatrix(m, m);
-
-        // get diagonal of Gram matrix and initialize permutation vector
-        double[] Dadv = new double[m];
-        int[] p = new int[m];
-        for (int i = 0; i < m; i++) {
-            Dadv[i] = evaluate(kernels, dataset, nodes, i, i);
-            p[i] = i;
-        }
-
-        // loop through top diagonal elements until precision is met
-        int cols = m;
-        for (int k = 0; k < m; k++) {
-
-            // find best element
-            double best = Dadv[k];
-            int bestInd = k;
-            for (int j = (k + 1); j < m; j++) {
-                if (Dadv[j] > best / .99) {
-                    best = Dadv[j];
-                    bestInd = j;
-                }
-            }
+        int rank = maxRank > 0 ? maxRank : m;
 
-            // exit if best element does not exceed precision
-            if (best < precision) {
-                cols = k - 1;
-                break;
-            }
-
-            // permute best vector and k
-            int pk = p[k];
-            p[k] = p[bestInd];
-            p[bestInd] = pk;
-            double dk = Dadv[k];
-            Dadv[k] = Dadv[bestInd];
-            Dadv[bestInd] = dk;
-            for (int j = 0; j < k; j++) {
-                double gk = G.get(k, j);
-                G.set(k, j, G.get(bestInd, j));
-                G.set(bestInd, j, gk);
-            }
-
-            // compute next column
-            double diag = Math.sqrt(Dadv[k]);
-            G.set(k, k, diag);
-            for (int j = (k + 1); j < m; j++) {
-                double s = 0.0;
-                for (int i = 0; i < k; i++) {
-                    s += G.get(j, i) * G.get(k, i);
-                }
-                G.set(j, k, (evaluate(kernels, dataset, nodes, p[j], p[k]) - s) / diag);
-            }
-
-            // update diagonal
-            for (int j = (k + 1); j < m; j++) {
-                Dadv[j] -= Math.pow(G.get(j, k), 2);
-            }
-            Dadv[k] = 0;
-        }
-
-        // trim columns
-        TetradMatrix Gm = new TetradMatrix(m, cols);
-        for (int i = 0; i < m; i++) {
-            for (int j = 0; j < cols; j++) {
-                Gm.set(i, j, G.get(i, j));
-            }
-        }
-        return Gm;
+        return LowRankGram.incompleteCholesky((i, j) -> evaluate(kernels, dataset, nodes, i, j), m, precision, rank)
+                .toMatrix();
     }
 
-    // evaluates tensor product for kernels
-
     private static double evaluate(List<Kernel> kernels, DataSet dataset, List<Node> vars, int i, int j) {
         int col = dataset.getColumn(vars.get(0));
         double keval = kernels.get(0).eval(dataset.getDouble(i, col), dataset.getDouble(j, col));
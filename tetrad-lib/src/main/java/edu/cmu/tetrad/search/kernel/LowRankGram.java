@@ -0,0 +1,293 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search.kernel;
+
+import edu.cmu.tetrad.util.TetradMatrix;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An m x r factor G of an m x m Gram matrix K ~ G G', for r much smaller than m. Products of Gram matrices can then
+ * be computed through r x r matrices in O(m r^2) time and O(m r) memory, instead of O(m^3) time and O(m^2) memory.
+ * The factor is stored by columns.
+ */
+public final class LowRankGram {
+
+    /**
+     * The entries of a Gram matrix, computed on demand.
+     */
+    public interface Entries {
+        double get(int i, int j);
+    }
+
+    // The columns of G.
+    private final double[][] columns;
+
+    // The number of rows of G.
+    private final int m;
+
+    private LowRankGram(double[][] columns, int m) {
+        this.columns = columns;
+        this.m = m;
+    }
+
+    /**
+     * Factors a Gram matrix by pivoted incomplete Cholesky decomposition. At each step the row with the largest
+     * remaining diagonal is taken as the pivot, and only the column of K at the pivot is computed, so that only m r
+     * entries of K are evaluated. The rows of G are in the order of the rows of K.
+     *
+     * @param kernel    The entries of K, which must be positive semidefinite.
+     * @param m         The number of rows of K.
+     * @param precision The factorization stops once the largest remaining diagonal, which bounds the error of every
+     *                  entry, falls below this.
+     * @param maxRank   The maximum number of columns of G.
+     */
+    public static LowRankGram incompleteCholesky(Entries kernel, int m, double precision, int maxRank) {
+        if (maxRank < 1) {
+            throw new IllegalArgumentException("Rank must be at least 1: " + maxRank);
+        }
+
+        double[] diagonal = new double[m];
+
+        for (int i = 0; i < m; i++) {
+            diagonal[i] = kernel.get(i, i);
+        }
+
+        List<double[]> columns = new ArrayList<>();
+
+        while (columns.size() < Math.min(m, maxRank)) {
+            int pivot = 0;
+
+            for (int i = 1; i < m; i++) {
+                if (diagonal[i] > diagonal[pivot]) pivot = i;
+            }
+
+            if (diagonal[pivot] < precision) {
+                break;
+            }
+
+            int k = columns.size();
+            double d = Math.sqrt(diagonal[pivot]);
+            double[] g = new double[m];
+
+            for (int i = 0; i < m; i++) {
+                // Rows with no remaining diagonal have no remaining entries.
+                if (diagonal[i] == 0) continue;
+
+                double s = kernel.get(i, pivot);
+
+                for (int c = 0; c < k; c++) {
+                    s -= columns.get(c)[i] * columns.get(c)[pivot];
+                }
+
+                g[i] = s / d;
+            }
+
+            g[pivot] = d;
+
+            for (int i = 0; i < m; i++) {
+                diagonal[i] = Math.max(0, diagonal[i] - g[i] * g[i]);
+            }
+
+            diagonal[pivot] = 0;
+            columns.add(g);
+        }
+
+        return new LowRankGram(columns.toArray(new double[0][]), m);
+    }
+
+    /**
+     * Wraps a factor G already computed as a matrix, for example by KernelUtils.incompleteCholeskyGramMatrix.
+     *
+     * @param g The m x r factor.
+     */
+    public static LowRankGram fromMatrix(TetradMatrix g) {
+        double[][] columns = new double[g.columns()][g.rows()];
+
+        for (int c = 0; c < g.columns(); c++) {
+            for (int i = 0; i < g.rows(); i++) columns[c][i] = g.get(i, c);
+        }
+
+        return new LowRankGram(columns, g.rows());
+    }
+
+    /**
+     * @return the number of rows of G.
+     */
+    public int size() {
+        return m;
+    }
+
+    /**
+     * @return the number of columns of G.
+     */
+    public int rank() {
+        return columns.length;
+    }
+
+    /**
+     * @return the factor of H K H, for H the centering matrix; that is, G with the mean of each column subtracted.
+     */
+    public LowRankGram centered() {
+        double[][] centered = new double[columns.length][];
+
+        for (int c = 0; c < columns.length; c++) {
+            double[] g = columns[c];
+            double mean = 0.0;
+
+            for (int i = 0; i < m; i++) mean += g[i];
+            mean /= m;
+
+            centered[c] = new double[m];
+
+            for (int i = 0; i < m; i++) centered[c][i] = g[i] - mean;
+        }
+
+        return new LowRankGram(centered, m);
+    }
+
+    /**
+     * @return G' F, for G this factor and F the other.
+     */
+    public TetradMatrix crossProduct(LowRankGram other) {
+        checkSize(other);
+        TetradMatrix product = new TetradMatrix(rank(), other.rank());
+
+        for (int a = 0; a < rank(); a++) {
+            for (int b = 0; b < other.rank(); b++) {
+                if (other == this && b < a) {
+                    product.set(a, b, product.get(b, a));
+                    continue;
+                }
+
+                product.set(a, b, dot(columns[a], other.columns[b]));
+            }
+        }
+
+        return product;
+    }
+
+    /**
+     * @return G M, for an r x k matrix M.
+     */
+    public LowRankGram times(TetradMatrix matrix) {
+        if (matrix.rows() != rank()) {
+            throw new IllegalArgumentException("Expecting " + rank() + " rows: " + matrix.rows());
+        }
+
+        double[][] product = new double[matrix.columns()][m];
+
+        for (int b = 0; b < matrix.columns(); b++) {
+            for (int a = 0; a < rank(); a++) {
+                double w = matrix.get(a, b);
+                if (w == 0) continue;
+                double[] g = columns[a];
+                double[] p = product[b];
+                for (int i = 0; i < m; i++) p[i] += w * g[i];
+            }
+        }
+
+        return new LowRankGram(product, m);
+    }
+
+    /**
+     * @return G - F, for F with the same number of columns.
+     */
+    public LowRankGram minus(LowRankGram other) {
+        checkSize(other);
+
+        if (other.rank() != rank()) {
+            throw new IllegalArgumentException("Expecting " + rank() + " columns: " + other.rank());
+        }
+
+        double[][] difference = new double[rank()][m];
+
+        for (int c = 0; c < rank(); c++) {
+            for (int i = 0; i < m; i++) {
+                difference[c][i] = columns[c][i] - other.columns[c][i];
+            }
+        }
+
+        return new LowRankGram(difference, m);
+    }
+
+    /**
+     * @return the diagonal of G G', the squared norms of the rows of G.
+     */
+    public double[] diagonal() {
+        double[] diagonal = new double[m];
+
+        for (double[] g : columns) {
+            for (int i = 0; i < m; i++) diagonal[i] += g[i] * g[i];
+        }
+
+        return diagonal;
+    }
+
+    /**
+     * @return the entry in row i and column c of G.
+     */
+    public double get(int i, int c) {
+        return columns[c][i];
+    }
+
+    /**
+     * @return G as an m x r matrix.
+     */
+    public TetradMatrix toMatrix() {
+        TetradMatrix matrix = new TetradMatrix(m, rank());
+
+        for (int c = 0; c < rank(); c++) {
+            for (int i = 0; i < m; i++) matrix.set(i, c, columns[c][i]);
+        }
+
+        return matrix;
+    }
+
+    /**
+     * @return the squared Frobenius norm of a matrix, which for G' F is trace(G G' F F').
+     */
+    public static double squaredNorm(TetradMatrix matrix) {
+        double sum = 0.0;
+
+        for (int i = 0; i < matrix.rows(); i++) {
+            for (int j = 0; j < matrix.columns(); j++) {
+                sum += matrix.get(i, j) * matrix.get(i, j);
+            }
+        }
+
+        return sum;
+    }
+
+    private void checkSize(LowRankGram other) {
+        if (other.m != m) {
+            throw new IllegalArgumentException("Expecting " + m + " rows: " + other.m);
+        }
+    }
+
+    private static double dot(double[] x, double[] y) {
+        double sum = 0.0;
+        for (int i = 0; i < x.length; i++) sum += x[i] * y[i];
+        return sum;
+    }
+}
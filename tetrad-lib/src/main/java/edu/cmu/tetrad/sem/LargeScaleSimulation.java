@@ -37,6 +37,7 @@ import java.util.concurrent.RecursiveTask;
 
 import org.apache.commons.collections4.map.HashedMap;
 import org.apache.commons.math3.distribution.*;
+import org.apache.commons.math3.random.RandomGenerator;
 import org.apache.commons.math3.random.Well1024a;
 
 /**
@@ -129,35 +130,38 @@ public final class LargeScaleSimulation {
             private final int to;
             private double[][] all;
             private int chunk;
+            private final long jobSeed;
 
-            public SimulateTask(int from, int to, double[][] all, int chunk) {
+            public SimulateTask(int from, int to, double[][] all, int chunk, long jobSeed) {
                 this.from = from;
                 this.to = to;
                 this.all = all;
                 this.chunk = chunk;
+                this.jobSeed = jobSeed;
             }
 
             @Override
             protected Boolean compute() {
-                if (from - to > chunk) {
-                    int mid = from + to / 2;
-                    SimulateTask left = new SimulateTask(from, mid, all, chunk);
-                    SimulateTask right = new SimulateTask(mid, to, all, chunk);
+                if (to - from > chunk) {
+                    int mid = (from + to) / 2;
+                    SimulateTask left = new SimulateTask(from, mid, all, chunk, jobSeed);
+                    SimulateTask right = new SimulateTask(mid, to, all, chunk, jobSeed);
                     left.fork();
                     right.compute();
                     left.join();
                     return true;
                 } else {
                     for (int i = from; i < to; i++) {
-                        NormalDistribution normal = new NormalDistribution(new Well1024a(++seed), 0, 1);//sqrt(errorVars[col]));
-                        normal.sample();
+
+                        // Each row has its own stream, so the data depend only on the seed, not on the threads.
+                        RandomGenerator random = SplittableRandomGenerator.forStream(jobSeed, i);
 
                         if (verbose && (i + 1) % 50 == 0) {
                             System.out.println("Simulating " + (i + 1));
                         }
 
                         for (int col : tierIndices) {
-                            double value = normal.sample() * sqrt(errorVars[col]);
+                            double value = random.nextGaussian() * sqrt(errorVars[col]);
 
                             for (int j = 0; j < parents[col].length; j++) {
                                 value += all[parents[col][j]][i] * coefs[col][j];
@@ -180,9 +184,11 @@ public final class LargeScaleSimulation {
 
         double[][] all = new double[variableNodes.size()][sampleSize];
 
-        int chunk = sampleSize / ForkJoinPoolInstance.getInstance().getPool().getParallelism() + 1;
+        ExecutionService executor = ExecutionService.getInstance();
+        int chunk = sampleSize / executor.getParallelism() + 1;
+        long jobSeed = RandomUtil.getInstance().nextLong();
 
-        ForkJoinPoolInstance.getInstance().getPool().invoke(new SimulateTask(0, sampleSize, all, chunk));
+        executor.invoke(new SimulateTask(0, sampleSize, all, chunk, jobSeed));
 
         if (graph instanceof TimeLagGraph) {
             int[] rem = new int[200];
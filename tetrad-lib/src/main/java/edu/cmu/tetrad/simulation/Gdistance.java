@@ -2,7 +2,7 @@ package edu.cmu.tetrad.simulation;
 
 import edu.cmu.tetrad.data.DataSet;
 import edu.cmu.tetrad.graph.*;
-import edu.cmu.tetrad.util.ForkJoinPoolInstance;
+import edu.cmu.tetrad.util.ExecutionService;
 
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -30,7 +30,7 @@ public class Gdistance {
 
     private int chunksize = 2;
 
-    private int cores = ForkJoinPoolInstance.getInstance().getPool().getParallelism();
+    private int cores = ExecutionService.getInstance().getParallelism();
 
     //With the parallel version, it is better to make a constructor for central data like locationMap
     public Gdistance(DataSet locationMap, double xDist, double yDist, double zDist){
@@ -70,7 +70,7 @@ public class Gdistance {
         //let the for loop do its thing, and create a new thread for each task inside of it.
         //int edgetracker=1;
 
-        //ForkJoinPool pool = ForkJoinPoolInstance.getInstance().getPool();
+        //ForkJoinPool pool = ExecutionService.getInstance().getPool();
         List<Callable<Void>> todo = new ArrayList<Callable<Void>>();
         ExecutorService executorService = Executors.newCachedThreadPool();
 
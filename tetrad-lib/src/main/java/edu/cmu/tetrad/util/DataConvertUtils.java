@@ -26,6 +26,7 @@ import edu.cmu.tetrad.data.DataModel;
 import edu.cmu.tetrad.data.DiscreteVariable;
 import edu.cmu.tetrad.data.DoubleDataBox;
 import edu.cmu.tetrad.data.MixedDataBox;
+import edu.cmu.tetrad.data.VerticalDoubleDataBox;
 import edu.cmu.tetrad.data.VerticalIntDataBox;
 import edu.cmu.tetrad.graph.Node;
 import edu.cmu.tetrad.graph.NodeVariableType;
@@ -37,6 +38,7 @@ import edu.pitt.dbmi.data.reader.covariance.CovarianceData;
 import edu.pitt.dbmi.data.reader.metadata.ColumnMetadata;
 import edu.pitt.dbmi.data.reader.metadata.Metadata;
 import edu.pitt.dbmi.data.reader.tabular.MixedTabularData;
+import edu.pitt.dbmi.data.reader.tabular.VerticalContinuousTabularData;
 import edu.pitt.dbmi.data.reader.tabular.VerticalDiscreteTabularData;
 import java.util.Arrays;
 import java.util.List;
@@ -54,7 +56,9 @@ public class DataConvertUtils {
     }
 
     public static DataModel toDataModel(Data data, Metadata metadata) {
-        if (data instanceof ContinuousData) {
+        if (data instanceof VerticalContinuousTabularData) {
+            return toVerticalContinuousDataModel((VerticalContinuousTabularData) data);
+        } else if (data instanceof ContinuousData) {
             return toContinuousDataModel((ContinuousData) data);
         } else if (data instanceof VerticalDiscreteTabularData) {
             return toVerticalDiscreteDataModel((VerticalDiscreteTabularData) data, metadata);
@@ -68,7 +72,9 @@ public class DataConvertUtils {
     }
 
     public static DataModel toDataModel(Data data) {
-        if (data instanceof ContinuousData) {
+        if (data instanceof VerticalContinuousTabularData) {
+            return toVerticalContinuousDataModel((VerticalContinuousTabularData) data);
+        } else if (data instanceof ContinuousData) {
             return toContinuousDataModel((ContinuousData) data);
         } else if (data instanceof VerticalDiscreteTabularData) {
             return toVerticalDiscreteDataModel((VerticalDiscreteTabularData) data);
@@ -182,6 +188,13 @@ public class DataConvertUtils {
         return new BoxDataSet(dataBox, variables);
     }
 
+    public static DataModel toVerticalContinuousDataModel(VerticalContinuousTabularData dataset) {
+        DataBox dataBox = new VerticalDoubleDataBox(dataset.getColumnData());
+        List<Node> variables = toNodes(dataset.getDataColumns());
+
+        return new BoxDataSet(dataBox, variables);
+    }
+
     public static List<Node> toNodes(List<String> variables) {
         return variables.stream()
                 .map(ContinuousVariable::new)
@@ -0,0 +1,346 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The single place where parallel work in Tetrad is run. All tasks share one
+ * ForkJoinPool whose size is the global thread budget, so nested parallelism
+ * (say, resamples run in parallel, each running a parallel search) does not
+ * multiply the number of threads; a task that waits on subtasks from inside
+ * the pool helps run them instead of blocking a thread.
+ * <p>
+ * The budget defaults to the number of available processors and may be set
+ * with the system property edu.cmu.tetrad.parallelism or with
+ * setParallelism().
+ */
+public final class ExecutionService {
+
+    /**
+     * The system property giving the default global thread budget.
+     */
+    public static final String PARALLELISM_PROPERTY = "edu.cmu.tetrad.parallelism";
+
+    private static final ExecutionService INSTANCE = new ExecutionService();
+
+    private volatile ForkJoinPool pool;
+
+    private final AtomicLong numSubmitted = new AtomicLong();
+    private final AtomicLong numCompleted = new AtomicLong();
+    private final AtomicLong numFailed = new AtomicLong();
+    private final AtomicLong numCancelled = new AtomicLong();
+    private final AtomicLong taskNanos = new AtomicLong();
+
+    private ExecutionService() {
+        this.pool = new ForkJoinPool(getDefaultParallelism());
+    }
+
+    /**
+     * @return The shared instance.
+     */
+    public static ExecutionService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return The global thread budget.
+     */
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Sets the global thread budget. Tasks already running finish in the old
+     * pool, whose threads then time out; new tasks go to a pool of the given
+     * size.
+     *
+     * @param parallelism The number of threads, at least 1.
+     */
+    public synchronized void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+
+        if (parallelism != pool.getParallelism()) {
+            this.pool = new ForkJoinPool(parallelism);
+        }
+    }
+
+    /**
+     * @param requested The parallelism a caller asks for; a value less than 1
+     *                  means no preference.
+     * @return The parallelism the caller should actually plan for: the
+     * request capped by the global budget, or 1 if the caller is itself
+     * running in the pool and the pool already has no idle threads.
+     */
+    public int getParallelism(int requested) {
+        ForkJoinPool pool = this.pool;
+        int parallelism = requested < 1 ? pool.getParallelism() : Math.min(requested, pool.getParallelism());
+
+        if (isWorkerThread() && pool.getActiveThreadCount() >= pool.getParallelism()) {
+            return 1;
+        }
+
+        return parallelism;
+    }
+
+    /**
+     * @return True if the current thread is one of the pool's threads, that
+     * is, if the caller is itself a task.
+     */
+    public boolean isWorkerThread() {
+        return ForkJoinTask.inForkJoinPool() && ForkJoinTask.getPool() == pool;
+    }
+
+    /**
+     * @return The shared pool, for code that needs to fork its own tasks.
+     * Prefer the methods of this class, which keep task metrics.
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Runs the given task in the pool and waits for its result.
+     */
+    public <T> T invoke(ForkJoinTask<T> task) {
+        numSubmitted.incrementAndGet();
+        long start = System.nanoTime();
+
+        try {
+            T result = pool.invoke(task);
+            numCompleted.incrementAndGet();
+            return result;
+        } catch (RuntimeException | Error e) {
+            numFailed.incrementAndGet();
+            throw e;
+        } finally {
+            taskNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Runs the given tasks in the pool and waits for all of them to finish.
+     *
+     * @return Futures holding the results, in the order of the tasks.
+     */
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) {
+        return pool.invokeAll(wrap(tasks));
+    }
+
+    /**
+     * Runs the given tasks and waits for all of them to finish. The tasks are
+     * run one after another in the calling thread if the parallelism
+     * available for them is 1 (see getParallelism(int)), and otherwise in the
+     * pool.
+     *
+     * @return The results, in the order of the tasks.
+     * @throws IllegalStateException wrapping the exception thrown by a task,
+     *                               or the interruption of the calling thread.
+     */
+    public <T> List<T> invokeAllAndGet(Collection<? extends Callable<T>> tasks) {
+        return invokeAllAndGet(tasks, true);
+    }
+
+    /**
+     * As invokeAllAndGet(tasks), but runs the tasks in the calling thread
+     * whenever parallel is false, for callers whose tasks are not always
+     * safe to run at the same time.
+     */
+    public <T> List<T> invokeAllAndGet(Collection<? extends Callable<T>> tasks, boolean parallel) {
+        List<T> results = new ArrayList<>(tasks.size());
+
+        if (!parallel || getParallelism(tasks.size()) == 1) {
+            for (Callable<T> task : tasks) {
+                try {
+                    results.add(task.call());
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        } else {
+            for (Future<T> future : invokeAll(tasks)) {
+                try {
+                    results.add(future.get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Starts the given task in the pool without waiting for it.
+     */
+    public <T> Future<T> submit(Callable<T> task) {
+        return pool.submit(new MeteredTask<>(task));
+    }
+
+    /**
+     * Cancels the given tasks. Tasks that have not started will not run;
+     * tasks already running are not interrupted.
+     */
+    public void cancel(Collection<? extends Future<?>> futures) {
+        for (Future<?> future : futures) {
+            if (future.cancel(true)) {
+                numCancelled.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return A snapshot of the task counts and total task time since the
+     * last reset.
+     */
+    public Metrics getMetrics() {
+        return new Metrics(numSubmitted.get(), numCompleted.get(), numFailed.get(),
+                numCancelled.get(), taskNanos.get());
+    }
+
+    /**
+     * Sets the task counts and total task time back to zero.
+     */
+    public void resetMetrics() {
+        numSubmitted.set(0);
+        numCompleted.set(0);
+        numFailed.set(0);
+        numCancelled.set(0);
+        taskNanos.set(0);
+    }
+
+    //==============================PRIVATE METHODS=======================//
+
+    private static int getDefaultParallelism() {
+        String property = System.getProperty(PARALLELISM_PROPERTY);
+
+        if (property != null) {
+            try {
+                int parallelism = Integer.parseInt(property.trim());
+
+                if (parallelism >= 1) {
+                    return parallelism;
+                }
+            } catch (NumberFormatException e) {
+                // Fall through to the number of processors.
+            }
+        }
+
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    private <T> List<Callable<T>> wrap(Collection<? extends Callable<T>> tasks) {
+        List<Callable<T>> wrapped = new ArrayList<>(tasks.size());
+
+        for (Callable<T> task : tasks) {
+            wrapped.add(new MeteredTask<>(task));
+        }
+
+        return wrapped;
+    }
+
+    private class MeteredTask<T> implements Callable<T> {
+        private final Callable<T> task;
+
+        MeteredTask(Callable<T> task) {
+            this.task = task;
+            numSubmitted.incrementAndGet();
+        }
+
+        @Override
+        public T call() throws Exception {
+            long start = System.nanoTime();
+
+            try {
+                T result = task.call();
+                numCompleted.incrementAndGet();
+                return result;
+            } catch (Exception | Error e) {
+                numFailed.incrementAndGet();
+                throw e;
+            } finally {
+                taskNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Task counts and total task time.
+     */
+    public static final class Metrics {
+        private final long numSubmitted;
+        private final long numCompleted;
+        private final long numFailed;
+        private final long numCancelled;
+        private final long taskNanos;
+
+        private Metrics(long numSubmitted, long numCompleted, long numFailed, long numCancelled,
+                        long taskNanos) {
+            this.numSubmitted = numSubmitted;
+            this.numCompleted = numCompleted;
+            this.numFailed = numFailed;
+            this.numCancelled = numCancelled;
+            this.taskNanos = taskNanos;
+        }
+
+        public long getNumSubmitted() {
+            return numSubmitted;
+        }
+
+        public long getNumCompleted() {
+            return numCompleted;
+        }
+
+        public long getNumFailed() {
+            return numFailed;
+        }
+
+        public long getNumCancelled() {
+            return numCancelled;
+        }
+
+        /**
+         * @return The summed running time of all tasks, in nanoseconds.
+         */
+        public long getTaskNanos() {
+            return taskNanos;
+        }
+
+        public String toString() {
+            return "Submitted = " + numSubmitted + ", completed = " + numCompleted + ", failed = " + numFailed
+                    + ", cancelled = " + numCancelled + ", task time = " + taskNanos / 1000000L + " ms";
+        }
+    }
+}
@@ -26,10 +26,12 @@ import java.util.concurrent.ForkJoinPool;
 /**
  * Static instance of a ForkJoinPool. Not sure this is necessary.
  * Created by josephramsey on 2/7/15.
+ *
+ * @deprecated Use ExecutionService, whose pool this now returns.
  */
+@Deprecated
 public class ForkJoinPoolInstance {
     private static final ForkJoinPoolInstance INSTANCE = new ForkJoinPoolInstance();
-    private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
 
     private ForkJoinPoolInstance() {
 
@@ -40,7 +42,6 @@ public class ForkJoinPoolInstance {
     }
 
     public ForkJoinPool getPool() {
-        return pool;
+        return ExecutionService.getInstance().getPool();
     }
 }
-
@@ -0,0 +1,278 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.util;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cholesky factors of principal submatrices of a fixed covariance matrix, held as packed lower triangles in
+ * plain double arrays (row r of the factor starts at r(r + 1) / 2). The factor for a set of indices is built
+ * by extending the factor for all but the last index by one row, which takes O(p^2) time, and factors are
+ * remembered across calls, so a search that keeps asking about parent sets that differ by one variable
+ * pays only for the new row.
+ * <p>
+ * A submatrix is taken to be singular if some pivot is no more than SINGULARITY_TOLERANCE times the
+ * corresponding diagonal entry; in that case null is returned for the factor.
+ * <p>
+ * Safe to use from several threads.
+ */
+public final class IncrementalCholesky {
+
+    /**
+     * Relative size of a squared pivot below which a submatrix is taken to be singular.
+     */
+    public static final double SINGULARITY_TOLERANCE = 1e-12;
+
+    // Marks a cached singular factor.
+    private static final double[] SINGULAR = new double[0];
+
+    // The covariance matrix.
+    private final double[][] cov;
+
+    // Factors by sorted index set.
+    private final ConcurrentMap<IndexSet, double[]> factors = new ConcurrentHashMap<>();
+
+    // The maximum number of factors to remember.
+    private final int maxCached;
+
+    /**
+     * @param cov       The covariance matrix, which is not copied and must not be changed afterward.
+     * @param maxCached The maximum number of factors to remember; when this is exceeded the remembered factors
+     *                  are dropped.
+     */
+    public IncrementalCholesky(double[][] cov, int maxCached) {
+        if (cov == null) throw new NullPointerException("Covariance matrix not specified.");
+        if (maxCached < 0) throw new IllegalArgumentException("Max cached must be >= 0: " + maxCached);
+        this.cov = cov;
+        this.maxCached = maxCached;
+    }
+
+    /**
+     * @param indices Indices into the covariance matrix, in increasing order.
+     * @return the packed Cholesky factor of the submatrix for the given indices, in the given order, or null
+     * if that submatrix is singular.
+     * @throws IllegalArgumentException if the indices are out of range or not in increasing order; factors are
+     *                                  remembered by index set, so a factor in any other order would be returned
+     *                                  for the wrong ordering later.
+     */
+    public double[] factor(int[] indices) {
+        for (int r = 0; r < indices.length; r++) {
+            if (indices[r] < 0 || indices[r] >= cov.length) {
+                throw new IllegalArgumentException("Index out of range: " + indices[r]);
+            }
+
+            if (r > 0 && indices[r] <= indices[r - 1]) {
+                throw new IllegalArgumentException("Indices not in increasing order: " + Arrays.toString(indices));
+            }
+        }
+
+        return factor(Arrays.copyOf(indices, indices.length), indices.length);
+    }
+
+    /**
+     * Solves L w = cov[indices][j] for w, where L is the factor for the indices.
+     *
+     * @param factor  The packed factor for the indices.
+     * @param indices The indices.
+     * @param j       The column of the covariance matrix to take the right hand side from.
+     * @param w       An array of length at least indices.length to hold the solution.
+     */
+    public void solve(double[] factor, int[] indices, int j, double[] w) {
+        int p = indices.length;
+        int row = 0;
+
+        for (int r = 0; r < p; r++) {
+            double sum = cov[indices[r]][j];
+
+            for (int c = 0; c < r; c++) {
+                sum -= factor[row + c] * w[c];
+            }
+
+            w[r] = sum / factor[row + r];
+            row += r + 1;
+        }
+    }
+
+    /**
+     * @return the residual variance of i regressed on the given indices, that is,
+     * cov(i, i) - cov(i, Z) cov(Z, Z)^-1 cov(Z, i), or NaN if cov(Z, Z) is singular. The indices may be
+     * in any order.
+     */
+    public double residualVariance(int i, int[] indices) {
+        int[] sorted = sorted(indices);
+        double[] factor = factor(sorted, sorted.length);
+
+        if (factor == null) {
+            return Double.NaN;
+        }
+
+        double[] w = new double[sorted.length];
+        solve(factor, sorted, i, w);
+        return cov[i][i] - dot(w, w, sorted.length);
+    }
+
+    /**
+     * Computes, with one factorization, the residual variances of y regressed on z and of y regressed on
+     * z plus x. The latter is obtained from the former by extending the factor for z by a row for x.
+     *
+     * @param result An array of length 2 to hold the residual variances for z and for z plus x, in that order;
+     *               either is NaN if the corresponding submatrix is singular.
+     */
+    public void residualVariances(int x, int y, int[] z, double[] result) {
+        int[] sorted = sorted(z);
+        int p = sorted.length;
+        double[] factor = factor(sorted, sorted.length);
+
+        if (factor == null) {
+            result[0] = Double.NaN;
+            result[1] = Double.NaN;
+            return;
+        }
+
+        double[] w = new double[p];
+        double[] l = new double[p];
+        solve(factor, sorted, y, w);
+        solve(factor, sorted, x, l);
+
+        double s2 = cov[y][y] - dot(w, w, p);
+        result[0] = s2;
+
+        double d2 = cov[x][x] - dot(l, l, p);
+
+        if (!(d2 > SINGULARITY_TOLERANCE * cov[x][x])) {
+            result[1] = Double.NaN;
+            return;
+        }
+
+        double wx = (cov[x][y] - dot(l, w, p)) / Math.sqrt(d2);
+        result[1] = s2 - wx * wx;
+    }
+
+    public void clear() {
+        factors.clear();
+    }
+
+    //==============================PRIVATE==============================//
+
+    // The factor for the first p of the indices.
+    private double[] factor(int[] indices, int p) {
+        if (p == 0) {
+            return new double[0];
+        }
+
+        IndexSet key = maxCached > 0 ? new IndexSet(indices, p) : null;
+
+        if (key != null) {
+            double[] factor = factors.get(key);
+
+            if (factor != null) {
+                return factor == SINGULAR ? null : factor;
+            }
+        }
+
+        double[] prefix = factor(indices, p - 1);
+        double[] factor = prefix == null ? null : extend(prefix, indices, p - 1);
+
+        if (key != null) {
+            if (factors.size() >= maxCached) {
+                factors.clear();
+            }
+
+            factors.put(key, factor == null ? SINGULAR : factor);
+        }
+
+        return factor;
+    }
+
+    // Extends the factor for the first p indices by a row for indices[p].
+    private double[] extend(double[] prefix, int[] indices, int p) {
+        int start = p * (p + 1) / 2;
+        double[] factor = new double[start + p + 1];
+        System.arraycopy(prefix, 0, factor, 0, start);
+
+        int k = indices[p];
+        int row = 0;
+        double d2 = cov[k][k];
+
+        for (int r = 0; r < p; r++) {
+            double sum = cov[indices[r]][k];
+
+            for (int c = 0; c < r; c++) {
+                sum -= factor[row + c] * factor[start + c];
+            }
+
+            double l = sum / factor[row + r];
+            factor[start + r] = l;
+            d2 -= l * l;
+            row += r + 1;
+        }
+
+        if (!(d2 > SINGULARITY_TOLERANCE * cov[k][k])) {
+            return null;
+        }
+
+        factor[start + p] = Math.sqrt(d2);
+        return factor;
+    }
+
+    private static double dot(double[] a, double[] b, int n) {
+        double sum = 0.0;
+
+        for (int i = 0; i < n; i++) {
+            sum += a[i] * b[i];
+        }
+
+        return sum;
+    }
+
+    private static int[] sorted(int[] indices) {
+        int[] sorted = Arrays.copyOf(indices, indices.length);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    // A sorted index set, used as a map key.
+    private static final class IndexSet {
+        private final int[] indices;
+        private final int hashCode;
+
+        IndexSet(int[] indices, int p) {
+            this.indices = indices.length == p ? indices : Arrays.copyOf(indices, p);
+            this.hashCode = Arrays.hashCode(this.indices);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof IndexSet && Arrays.equals(indices, ((IndexSet) o).indices);
+        }
+    }
+}
+
+
+
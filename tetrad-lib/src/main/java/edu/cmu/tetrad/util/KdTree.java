@@ -0,0 +1,292 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.util;
+
+import java.util.Arrays;
+
+/**
+ * A k-d tree over selected columns of a data array, for nearest neighbor and radius queries about the rows of
+ * that array. Distances are Euclidean over the selected columns; a coordinate that is NaN in either row is
+ * skipped. The tree is built once, in O(n log n) time, and a query for the k nearest rows then takes roughly
+ * O(k log n) time rather than the O(n) of a scan.
+ * <p>
+ * The tree splits on the column of largest spread at the median, so it stays balanced. If any selected value
+ * is NaN the distances are not a metric, so the tree is built as a single leaf and queries scan all rows.
+ * <p>
+ * The tree does not change after construction, so it is safe to query from several threads.
+ */
+public final class KdTree {
+
+    // The most rows held in a leaf.
+    private static final int LEAF_SIZE = 16;
+
+    // The data, indexed by column and then row. Not copied.
+    private final double[][] data;
+
+    // The selected columns.
+    private final int[] columns;
+
+    // The row indices, arranged so that every node covers a contiguous range.
+    private final int[] rows;
+
+    // For node t (root 1, children 2t and 2t + 1), the split column, or -1 for a leaf.
+    private final int[] splitColumn;
+
+    // For node t, the split value; rows to the left are <= it and rows to the right >= it.
+    private final double[] splitValue;
+
+    /**
+     * @param data    The data, indexed as data[column][row]. This is not copied and must not be changed
+     *                afterward.
+     * @param columns The columns over which distances are taken.
+     */
+    public KdTree(double[][] data, int[] columns) {
+        if (data == null) throw new NullPointerException("Data not specified.");
+        if (columns == null) throw new NullPointerException("Columns not specified.");
+        if (data.length == 0) throw new IllegalArgumentException("Data has no columns.");
+
+        this.data = data;
+        this.columns = columns.clone();
+
+        int n = data[0].length;
+        this.rows = new int[n];
+        for (int i = 0; i < n; i++) rows[i] = i;
+
+        int depth = 0;
+        while ((n + (1 << depth) - 1) >> depth > LEAF_SIZE) depth++;
+
+        this.splitColumn = new int[2 << depth];
+        this.splitValue = new double[2 << depth];
+        Arrays.fill(splitColumn, -1);
+
+        if (!hasNaN()) {
+            build(1, 0, n);
+        }
+    }
+
+    /**
+     * @return the number of rows in the tree.
+     */
+    public int size() {
+        return rows.length;
+    }
+
+    /**
+     * Finds the k rows nearest to the given row, among those no farther from it than the given radius. The
+     * row itself is included, at distance 0. Pass Double.POSITIVE_INFINITY as the radius for a plain k nearest
+     * neighbor query, or size() as k for a plain radius query.
+     *
+     * @param row       The query row.
+     * @param k         The most rows to return.
+     * @param radius    The largest distance of a returned row.
+     * @param neighbors Receives the returned rows, in no particular order; must have length at least k.
+     * @param distances Receives the distances of the returned rows; must have length at least k.
+     * @return the number of rows returned.
+     */
+    public int nearest(int row, int k, double radius, int[] neighbors, double[] distances) {
+        if (row < 0 || row >= rows.length) throw new IllegalArgumentException("Row out of range: " + row);
+        if (k < 0) throw new IllegalArgumentException("k must be >= 0: " + k);
+        if (neighbors.length < k || distances.length < k) {
+            throw new IllegalArgumentException("Result arrays are shorter than k.");
+        }
+
+        k = Math.min(k, rows.length);
+        if (k == 0) return 0;
+
+        // The results are kept as a max-heap on squared distance.
+        double bound = radius * radius;
+        int count = search(1, 0, rows.length, row, k, bound, neighbors, distances, 0);
+
+        for (int i = 0; i < count; i++) {
+            distances[i] = Math.sqrt(distances[i]);
+        }
+
+        return count;
+    }
+
+    //===============================PRIVATE METHODS==========================//
+
+    private boolean hasNaN() {
+        for (int c : columns) {
+            for (double v : data[c]) {
+                if (Double.isNaN(v)) return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void build(int node, int lo, int hi) {
+        if (hi - lo <= LEAF_SIZE || columns.length == 0) return;
+
+        int column = -1;
+        double maxSpread = -1;
+
+        for (int c : columns) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+
+            for (int i = lo; i < hi; i++) {
+                double v = data[c][rows[i]];
+                if (v < min) min = v;
+                if (v > max) max = v;
+            }
+
+            if (max - min > maxSpread) {
+                maxSpread = max - min;
+                column = c;
+            }
+        }
+
+        if (maxSpread <= 0) return;
+
+        int mid = (lo + hi) >>> 1;
+        select(data[column], lo, hi - 1, mid);
+
+        splitColumn[node] = column;
+        splitValue[node] = data[column][rows[mid]];
+
+        build(2 * node, lo, mid);
+        build(2 * node + 1, mid, hi);
+    }
+
+    // Rearranges rows[lo..hi] so that the row at position m has the m-th smallest value, with values no larger
+    // before it and no smaller after it.
+    private void select(double[] values, int lo, int hi, int m) {
+        while (hi > lo) {
+            double pivot = values[rows[(lo + hi) >>> 1]];
+            int i = lo;
+            int j = hi;
+
+            while (i <= j) {
+                while (values[rows[i]] < pivot) i++;
+                while (values[rows[j]] > pivot) j--;
+
+                if (i <= j) {
+                    int t = rows[i];
+                    rows[i] = rows[j];
+                    rows[j] = t;
+                    i++;
+                    j--;
+                }
+            }
+
+            if (m <= j) {
+                hi = j;
+            } else if (m >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private int search(int node, int lo, int hi, int query, int k, double bound,
+                       int[] heap, double[] heapDistances, int count) {
+        int column = splitColumn[node];
+
+        if (column == -1) {
+            for (int i = lo; i < hi; i++) {
+                int r = rows[i];
+                double d = squaredDistance(query, r);
+
+                if (count < k) {
+                    if (d <= bound) {
+                        count = push(heap, heapDistances, count, r, d);
+                    }
+                } else if (d < heapDistances[0]) {
+                    replaceTop(heap, heapDistances, count, r, d);
+                }
+            }
+
+            return count;
+        }
+
+        int mid = (lo + hi) >>> 1;
+        double diff = data[column][query] - splitValue[node];
+
+        if (diff <= 0) {
+            count = search(2 * node, lo, mid, query, k, bound, heap, heapDistances, count);
+            if (diff * diff <= worst(bound, k, heapDistances, count)) {
+                count = search(2 * node + 1, mid, hi, query, k, bound, heap, heapDistances, count);
+            }
+        } else {
+            count = search(2 * node + 1, mid, hi, query, k, bound, heap, heapDistances, count);
+            if (diff * diff <= worst(bound, k, heapDistances, count)) {
+                count = search(2 * node, lo, mid, query, k, bound, heap, heapDistances, count);
+            }
+        }
+
+        return count;
+    }
+
+    private static double worst(double bound, int k, double[] heapDistances, int count) {
+        return count < k ? bound : heapDistances[0];
+    }
+
+    private double squaredDistance(int i, int j) {
+        double sum = 0.0;
+
+        for (int c : columns) {
+            double d = data[c][i] - data[c][j];
+
+            if (!Double.isNaN(d)) {
+                sum += d * d;
+            }
+        }
+
+        return sum;
+    }
+
+    private static int push(int[] heap, double[] d, int count, int row, double distance) {
+        int i = count;
+
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (d[parent] >= distance) break;
+            heap[i] = heap[parent];
+            d[i] = d[parent];
+            i = parent;
+        }
+
+        heap[i] = row;
+        d[i] = distance;
+        return count + 1;
+    }
+
+    private static void replaceTop(int[] heap, double[] d, int count, int row, double distance) {
+        int i = 0;
+
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= count) break;
+            if (child + 1 < count && d[child + 1] > d[child]) child++;
+            if (d[child] <= distance) break;
+            heap[i] = heap[child];
+            d[i] = d[child];
+            i = child;
+        }
+
+        heap[i] = row;
+        d[i] = distance;
+    }
+}
@@ -140,6 +140,17 @@ public class MultiDimIntTable {
         return cells.get(cellIndex);
     }
 
+    /**
+     * Sets the value of the cell with the given index, as returned by
+     * getCellIndex().
+     *
+     * @param cellIndex The index of the table cell to update.
+     * @param value     The new value of the table cell.
+     */
+    public synchronized void setCellValue(int cellIndex, long value) {
+        cells.put(cellIndex, value);
+    }
+
     /**
      * @param coords The coordinates of the table cell to update.
      * @return the new value at that table cell.
@@ -90,6 +90,7 @@ public final class Params {
     public static final String KCI_CUTOFF = "kciCutoff";
     public static final String KCI_EPSILON = "kciEpsilon";
     public static final String KCI_NUM_BOOTSTRAPS = "kciNumBootstraps";
+    public static final String KCI_RANK = "kciRank";
     public static final String KCI_USE_APPROMATION = "kciUseAppromation";
     public static final String KERNEL_MULTIPLIER = "kernelMultiplier";
     public static final String KERNEL_REGRESSION_SAMPLE_SIZE = "kernelRegressionSampleSize";
@@ -191,7 +192,7 @@ public final class Params {
             INCLUDE_NEGATIVE_SKEWS_FOR_BETA, INCLUDE_POSITIVE_COEFS,
             INCLUDE_POSITIVE_SKEWS_FOR_BETA, INCLUDE_STRUCTURE_MODEL,
             INTERVAL_BETWEEN_RECORDINGS, INTERVAL_BETWEEN_SHOCKS, IPEN, IS, ITR,
-            KCI_ALPHA, KCI_CUTOFF, KCI_EPSILON, KCI_NUM_BOOTSTRAPS, KCI_USE_APPROMATION,
+            KCI_ALPHA, KCI_CUTOFF, KCI_EPSILON, KCI_NUM_BOOTSTRAPS, KCI_RANK, KCI_USE_APPROMATION,
             KERNEL_MULTIPLIER, KERNEL_REGRESSION_SAMPLE_SIZE, KERNEL_TYPE, KERNEL_WIDTH,
             LATENT_MEASURED_IMPURE_PARENTS, LOWER_BOUND, MAX_CATEGORIES, MAX_DEGREE,
             MAX_DISTINCT_VALUES_DISCRETE, MAX_INDEGREE, MAX_ITERATIONS, MAX_OUTDEGREE,
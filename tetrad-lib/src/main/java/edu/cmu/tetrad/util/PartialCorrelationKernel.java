@@ -0,0 +1,144 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.util;
+
+/**
+ * Computes partial correlations directly from a covariance (or correlation) matrix held as a double[][], without
+ * building submatrices. For pcor(x, y | z), the submatrix for (z, x, y) is Cholesky-factored in place in a
+ * per-thread workspace; the partial correlation is then read off the last two rows of the factor. Nothing is
+ * allocated per call once a thread's workspace is large enough, and there is no shared mutable state, so any
+ * number of threads may use one instance at once.
+ * <p>
+ * NaN is returned if the submatrix for (z, x, y) is singular, that is, if some squared pivot is no more than
+ * SINGULARITY_TOLERANCE times its diagonal entry.
+ */
+public final class PartialCorrelationKernel {
+
+    /**
+     * Relative size of a squared pivot below which a submatrix is taken to be singular.
+     */
+    public static final double SINGULARITY_TOLERANCE = 1e-12;
+
+    // The covariance matrix.
+    private final double[][] cov;
+
+    // Per-thread scratch space.
+    private final ThreadLocal<Workspace> workspace = new ThreadLocal<Workspace>() {
+        @Override
+        protected Workspace initialValue() {
+            return new Workspace();
+        }
+    };
+
+    /**
+     * @param cov The covariance matrix, which is not copied and must not be changed afterward.
+     */
+    public PartialCorrelationKernel(double[][] cov) {
+        if (cov == null) throw new NullPointerException("Covariance matrix not specified.");
+        this.cov = cov;
+    }
+
+    /**
+     * @return the partial correlation of x and y given z, or NaN if the covariance submatrix over z, x, and y
+     * is singular.
+     */
+    public double partialCorrelation(int x, int y, int... z) {
+        return partialCorrelation(x, y, z, z.length);
+    }
+
+    /**
+     * @return the partial correlation of x and y given the first numZ entries of z, or NaN if the covariance
+     * submatrix over these, x, and y is singular.
+     */
+    public double partialCorrelation(int x, int y, int[] z, int numZ) {
+        if (numZ == 0) {
+            return cov[x][y] / Math.sqrt(cov[x][x] * cov[y][y]);
+        }
+
+        int k = numZ + 2;
+        Workspace w = workspace.get();
+        int[] indices = w.indices(k);
+        double[] l = w.factor(k);
+
+        System.arraycopy(z, 0, indices, 0, numZ);
+        indices[numZ] = x;
+        indices[numZ + 1] = y;
+
+        // Packed lower triangle, row r starting at r(r + 1) / 2.
+        int rowR = 0;
+
+        for (int r = 0; r < k; r++) {
+            double[] covR = cov[indices[r]];
+            int rowC = 0;
+
+            for (int c = 0; c < r; c++) {
+                double sum = covR[indices[c]];
+
+                for (int m = 0; m < c; m++) {
+                    sum -= l[rowR + m] * l[rowC + m];
+                }
+
+                l[rowR + c] = sum / l[rowC + c];
+                rowC += c + 1;
+            }
+
+            double d2 = covR[indices[r]];
+
+            for (int m = 0; m < r; m++) {
+                d2 -= l[rowR + m] * l[rowR + m];
+            }
+
+            if (!(d2 > SINGULARITY_TOLERANCE * covR[indices[r]])) {
+                return Double.NaN;
+            }
+
+            l[rowR + r] = Math.sqrt(d2);
+            rowR += r + 1;
+        }
+
+        // The residual of y on (z, x) splits into a part along x and a part orthogonal to it.
+        int rowY = (k - 1) * k / 2;
+        double yx = l[rowY + k - 2];
+        double yy = l[rowY + k - 1];
+        return yx / Math.sqrt(yx * yx + yy * yy);
+    }
+
+    // Scratch arrays, grown as needed.
+    private static final class Workspace {
+        private int[] indices = new int[8];
+        private double[] factor = new double[36];
+
+        int[] indices(int k) {
+            if (indices.length < k) indices = new int[2 * k];
+            return indices;
+        }
+
+        double[] factor(int k) {
+            int size = k * (k + 1) / 2;
+            if (factor.length < size) factor = new double[2 * size];
+            return factor;
+        }
+    }
+}
+
+
+
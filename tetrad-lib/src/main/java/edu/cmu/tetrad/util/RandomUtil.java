@@ -29,6 +29,7 @@ import org.apache.commons.math3.random.Well44497b;
 
 import java.util.Date;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 /**
  * Provides a common random number generator to be used throughout Tetrad, to avoid problems that happen when random
@@ -42,6 +43,11 @@ import java.util.Map;
  * The 64-bit Mersenne Twister implementation from the COLT library is used to generate random numbers.
  * <p>
  * To see what distributions are currently supported, look at the methods of the class. These many change over time.
+ * <p>
+ * Parallel jobs that need results that don't depend on the number of threads should draw one seed for the job from
+ * this class and give each task its own stream, <code>SplittableRandomGenerator.forStream(jobSeed, taskIndex)</code>,
+ * running the task with <code>callInStream</code>. While a task runs in a stream, all of the methods of this class
+ * called from the task's thread draw from the task's stream instead of from the shared generator.
  *
  * @author Joseph Ramsey
  */
@@ -61,6 +67,8 @@ public class RandomUtil {
 
     private Map<Long, RandomGenerator> seedsToGenerators = new HashedMap<>();
 
+    // The stream of the task running in the current thread, if any.
+    private final ThreadLocal<RandomGenerator> streams = new ThreadLocal<>();
 
     //========================================CONSTRUCTORS===================================//
 
@@ -94,11 +102,11 @@ public class RandomUtil {
      * @return Ibid.
      */
     public int nextInt(int n) {
-        return randomGenerator.nextInt(n);
+        return random().nextInt(n);
     }
 
     public double nextDouble() {
-        return randomGenerator.nextDouble();
+        return random().nextDouble();
     }
 
     /**
@@ -109,7 +117,7 @@ public class RandomUtil {
     public double nextUniform(double low, double high) {
         if (low == high) return low;
         else {
-            return new UniformRealDistribution(randomGenerator, low, high).sample();
+            return new UniformRealDistribution(random(), low, high).sample();
         }
     }
 
@@ -123,7 +131,7 @@ public class RandomUtil {
             throw new IllegalArgumentException("Standard deviation must be non-negative: " + sd);
         }
 
-        double sample = normal.sample();
+        double sample = random().nextGaussian();
         return sample * sd + mean;
 
 //        return new NormalDistribution(randomGenerator, mean, sd).sample();
@@ -183,7 +191,7 @@ public class RandomUtil {
      * @return Ibid.
      */
     public double nextPoisson(double lambda) {
-        return new PoissonDistribution(randomGenerator, lambda, 1.0E-12D, 100000).sample();
+        return new PoissonDistribution(random(), lambda, 1.0E-12D, 100000).sample();
     }
 
     /**
@@ -222,7 +230,7 @@ public class RandomUtil {
      * @return Ibid.
      */
     public double nextT(double df) {
-        return new TDistribution(randomGenerator, df).sample();
+        return new TDistribution(random(), df).sample();
     }
 
     /**
@@ -230,7 +238,7 @@ public class RandomUtil {
      * @return Ibid.
      */
     public double nextExponential(double lambda) {
-        return new ExponentialDistribution(randomGenerator, lambda).sample();
+        return new ExponentialDistribution(random(), lambda).sample();
     }
 
     /**
@@ -238,7 +246,7 @@ public class RandomUtil {
      * @return Ibid.
      */
     public double nextChiSquare(double df) {
-        return new ChiSquaredDistribution(randomGenerator, df).sample();
+        return new ChiSquaredDistribution(random(), df).sample();
     }
 
     /**
@@ -247,23 +255,52 @@ public class RandomUtil {
      * @return Ibid.
      */
     public double nextGamma(double shape, double scale) {
-        return new GammaDistribution(randomGenerator, shape, scale).sample();
+        return new GammaDistribution(random(), shape, scale).sample();
     }
 
     public long getSeed() {
         return seed;
     }
 
+    /**
+     * @return the generator of the task running in the current thread, if it runs in a stream, otherwise the shared
+     * generator.
+     */
     public RandomGenerator getRandomGenerator() {
-        return randomGenerator;
+        return random();
     }
 
     public long nextLong() {
-        return randomGenerator.nextLong();
+        return random().nextLong();
     }
-}
-
-
 
+    /**
+     * Calls the given task, with all of the methods of this class called from the current thread drawing from the
+     * given stream until the task returns.
+     *
+     * @param stream The stream for the task.
+     * @param task   The task.
+     * @return the result of the task.
+     */
+    public <T> T callInStream(RandomGenerator stream, Callable<T> task) throws Exception {
+        RandomGenerator previous = streams.get();
+        streams.set(stream);
+
+        try {
+            return task.call();
+        } finally {
+            if (previous == null) {
+                streams.remove();
+            } else {
+                streams.set(previous);
+            }
+        }
+    }
 
+    //=======================================PRIVATE METHODS=================================//
 
+    private RandomGenerator random() {
+        RandomGenerator stream = streams.get();
+        return stream == null ? randomGenerator : stream;
+    }
+}
@@ -0,0 +1,144 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.util;
+
+import org.apache.commons.math3.random.BitsStreamGenerator;
+
+/**
+ * A SplitMix64 random number generator that can be split into independent
+ * generators. It is cheap to create, so that each task of a parallel job can be
+ * given its own generator, derived from a common seed and the index of the task
+ * with <code>forStream</code>. The numbers a task draws then depend only on the
+ * seed and the index of the task, not on the number of threads or the order in
+ * which the tasks are run.
+ * <p>
+ * See Steele, Lea and Flood, "Fast splittable pseudorandom number generators,"
+ * OOPSLA 2014. This follows java.util.SplittableRandom, which is not a
+ * RandomGenerator and so can't be given to the Apache distributions. With the
+ * same seed, nextLong(), nextInt() and nextDouble() give the same numbers as
+ * SplittableRandom, as do the generators made by split(); the other methods
+ * are those of BitsStreamGenerator and do not.
+ */
+public final class SplittableRandomGenerator extends BitsStreamGenerator {
+
+    private static final long serialVersionUID = 23L;
+
+    // The golden ratio; the gamma of the generator made from a seed.
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long state;
+    private long gamma;
+
+    /**
+     * Constructs a generator with the given seed.
+     */
+    public SplittableRandomGenerator(long seed) {
+        setSeed(seed);
+    }
+
+    private SplittableRandomGenerator(long state, long gamma) {
+        this.state = state;
+        this.gamma = gamma;
+    }
+
+    /**
+     * @param seed  The seed of the parallel job.
+     * @param index The index of the task within the job.
+     * @return the generator for the task with the given index. Different
+     * indices give independent generators; the same seed and index always give
+     * the same generator.
+     */
+    public static SplittableRandomGenerator forStream(long seed, long index) {
+        long z = mix64(seed) + GOLDEN_GAMMA * (index + 1);
+        return new SplittableRandomGenerator(mix64(z), mixGamma(z + GOLDEN_GAMMA));
+    }
+
+    /**
+     * @return a new generator, independent of this one. Advances this
+     * generator.
+     */
+    public SplittableRandomGenerator split() {
+        return new SplittableRandomGenerator(mix64(nextSeed()), mixGamma(nextSeed()));
+    }
+
+    @Override
+    public void setSeed(int seed) {
+        setSeed((long) seed);
+    }
+
+    @Override
+    public void setSeed(int[] seed) {
+        long z = 0;
+
+        for (int s : seed) {
+            z = mix64(z + (s & 0xffffffffL) + GOLDEN_GAMMA);
+        }
+
+        setSeed(z);
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        this.state = seed;
+        this.gamma = GOLDEN_GAMMA;
+        clear();
+    }
+
+    @Override
+    protected int next(int bits) {
+        return mix32(nextSeed()) >>> (32 - bits);
+    }
+
+    @Override
+    public long nextLong() {
+        return mix64(nextSeed());
+    }
+
+    @Override
+    public double nextDouble() {
+        return (mix64(nextSeed()) >>> 11) * 0x1.0p-53;
+    }
+
+    private long nextSeed() {
+        return state += gamma;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static int mix32(long z) {
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+
+    // Gammas must be odd and should have enough bit transitions.
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        int n = Long.bitCount(z ^ (z >>> 1));
+        return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+    }
+}
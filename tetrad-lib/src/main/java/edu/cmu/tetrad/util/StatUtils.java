@@ -1745,16 +1745,16 @@ public final class StatUtils {
      *
      * @return the given partial correlation.
      */
-    public static synchronized double partialCorrelation(TetradMatrix submatrix) {
+    public static double partialCorrelation(TetradMatrix submatrix) {
         return StatUtils.partialCorrelationPrecisionMatrix(submatrix);
     }
 
-    public static synchronized double partialCorrelationPrecisionMatrix(TetradMatrix submatrix) {
+    public static double partialCorrelationPrecisionMatrix(TetradMatrix submatrix) {
         TetradMatrix inverse = submatrix.inverse();
         return (-inverse.get(0, 1)) / sqrt(inverse.get(0, 0) * inverse.get(1, 1));
     }
 
-    public static synchronized double partialCorrelationWhittaker(TetradMatrix submatrix) {
+    public static double partialCorrelationWhittaker(TetradMatrix submatrix) {
         double cov = partialCovariance(submatrix);
 
         int[] selection1 = new int[submatrix.rows()];
@@ -0,0 +1,475 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.util;
+
+import edu.cmu.tetrad.data.BoxDataSet;
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.CovarianceMatrix;
+import edu.cmu.tetrad.data.DataBox;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.DiscreteVariable;
+import edu.cmu.tetrad.data.ICovarianceMatrix;
+import edu.cmu.tetrad.data.MixedDataBox;
+import edu.cmu.tetrad.data.VerticalDoubleDataBox;
+import edu.cmu.tetrad.graph.Edge;
+import edu.cmu.tetrad.graph.EdgeListGraph;
+import edu.cmu.tetrad.graph.EdgeTypeProbability;
+import edu.cmu.tetrad.graph.Endpoint;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphNode;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.graph.Triple;
+import edu.cmu.tetrad.search.SepsetMap;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import static edu.cmu.tetrad.util.TetradBinaryWriter.*;
+
+/**
+ * Reads the objects written by TetradBinaryWriter, one at a time, in the order they were written. Nodes are shared
+ * across the objects of a stream as they were when written.
+ *
+ * @see TetradBinaryWriter
+ */
+public final class TetradBinaryReader implements Closeable {
+
+    private final DataInputStream in;
+    private final int version;
+    private final List<String> strings = new ArrayList<>();
+    private final List<Node> nodes = new ArrayList<>();
+    private int next = -1;
+
+    /**
+     * Reads the header.
+     *
+     * @param in The stream to read from; it is closed by close().
+     * @throws IOException if the stream does not start with a header this version of the reader understands.
+     */
+    public TetradBinaryReader(InputStream in) throws IOException {
+        if (in == null) {
+            throw new NullPointerException("Input stream is null.");
+        }
+
+        DataInputStream header = new DataInputStream(in);
+
+        if (header.readInt() != MAGIC) {
+            throw new IOException("Not a Tetrad binary stream.");
+        }
+
+        this.version = header.readInt();
+
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported Tetrad binary version: " + version);
+        }
+
+        int flags = header.readUnsignedByte();
+        InputStream body = (flags & FLAG_COMPRESSED) != 0 ? new GZIPInputStream(in, 1 << 16) : in;
+        this.in = new DataInputStream(new BufferedInputStream(body, 1 << 16));
+    }
+
+    /**
+     * @return the format version of the stream.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return true if there is another object in the stream.
+     */
+    public boolean hasNext() throws IOException {
+        return peek() != END;
+    }
+
+    /**
+     * Reads the next object.
+     *
+     * @return a Graph, DataSet, ICovarianceMatrix or SepsetMap, or null at the end of the stream.
+     */
+    public Object readNext() throws IOException {
+        int kind = peek();
+        next = -1;
+
+        switch (kind) {
+            case END:
+                next = END;
+                return null;
+            case GRAPH:
+                return graph();
+            case DATA_SET:
+                return dataSet();
+            case COVARIANCE_MATRIX:
+                return covarianceMatrix();
+            case SEPSET_MAP:
+                return sepsetMap();
+            default:
+                throw new IOException("Unexpected record type: " + kind);
+        }
+    }
+
+    /**
+     * Reads the next object, which must be a graph.
+     */
+    public Graph readGraph() throws IOException {
+        return (Graph) expect(GRAPH, "graph");
+    }
+
+    /**
+     * Reads the next object, which must be a data set.
+     */
+    public DataSet readDataSet() throws IOException {
+        return (DataSet) expect(DATA_SET, "data set");
+    }
+
+    /**
+     * Reads the next object, which must be a covariance matrix.
+     */
+    public ICovarianceMatrix readCovariance() throws IOException {
+        return (ICovarianceMatrix) expect(COVARIANCE_MATRIX, "covariance matrix");
+    }
+
+    /**
+     * Reads the next object, which must be a sepset map.
+     */
+    public SepsetMap readSepsetMap() throws IOException {
+        return (SepsetMap) expect(SEPSET_MAP, "sepset map");
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    //===============================PRIVATE METHODS==========================//
+
+    private int peek() throws IOException {
+        if (next == -1) {
+            next = in.readUnsignedByte();
+        }
+
+        return next;
+    }
+
+    private Object expect(int kind, String name) throws IOException {
+        if (peek() != kind) {
+            throw new IOException("Expecting a " + name + " next in the stream.");
+        }
+
+        return readNext();
+    }
+
+    private Graph graph() throws IOException {
+        List<Node> graphNodes = readNodes();
+        Graph graph = new EdgeListGraph(graphNodes);
+
+        int numEdges = readVarInt();
+
+        for (int e = 0; e < numEdges; e++) {
+            Node node1 = graphNodes.get(readVarInt());
+            Node node2 = graphNodes.get(readVarInt());
+            int endpoints = in.readUnsignedByte();
+
+            Edge edge = new Edge(node1, node2, endpoint(endpoints >> 4), endpoint(endpoints & 0xF));
+
+            int flags = in.readUnsignedByte();
+
+            if ((flags & BOLD) != 0) {
+                edge.setBold(true);
+            }
+
+            if ((flags & PROPERTIES) != 0) {
+                for (Edge.Property property : readProperties()) {
+                    edge.addProperty(property);
+                }
+            }
+
+            if ((flags & PROBABILITIES) != 0) {
+                int numProbabilities = readVarInt();
+
+                for (int k = 0; k < numProbabilities; k++) {
+                    EdgeTypeProbability.EdgeType type = EdgeTypeProbability.EdgeType.values()[in.readUnsignedByte()];
+                    double probability = in.readDouble();
+                    edge.addEdgeTypeProbability(new EdgeTypeProbability(type, readProperties(), probability));
+                }
+            }
+
+            graph.addEdge(edge);
+        }
+
+        graph.setAmbiguousTriples(readTriples(graphNodes));
+        graph.setUnderLineTriples(readTriples(graphNodes));
+        graph.setDottedUnderLineTriples(readTriples(graphNodes));
+
+        return graph;
+    }
+
+    private DataSet dataSet() throws IOException {
+        String name = readString();
+        int numRows = readVarInt();
+        List<Node> variables = readNodes();
+
+        double[][] continuous = new double[variables.size()][];
+        int[][] discrete = new int[variables.size()][];
+        boolean allContinuous = true;
+
+        for (int j = 0; j < variables.size(); j++) {
+            if (variables.get(j) instanceof ContinuousVariable) {
+                double[] column = new double[numRows];
+                for (int i = 0; i < numRows; i++) column[i] = in.readDouble();
+                continuous[j] = column;
+            } else if (variables.get(j) instanceof DiscreteVariable) {
+                int[] column = new int[numRows];
+                for (int i = 0; i < numRows; i++) column[i] = unzigzag(readVarInt());
+                discrete[j] = column;
+                allContinuous = false;
+            } else {
+                throw new IOException("Data set column is neither continuous nor discrete: " + variables.get(j));
+            }
+        }
+
+        DataBox box = allContinuous && !variables.isEmpty()
+                ? new VerticalDoubleDataBox(continuous)
+                : new MixedDataBox(variables, numRows, continuous, discrete);
+
+        BoxDataSet dataSet = new BoxDataSet(box, variables);
+
+        if (name != null) {
+            dataSet.setName(name);
+        }
+
+        return dataSet;
+    }
+
+    private ICovarianceMatrix covarianceMatrix() throws IOException {
+        String name = readString();
+        List<Node> variables = readNodes();
+        int sampleSize = readVarInt();
+
+        int m = variables.size();
+        double[][] matrix = new double[m][m];
+
+        for (int i = 0; i < m; i++) {
+            for (int j = i; j < m; j++) {
+                double value = in.readDouble();
+                matrix[i][j] = value;
+                matrix[j][i] = value;
+            }
+        }
+
+        CovarianceMatrix covariances = new CovarianceMatrix(variables, matrix, sampleSize);
+
+        if (name != null) {
+            covariances.setName(name);
+        }
+
+        return covariances;
+    }
+
+    private SepsetMap sepsetMap() throws IOException {
+        List<Node> mapNodes = readNodes();
+        SepsetMap map = new SepsetMap();
+        map.setReturnEmptyIfNotSet(in.readBoolean());
+
+        int numSepsets = readVarInt();
+
+        for (int k = 0; k < numSepsets; k++) {
+            Node x = mapNodes.get(readVarInt());
+            Node y = readPairSecond(mapNodes, x);
+            map.set(x, y, readNodeList(mapNodes));
+        }
+
+        int numPValues = readVarInt();
+
+        for (int k = 0; k < numPValues; k++) {
+            Node x = mapNodes.get(readVarInt());
+            Node y = readPairSecond(mapNodes, x);
+            map.setPValue(x, y, in.readDouble());
+        }
+
+        int numWithParents = readVarInt();
+
+        for (int k = 0; k < numWithParents; k++) {
+            Node x = mapNodes.get(readVarInt());
+            List<Node> parents = readNodeList(mapNodes);
+            map.set(x, parents == null ? new LinkedHashSet<Node>() : new LinkedHashSet<>(parents));
+        }
+
+        if (in.readBoolean()) {
+            int numCorrelations = readVarInt();
+            Set<Set<Node>> correlations = new HashSet<>();
+
+            for (int k = 0; k < numCorrelations; k++) {
+                Node x = mapNodes.get(readVarInt());
+                Node y = readPairSecond(mapNodes, x);
+                Set<Node> pair = new HashSet<>(2);
+                pair.add(x);
+                pair.add(y);
+                correlations.add(pair);
+            }
+
+            map.setCorrelations(correlations);
+        }
+
+        return map;
+    }
+
+    private List<Node> readNodes() throws IOException {
+        int size = readVarInt();
+        List<Node> list = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            int ref = readVarInt();
+
+            if (ref > 0) {
+                list.add(nodes.get(ref - 1));
+                continue;
+            }
+
+            int kind = in.readUnsignedByte();
+            String name = readString();
+            int type = in.readUnsignedByte();
+            int centerX = unzigzag(readVarInt());
+            int centerY = unzigzag(readVarInt());
+
+            Node node;
+
+            if (kind == DISCRETE_VARIABLE) {
+                int numCategories = readVarInt();
+                List<String> categories = new ArrayList<>(numCategories);
+                for (int k = 0; k < numCategories; k++) categories.add(readString());
+                node = new DiscreteVariable(name, categories);
+            } else if (kind == CONTINUOUS_VARIABLE) {
+                node = new ContinuousVariable(name);
+            } else if (kind == GRAPH_NODE) {
+                node = new GraphNode(name);
+            } else {
+                throw new IOException("Unexpected node kind: " + kind);
+            }
+
+            node.setNodeType(NODE_TYPES[Math.min(type, NODE_TYPES.length - 1)]);
+            node.setCenter(centerX, centerY);
+
+            nodes.add(node);
+            list.add(node);
+        }
+
+        return list;
+    }
+
+    private String readString() throws IOException {
+        int ref = readVarInt();
+
+        if (ref == 0) {
+            return null;
+        } else if (ref == 1) {
+            String s = in.readUTF();
+            strings.add(s);
+            return s;
+        } else {
+            return strings.get(ref - 2);
+        }
+    }
+
+    private List<Edge.Property> readProperties() throws IOException {
+        int size = readVarInt();
+        List<Edge.Property> properties = new ArrayList<>(size);
+
+        for (int k = 0; k < size; k++) {
+            properties.add(Edge.Property.values()[in.readUnsignedByte()]);
+        }
+
+        return properties;
+    }
+
+    private Set<Triple> readTriples(List<Node> graphNodes) throws IOException {
+        int size = readVarInt();
+        Set<Triple> triples = new HashSet<>();
+
+        for (int k = 0; k < size; k++) {
+            Node x = graphNodes.get(readVarInt());
+            Node y = graphNodes.get(readVarInt());
+            Node z = graphNodes.get(readVarInt());
+            triples.add(new Triple(x, y, z));
+        }
+
+        return triples;
+    }
+
+    // A pair of a node with itself is written with 0 for its second member.
+    private Node readPairSecond(List<Node> mapNodes, Node x) throws IOException {
+        int ref = readVarInt();
+        return ref == 0 ? x : mapNodes.get(ref - 1);
+    }
+
+    private List<Node> readNodeList(List<Node> mapNodes) throws IOException {
+        int size = readVarInt();
+
+        if (size == 0) {
+            return null;
+        }
+
+        List<Node> list = new ArrayList<>(size - 1);
+
+        for (int k = 0; k < size - 1; k++) {
+            list.add(mapNodes.get(readVarInt()));
+        }
+
+        return list;
+    }
+
+    private int readVarInt() throws IOException {
+        int value = 0;
+
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("Malformed integer.");
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static Endpoint endpoint(int code) throws IOException {
+        if (code >= Endpoint.TYPES.length) {
+            throw new IOException("Unexpected endpoint code: " + code);
+        }
+
+        return Endpoint.TYPES[code];
+    }
+}
@@ -0,0 +1,485 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.util;
+
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.DiscreteVariable;
+import edu.cmu.tetrad.data.ICovarianceMatrix;
+import edu.cmu.tetrad.graph.Edge;
+import edu.cmu.tetrad.graph.EdgeTypeProbability;
+import edu.cmu.tetrad.graph.Endpoint;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.graph.NodeType;
+import edu.cmu.tetrad.graph.Triple;
+import edu.cmu.tetrad.search.SepsetMap;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes graphs, data sets, covariance matrices and sepset maps to a compact, versioned binary stream, to be read
+ * back by TetradBinaryReader. This is meant for large objects--bootstrapped PAGs with many edges, large data
+ * sets--for which XML, text and Java serialization are slow and take a great deal of memory.
+ * <p>
+ * A stream is a header followed by any number of records, one per object written, and an end marker written by
+ * close(). Strings and nodes are interned across the whole stream: each is written in full the first time it is seen
+ * and by index after that, so that, for example, a graph and the data set it was estimated from share their
+ * variables both in the file and when read back. Data sets and covariance matrices are written column by column as
+ * primitives. Unsigned integers are written as variable length quantities. The body after the header may be gzip
+ * compressed.
+ * <p>
+ * Graph attributes, edge colors, node knowledge and data set selections are not written. Nodes other than
+ * GraphNodes, ContinuousVariables and DiscreteVariables are read back as GraphNodes.
+ *
+ * @see TetradBinaryReader
+ */
+public final class TetradBinaryWriter implements Closeable {
+
+    // "TETB"
+    static final int MAGIC = 0x54455442;
+    static final int VERSION = 1;
+
+    static final int FLAG_COMPRESSED = 1;
+
+    static final int END = 0;
+    static final int GRAPH = 1;
+    static final int DATA_SET = 2;
+    static final int COVARIANCE_MATRIX = 3;
+    static final int SEPSET_MAP = 4;
+
+    static final int GRAPH_NODE = 0;
+    static final int CONTINUOUS_VARIABLE = 1;
+    static final int DISCRETE_VARIABLE = 2;
+
+    static final NodeType[] NODE_TYPES = {NodeType.MEASURED, NodeType.LATENT, NodeType.ERROR, NodeType.SESSION,
+            NodeType.RANDOMIZE, NodeType.LOCK, NodeType.NO_TYPE};
+
+    // Edge flags.
+    static final int BOLD = 1;
+    static final int PROPERTIES = 2;
+    static final int PROBABILITIES = 4;
+
+    private final DataOutputStream out;
+    private final Map<String, Integer> strings = new HashMap<>();
+    private final Map<Node, Integer> nodes = new IdentityHashMap<>();
+    private boolean closed = false;
+
+    /**
+     * Writes the header.
+     *
+     * @param out      The stream to write to; it is closed by close().
+     * @param compress True if the body should be gzip compressed.
+     */
+    public TetradBinaryWriter(OutputStream out, boolean compress) throws IOException {
+        if (out == null) {
+            throw new NullPointerException("Output stream is null.");
+        }
+
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+        header.writeByte(compress ? FLAG_COMPRESSED : 0);
+        header.flush();
+
+        OutputStream body = compress ? new GZIPOutputStream(out, 1 << 16) : out;
+        this.out = new DataOutputStream(new BufferedOutputStream(body, 1 << 16));
+    }
+
+    /**
+     * Writes a graph: its nodes, edges (with their properties and edge type probabilities) and ambiguous,
+     * underlined and dotted underlined triples.
+     */
+    public void writeGraph(Graph graph) throws IOException {
+        checkOpen();
+        out.writeByte(GRAPH);
+
+        List<Node> graphNodes = graph.getNodes();
+        Map<Node, Integer> index = writeNodes(graphNodes);
+
+        Set<Edge> edges = graph.getEdges();
+        writeVarInt(edges.size());
+
+        for (Edge edge : edges) {
+            writeVarInt(localIndex(index, edge.getNode1()));
+            writeVarInt(localIndex(index, edge.getNode2()));
+            out.writeByte(endpoint(edge.getEndpoint1()) << 4 | endpoint(edge.getEndpoint2()));
+
+            List<Edge.Property> properties = edge.getProperties();
+            List<EdgeTypeProbability> probabilities = edge.getEdgeTypeProbabilities();
+
+            int flags = (edge.isBold() ? BOLD : 0)
+                    | (properties.isEmpty() ? 0 : PROPERTIES)
+                    | (probabilities.isEmpty() ? 0 : PROBABILITIES);
+            out.writeByte(flags);
+
+            if (!properties.isEmpty()) {
+                writeProperties(properties);
+            }
+
+            if (!probabilities.isEmpty()) {
+                writeVarInt(probabilities.size());
+
+                for (EdgeTypeProbability probability : probabilities) {
+                    out.writeByte(probability.getEdgeType().ordinal());
+                    out.writeDouble(probability.getProbability());
+                    writeProperties(probability.getProperties());
+                }
+            }
+        }
+
+        writeTriples(graph.getAmbiguousTriples(), index);
+        writeTriples(graph.getUnderLines(), index);
+        writeTriples(graph.getDottedUnderlines(), index);
+    }
+
+    /**
+     * Writes a data set of continuous and discrete columns, column by column. The data set name is kept.
+     *
+     * @throws IllegalArgumentException if some variable is neither continuous nor discrete.
+     */
+    public void writeDataSet(DataSet dataSet) throws IOException {
+        checkOpen();
+
+        List<Node> variables = dataSet.getVariables();
+
+        for (Node variable : variables) {
+            if (!(variable instanceof ContinuousVariable || variable instanceof DiscreteVariable)) {
+                throw new IllegalArgumentException("Only continuous and discrete columns can be written: "
+                        + variable);
+            }
+        }
+
+        out.writeByte(DATA_SET);
+        writeString(dataSet.getName());
+
+        int numRows = dataSet.getNumRows();
+        writeVarInt(numRows);
+        writeNodes(variables);
+
+        for (int j = 0; j < variables.size(); j++) {
+            if (variables.get(j) instanceof ContinuousVariable) {
+                for (int i = 0; i < numRows; i++) {
+                    out.writeDouble(dataSet.getDouble(i, j));
+                }
+            } else {
+                // Zigzag, so that missing values (-99) stay short.
+                for (int i = 0; i < numRows; i++) {
+                    writeVarInt(zigzag(dataSet.getInt(i, j)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a covariance matrix: its name, variables, sample size and upper triangle.
+     */
+    public void writeCovariance(ICovarianceMatrix covariances) throws IOException {
+        checkOpen();
+        out.writeByte(COVARIANCE_MATRIX);
+        writeString(covariances.getName());
+
+        List<Node> variables = covariances.getVariables();
+        writeNodes(variables);
+        writeVarInt(covariances.getSampleSize());
+
+        for (int i = 0; i < variables.size(); i++) {
+            for (int j = i; j < variables.size(); j++) {
+                out.writeDouble(covariances.getValue(i, j));
+            }
+        }
+    }
+
+    /**
+     * Writes a sepset map: its sepsets, p-values, parent sets and correlated pairs.
+     */
+    public void writeSepsetMap(SepsetMap map) throws IOException {
+        checkOpen();
+        out.writeByte(SEPSET_MAP);
+
+        Map<Set<Node>, List<Node>> sepsets = map.getSepsets();
+        Map<Set<Node>, Double> pValues = map.getPValues();
+        Set<Node> withParents = map.getNodesWithParents();
+        Set<Set<Node>> correlations = map.getCorrelations();
+
+        // Every node the map mentions goes in its node table.
+        List<Node> mapNodes = new ArrayList<>();
+        Map<Node, Integer> index = new IdentityHashMap<>();
+
+        for (Map.Entry<Set<Node>, List<Node>> entry : sepsets.entrySet()) {
+            collect(entry.getKey(), mapNodes, index);
+            collect(entry.getValue(), mapNodes, index);
+        }
+
+        for (Set<Node> pair : pValues.keySet()) collect(pair, mapNodes, index);
+
+        for (Node node : withParents) {
+            collect(Collections.singleton(node), mapNodes, index);
+            collect(map.get(node), mapNodes, index);
+        }
+
+        if (correlations != null) {
+            for (Set<Node> pair : correlations) collect(pair, mapNodes, index);
+        }
+
+        writeNodes(mapNodes);
+        out.writeBoolean(map.isReturnEmptyIfNotSet());
+
+        writeVarInt(sepsets.size());
+
+        for (Map.Entry<Set<Node>, List<Node>> entry : sepsets.entrySet()) {
+            writePair(index, first(entry.getKey()), second(entry.getKey()));
+            writeNodeList(index, entry.getValue());
+        }
+
+        writeVarInt(pValues.size());
+
+        for (Map.Entry<Set<Node>, Double> entry : pValues.entrySet()) {
+            writePair(index, first(entry.getKey()), second(entry.getKey()));
+            out.writeDouble(entry.getValue());
+        }
+
+        writeVarInt(withParents.size());
+
+        for (Node node : withParents) {
+            writeVarInt(index.get(node));
+            writeNodeList(index, map.get(node));
+        }
+
+        out.writeBoolean(correlations != null);
+
+        if (correlations != null) {
+            writeVarInt(correlations.size());
+
+            for (Set<Node> pair : correlations) {
+                writePair(index, first(pair), second(pair));
+            }
+        }
+    }
+
+    /**
+     * Flushes what has been written so far to the underlying stream. With compression, data still held by the
+     * compressor is not flushed.
+     */
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Writes the end marker and closes the stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        out.writeByte(END);
+        closed = true;
+        out.close();
+    }
+
+    //===============================PRIVATE METHODS==========================//
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Writer is closed.");
+        }
+    }
+
+    // Writes the nodes as references into the stream's node table, defining any not seen before, and returns the
+    // index of each in the list.
+    private Map<Node, Integer> writeNodes(List<Node> list) throws IOException {
+        Map<Node, Integer> local = new IdentityHashMap<>();
+        writeVarInt(list.size());
+
+        for (int i = 0; i < list.size(); i++) {
+            Node node = list.get(i);
+            local.put(node, i);
+            Integer id = nodes.get(node);
+
+            if (id != null) {
+                writeVarInt(id + 1);
+                continue;
+            }
+
+            nodes.put(node, nodes.size());
+            writeVarInt(0);
+
+            if (node instanceof DiscreteVariable) {
+                out.writeByte(DISCRETE_VARIABLE);
+            } else if (node instanceof ContinuousVariable) {
+                out.writeByte(CONTINUOUS_VARIABLE);
+            } else {
+                out.writeByte(GRAPH_NODE);
+            }
+
+            writeString(node.getName());
+            out.writeByte(nodeType(node.getNodeType()));
+            writeVarInt(zigzag(node.getCenterX()));
+            writeVarInt(zigzag(node.getCenterY()));
+
+            if (node instanceof DiscreteVariable) {
+                List<String> categories = ((DiscreteVariable) node).getCategories();
+                writeVarInt(categories.size());
+
+                for (String category : categories) {
+                    writeString(category);
+                }
+            }
+        }
+
+        return local;
+    }
+
+    // Null is written as 0; otherwise a string not seen before is written as 1 followed by the string, and one seen
+    // before as 2 + its index.
+    private void writeString(String s) throws IOException {
+        if (s == null) {
+            writeVarInt(0);
+            return;
+        }
+
+        Integer id = strings.get(s);
+
+        if (id != null) {
+            writeVarInt(id + 2);
+            return;
+        }
+
+        strings.put(s, strings.size());
+        writeVarInt(1);
+        out.writeUTF(s);
+    }
+
+    private void writeProperties(Collection<Edge.Property> properties) throws IOException {
+        writeVarInt(properties.size());
+
+        for (Edge.Property property : properties) {
+            out.writeByte(property.ordinal());
+        }
+    }
+
+    private void writeTriples(Set<Triple> triples, Map<Node, Integer> index) throws IOException {
+        writeVarInt(triples.size());
+
+        for (Triple triple : triples) {
+            writeVarInt(localIndex(index, triple.getX()));
+            writeVarInt(localIndex(index, triple.getY()));
+            writeVarInt(localIndex(index, triple.getZ()));
+        }
+    }
+
+    private void writePair(Map<Node, Integer> index, Node x, Node y) throws IOException {
+        writeVarInt(index.get(x));
+        writeVarInt(y == null ? 0 : index.get(y) + 1);
+    }
+
+    // Null is written as 0, otherwise the size plus 1 followed by the indices.
+    private void writeNodeList(Map<Node, Integer> index, Collection<Node> list) throws IOException {
+        if (list == null) {
+            writeVarInt(0);
+            return;
+        }
+
+        writeVarInt(list.size() + 1);
+
+        for (Node node : list) {
+            writeVarInt(index.get(node));
+        }
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        out.writeByte(value);
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int localIndex(Map<Node, Integer> index, Node node) {
+        Integer i = index.get(node);
+
+        if (i == null) {
+            throw new IllegalArgumentException("Node not in graph: " + node);
+        }
+
+        return i;
+    }
+
+    private static int endpoint(Endpoint endpoint) {
+        for (int i = 0; i < Endpoint.TYPES.length; i++) {
+            if (Endpoint.TYPES[i] == endpoint) return i;
+        }
+
+        throw new IllegalArgumentException("Unexpected endpoint: " + endpoint);
+    }
+
+    private static int nodeType(NodeType type) {
+        for (int i = 0; i < NODE_TYPES.length; i++) {
+            if (NODE_TYPES[i] == type) return i;
+        }
+
+        return NODE_TYPES.length - 1;
+    }
+
+    private static void collect(Collection<Node> nodes, List<Node> list, Map<Node, Integer> index) {
+        if (nodes == null) return;
+
+        for (Node node : nodes) {
+            if (!index.containsKey(node)) {
+                index.put(node, list.size());
+                list.add(node);
+            }
+        }
+    }
+
+    // The members of a pair, which has one member if a node was paired with itself.
+    private static Node first(Set<Node> pair) {
+        return pair.iterator().next();
+    }
+
+    private static Node second(Set<Node> pair) {
+        Iterator<Node> i = pair.iterator();
+        i.next();
+        return i.hasNext() ? i.next() : null;
+    }
+}
@@ -69,9 +69,8 @@ public class MGM extends ConvexProximal implements GraphSearch{
     private List<Node> variables;
     private List<Node> initVariables = null;
 
-    //Discrete Data coded as dummy variables
-    private DoubleMatrix2D dDat;
-
+    //Evaluates the smooth part of the objective and its gradient
+    private PseudoLikelihood likelihood;
 
     private DoubleMatrix1D lambda;
     private Algebra alg = new Algebra();
@@ -86,8 +85,9 @@ public class MGM extends ConvexProximal implements GraphSearch{
     int q;
     int n;
 
-    //parameter weights
+    //parameter weights, and their outer product
     private DoubleMatrix1D weights;
+    private DoubleMatrix2D weightMat;
 
     public MGM(DoubleMatrix2D x, DoubleMatrix2D y, List<Node> variables, int[] l, double[] lambda){
 
@@ -115,7 +115,8 @@ public class MGM extends ConvexProximal implements GraphSearch{
         fixData();
         initParameters();
         calcWeights();
-        makeDummy();
+        checkLevels();
+        likelihood = new PseudoLikelihood(xDat, yDat, l);
     }
 
     public MGM(DataSet ds, double[] lambda){
@@ -161,7 +162,8 @@ public class MGM extends ConvexProximal implements GraphSearch{
         fixData();
         initParameters();
         calcWeights();
-        makeDummy();
+        checkLevels();
+        likelihood = new PseudoLikelihood(xDat, yDat, l);
     }
 
     public static class MGMParams{
@@ -348,13 +350,6 @@ public class MGM extends ConvexProximal implements GraphSearch{
         //lambda = factory1D.make(3);
     }
 
-    // avoid underflow in log(sum(exp(x))) calculation
-    private double logsumexp(DoubleMatrix1D x){
-        DoubleMatrix1D myX = x.copy();
-        double maxX = StatUtils.max(myX.toArray());
-        return Math.log(myX.assign(Functions.minus(maxX)).assign(Functions.exp).zSum()) + maxX;
-    }
-
     //calculate parameter weights as in Lee and Hastie
     private void calcWeights(){
         weights = factory1D.make(p+q);
@@ -369,19 +364,18 @@ public class MGM extends ConvexProximal implements GraphSearch{
             }
             weights.set(p+j, Math.sqrt(curWeight));
         }
+        weightMat = alg.multOuter(weights, weights, null);
     }
 
     /**
-     * Convert discrete data (in yDat) to a matrix of dummy variables (stored in dDat)
+     * Checks that every level of each discrete variable (in yDat) is observed
      */
-    private void makeDummy(){
-        dDat = factory2D.make(n, lsum);
+    private void checkLevels(){
         for(int i = 0; i < q; i++){
             for(int j = 0; j < l[i]; j++){
                 DoubleMatrix1D curCol = yDat.viewColumn(i).copy().assign(Functions.equals(j+1));
                 if(curCol.zSum() == 0)
                     throw new IllegalArgumentException("Discrete data is missing a level: variable " + i + " level " + j);
-                dDat.viewColumn(lcumsum[i]+j).assign(curCol);
             }
         }
     }
@@ -412,79 +406,12 @@ public class MGM extends ConvexProximal implements GraphSearch{
      * @return
      */
     public double smoothValue(DoubleMatrix1D parIn){
-        //work with copy
-        MGMParams par = new MGMParams(parIn, p, lsum);
-
-        for(int i = 0; i < par.betad.size(); i++){
-            if(par.betad.get(i)<0)
+        for(int i = 0; i < p; i++){
+            if(parIn.get(p*p + i)<0)
                 return Double.POSITIVE_INFINITY;
         }
-        //double nll = 0;
-        //int n = xDat.rows();
-        //beta=beta+beta';
-        //phi=phi+phi';
-        upperTri(par.beta, 1);
-        par.beta.assign(alg.transpose(par.beta), Functions.plus);
-
-        for(int i = 0; i < q; i++){
-            par.phi.viewPart(lcumsum[i], lcumsum[i], l[i], l[i]).assign(0);
-        }
-        // ensure mats are upper triangular
-        upperTri(par.phi,0);
-        par.phi.assign(alg.transpose(par.phi), Functions.plus);
-
-
-        //Xbeta=X*beta*diag(1./betad);
-        DoubleMatrix2D divBetaD = factory2D.diagonal(factory1D.make(p,1.0).assign(par.betad, Functions.div));
-        DoubleMatrix2D xBeta = alg.mult(xDat,alg.mult(par.beta, divBetaD));
-
-        //Dtheta=D*theta*diag(1./betad);
-        DoubleMatrix2D dTheta = alg.mult(alg.mult(dDat, par.theta), divBetaD);
-
-        // Squared loss
-        //sqloss=-n/2*sum(log(betad))+...
-        //.5*norm((X-e*alpha1'-Xbeta-Dtheta)*diag(sqrt(betad)),'fro')^2;
-        DoubleMatrix2D tempLoss = factory2D.make(n, xDat.columns());
-
-        //wxprod=X*(theta')+D*phi+e*alpha2';
-        DoubleMatrix2D wxProd = alg.mult(xDat, alg.transpose(par.theta));
-        wxProd.assign(alg.mult(dDat, par.phi), Functions.plus);
-        for(int i = 0; i < n; i++){
-            for(int j = 0; j < xDat.columns(); j++){
-                tempLoss.set(i,j,xDat.get(i,j) - par.alpha1.get(j) - xBeta.get(i,j) - dTheta.get(i,j));
-            }
-            for(int j = 0; j < dDat.columns(); j++){
-                wxProd.set(i,j,wxProd.get(i,j) + par.alpha2.get(j));
-            }
-        }
 
-        double sqloss = -n/2.0*par.betad.copy().assign(Functions.log).zSum() +
-                .5 * Math.pow(alg.normF(alg.mult(tempLoss, factory2D.diagonal(par.betad.copy().assign(Functions.sqrt)))), 2);
-
-
-        // categorical loss
-        /*catloss=0;
-        wxprod=X*(theta')+D*phi+e*alpha2'; %this is n by Ltot
-        for r=1:q
-            wxtemp=wxprod(:,Lsum(r)+1:Lsum(r)+L(r));
-            denom= logsumexp(wxtemp,2); %this is n by 1
-            catloss=catloss-sum(wxtemp(sub2ind([n L(r)],(1:n)',Y(:,r))));
-            catloss=catloss+sum(denom);
-        end
-        */
-
-        double catloss = 0;
-        for(int i = 0; i < yDat.columns(); i++){
-            DoubleMatrix2D wxTemp = wxProd.viewPart(0, lcumsum[i], n, l[i]);
-            for(int k = 0; k < n; k++){
-                DoubleMatrix1D curRow = wxTemp.viewRow(k);
-
-                catloss -= curRow.get((int) yDat.get(k, i) - 1);
-                catloss += logsumexp(curRow);
-            }
-        }
-
-        return (sqloss + catloss)/((double) n);
+        return likelihood.value(parIn.toArray());
     }
 
     /**
@@ -498,167 +425,15 @@ public class MGM extends ConvexProximal implements GraphSearch{
      * @return
      */
     public double smooth(DoubleMatrix1D parIn, DoubleMatrix1D gradOutVec){
-        //work with copy
-        MGMParams par = new MGMParams(parIn, p, lsum);
-        MGMParams gradOut = new MGMParams();
-
-        for(int i = 0; i < par.betad.size(); i++){
-            if(par.betad.get(i)<0)
-                return Double.POSITIVE_INFINITY;
-        }
-
-        //beta=beta-diag(diag(beta));
-        //for r=1:q
-        //  phi(Lsum(r)+1:Lsum(r+1),Lsum(r)+1:Lsum(r+1))=0;
-        //end
-        //beta=triu(beta); phi=triu(phi);
-        //beta=beta+beta';
-        //phi=phi+phi';
-        upperTri(par.beta, 1);
-        par.beta.assign(alg.transpose(par.beta), Functions.plus);
-
-        for(int i = 0; i < q; i++){
-            par.phi.viewPart(lcumsum[i], lcumsum[i], l[i], l[i]).assign(0);
-        }
-        //ensure matrix is upper triangular
-        upperTri(par.phi,0);
-        par.phi.assign(alg.transpose(par.phi), Functions.plus);
-
-        //Xbeta=X*beta*diag(1./betad);
-        DoubleMatrix2D divBetaD = factory2D.diagonal(factory1D.make(p,1.0).assign(par.betad, Functions.div));
-        DoubleMatrix2D xBeta = alg.mult(xDat,alg.mult(par.beta, divBetaD));
-
-        //Dtheta=D*theta*diag(1./betad);
-        DoubleMatrix2D dTheta = alg.mult(alg.mult(dDat, par.theta), divBetaD);
-
-        // Squared loss
-        //tempLoss =  (X-e*alpha1'-Xbeta-Dtheta) = -res (in gradient code)
-        DoubleMatrix2D tempLoss = factory2D.make(n, xDat.columns());
-
-        //wxprod=X*(theta')+D*phi+e*alpha2';
-        DoubleMatrix2D wxProd = alg.mult(xDat, alg.transpose(par.theta));
-        wxProd.assign(alg.mult(dDat, par.phi), Functions.plus);
-        for(int i = 0; i < n; i++){
-            if (Thread.currentThread().isInterrupted()) {
-                break;
-            }
-
-            for(int j = 0; j < xDat.columns(); j++){
-                tempLoss.set(i,j,xDat.get(i,j) - par.alpha1.get(j) - xBeta.get(i,j) - dTheta.get(i,j));
-            }
-            for(int j = 0; j < dDat.columns(); j++){
-                wxProd.set(i,j,wxProd.get(i,j) + par.alpha2.get(j));
-            }
-        }
-
-        //sqloss=-n/2*sum(log(betad))+...
-        //.5*norm((X-e*alpha1'-Xbeta-Dtheta)*diag(sqrt(betad)),'fro')^2;
-        double sqloss = -n/2.0*par.betad.copy().assign(Functions.log).zSum() +
-                .5 * Math.pow(alg.normF(alg.mult(tempLoss, factory2D.diagonal(par.betad.copy().assign(Functions.sqrt)))), 2);
-
-        //ok now tempLoss = res
-        tempLoss.assign(Functions.mult(-1));
-
-        //gradbeta=X'*(res);
-        gradOut.beta = alg.mult(alg.transpose(xDat), tempLoss);
-
-        //gradbeta=gradbeta-diag(diag(gradbeta)); % zero out diag
-        //gradbeta=tril(gradbeta)'+triu(gradbeta);
-        DoubleMatrix2D lowerBeta = alg.transpose(lowerTri(gradOut.beta.copy(), -1));
-        upperTri(gradOut.beta, 1).assign(lowerBeta, Functions.plus);
-
-        //gradalpha1=diag(betad)*sum(res,1)';
-        gradOut.alpha1 = alg.mult(factory2D.diagonal(par.betad),margSum(tempLoss, 1));
-
-        //gradtheta=D'*(res);
-        gradOut.theta = alg.mult(alg.transpose(dDat), tempLoss);
-
-        // categorical loss
-        /*catloss=0;
-        wxprod=X*(theta')+D*phi+e*alpha2'; %this is n by Ltot
-        for r=1:q
-            wxtemp=wxprod(:,Lsum(r)+1:Lsum(r)+L(r));
-            denom= logsumexp(wxtemp,2); %this is n by 1
-            catloss=catloss-sum(wxtemp(sub2ind([n L(r)],(1:n)',Y(:,r))));
-            catloss=catloss+sum(denom);
-        end
-        */
-
-        double catloss = 0;
-        for(int i = 0; i < yDat.columns(); i++){
-            if (Thread.currentThread().isInterrupted()) {
-                break;
-            }
-
-            DoubleMatrix2D wxTemp = wxProd.viewPart(0, lcumsum[i], n, l[i]);
-            //need to copy init values for calculating nll
-            DoubleMatrix2D wxTemp0 = wxTemp.copy();
-
-            // does this need to be done in log space??
-            wxTemp.assign(Functions.exp);
-            DoubleMatrix1D invDenom = factory1D.make(n,1.0).assign(margSum(wxTemp, 2), Functions.div);
-            wxTemp.assign(alg.mult(factory2D.diagonal(invDenom), wxTemp));
-            for(int k = 0; k < n; k++){
-                if (Thread.currentThread().isInterrupted()) {
-                    break;
-                }
-
-                DoubleMatrix1D curRow = wxTemp.viewRow(k);
-                DoubleMatrix1D curRow0 = wxTemp0.viewRow(k);
-
-                catloss -= curRow0.get((int) yDat.get(k, i) - 1);
-                catloss += logsumexp(curRow0);
-
-
-                //wxtemp(sub2ind(size(wxtemp),(1:n)',Y(:,r)))=wxtemp(sub2ind(size(wxtemp),(1:n)',Y(:,r)))-1;
-                curRow.set((int) yDat.get(k,i)-1, curRow.get((int) yDat.get(k,i)-1) - 1);
-            }
-        }
-
-        //gradalpha2=sum(wxprod,1)';
-        gradOut.alpha2 = margSum(wxProd,1);
-
-        //gradw=X'*wxprod;
-        DoubleMatrix2D gradW = alg.mult(alg.transpose(xDat), wxProd);
-
-        //gradtheta=gradtheta+gradw';
-        gradOut.theta.assign(alg.transpose(gradW), Functions.plus);
-
-        //gradphi=D'*wxprod;
-        gradOut.phi = alg.mult(alg.transpose(dDat), wxProd);
-
-        //zero out gradphi diagonal
-        //for r=1:q
-        //gradphi(Lsum(r)+1:Lsum(r+1),Lsum(r)+1:Lsum(r+1))=0;
-        //end
-        for(int i = 0; i < q; i++){
-            gradOut.phi.viewPart(lcumsum[i], lcumsum[i], l[i], l[i]).assign(0);
-        }
-
-        //gradphi=tril(gradphi)'+triu(gradphi);
-        DoubleMatrix2D lowerPhi = alg.transpose(lowerTri(gradOut.phi.copy(), 0));
-        upperTri(gradOut.phi, 0).assign(lowerPhi, Functions.plus);
-
-        /*
-        for s=1:p
-            gradbetad(s)=-n/(2*betad(s))+1/2*norm(res(:,s))^2-res(:,s)'*(Xbeta(:,s)+Dtheta(:,s));
-        end
-         */
-        gradOut.betad = factory1D.make(xDat.columns());
         for(int i = 0; i < p; i++){
-            gradOut.betad.set(i, -n / (2.0 * par.betad.get(i)) + alg.norm2(tempLoss.viewColumn(i)) / 2.0 -
-                    alg.mult(tempLoss.viewColumn(i), xBeta.viewColumn(i).copy().assign(dTheta.viewColumn(i), Functions.plus)));
+            if(parIn.get(p*p + i)<0)
+                return Double.POSITIVE_INFINITY;
         }
 
-        gradOut.alpha1.assign(Functions.div((double) n));
-        gradOut.alpha2.assign(Functions.div((double) n));
-        gradOut.betad.assign(Functions.div((double) n));
-        gradOut.beta.assign(Functions.div((double) n));
-        gradOut.theta.assign(Functions.div((double) n));
-        gradOut.phi.assign(Functions.div((double) n));
-
-        gradOutVec.assign(gradOut.toMatrix1D());
-        return (sqloss + catloss)/((double) n);
+        double[] grad = new double[parIn.size()];
+        double value = likelihood.valueAndGradient(parIn.toArray(), grad);
+        gradOutVec.assign(grad);
+        return value;
     }
 
     /**
@@ -676,8 +451,6 @@ public class MGM extends ConvexProximal implements GraphSearch{
         //penbeta = t(1).*(wv(1:p)'*wv(1:p));
         //betascale=zeros(size(beta));
         //betascale=max(0,1-penbeta./abs(beta));
-        DoubleMatrix2D weightMat = alg.multOuter(weights,
-                weights, null);
 
         //int p = xDat.columns();
 
@@ -753,147 +526,9 @@ public class MGM extends ConvexProximal implements GraphSearch{
      * @return
      */
     public DoubleMatrix1D smoothGradient(DoubleMatrix1D parIn){
-        int n = xDat.rows();
-        MGMParams grad = new MGMParams();
-
-        //
-        MGMParams par = new MGMParams(parIn, p, lsum);
-        upperTri(par.beta, 1);
-        par.beta.assign(alg.transpose(par.beta), Functions.plus);
-
-        for(int i = 0; i < q; i++){
-            par.phi.viewPart(lcumsum[i], lcumsum[i], l[i], l[i]).assign(0);
-        }
-        upperTri(par.phi, 0);
-        par.phi.assign(alg.transpose(par.phi), Functions.plus);
-
-        //Xbeta=X*beta*diag(1./betad);
-        //Dtheta=D*theta*diag(1./betad);
-        DoubleMatrix2D divBetaD = factory2D.diagonal(factory1D.make(p, 1.0).assign(par.betad, Functions.div));
-
-        DoubleMatrix2D xBeta = alg.mult(alg.mult(xDat, par.beta), divBetaD);
-        DoubleMatrix2D dTheta = alg.mult(alg.mult(dDat, par.theta), divBetaD);
-
-        //res=Xbeta-X+e*alpha1'+Dtheta;
-        DoubleMatrix2D negLoss = factory2D.make(n, xDat.columns());
-
-        //wxprod=X*(theta')+D*phi+e*alpha2';
-        DoubleMatrix2D wxProd = alg.mult(xDat, alg.transpose(par.theta));
-        wxProd.assign(alg.mult(dDat, par.phi), Functions.plus);
-        for(int i = 0; i < n; i++){
-            if (Thread.currentThread().isInterrupted()) {
-                break;
-            }
-
-            for(int j = 0; j < p; j++){
-                if (Thread.currentThread().isInterrupted()) {
-                    break;
-                }
-
-                negLoss.set(i,j, xBeta.get(i,j) - xDat.get(i,j) + par.alpha1.get(j) + dTheta.get(i,j));
-            }
-            for(int j = 0; j < dDat.columns(); j++){
-                if (Thread.currentThread().isInterrupted()) {
-                    break;
-                }
-
-                wxProd.set(i,j,wxProd.get(i,j) + par.alpha2.get(j));
-            }
-        }
-
-        //gradbeta=X'*(res);
-        grad.beta = alg.mult(alg.transpose(xDat), negLoss);
-
-        //gradbeta=gradbeta-diag(diag(gradbeta)); % zero out diag
-        //gradbeta=tril(gradbeta)'+triu(gradbeta);
-        DoubleMatrix2D lowerBeta = alg.transpose(lowerTri(grad.beta.copy(), -1));
-        upperTri(grad.beta, 1).assign(lowerBeta, Functions.plus);
-
-        //gradalpha1=diag(betad)*sum(res,1)';
-        grad.alpha1 = alg.mult(factory2D.diagonal(par.betad),margSum(negLoss, 1));
-
-        //gradtheta=D'*(res);
-        grad.theta = alg.mult(alg.transpose(dDat), negLoss);
-
-        /*
-        wxprod=X*(theta')+D*phi+e*alpha2'; %this is n by Ltot
-        Lsum=[0;cumsum(L)];
-        for r=1:q
-            idx=Lsum(r)+1:Lsum(r)+L(r);
-            wxtemp=wxprod(:,idx); %n by L(r)
-            denom=sum(exp(wxtemp),2); % this is n by 1
-            wxtemp=diag(sparse(1./denom))*exp(wxtemp);
-            wxtemp(sub2ind(size(wxtemp),(1:n)',Y(:,r)))=wxtemp(sub2ind(size(wxtemp),(1:n)',Y(:,r)))-1;
-            wxprod(:,idx)=wxtemp;
-        end
-        */
-
-        for(int i = 0; i < yDat.columns(); i++){
-            DoubleMatrix2D wxTemp = wxProd.viewPart(0, lcumsum[i], n, l[i]);
-
-            // does this need to be done in log space??
-            wxTemp.assign(Functions.exp);
-            DoubleMatrix1D invDenom = factory1D.make(n,1.0).assign(margSum(wxTemp, 2), Functions.div);
-            wxTemp.assign(alg.mult(factory2D.diagonal(invDenom), wxTemp));
-            for(int k = 0; k < n; k++){
-                DoubleMatrix1D curRow = wxTemp.viewRow(k);
-
-                //wxtemp(sub2ind(size(wxtemp),(1:n)',Y(:,r)))=wxtemp(sub2ind(size(wxtemp),(1:n)',Y(:,r)))-1;
-                curRow.set((int) yDat.get(k,i)-1, curRow.get((int) yDat.get(k,i)-1) - 1);
-            }
-        }
-
-        //gradalpha2=sum(wxprod,1)';
-        grad.alpha2 = margSum(wxProd,1);
-
-        //gradw=X'*wxprod;
-        DoubleMatrix2D gradW = alg.mult(alg.transpose(xDat), wxProd);
-
-        //gradtheta=gradtheta+gradw';
-        grad.theta.assign(alg.transpose(gradW), Functions.plus);
-
-        //gradphi=D'*wxprod;
-        grad.phi = alg.mult(alg.transpose(dDat), wxProd);
-
-        //zero out gradphi diagonal
-        //for r=1:q
-        //gradphi(Lsum(r)+1:Lsum(r+1),Lsum(r)+1:Lsum(r+1))=0;
-        //end
-        for(int i = 0; i < q; i++){
-            if (Thread.currentThread().isInterrupted()) {
-                break;
-            }
-
-            grad.phi.viewPart(lcumsum[i], lcumsum[i], l[i], l[i]).assign(0);
-        }
-
-        //gradphi=tril(gradphi)'+triu(gradphi);
-        DoubleMatrix2D lowerPhi = alg.transpose(lowerTri(grad.phi.copy(), 0));
-        upperTri(grad.phi, 0).assign(lowerPhi, Functions.plus);
-
-        /*
-        for s=1:p
-            gradbetad(s)=-n/(2*betad(s))+1/2*norm(res(:,s))^2-res(:,s)'*(Xbeta(:,s)+Dtheta(:,s));
-        end
-         */
-        grad.betad = factory1D.make(xDat.columns());
-        for(int i = 0; i < p; i++){
-            if (Thread.currentThread().isInterrupted()) {
-                break;
-            }
-
-            grad.betad.set(i, -n / (2.0 * par.betad.get(i)) + alg.norm2(negLoss.viewColumn(i)) / 2.0 -
-                    alg.mult(negLoss.viewColumn(i), xBeta.viewColumn(i).copy().assign(dTheta.viewColumn(i), Functions.plus)));
-        }
-
-        grad.alpha1.assign(Functions.div((double) n));
-        grad.alpha2.assign(Functions.div((double) n));
-        grad.betad.assign(Functions.div((double) n));
-        grad.beta.assign(Functions.div((double) n));
-        grad.theta.assign(Functions.div((double) n));
-        grad.phi.assign(Functions.div((double) n));
-
-        return grad.toMatrix1D();
+        double[] grad = new double[parIn.size()];
+        likelihood.valueAndGradient(parIn.toArray(), grad);
+        return factory1D.make(grad);
     }
 
     /**
@@ -918,8 +553,6 @@ public class MGM extends ConvexProximal implements GraphSearch{
         //penbeta = t(1).*(wv(1:p)'*wv(1:p));
         //betascale=zeros(size(beta));
         //betascale=max(0,1-penbeta./abs(beta));
-        DoubleMatrix2D weightMat = alg.multOuter(weights,
-                weights, null);
         DoubleMatrix2D betaWeight = weightMat.viewPart(0, 0, p, p);
         DoubleMatrix2D betascale = betaWeight.copy().assign(Functions.mult(-tlam.get(0)));
         betascale.assign(par.beta.copy().assign(Functions.abs), Functions.div);
@@ -1035,8 +668,6 @@ public class MGM extends ConvexProximal implements GraphSearch{
         //penbeta = t(1).*(wv(1:p)'*wv(1:p));
         //betascale=zeros(size(beta));
         //betascale=max(0,1-penbeta./abs(beta));
-        DoubleMatrix2D weightMat = alg.multOuter(weights,
-                weights, null);
         DoubleMatrix2D betaWeight = weightMat.viewPart(0, 0, p, p);
         DoubleMatrix2D betascale = betaWeight.copy().assign(Functions.mult(-tlam.get(0)));
         DoubleMatrix2D absBeta = par.beta.copy().assign(Functions.abs);
@@ -1343,6 +974,45 @@ public class MGM extends ConvexProximal implements GraphSearch{
         return graphFromMGM();
     }
 
+    /**
+     * Sets the penalties for the next fit. The current parameters are kept, so the next fit starts from the solution
+     * for the previous penalties.
+     *
+     * @param lambda three values for cc, cd, and dd edges respectively
+     */
+    public void setLambda(double[] lambda){
+        if(lambda.length != 3)
+            throw new IllegalArgumentException("Lambda should have three values for cc, cd, and dd edges respectively");
+
+        this.lambda = factory1D.make(lambda);
+    }
+
+    /**
+     * Fits the model along a path of penalties, each fit warm started from the solution of the one before it. Paths
+     * are cheapest when they run from large to small penalties, since the early solutions are sparse and the later
+     * ones start near their own. When done, the model holds the fit for the last penalties on the path.
+     *
+     * @param lambdas each row has three values for cc, cd, and dd edges respectively
+     * @return the graph for each row of lambdas, in the same order
+     */
+    public List<Graph> searchPath(double[][] lambdas){
+        long startTime = System.currentTimeMillis();
+        List<Graph> graphs = new ArrayList<>();
+
+        for(double[] lambda : lambdas){
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+
+            setLambda(lambda);
+            learnEdges(1000);
+            graphs.add(graphFromMGM());
+        }
+
+        elapsedTime = System.currentTimeMillis() - startTime;
+        return graphs;
+    }
+
     /**
      * Return time of execution for learning.
      * @return
@@ -1356,40 +1026,6 @@ public class MGM extends ConvexProximal implements GraphSearch{
      * PRIVATE UTILS
      */
     //Utils
-    //sum rows together if marg == 1 and cols together if marg == 2
-    //Using row-major speeds up marg=1 5x
-    private static DoubleMatrix1D margSum(DoubleMatrix2D mat, int marg){
-        int n = 0;
-        DoubleMatrix1D vec = null;
-        DoubleFactory1D fac = DoubleFactory1D.dense;
-
-        if(marg==1){
-            n = mat.columns();
-            vec = fac.make(n);
-            for (int j = 0; j < mat.rows(); j++){
-                if (Thread.currentThread().isInterrupted()) {
-                    break;
-                }
-
-                for (int i = 0; i < n; i++){
-                    vec.setQuick(i, vec.getQuick(i) + mat.getQuick(j,i));
-                }
-            }
-        } else if (marg ==2){
-            n = mat.rows();
-            vec = fac.make(n);
-            for (int i = 0; i < n; i++) {
-                if (Thread.currentThread().isInterrupted()) {
-                    break;
-                }
-
-                vec.setQuick(i, mat.viewRow(i).zSum());
-            }
-        }
-
-        return vec;
-    }
-
     //zeros out everthing below di-th diagonal
     public static DoubleMatrix2D upperTri(DoubleMatrix2D mat, int di){
         for(int i = Math.max(-di + 1, 0); i < mat.rows(); i++){
@@ -1409,25 +1045,6 @@ public class MGM extends ConvexProximal implements GraphSearch{
         return mat;
     }
 
-    //zeros out everthing above di-th diagonal
-    private static DoubleMatrix2D lowerTri(DoubleMatrix2D mat, int di){
-        for(int i = 0; i < mat.rows() - Math.max(di + 1, 0); i++){
-            if (Thread.currentThread().isInterrupted()) {
-                break;
-            }
-
-            for(int j = Math.max(i + di + 1, 0); j <  mat.rows(); j++){
-                if (Thread.currentThread().isInterrupted()) {
-                    break;
-                }
-
-                mat.set(i,j,0);
-            }
-        }
-
-        return mat;
-    }
-
     // should move somewhere else...
     private static double norm2(DoubleMatrix2D mat){
         //return Math.sqrt(mat.copy().assign(Functions.pow(2)).zSum());
@@ -0,0 +1,446 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.pitt.csb.mgm;
+
+import cern.colt.matrix.DoubleMatrix2D;
+import edu.cmu.tetrad.util.ExecutionService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * The smooth part of the MGM objective, the negative log pseudolikelihood of Lee and Hastie, with its gradient,
+ * evaluated on plain arrays for the flattened parameter vectors of MGM.MGMParams.
+ * <p>
+ * The work is split in two passes, each run in parallel on the shared ExecutionService. The first pass goes over
+ * blocks of rows, computing the residuals of the continuous variables and the conditional probabilities of the
+ * discrete ones. The second pass goes over columns of the gradient. Under the penalties most of beta, theta and phi
+ * are zero, so for each evaluation the nonzero edge parameters are collected into lists (an active set) and the
+ * fitted values cost O(n * number of nonzero parameters) rather than O(n p^2); products with the dummy coded
+ * discrete data are done by looking up the observed level rather than by multiplying by the 0/1 dummy matrix.
+ * <p>
+ * Rows are split into blocks of a fixed size, so results do not depend on the number of threads.
+ *
+ * @see MGM#smooth
+ */
+final class PseudoLikelihood {
+
+    // The number of rows handled by each task in the first pass.
+    private static final int ROWS_PER_BLOCK = 256;
+
+    private final int n;
+    private final int p;
+    private final int q;
+    private final int lsum;
+    private final int[] l;
+    private final int[] lcumsum;
+
+    // Continuous data, by column: x[k][i].
+    private final double[][] x;
+
+    // Discrete data, by column, as 0-based levels: y[r][i].
+    private final int[][] y;
+
+    // The variable and level of each dummy column.
+    private final int[] varOf;
+    private final int[] levelOf;
+
+    /**
+     * @param xDat Continuous data, n x p.
+     * @param yDat Discrete data, n x q, coded as 1-based levels.
+     * @param l    The number of levels of each discrete variable.
+     */
+    PseudoLikelihood(DoubleMatrix2D xDat, DoubleMatrix2D yDat, int[] l) {
+        this.n = xDat.rows();
+        this.p = xDat.columns();
+        this.q = yDat.columns();
+        this.l = l.clone();
+
+        this.lcumsum = new int[q + 1];
+        for (int r = 0; r < q; r++) lcumsum[r + 1] = lcumsum[r] + l[r];
+        this.lsum = lcumsum[q];
+
+        this.x = new double[p][n];
+        for (int k = 0; k < p; k++) {
+            for (int i = 0; i < n; i++) {
+                x[k][i] = xDat.getQuick(i, k);
+            }
+        }
+
+        this.y = new int[q][n];
+        for (int r = 0; r < q; r++) {
+            for (int i = 0; i < n; i++) {
+                y[r][i] = (int) yDat.getQuick(i, r) - 1;
+            }
+        }
+
+        this.varOf = new int[lsum];
+        this.levelOf = new int[lsum];
+
+        for (int r = 0; r < q; r++) {
+            for (int a = 0; a < l[r]; a++) {
+                varOf[lcumsum[r] + a] = r;
+                levelOf[lcumsum[r] + a] = a;
+            }
+        }
+    }
+
+    /**
+     * @param par The flattened parameters.
+     * @return the negative log pseudolikelihood divided by n.
+     */
+    double value(double[] par) {
+        return valueAndGradient(par, null);
+    }
+
+    /**
+     * @param par  The flattened parameters.
+     * @param grad Receives the flattened gradient, if not null; must have the length of par.
+     * @return the negative log pseudolikelihood divided by n.
+     */
+    double valueAndGradient(double[] par, double[] grad) {
+        final Layout lay = new Layout();
+        final boolean withGradient = grad != null;
+
+        final double[] betad = new double[p];
+        final double[] alpha1 = new double[p];
+        final double[] alpha2 = new double[lsum];
+
+        for (int s = 0; s < p; s++) {
+            betad[s] = par[lay.betad + s];
+            alpha1[s] = par[lay.alpha1 + s];
+        }
+
+        System.arraycopy(par, lay.alpha2, alpha2, 0, lsum);
+
+        // Active sets. beta and phi are symmetrized from their upper triangles, phi without the blocks within a
+        // discrete variable; the entries for the continuous fits are divided by betad.
+        final Sparse bCols = new Sparse(p);
+        final Sparse tCols = new Sparse(p);
+        final Sparse tRows = new Sparse(lsum);
+        final Sparse fCols = new Sparse(lsum);
+
+        for (int s = 0; s < p; s++) {
+            for (int k = 0; k < p; k++) {
+                if (k == s) continue;
+                double v = k < s ? par[lay.beta + s * p + k] : par[lay.beta + k * p + s];
+                if (v != 0) bCols.add(s, k, v / betad[s]);
+            }
+
+            for (int m = 0; m < lsum; m++) {
+                double v = par[lay.theta + s * lsum + m];
+                if (v != 0) tCols.add(s, m, v / betad[s]);
+            }
+        }
+
+        for (int m = 0; m < lsum; m++) {
+            for (int k = 0; k < p; k++) {
+                double v = par[lay.theta + k * lsum + m];
+                if (v != 0) tRows.add(m, k, v);
+            }
+
+            for (int a = 0; a < lsum; a++) {
+                if (varOf[a] == varOf[m]) continue;
+                double v = a < m ? par[lay.phi + m * lsum + a] : par[lay.phi + a * lsum + m];
+                if (v != 0) fCols.add(m, a, v);
+            }
+        }
+
+        // First pass, over blocks of rows.
+        final double[][] res = withGradient ? new double[p][n] : null;
+        final double[][] wx = withGradient ? new double[lsum][n] : null;
+        final int numBlocks = (n + ROWS_PER_BLOCK - 1) / ROWS_PER_BLOCK;
+        final RowSums[] sums = new RowSums[numBlocks];
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+
+        for (int b = 0; b < numBlocks; b++) {
+            final int block = b;
+
+            tasks.add(() -> {
+                int from = block * ROWS_PER_BLOCK;
+                int to = Math.min(n, from + ROWS_PER_BLOCK);
+                sums[block] = rows(from, to, betad, alpha1, alpha2, bCols, tCols, tRows, fCols, res, wx);
+                return null;
+            });
+        }
+
+        ExecutionService.getInstance().invokeAllAndGet(tasks);
+
+        double sqloss = 0.0;
+        double catloss = 0.0;
+
+        for (RowSums s : sums) {
+            sqloss += s.sqloss;
+            catloss += s.catloss;
+        }
+
+        for (int s = 0; s < p; s++) {
+            sqloss -= n / 2.0 * Math.log(betad[s]);
+        }
+
+        if (withGradient) {
+            gradient(lay, betad, sums, res, wx, grad);
+        }
+
+        return (sqloss + catloss) / n;
+    }
+
+    //===============================PRIVATE METHODS==========================//
+
+    private RowSums rows(int from, int to, double[] betad, double[] alpha1, double[] alpha2,
+                         Sparse bCols, Sparse tCols, Sparse tRows, Sparse fCols,
+                         double[][] res, double[][] wx) {
+        RowSums sums = new RowSums(res != null);
+        double[] w = new double[lsum];
+
+        for (int i = from; i < to; i++) {
+            if (Thread.currentThread().isInterrupted()) break;
+
+            for (int s = 0; s < p; s++) {
+                double fit = 0.0;
+
+                int[] bIdx = bCols.index[s];
+                double[] bVal = bCols.value[s];
+                for (int t = 0; t < bCols.size[s]; t++) fit += x[bIdx[t]][i] * bVal[t];
+
+                int[] tIdx = tCols.index[s];
+                double[] tVal = tCols.value[s];
+                for (int t = 0; t < tCols.size[s]; t++) {
+                    int m = tIdx[t];
+                    if (y[varOf[m]][i] == levelOf[m]) fit += tVal[t];
+                }
+
+                double loss = x[s][i] - alpha1[s] - fit;
+                sums.sqloss += 0.5 * loss * loss * betad[s];
+
+                if (res != null) {
+                    res[s][i] = -loss;
+                    sums.resSum[s] -= loss;
+                    sums.resSq[s] += loss * loss;
+                    sums.resFit[s] -= loss * fit;
+                }
+            }
+
+            for (int m = 0; m < lsum; m++) {
+                double v = alpha2[m];
+
+                int[] tIdx = tRows.index[m];
+                double[] tVal = tRows.value[m];
+                for (int t = 0; t < tRows.size[m]; t++) v += x[tIdx[t]][i] * tVal[t];
+
+                int[] fIdx = fCols.index[m];
+                double[] fVal = fCols.value[m];
+                for (int t = 0; t < fCols.size[m]; t++) {
+                    int a = fIdx[t];
+                    if (y[varOf[a]][i] == levelOf[a]) v += fVal[t];
+                }
+
+                w[m] = v;
+            }
+
+            for (int r = 0; r < q; r++) {
+                int start = lcumsum[r];
+                int observed = start + y[r][i];
+
+                double max = Double.NEGATIVE_INFINITY;
+                for (int m = start; m < start + l[r]; m++) max = Math.max(max, w[m]);
+
+                double sum = 0.0;
+                for (int m = start; m < start + l[r]; m++) sum += Math.exp(w[m] - max);
+
+                double logsumexp = max + Math.log(sum);
+                sums.catloss += logsumexp - w[observed];
+
+                if (wx != null) {
+                    for (int m = start; m < start + l[r]; m++) {
+                        double prob = Math.exp(w[m] - logsumexp) - (m == observed ? 1.0 : 0.0);
+                        wx[m][i] = prob;
+                        sums.wxSum[m] += prob;
+                    }
+                }
+            }
+        }
+
+        return sums;
+    }
+
+    // Second pass, over columns of the gradient.
+    private void gradient(final Layout lay, final double[] betad, RowSums[] sums, final double[][] res,
+                          final double[][] wx, final double[] grad) {
+        final double[][] xtRes = new double[p][];
+        final double[][] thetaGrad = new double[p][];
+        final double[][] dtWx = new double[lsum][];
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+
+        for (int c = 0; c < p; c++) {
+            final int s = c;
+
+            tasks.add(() -> {
+                // xtRes[s][k] = X(:, k)' res(:, s).
+                double[] g = new double[p];
+                for (int k = 0; k < p; k++) g[k] = dot(x[k], res[s]);
+                xtRes[s] = g;
+
+                // thetaGrad[s][m] = D(:, m)' res(:, s) + X(:, s)' wx(:, m).
+                double[] t = new double[lsum];
+                double[] rs = res[s];
+
+                for (int i = 0; i < n; i++) {
+                    for (int r = 0; r < q; r++) {
+                        t[lcumsum[r] + y[r][i]] += rs[i];
+                    }
+                }
+
+                for (int m = 0; m < lsum; m++) t[m] += dot(x[s], wx[m]);
+                thetaGrad[s] = t;
+                return null;
+            });
+        }
+
+        for (int c = 0; c < lsum; c++) {
+            final int m = c;
+
+            tasks.add(() -> {
+                // dtWx[m][a] = D(:, a)' wx(:, m).
+                double[] f = new double[lsum];
+                double[] wm = wx[m];
+
+                for (int i = 0; i < n; i++) {
+                    for (int r = 0; r < q; r++) {
+                        f[lcumsum[r] + y[r][i]] += wm[i];
+                    }
+                }
+
+                dtWx[m] = f;
+                return null;
+            });
+        }
+
+        ExecutionService.getInstance().invokeAllAndGet(tasks);
+
+        double[] resSum = new double[p];
+        double[] resSq = new double[p];
+        double[] resFit = new double[p];
+        double[] wxSum = new double[lsum];
+
+        for (RowSums s : sums) {
+            for (int k = 0; k < p; k++) {
+                resSum[k] += s.resSum[k];
+                resSq[k] += s.resSq[k];
+                resFit[k] += s.resFit[k];
+            }
+
+            for (int m = 0; m < lsum; m++) wxSum[m] += s.wxSum[m];
+        }
+
+        Arrays.fill(grad, 0.0);
+
+        // beta: upper triangle only, g(i, j) + g(j, i).
+        for (int j = 0; j < p; j++) {
+            for (int i = 0; i < j; i++) {
+                grad[lay.beta + j * p + i] = (xtRes[j][i] + xtRes[i][j]) / n;
+            }
+        }
+
+        for (int s = 0; s < p; s++) {
+            grad[lay.betad + s] = (-n / (2.0 * betad[s]) + resSq[s] / 2.0 - resFit[s]) / n;
+            grad[lay.alpha1 + s] = betad[s] * resSum[s] / n;
+
+            for (int m = 0; m < lsum; m++) {
+                grad[lay.theta + s * lsum + m] = thetaGrad[s][m] / n;
+            }
+        }
+
+        // phi: upper triangle only, outside the blocks within a discrete variable, g(a, b) + g(b, a).
+        for (int b = 0; b < lsum; b++) {
+            for (int a = 0; a <= b; a++) {
+                if (varOf[a] == varOf[b]) continue;
+                grad[lay.phi + b * lsum + a] = (dtWx[b][a] + dtWx[a][b]) / n;
+            }
+        }
+
+        for (int m = 0; m < lsum; m++) {
+            grad[lay.alpha2 + m] = wxSum[m] / n;
+        }
+    }
+
+    private static double dot(double[] a, double[] b) {
+        double sum = 0.0;
+        for (int i = 0; i < a.length; i++) sum += a[i] * b[i];
+        return sum;
+    }
+
+    // Offsets of the parameter blocks in a flattened parameter vector; matrices are column major.
+    private final class Layout {
+        final int beta = 0;
+        final int betad = p * p;
+        final int theta = betad + p;
+        final int phi = theta + p * lsum;
+        final int alpha1 = phi + lsum * lsum;
+        final int alpha2 = alpha1 + p;
+    }
+
+    // Sums over a block of rows.
+    private final class RowSums {
+        double sqloss = 0.0;
+        double catloss = 0.0;
+        final double[] resSum;
+        final double[] resSq;
+        final double[] resFit;
+        final double[] wxSum;
+
+        RowSums(boolean withGradient) {
+            resSum = withGradient ? new double[p] : null;
+            resSq = withGradient ? new double[p] : null;
+            resFit = withGradient ? new double[p] : null;
+            wxSum = withGradient ? new double[lsum] : null;
+        }
+    }
+
+    // For each of a number of columns (or rows), the indices and values of its nonzero entries.
+    private static final class Sparse {
+        final int[][] index;
+        final double[][] value;
+        final int[] size;
+
+        Sparse(int count) {
+            index = new int[count][4];
+            value = new double[count][4];
+            size = new int[count];
+        }
+
+        void add(int c, int i, double v) {
+            if (size[c] == index[c].length) {
+                index[c] = Arrays.copyOf(index[c], 2 * size[c]);
+                value[c] = Arrays.copyOf(value[c], 2 * size[c]);
+            }
+
+            index[c][size[c]] = i;
+            value[c][size[c]] = v;
+            size[c]++;
+        }
+    }
+}
@@ -29,7 +29,7 @@ import edu.cmu.tetrad.data.DataSet;
 import edu.cmu.tetrad.graph.Graph;
 import edu.cmu.tetrad.graph.GraphUtils;
 import edu.cmu.tetrad.graph.Node;
-import edu.cmu.tetrad.util.ForkJoinPoolInstance;
+import edu.cmu.tetrad.util.ExecutionService;
 import edu.pitt.csb.mgm.MGM;
 import edu.pitt.csb.mgm.MixedUtils;
 
@@ -78,7 +78,7 @@ public class StabilityUtils {
 
         final int[][] samps = subSampleNoReplacement(data.getNumRows(), b, N);
 
-        final ForkJoinPool pool = ForkJoinPoolInstance.getInstance().getPool();
+        final ForkJoinPool pool = ExecutionService.getInstance().getPool();
 
         class StabilityAction extends RecursiveAction{
             private int chunk;
@@ -0,0 +1,245 @@
+package edu.pitt.dbmi.algo.resampling;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.cmu.tetrad.graph.Edge;
+import edu.cmu.tetrad.graph.Edge.Property;
+import edu.cmu.tetrad.graph.EdgeTypeProbability;
+import edu.cmu.tetrad.graph.EdgeTypeProbability.EdgeType;
+import edu.cmu.tetrad.graph.Endpoint;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.Node;
+
+/**
+ * Counts, for every pair of nodes, how many of the resampled graphs have each
+ * kind of edge between them. Graphs are added one at a time as their searches
+ * finish, so the graphs themselves need not be kept to build the ensemble.
+ */
+public class EdgeFrequencies {
+
+	// Node pair (names, in order) to edge string to the number of graphs
+	// having that edge.
+	private final Map<List<String>, Map<String, Integer>> edgeCounts = new HashMap<>();
+
+	// The counts as of the last call to getMaxChangeSinceLastCheck().
+	private Map<List<String>, Map<String, Integer>> lastEdgeCounts = new HashMap<>();
+
+	private int numGraphs = 0;
+
+	private int lastNumGraphs = 0;
+
+	private List<Node> nodes = null;
+
+	/**
+	 * Adds the edges of the given graph to the counts.
+	 */
+	public synchronized void add(Graph graph) {
+		if (nodes == null) {
+			nodes = graph.getNodes();
+		}
+
+		for (Edge e : graph.getEdges()) {
+			Node node1 = e.getNode1();
+			Node node2 = e.getNode2();
+			boolean swap = node1.getName().compareTo(node2.getName()) > 0;
+
+			String edgeString = e.toString();
+
+			// Edges with the same endpoint at both ends are written with the
+			// first node of the pair first.
+			if (swap && e.getEndpoint1() == e.getEndpoint2()) {
+				Edge edge = new Edge(node2, node1, e.getEndpoint1(), e.getEndpoint2());
+				for (Property property : e.getProperties()) {
+					edge.addProperty(property);
+				}
+				edgeString = edge.toString();
+			}
+
+			List<String> pair = getPair(node1, node2);
+			Map<String, Integer> counts = edgeCounts.computeIfAbsent(pair, k -> new HashMap<>());
+			counts.merge(edgeString, 1, Integer::sum);
+		}
+
+		numGraphs++;
+	}
+
+	/**
+	 * @return the number of graphs added.
+	 */
+	public synchronized int getNumGraphs() {
+		return numGraphs;
+	}
+
+	/**
+	 * @return the nodes of the first graph added, or null if none has been.
+	 */
+	public synchronized List<Node> getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * @return the fraction of the graphs having each kind of edge between the
+	 *         given nodes, including no edge, or null if none of them has an
+	 *         edge there.
+	 */
+	public synchronized List<EdgeTypeProbability> getProbabilities(Node node1, Node node2) {
+		Map<String, Integer> edgeDist = edgeCounts.get(getPair(node1, node2));
+
+		if (edgeDist == null || edgeDist.isEmpty()) {
+			return null;
+		}
+
+		int n = numGraphs;
+		int no_edge_num = n;
+
+		List<EdgeTypeProbability> edgeTypeProbabilities = new ArrayList<>();
+
+		for (String edgeString : edgeDist.keySet()) {
+			int edge_num = edgeDist.get(edgeString);
+			no_edge_num -= edge_num;
+			double probability = (double) edge_num / n;
+
+			String[] token = edgeString.split("\\s+");
+			String n1 = token[0];
+			String arc = token[1];
+			String n2 = token[2];
+
+			char end1 = arc.charAt(0);
+			char end2 = arc.charAt(2);
+
+			Endpoint _end1, _end2;
+
+			if (end1 == '<') {
+				_end1 = Endpoint.ARROW;
+			} else if (end1 == 'o') {
+				_end1 = Endpoint.CIRCLE;
+			} else if (end1 == '-') {
+				_end1 = Endpoint.TAIL;
+			} else {
+				throw new IllegalArgumentException();
+			}
+
+			if (end2 == '>') {
+				_end2 = Endpoint.ARROW;
+			} else if (end2 == 'o') {
+				_end2 = Endpoint.CIRCLE;
+			} else if (end2 == '-') {
+				_end2 = Endpoint.TAIL;
+			} else {
+				throw new IllegalArgumentException();
+			}
+
+			if (node1.getName().equalsIgnoreCase(n2) && node2.getName().equalsIgnoreCase(n1)) {
+				Endpoint tmp = _end1;
+				_end1 = _end2;
+				_end2 = tmp;
+			}
+
+			EdgeType edgeType = EdgeType.nil;
+
+			if (_end1 == Endpoint.TAIL && _end2 == Endpoint.ARROW) {
+				edgeType = EdgeType.ta;
+			}
+			if (_end1 == Endpoint.ARROW && _end2 == Endpoint.TAIL) {
+				edgeType = EdgeType.at;
+			}
+			if (_end1 == Endpoint.CIRCLE && _end2 == Endpoint.ARROW) {
+				edgeType = EdgeType.ca;
+			}
+			if (_end1 == Endpoint.ARROW && _end2 == Endpoint.CIRCLE) {
+				edgeType = EdgeType.ac;
+			}
+			if (_end1 == Endpoint.CIRCLE && _end2 == Endpoint.CIRCLE) {
+				edgeType = EdgeType.cc;
+			}
+			if (_end1 == Endpoint.ARROW && _end2 == Endpoint.ARROW) {
+				edgeType = EdgeType.aa;
+			}
+			if (_end1 == Endpoint.TAIL && _end2 == Endpoint.TAIL) {
+				edgeType = EdgeType.tt;
+			}
+
+			EdgeTypeProbability etp = new EdgeTypeProbability(edgeType, probability);
+
+			// Edge's properties
+			if (token.length > 3) {
+				for (int i = 3; i < token.length; i++) {
+					etp.addProperty(Edge.Property.valueOf(token[i]));
+				}
+			}
+
+			edgeTypeProbabilities.add(etp);
+		}
+
+		if (no_edge_num < n) {
+			edgeTypeProbabilities.add(new EdgeTypeProbability(EdgeType.nil, (double) no_edge_num / n));
+		}
+
+		return edgeTypeProbabilities;
+	}
+
+	/**
+	 * @return the largest change in the frequency of any kind of edge,
+	 *         including no edge, between any pair of nodes since the last call
+	 *         to this method, or 1 on the first call. Used to stop resampling
+	 *         once the frequencies have settled.
+	 */
+	public synchronized double getMaxChangeSinceLastCheck() {
+		double maxChange = 0.0;
+
+		if (lastNumGraphs == 0) {
+			maxChange = 1.0;
+		} else {
+			for (List<String> pair : edgeCounts.keySet()) {
+				Map<String, Integer> counts = edgeCounts.get(pair);
+				Map<String, Integer> lastCounts = lastEdgeCounts.get(pair);
+
+				int sum = 0;
+				int lastSum = 0;
+
+				for (String edgeString : counts.keySet()) {
+					int count = counts.get(edgeString);
+					int lastCount = lastCounts == null ? 0 : lastCounts.getOrDefault(edgeString, 0);
+
+					sum += count;
+					lastSum += lastCount;
+
+					double change = Math.abs((double) count / numGraphs - (double) lastCount / lastNumGraphs);
+					maxChange = Math.max(maxChange, change);
+				}
+
+				double noEdgeChange = Math.abs((double) (numGraphs - sum) / numGraphs
+						- (double) (lastNumGraphs - lastSum) / lastNumGraphs);
+				maxChange = Math.max(maxChange, noEdgeChange);
+			}
+		}
+
+		lastEdgeCounts = new HashMap<>();
+
+		for (List<String> pair : edgeCounts.keySet()) {
+			lastEdgeCounts.put(pair, new HashMap<>(edgeCounts.get(pair)));
+		}
+
+		lastNumGraphs = numGraphs;
+
+		return maxChange;
+	}
+
+	private static List<String> getPair(Node node1, Node node2) {
+		List<String> pair = new ArrayList<>(2);
+
+		if (node1.getName().compareTo(node2.getName()) <= 0) {
+			pair.add(node1.getName());
+			pair.add(node2.getName());
+		} else {
+			pair.add(node2.getName());
+			pair.add(node1.getName());
+		}
+
+		return pair;
+	}
+
+}
@@ -4,11 +4,15 @@
 package edu.pitt.dbmi.algo.resampling;
 
 import java.io.PrintStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import edu.cmu.tetrad.algcomparison.algorithm.Algorithm;
 import edu.cmu.tetrad.algcomparison.algorithm.MultiDataSetAlgorithm;
@@ -18,7 +22,10 @@ import edu.cmu.tetrad.data.DataUtils;
 import edu.cmu.tetrad.data.IKnowledge;
 import edu.cmu.tetrad.data.Knowledge2;
 import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.util.ExecutionService;
 import edu.cmu.tetrad.util.Parameters;
+import edu.cmu.tetrad.util.RandomUtil;
+import edu.cmu.tetrad.util.SplittableRandomGenerator;
 import edu.pitt.dbmi.algo.resampling.task.GeneralResamplingSearchRunnable;
 
 /**
@@ -47,9 +54,17 @@ public class GeneralResamplingSearch {
 
 	private List<Graph> PAGs = Collections.synchronizedList(new ArrayList<>());
 
-	// private ForkJoinPool pool = null;
+	private EdgeFrequencies edgeFrequencies = new EdgeFrequencies();
 
-	private final ExecutorService pool;
+	/**
+	 * Resampling stops early once no edge frequency has changed by more than
+	 * this over the last window of resamples; 0 to always run them all.
+	 */
+	private double earlyStoppingTolerance = 0;
+
+	private int earlyStoppingWindow = 20;
+
+	private final ExecutionService executor = ExecutionService.getInstance();
 
 	private DataSet data = null;
 
@@ -71,18 +86,22 @@ public class GeneralResamplingSearch {
 
 	public GeneralResamplingSearch(DataSet data) {
 		this.data = data;
-		// pool = ForkJoinPoolInstance.getInstance().getPool();
-		pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
 	}
 
 	public GeneralResamplingSearch(List<DataSet> dataSets) {
 		this.dataSets = dataSets;
-		// pool = ForkJoinPoolInstance.getInstance().getPool();
-		pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
 	}
 
 	public void addPAG(Graph pag) {
 		PAGs.add(pag);
+		edgeFrequencies.add(pag);
+	}
+
+	/**
+	 * @return the edge frequencies of the graphs found by the last search.
+	 */
+	public EdgeFrequencies getEdgeFrequencies() {
+		return edgeFrequencies;
 	}
 
 	public void setAlgorithm(Algorithm algorithm) {
@@ -111,6 +130,29 @@ public class GeneralResamplingSearch {
 		this.runParallel = runParallel;
 	}
 
+	/**
+	 * Stops resampling early once no edge frequency, including that of no
+	 * edge, has changed by more than the given tolerance over the last window
+	 * of resamples.
+	 *
+	 * @param earlyStoppingTolerance
+	 *            the tolerance; 0 to always run all of the resamples.
+	 */
+	public void setEarlyStoppingTolerance(double earlyStoppingTolerance) {
+		if (earlyStoppingTolerance < 0)
+			throw new IllegalArgumentException("Tolerance must be non-negative: " + earlyStoppingTolerance);
+		this.earlyStoppingTolerance = earlyStoppingTolerance;
+	}
+
+	/**
+	 * Sets the number of resamples between checks for early stopping.
+	 */
+	public void setEarlyStoppingWindow(int earlyStoppingWindow) {
+		if (earlyStoppingWindow < 1)
+			throw new IllegalArgumentException("Window must be at least 1: " + earlyStoppingWindow);
+		this.earlyStoppingWindow = earlyStoppingWindow;
+	}
+
 	public void setAddOriginalDataset(boolean addOriginalDataset) {
 		this.addOriginalDataset = addOriginalDataset;
 	}
@@ -166,227 +208,196 @@ public class GeneralResamplingSearch {
 	public List<Graph> search() {
 
 		PAGs.clear();
+		edgeFrequencies = new EdgeFrequencies();
 		parameters.set("numberResampling", 0); // This needs to be set to zero to not loop indefinitely
 
+		// Each resample draws from its own stream of this seed, so the results
+		// don't depend on the number of threads.
+		long jobSeed = RandomUtil.getInstance().nextLong();
+
+		// Search again with original dataset
+		Callable<Graph> originalTask = null;
+
+		if (resamplingWithReplacement && addOriginalDataset) {
+			originalTask = newTask(false, jobSeed, numberResampling);
+		}
+
 		if (!this.runParallel) {
 			// Running in the sequential form
 			if (verbose) {
 				out.println("Running Resamplings in Sequential Mode, numberResampling = " + numberResampling);
 			}
+
 			for (int i1 = 0; i1 < this.numberResampling; i1++) {
-				GeneralResamplingSearchRunnable task = null;
-
-				// Bootstrapping
-				if (resamplingWithReplacement) {
-					if (data != null) {
-						DataSet dataSet = DataUtils.getBootstrapSample(data, (int)(data.getNumRows()*percentResampleSize/100.0));
-						task = new GeneralResamplingSearchRunnable(dataSet, algorithm, parameters, this, verbose);
-					} else {
-						List<DataModel> dataModels = new ArrayList<>();
-						for (DataSet data : dataSets) {
-							DataSet dataSet = DataUtils.getBootstrapSample(data, (int)(data.getNumRows()*percentResampleSize/100.0));
-							dataModels.add(dataSet);
-						}
-						task = new GeneralResamplingSearchRunnable(dataModels, multiDataSetAlgorithm, parameters, this,
-								verbose);
-					}
-				// Sub-sampling
-				} else {
-					if (data != null) {
-						DataSet dataSet = DataUtils.getResamplingDataset(data, (int)(data.getNumRows()*percentResampleSize/100.0));
-						task = new GeneralResamplingSearchRunnable(dataSet, algorithm, parameters, this, verbose);
-					} else {
-						List<DataModel> dataModels = new ArrayList<>();
-						for (DataSet data : dataSets) {
-							DataSet dataSet = DataUtils.getResamplingDataset(data, (int)(data.getNumRows()*percentResampleSize/100.0));
-							dataModels.add(dataSet);
-						}
-						task = new GeneralResamplingSearchRunnable(dataModels, multiDataSetAlgorithm, parameters, this,
-								verbose);
-					}
-				}
+				addPAG(call(newTask(true, jobSeed, i1)));
 
-				if (initialGraph != null) {
-					task.setInitialGraph(initialGraph);
+				if (isConverged()) {
+					break;
 				}
-				task.setKnowledge(knowledge);
-				task.run();
 			}
-			
-			// Search again with original dataset
-			if (resamplingWithReplacement && addOriginalDataset) {
-				GeneralResamplingSearchRunnable task = null;
-				
-				if (data != null) {
-					task = new GeneralResamplingSearchRunnable(data, algorithm, parameters, this, verbose);
-				} else {
-					List<DataModel> dataModels = new ArrayList<>();
-					for (DataSet data : dataSets) {
-						dataModels.add(data);
-					}
-					task = new GeneralResamplingSearchRunnable(dataModels, multiDataSetAlgorithm, parameters, this,
-							verbose);
-				}
-				
-				if (initialGraph != null) {
-					task.setInitialGraph(initialGraph);
-				}
-				task.setKnowledge(knowledge);
-				task.run();
+
+			if (originalTask != null) {
+				addPAG(call(originalTask));
 			}
-			
 		} else {
 			// Running in the parallel multiThread form
 			if (verbose) {
 				out.println("Running Resamplings in Parallel Mode, numberResampling = " + numberResampling);
 			}
 
-			for (int i1 = 0; i1 < this.numberResampling; i1++) {
+			searchParallel(originalTask, jobSeed);
+		}
 
-				GeneralResamplingSearchRunnable task = null;
-
-				// Bootstrapping
-				if (resamplingWithReplacement) {
-					if (data != null) {
-						DataSet dataSet = DataUtils.getBootstrapSample(data, (int)(data.getNumRows()*percentResampleSize/100.0));
-						task = new GeneralResamplingSearchRunnable(dataSet, algorithm, parameters, this, verbose);
-					} else {
-						List<DataModel> dataModels = new ArrayList<>();
-						for (DataSet data : dataSets) {
-							DataSet dataSet = DataUtils.getBootstrapSample(data, (int)(data.getNumRows()*percentResampleSize/100.0));
-							dataModels.add(dataSet);
-						}
-						task = new GeneralResamplingSearchRunnable(dataModels, multiDataSetAlgorithm, parameters, this,
-								verbose);
-					}
-				// Sub-sampling
-				} else {
-					if (data != null) {
-						DataSet dataSet = DataUtils.getResamplingDataset(data, (int)(data.getNumRows()*percentResampleSize/100.0));
-						task = new GeneralResamplingSearchRunnable(dataSet, algorithm, parameters, this, verbose);
-					} else {
-						List<DataModel> dataModels = new ArrayList<>();
-						for (DataSet data : dataSets) {
-							DataSet dataSet = DataUtils.getResamplingDataset(data, (int)(data.getNumRows()*percentResampleSize/100.0));
-							dataModels.add(dataSet);
-						}
-						task = new GeneralResamplingSearchRunnable(dataModels, multiDataSetAlgorithm, parameters, this,
-								verbose);
-					}
-				}
+		parameters.set("numberResampling", numberResampling); // This needs to be reset back to the previous value
 
-				if (initialGraph != null) {
-					task.setInitialGraph(initialGraph);
-				}
-				task.setKnowledge(knowledge);
-				pool.submit(task);
-			}
-			
-			// Search again with original dataset
-			if (resamplingWithReplacement && addOriginalDataset) {
-				GeneralResamplingSearchRunnable task = null;
-				
-				if (data != null) {
-					task = new GeneralResamplingSearchRunnable(data, algorithm, parameters, this, verbose);
-				} else {
-					List<DataModel> dataModels = new ArrayList<>();
-					for (DataSet data : dataSets) {
-						dataModels.add(data);
-					}
-					task = new GeneralResamplingSearchRunnable(dataModels, multiDataSetAlgorithm, parameters, this,
-							verbose);
-				}
-				
-				if (initialGraph != null) {
-					task.setInitialGraph(initialGraph);
+		return PAGs;
+	}
+
+	/**
+	 * Keeps a window of resamples running and adds their graphs in the order
+	 * the resamples were submitted, so that resampled data sets are only made
+	 * as they are needed, the remaining resamples can be dropped once the
+	 * frequencies converge, and the graphs and the point at which resampling
+	 * stops are the same for any number of threads.
+	 */
+	private void searchParallel(Callable<Graph> originalTask, long jobSeed) {
+		Deque<Future<Graph>> pending = new ArrayDeque<>();
+
+		Future<Graph> original = originalTask == null ? null : executor.submit(originalTask);
+
+		int window = 2 * executor.getParallelism();
+		int submitted = 0;
+
+		while (submitted < numberResampling && submitted < window) {
+			pending.add(executor.submit(newTask(true, jobSeed, submitted)));
+			submitted++;
+		}
+
+		while (!pending.isEmpty()) {
+			addResult(pending.poll());
+
+			if (Thread.currentThread().isInterrupted()) {
+				executor.cancel(pending);
+				if (original != null) {
+					original.cancel(true);
 				}
-				task.setKnowledge(knowledge);
-				pool.submit(task);
+				return;
 			}
 
-			pool.shutdown();
+			if (isConverged()) {
+				executor.cancel(pending);
+				break;
+			}
 
-			while (!pool.isTerminated()) {
-				try {
-					Thread.sleep(1000);
-					// out.println("Waiting...");
-				} catch (InterruptedException e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
-				}
+			if (submitted < numberResampling) {
+				pending.add(executor.submit(newTask(true, jobSeed, submitted)));
+				submitted++;
 			}
-			// out.println("Is terminated: " + pool.isTerminated());
 		}
 
-		// If the pool is prematurely terminated, do sequentially
-		if (PAGs == null || PAGs.size() == 0) {
-			for (int i1 = 0; i1 < this.numberResampling; i1++) {
-				GeneralResamplingSearchRunnable task = null;
-
-				// Bootstrapping
-				if (resamplingWithReplacement) {
-					if (data != null) {
-						DataSet dataSet = DataUtils.getBootstrapSample(data, (int)(data.getNumRows()*percentResampleSize/100.0));
-						task = new GeneralResamplingSearchRunnable(dataSet, algorithm, parameters, this, verbose);
-					} else {
-						List<DataModel> dataModels = new ArrayList<>();
-						for (DataSet data : dataSets) {
-							DataSet dataSet = DataUtils.getBootstrapSample(data, (int)(data.getNumRows()*percentResampleSize/100.0));
-							dataModels.add(dataSet);
-						}
-						task = new GeneralResamplingSearchRunnable(dataModels, multiDataSetAlgorithm, parameters, this,
-								verbose);
-					}
-				// Sub-sampling
-				} else {
-					if (data != null) {
-						DataSet dataSet = DataUtils.getResamplingDataset(data, (int)(data.getNumRows()*percentResampleSize/100.0));
-						task = new GeneralResamplingSearchRunnable(dataSet, algorithm, parameters, this, verbose);
-					} else {
-						List<DataModel> dataModels = new ArrayList<>();
-						for (DataSet data : dataSets) {
-							DataSet dataSet = DataUtils.getResamplingDataset(data, (int)(data.getNumRows()*percentResampleSize/100.0));
-							dataModels.add(dataSet);
-						}
-						task = new GeneralResamplingSearchRunnable(dataModels, multiDataSetAlgorithm, parameters, this,
-								verbose);
-					}
-				}
+		if (original != null) {
+			addResult(original);
+		}
+	}
 
-				if (initialGraph != null) {
-					task.setInitialGraph(initialGraph);
-				}
-				task.setKnowledge(knowledge);
-				task.run();
+	private void addResult(Future<Graph> future) {
+		try {
+			addPAG(future.get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			e.getCause().printStackTrace();
+		} catch (CancellationException e) {
+			// Dropped by early stopping.
+		}
+	}
+
+	private boolean isConverged() {
+		if (earlyStoppingTolerance <= 0) {
+			return false;
+		}
+
+		int numGraphs = edgeFrequencies.getNumGraphs();
+
+		if (numGraphs == 0 || numGraphs % earlyStoppingWindow != 0) {
+			return false;
+		}
+
+		double maxChange = edgeFrequencies.getMaxChangeSinceLastCheck();
+
+		if (maxChange < earlyStoppingTolerance) {
+			if (verbose) {
+				out.println("Edge frequencies converged after " + numGraphs + " resamplings (max change = "
+						+ maxChange + ")");
 			}
-			
-			// Search again with original dataset
-			if (resamplingWithReplacement && addOriginalDataset) {
-				GeneralResamplingSearchRunnable task = null;
-				
-				if (data != null) {
-					task = new GeneralResamplingSearchRunnable(data, algorithm, parameters, this, verbose);
-				} else {
-					List<DataModel> dataModels = new ArrayList<>();
-					for (DataSet data : dataSets) {
-						dataModels.add(data);
-					}
-					task = new GeneralResamplingSearchRunnable(dataModels, multiDataSetAlgorithm, parameters, this,
-							verbose);
-				}
-				
-				if (initialGraph != null) {
-					task.setInitialGraph(initialGraph);
-				}
-				task.setKnowledge(knowledge);
-				task.run();
+
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * @param resample
+	 *            true to search a resample of the data, false to search the
+	 *            data itself.
+	 * @param jobSeed
+	 *            the seed of the streams of this search.
+	 * @param index
+	 *            the index of the task; the resampling and the search of the
+	 *            task draw from the stream with this index.
+	 */
+	private Callable<Graph> newTask(boolean resample, long jobSeed, long index) {
+		return () -> RandomUtil.getInstance().callInStream(SplittableRandomGenerator.forStream(jobSeed, index),
+				() -> newRunnable(resample).call());
+	}
+
+	private GeneralResamplingSearchRunnable newRunnable(boolean resample) {
+		GeneralResamplingSearchRunnable task = null;
+
+		if (data != null) {
+			DataSet dataSet = resample ? resample(data) : data;
+			task = new GeneralResamplingSearchRunnable(dataSet, algorithm, parameters, this, verbose);
+		} else {
+			List<DataModel> dataModels = new ArrayList<>();
+			for (DataSet data : dataSets) {
+				dataModels.add(resample ? resample(data) : data);
 			}
-			
+			task = new GeneralResamplingSearchRunnable(dataModels, multiDataSetAlgorithm, parameters, this,
+					verbose);
 		}
 
-		parameters.set("numberResampling", numberResampling); // This needs to be reset back to the previous value
+		if (initialGraph != null) {
+			task.setInitialGraph(initialGraph);
+		}
+		task.setKnowledge(knowledge);
 
-		return PAGs;
+		return task;
+	}
+
+	private static Graph call(Callable<Graph> task) {
+		try {
+			return task.call();
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	// Resampled data sets are views of the rows of the original data, not
+	// copies.
+	private DataSet resample(DataSet data) {
+		int sampleSize = (int) (data.getNumRows() * percentResampleSize / 100.0);
+
+		// Bootstrapping
+		if (resamplingWithReplacement) {
+			return DataUtils.getBootstrapView(data, sampleSize);
+		}
+		// Sub-sampling
+		else {
+			return DataUtils.getResamplingView(data, sampleSize);
+		}
 	}
 
 }
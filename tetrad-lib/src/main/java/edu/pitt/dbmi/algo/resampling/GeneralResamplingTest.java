@@ -14,9 +14,7 @@ import edu.cmu.tetrad.util.RandomUtil;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Created by mahdi on 1/16/17.
@@ -131,6 +129,22 @@ public class GeneralResamplingTest {
 		}
 	}
 
+	/**
+	 * Stops resampling early once no edge frequency has changed by more than
+	 * the given tolerance over the last window of resamples; 0 to always run
+	 * all of them.
+	 */
+	public void setEarlyStoppingTolerance(double earlyStoppingTolerance) {
+		this.resamplingSearch.setEarlyStoppingTolerance(earlyStoppingTolerance);
+	}
+
+	/**
+	 * Sets the number of resamples between checks for early stopping.
+	 */
+	public void setEarlyStoppingWindow(int earlyStoppingWindow) {
+		this.resamplingSearch.setEarlyStoppingWindow(earlyStoppingWindow);
+	}
+
 	public void setAddOriginalDataset(boolean addOriginalDataset) {
 		this.addOriginalDataset = addOriginalDataset;
 	}
@@ -230,6 +244,7 @@ public class GeneralResamplingTest {
 	}
 
 	private Graph generateSamplingGraph() {
+		EdgeFrequencies edgeFrequencies = resamplingSearch.getEdgeFrequencies();
 		Graph pag = null;
 		if(verbose){
 			out.println("PAGs: " + PAGs.size());
@@ -270,7 +285,7 @@ public class GeneralResamplingTest {
 			Node n2 = e.getNode2();
 			
 			// Test new probability method
-			List<EdgeTypeProbability> edgeTypeProbabilities = getProbability(n1, n2);
+			List<EdgeTypeProbability> edgeTypeProbabilities = edgeFrequencies.getProbabilities(n1, n2);
 			EdgeTypeProbability chosen_edge_type = null;
 			double max_edge_prob = 0;
 			double no_edge_prob = 0;
@@ -356,115 +371,6 @@ public class GeneralResamplingTest {
 		return graph;
 	}
 
-	private List<EdgeTypeProbability> getProbability(Node node1, Node node2){
-		Map<String, Integer> edgeDist = new HashMap<>();
-		int no_edge_num = 0;
-		for (Graph g : PAGs) {
-			Edge e = g.getEdge(node1, node2);
-			if(e != null) {				
-				String edgeString = e.toString();
-				if(e.getEndpoint1() == e.getEndpoint2() && node1.compareTo(e.getNode1()) != 0) {
-					Edge edge = new Edge(node1, node2, e.getEndpoint1(), e.getEndpoint2());
-					for(Property property : e.getProperties()) {
-						edge.addProperty(property);
-					}
-					edgeString = edge.toString();
-				}
-				Integer num_edge = edgeDist.get(edgeString);
-				if(num_edge == null) {
-					num_edge = 0;
-				}
-				num_edge = num_edge.intValue() + 1;
-				edgeDist.put(edgeString, num_edge);	
-			}else {
-				no_edge_num++;
-			}
-		}
-		int n = PAGs.size();
-		// Normalization
-		List<EdgeTypeProbability> edgeTypeProbabilities = edgeDist.size()==0?null:new ArrayList<>();
-		for(String edgeString : edgeDist.keySet()) {
-			int edge_num = edgeDist.get(edgeString);
-			double probability = (double) edge_num/n;
-			
-			String[] token = edgeString.split("\\s+");
-			String n1 = token[0];
-			String arc = token[1];
-			String n2 = token[2];
-			
-			char end1 = arc.charAt(0);
-            char end2 = arc.charAt(2);
-
-            Endpoint _end1, _end2;
-
-            if (end1 == '<') {
-                _end1 = Endpoint.ARROW;
-            } else if (end1 == 'o') {
-                _end1 = Endpoint.CIRCLE;
-            } else if (end1 == '-') {
-                _end1 = Endpoint.TAIL;
-            } else {
-                throw new IllegalArgumentException();
-            }
-
-            if (end2 == '>') {
-                _end2 = Endpoint.ARROW;
-            } else if (end2 == 'o') {
-                _end2 = Endpoint.CIRCLE;
-            } else if (end2 == '-') {
-                _end2 = Endpoint.TAIL;
-            } else {
-                throw new IllegalArgumentException();
-            }
-            
-            if(node1.getName().equalsIgnoreCase(n2) && node2.getName().equalsIgnoreCase(n1)) {
-            	Endpoint tmp = _end1;
-            	_end1 = _end2;
-            	_end2 = tmp;
-            }
-            
-            EdgeType edgeType = EdgeType.nil;
-            
-            if(_end1 == Endpoint.TAIL && _end2 == Endpoint.ARROW) {
-            	edgeType = EdgeType.ta;
-            }
-            if(_end1 == Endpoint.ARROW && _end2 == Endpoint.TAIL) {
-            	edgeType = EdgeType.at;
-            }
-            if(_end1 == Endpoint.CIRCLE && _end2 == Endpoint.ARROW) {
-            	edgeType = EdgeType.ca;
-            }
-            if(_end1 == Endpoint.ARROW && _end2 == Endpoint.CIRCLE) {
-            	edgeType = EdgeType.ac;
-            }
-            if(_end1 == Endpoint.CIRCLE && _end2 == Endpoint.CIRCLE) {
-            	edgeType = EdgeType.cc;
-            }
-            if(_end1 == Endpoint.ARROW && _end2 == Endpoint.ARROW) {
-            	edgeType = EdgeType.aa;
-            }
-            if(_end1 == Endpoint.TAIL && _end2 == Endpoint.TAIL) {
-            	edgeType = EdgeType.tt;
-            }
-            
-            EdgeTypeProbability etp = new EdgeTypeProbability(edgeType, probability);
-            
-            // Edge's properties
-            if(token.length > 3) {
-            	for(int i=3;i<token.length;i++) {
-            		etp.addProperty(Edge.Property.valueOf(token[i]));
-            	}
-            }
-            edgeTypeProbabilities.add(etp);
-		}
-		
-		if(no_edge_num < n && edgeTypeProbabilities != null) {
-			edgeTypeProbabilities.add(new EdgeTypeProbability(EdgeType.nil, (double)no_edge_num/n));
-		}
-		
-		return edgeTypeProbabilities;
-	}
-	
 	public static int[][] getAdjConfusionMatrix(Graph truth, Graph estimate) {
 		Graph complete = new EdgeListGraph(estimate.getNodes());
 		complete.fullyConnect(Endpoint.TAIL);
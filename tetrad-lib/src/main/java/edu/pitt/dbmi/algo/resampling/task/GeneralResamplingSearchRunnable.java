@@ -2,6 +2,7 @@ package edu.pitt.dbmi.algo.resampling.task;
 
 import java.io.PrintStream;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import edu.cmu.tetrad.algcomparison.algorithm.Algorithm;
 import edu.cmu.tetrad.algcomparison.algorithm.MultiDataSetAlgorithm;
@@ -21,7 +22,7 @@ import edu.pitt.dbmi.algo.resampling.GeneralResamplingSearch;
  * @author Chirayu (Kong) Wongchokprasitti, PhD
  * 
  */
-public class GeneralResamplingSearchRunnable implements Runnable {
+public class GeneralResamplingSearchRunnable implements Runnable, Callable<Graph> {
 
 	private DataSet dataSet = null;
 
@@ -113,6 +114,16 @@ public class GeneralResamplingSearchRunnable implements Runnable {
 
 	@Override
 	public void run() {
+		resamplingAlgorithmSearch.addPAG(call());
+	}
+
+	/**
+	 * Runs the search on the resampled data.
+	 *
+	 * @return the resulting graph.
+	 */
+	@Override
+	public Graph call() {
 		//System.out.println("#dataSet rows: " + dataSet.getNumRows());
 		
 		long start, stop;
@@ -148,7 +159,8 @@ public class GeneralResamplingSearchRunnable implements Runnable {
 			out.println("processing time of resampling for a thread was: "
 					+ (stop - start) / 1000.0 + " sec");
 		}
-		resamplingAlgorithmSearch.addPAG(graph);
+
+		return graph;
 	}
 
 }
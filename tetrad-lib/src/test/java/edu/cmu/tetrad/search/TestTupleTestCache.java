@@ -0,0 +1,140 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.search;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the packing of index sets into keys by TupleTestCache, and the bound on the number of values it stores.
+ */
+public final class TestTupleTestCache {
+
+    @Test
+    public void testKeysAreDistinct() {
+        TupleTestCache cache = new TupleTestCache(6, 3, 2, 1000);
+        Set<Long> keys = new HashSet<>();
+        int count = 0;
+
+        // Every ordered triple of indices, with every tag.
+        for (int tag = 0; tag < 4; tag++) {
+            for (int i = 0; i < 6; i++) {
+                for (int j = 0; j < 6; j++) {
+                    for (int k = 0; k < 6; k++) {
+                        long key = cache.key(new int[]{i, j, k}, tag);
+                        assertTrue(key >= 0);
+                        keys.add(key);
+                        count++;
+                    }
+                }
+            }
+        }
+
+        assertEquals(count, keys.size());
+    }
+
+    @Test
+    public void testPackable() {
+        // 15 bits per index: 4 * 15 + 2 = 62 bits.
+        TupleTestCache quartets = new TupleTestCache(1 << 15, 4, 2, 1000);
+        long key = quartets.key(new int[]{0, 1, (1 << 15) - 2, (1 << 15) - 1}, 3);
+        assertTrue(key >= 0);
+
+        quartets.put(key, 0.25);
+        assertEquals(0.25, quartets.get(key), 0.0);
+
+        // 16 bits per index: 4 * 16 + 2 = 66 bits, too many.
+        TupleTestCache tooMany = new TupleTestCache((1 << 15) + 1, 4, 2, 1000);
+        assertEquals(-1, tooMany.key(new int[]{0, 1, 2, 3}, 0));
+
+        tooMany.put(-1, 0.25);
+        assertEquals(0, tooMany.size());
+        assertTrue(Double.isNaN(tooMany.get(-1)));
+
+        // 10 bits per index: 6 * 10 = 60 bits; 11 bits: 66.
+        assertTrue(new TupleTestCache(1024, 6, 0, 1000).key(new int[]{0, 1, 2, 3, 4, 1023}, 0) >= 0);
+        assertEquals(-1, new TupleTestCache(1025, 6, 0, 1000).key(new int[]{0, 1, 2, 3, 4, 5}, 0));
+    }
+
+    @Test
+    public void testTags() {
+        TupleTestCache cache = new TupleTestCache(10, 4, 2, 1000);
+        int[] quartet = {1, 4, 5, 9};
+
+        for (int tag = 0; tag < 4; tag++) {
+            cache.put(cache.key(quartet, tag), tag / 10.0);
+        }
+
+        for (int tag = 0; tag < 4; tag++) {
+            assertEquals(tag / 10.0, cache.get(cache.key(quartet, tag)), 0.0);
+        }
+
+        assertTrue(Double.isNaN(cache.get(cache.key(new int[]{1, 4, 5, 8}, 0))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTagOutOfRange() {
+        // A tag of 4 would need a third tag bit and could collide with another set.
+        new TupleTestCache(10, 4, 2, 1000).key(new int[]{0, 1, 2, 3}, 4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeTag() {
+        new TupleTestCache(10, 4, 2, 1000).key(new int[]{0, 1, 2, 3}, -1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIndexOutOfRange() {
+        // Ten variables take four bits, so 16 would spill into the next index.
+        new TupleTestCache(10, 4, 0, 1000).key(new int[]{0, 1, 2, 16}, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongSize() {
+        new TupleTestCache(10, 4, 0, 1000).key(new int[]{0, 1, 2}, 0);
+    }
+
+    @Test
+    public void testMaxSize() {
+        TupleTestCache cache = new TupleTestCache(10, 2, 0, 3);
+
+        for (int i = 0; i < 5; i++) {
+            cache.put(cache.key(new int[]{i, i}, 0), 0.5);
+        }
+
+        assertEquals(3, cache.size());
+
+        // NaN is never stored, since it marks a missing value.
+        cache.clear();
+        cache.put(cache.key(new int[]{0, 1}, 0), Double.NaN);
+        assertEquals(0, cache.size());
+
+        cache.setMaxSize(0);
+        cache.put(cache.key(new int[]{0, 1}, 0), 0.5);
+        assertEquals(0, cache.size());
+    }
+}
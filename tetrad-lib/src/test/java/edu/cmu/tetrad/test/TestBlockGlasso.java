@@ -0,0 +1,111 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import cern.colt.matrix.impl.DenseDoubleMatrix2D;
+import edu.cmu.tetrad.search.BlockGlasso;
+import edu.cmu.tetrad.search.Glasso;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that BlockGlasso solutions satisfy the glasso optimality conditions and do not depend on warm starts.
+ */
+public final class TestBlockGlasso {
+
+    @Test
+    public void testPath() {
+        double[][] s = covariance(new Random(3948L), 40, 200);
+        double[] lambdas = {0.04, 0.6, 0.15, 0.3};
+
+        BlockGlasso glasso = new BlockGlasso(new DenseDoubleMatrix2D(s));
+        glasso.setThr(1e-7);
+        List<Glasso.Result> path = glasso.searchPath(lambdas);
+
+        for (int k = 0; k < lambdas.length; k++) {
+            double[][] ww = path.get(k).getWw().toArray();
+            double[][] wwi = path.get(k).getWwi().toArray();
+            checkOptimal(s, ww, wwi, lambdas[k]);
+
+            BlockGlasso cold = new BlockGlasso(new DenseDoubleMatrix2D(s));
+            cold.setThr(1e-7);
+            double[][] coldWwi = cold.search(lambdas[k]).getWwi().toArray();
+
+            for (int i = 0; i < s.length; i++) {
+                for (int j = 0; j < s.length; j++) {
+                    assertEquals(coldWwi[i][j], wwi[i][j], 1e-4);
+                }
+            }
+        }
+    }
+
+    // W inverts Theta, |W(i, j) - S(i, j)| <= lambda off the diagonal, with equality where Theta(i, j) != 0.
+    private void checkOptimal(double[][] s, double[][] ww, double[][] wwi, double lambda) {
+        int p = s.length;
+
+        for (int i = 0; i < p; i++) {
+            for (int j = 0; j < p; j++) {
+                double product = 0.0;
+                for (int k = 0; k < p; k++) product += ww[i][k] * wwi[k][j];
+                assertEquals(i == j ? 1.0 : 0.0, product, 1e-5);
+
+                if (i == j) continue;
+
+                double d = Math.abs(ww[i][j] - s[i][j]);
+
+                if (wwi[i][j] != 0.0) {
+                    assertEquals(lambda, d, 1e-6);
+                } else {
+                    assertTrue(d <= lambda + 1e-6);
+                }
+            }
+        }
+    }
+
+    private double[][] covariance(Random random, int p, int n) {
+        double[][] x = new double[n][p];
+
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < p; j++) {
+                x[i][j] = random.nextGaussian();
+                if (j % 3 != 0) x[i][j] += 0.8 * x[i][j - 1];
+            }
+        }
+
+        double[][] s = new double[p][p];
+
+        for (int a = 0; a < p; a++) {
+            for (int b = 0; b < p; b++) {
+                double sum = 0.0;
+                for (int i = 0; i < n; i++) sum += x[i][a] * x[i][b];
+                s[a][b] = sum / n;
+            }
+        }
+
+        return s;
+    }
+}
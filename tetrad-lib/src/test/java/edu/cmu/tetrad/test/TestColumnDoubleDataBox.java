@@ -0,0 +1,186 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.BoxDataSet;
+import edu.cmu.tetrad.data.ColumnDoubleDataBox;
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.CovarianceMatrix;
+import edu.cmu.tetrad.data.CovariancesDoubleForkJoin;
+import edu.cmu.tetrad.data.DataBox;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.DataUtils;
+import edu.cmu.tetrad.data.DoubleDataBox;
+import edu.cmu.tetrad.graph.Node;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.DoubleBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests ColumnDoubleDataBox in its heap, off-heap and memory-mapped forms, and checks that covariances and
+ * standardization read through its column views agree with the row-major path.
+ */
+public final class TestColumnDoubleDataBox {
+
+    @Test
+    public void testStorage() throws IOException {
+        File file = File.createTempFile("columns", ".bin");
+        file.deleteOnExit();
+
+        checkStorage(new ColumnDoubleDataBox(5, 3));
+        checkStorage(ColumnDoubleDataBox.offHeap(5, 3));
+
+        ColumnDoubleDataBox mapped = ColumnDoubleDataBox.mapped(file, 5, 3);
+        assertEquals(0.0, mapped.getDouble(4, 2), 0.0);
+        checkStorage(mapped);
+
+        assertEquals(5 * 3 * 8, file.length());
+
+        // The values written through the first mapping are in the file.
+        ColumnDoubleDataBox reopened = ColumnDoubleDataBox.mapped(file, 5, 3);
+        assertEquals(-1.0, reopened.getDouble(4, 2), 0.0);
+    }
+
+    private void checkStorage(ColumnDoubleDataBox box) {
+        box.set(2, 1, 7.5);
+        box.setDouble(4, 2, -1.0);
+        box.set(0, 0, null);
+
+        assertEquals(7.5, box.get(2, 1).doubleValue(), 0.0);
+        assertEquals(-1.0, box.getDouble(4, 2), 0.0);
+        assertNull(box.get(0, 0));
+        assertEquals(Double.NaN, box.getDouble(0, 0), 0.0);
+
+        DoubleBuffer column = box.getColumn(1);
+        assertEquals(5, column.remaining());
+        assertEquals(7.5, column.get(2), 0.0);
+
+        // Views show later writes and can't be written through.
+        box.setDouble(3, 1, 2.0);
+        assertEquals(2.0, column.get(3), 0.0);
+
+        try {
+            column.put(0, 1.0);
+            fail("Column views should be read-only.");
+        } catch (ReadOnlyBufferException e) {
+            // Expected.
+        }
+
+        DataBox selection = box.viewSelection(new int[]{2, 4}, new int[]{1, 2});
+        assertEquals(7.5, selection.getDouble(0, 0), 0.0);
+        assertEquals(-1.0, selection.getDouble(1, 1), 0.0);
+
+        DataBox copy = box.copy();
+        box.setDouble(2, 1, 0.0);
+        assertEquals(7.5, copy.getDouble(2, 1), 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOffHeapTooManyRows() {
+        // 8 * 2^28 bytes would overflow an int.
+        ColumnDoubleDataBox.offHeap(1 << 28, 1);
+    }
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        ColumnDoubleDataBox box = ColumnDoubleDataBox.offHeap(3, 2);
+        box.setDouble(1, 1, 4.25);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(box);
+        }
+
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            ColumnDoubleDataBox box2 = (ColumnDoubleDataBox) in.readObject();
+            assertEquals(3, box2.numRows());
+            assertEquals(2, box2.numCols());
+            assertEquals(4.25, box2.getDouble(1, 1), 0.0);
+            assertNull(box2.get(0, 0));
+        }
+    }
+
+    @Test
+    public void testColumnViews() {
+        Random random = new Random(3829L);
+        int n = 200;
+        int p = 6;
+
+        List<Node> variables = new ArrayList<>();
+        for (int j = 0; j < p; j++) variables.add(new ContinuousVariable("X" + j));
+
+        DoubleDataBox rows = new DoubleDataBox(n, p);
+        ColumnDoubleDataBox columns = ColumnDoubleDataBox.offHeap(n, p);
+
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < p; j++) {
+                double value = random.nextGaussian() + (j > 0 ? 0.5 * rows.getDouble(i, j - 1) : 0.0);
+                rows.set(i, j, value);
+                columns.setDouble(i, j, value);
+            }
+        }
+
+        DataSet rowData = new BoxDataSet(rows, variables);
+        DataSet columnData = new BoxDataSet(columns, variables);
+
+        // Covariances read through column views are those of the fork-join path over a copy of the data.
+        double[][] expected = new CovariancesDoubleForkJoin(rowData.getDoubleData().toArray(), true).getMatrix();
+        CovarianceMatrix cov1 = new CovarianceMatrix(rowData);
+        CovarianceMatrix cov2 = new CovarianceMatrix(columnData);
+
+        DataSet std1 = DataUtils.standardizeData(rowData);
+        DataSet std2 = DataUtils.standardizeData(columnData);
+
+        double[][] expectedStd = new CovariancesDoubleForkJoin(std2.getDoubleData().toArray(), true).getMatrix();
+        CovarianceMatrix covStd = new CovarianceMatrix(std2);
+
+        for (int i = 0; i < p; i++) {
+            for (int j = 0; j < p; j++) {
+                assertEquals(expected[i][j], cov1.getValue(i, j), 1e-15);
+                assertEquals(expected[i][j], cov2.getValue(i, j), 1e-15);
+                assertEquals(expectedStd[i][j], covStd.getValue(i, j), 1e-15);
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < p; j++) {
+                assertEquals(std1.getDouble(i, j), std2.getDouble(i, j), 1e-10);
+                assertEquals(rowData.getDouble(i, j), columnData.getDoubleData().get(i, j), 0.0);
+            }
+        }
+    }
+}
@@ -0,0 +1,301 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.algcomparison.Comparison;
+import edu.cmu.tetrad.algcomparison.algorithm.Algorithm;
+import edu.cmu.tetrad.algcomparison.algorithm.Algorithms;
+import edu.cmu.tetrad.algcomparison.simulation.Simulation;
+import edu.cmu.tetrad.algcomparison.simulation.Simulations;
+import edu.cmu.tetrad.algcomparison.statistic.AdjacencyPrecision;
+import edu.cmu.tetrad.algcomparison.statistic.AdjacencyRecall;
+import edu.cmu.tetrad.algcomparison.statistic.ElapsedTime;
+import edu.cmu.tetrad.algcomparison.statistic.Statistics;
+import edu.cmu.tetrad.data.BoxDataSet;
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.DataModel;
+import edu.cmu.tetrad.data.DataType;
+import edu.cmu.tetrad.data.DoubleDataBox;
+import edu.cmu.tetrad.graph.EdgeListGraph;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.util.Parameters;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests how Comparison schedules runs: the bound on concurrent runs, the run timeout, the streamed runs file and
+ * resuming from it.
+ */
+public final class TestComparisonRuns {
+
+    @Test
+    public void testConcurrentRunsAndTimeout() throws IOException {
+        File dir = Files.createTempDirectory("comparison").toFile();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        Algorithms algorithms = new Algorithms();
+        algorithms.add(new Sleeper(100, running, maxRunning));
+        algorithms.add(new Stuck(running, maxRunning));
+
+        Comparison comparison = new Comparison();
+        comparison.setParallelized(true);
+        comparison.setMaxConcurrentRuns(2);
+        comparison.setRunTimeout(300, TimeUnit.MILLISECONDS);
+        comparison.compareFromSimulations(dir.getPath(), simulations(), algorithms, statistics(), parameters(3));
+
+        assertEquals(2, maxRunning.get());
+
+        // Only the runs that finished are streamed to the runs file.
+        List<String> rows = Files.readAllLines(new File(dir, "Comparison.runs.txt").toPath());
+        assertEquals("sim\talg\trun\ttype\tAP\tE", rows.get(0));
+        assertEquals(4, rows.size());
+
+        for (String row : rows.subList(1, rows.size())) {
+            assertTrue(row.startsWith("1\t1\t"));
+        }
+
+        // Runs that timed out are counted, and left out of the statistics rather than counted as zeros.
+        String report = new String(Files.readAllBytes(new File(dir, "Comparison.txt").toPath()));
+        assertTrue(report.contains("1. Sleeper, simulation 1: 3 of 3"));
+        assertTrue(report.contains("2. Stuck, simulation 1: 0 of 3"));
+    }
+
+    @Test
+    public void testResume() throws IOException {
+        File dir = Files.createTempDirectory("comparison").toFile();
+        File runsFile = new File(dir, "Comparison.runs.txt");
+
+        Sleeper first = new Sleeper(0, new AtomicInteger(), new AtomicInteger());
+        compare(dir, first, statistics(), false);
+        assertEquals(3, first.calls.get());
+        List<String> rows = Files.readAllLines(runsFile.toPath());
+        assertEquals(4, rows.size());
+
+        // Finished runs are read back and not done again.
+        Sleeper second = new Sleeper(0, new AtomicInteger(), new AtomicInteger());
+        compare(dir, second, statistics(), true);
+        assertEquals(0, second.calls.get());
+        assertEquals(rows, Files.readAllLines(runsFile.toPath()));
+
+        // A run whose row is missing, as if the comparison had been stopped, is done again.
+        Files.write(runsFile.toPath(), rows.subList(0, 3));
+        Sleeper third = new Sleeper(0, new AtomicInteger(), new AtomicInteger());
+        compare(dir, third, statistics(), true);
+        assertEquals(1, third.calls.get());
+        assertEquals(4, Files.readAllLines(runsFile.toPath()).size());
+
+        // A runs file for other statistics is deleted and all runs are done again.
+        Statistics other = statistics();
+        other.add(new AdjacencyRecall());
+        Sleeper fourth = new Sleeper(0, new AtomicInteger(), new AtomicInteger());
+        compare(dir, fourth, other, true);
+        assertEquals(3, fourth.calls.get());
+
+        rows = Files.readAllLines(runsFile.toPath());
+        assertEquals("sim\talg\trun\ttype\tAP\tE\tAR", rows.get(0));
+        assertEquals(4, rows.size());
+        assertFalse(rows.get(1).contains("NaN"));
+    }
+
+    private static void compare(File dir, Sleeper sleeper, Statistics statistics, boolean resume) {
+        Algorithms algorithms = new Algorithms();
+        algorithms.add(sleeper);
+
+        Comparison comparison = new Comparison();
+        comparison.setResume(resume);
+        comparison.compareFromSimulations(dir.getPath(), simulations(), algorithms, statistics, parameters(3));
+    }
+
+    private static Simulations simulations() {
+        Simulations simulations = new Simulations();
+        simulations.add(new FixedSimulation(3));
+        return simulations;
+    }
+
+    private static Statistics statistics() {
+        Statistics statistics = new Statistics();
+        statistics.add(new AdjacencyPrecision());
+        statistics.add(new ElapsedTime());
+        return statistics;
+    }
+
+    private static Parameters parameters(int numRuns) {
+        Parameters parameters = new Parameters();
+        parameters.set("numRuns", numRuns);
+        parameters.set("printStream", new PrintStream(new ByteArrayOutputStream()));
+        return parameters;
+    }
+
+    /**
+     * The same chain X1 --> X2 --> X3, with a small data set, for every run.
+     */
+    private static final class FixedSimulation implements Simulation {
+        static final long serialVersionUID = 23L;
+        private final int numDataModels;
+        private final Graph graph;
+        private final DataModel data;
+
+        FixedSimulation(int numDataModels) {
+            this.numDataModels = numDataModels;
+            List<Node> nodes = new ArrayList<>();
+
+            for (int i = 0; i < 3; i++) {
+                nodes.add(new ContinuousVariable("X" + (i + 1)));
+            }
+
+            this.graph = new EdgeListGraph(nodes);
+            graph.addDirectedEdge(nodes.get(0), nodes.get(1));
+            graph.addDirectedEdge(nodes.get(1), nodes.get(2));
+
+            DoubleDataBox box = new DoubleDataBox(5, 3);
+
+            for (int i = 0; i < 5; i++) {
+                for (int j = 0; j < 3; j++) {
+                    box.set(i, j, i + j);
+                }
+            }
+
+            this.data = new BoxDataSet(box, nodes);
+        }
+
+        public void createData(Parameters parameters) {
+        }
+
+        public int getNumDataModels() {
+            return numDataModels;
+        }
+
+        public Graph getTrueGraph(int index) {
+            return graph;
+        }
+
+        public DataModel getDataModel(int index) {
+            return data;
+        }
+
+        public DataType getDataType() {
+            return DataType.Continuous;
+        }
+
+        public String getDescription() {
+            return "Fixed chain";
+        }
+
+        public List<String> getParameters() {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Returns the true graph after sleeping, counting its calls and how many runs are going at once.
+     */
+    private static class Sleeper implements Algorithm {
+        static final long serialVersionUID = 23L;
+        final AtomicInteger calls = new AtomicInteger();
+        private final long millis;
+        private final AtomicInteger running;
+        private final AtomicInteger maxRunning;
+
+        Sleeper(long millis, AtomicInteger running, AtomicInteger maxRunning) {
+            this.millis = millis;
+            this.running = running;
+            this.maxRunning = maxRunning;
+        }
+
+        public Graph search(DataModel dataSet, Parameters parameters) {
+            calls.incrementAndGet();
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+
+            try {
+                sleep();
+                return new EdgeListGraph(new FixedSimulation(1).getTrueGraph(0));
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+
+        void sleep() {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        public Graph getComparisonGraph(Graph graph) {
+            return new EdgeListGraph(graph);
+        }
+
+        public String getDescription() {
+            return "Sleeper";
+        }
+
+        public DataType getDataType() {
+            return DataType.Continuous;
+        }
+
+        public List<String> getParameters() {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Sleeps until interrupted.
+     */
+    private static final class Stuck extends Sleeper {
+        static final long serialVersionUID = 23L;
+
+        Stuck(AtomicInteger running, AtomicInteger maxRunning) {
+            super(0, running, maxRunning);
+        }
+
+        void sleep() {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        public String getDescription() {
+            return "Stuck";
+        }
+    }
+}
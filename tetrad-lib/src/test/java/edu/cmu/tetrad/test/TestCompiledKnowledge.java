@@ -0,0 +1,157 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.CompiledKnowledge;
+import edu.cmu.tetrad.data.IKnowledge;
+import edu.cmu.tetrad.data.Knowledge2;
+import edu.cmu.tetrad.graph.GraphNode;
+import edu.cmu.tetrad.graph.Node;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks that CompiledKnowledge answers forbidden and required queries the same
+ * way as the knowledge it was compiled from.
+ */
+public final class TestCompiledKnowledge {
+
+    @Test
+    public void testRandomKnowledge() {
+        Random random = new Random(2938472L);
+
+        for (int trial = 0; trial < 20; trial++) {
+            List<Node> nodes = nodes(30);
+            Knowledge2 knowledge = randomKnowledge(nodes, random);
+            checkAgrees(knowledge, new CompiledKnowledge(knowledge, nodes), nodes);
+        }
+    }
+
+    @Test
+    public void testUnknownNamesDelegate() {
+        List<Node> nodes = nodes(10);
+        Knowledge2 knowledge = new Knowledge2(names(nodes));
+        knowledge.addVariable("Y");
+        knowledge.setForbidden("X1", "Y");
+        knowledge.setRequired("Y", "X2");
+
+        CompiledKnowledge compiled = new CompiledKnowledge(knowledge, nodes);
+
+        assertEquals(-1, compiled.getIndex("Y"));
+        assertEquals(true, compiled.isForbidden("X1", "Y"));
+        assertEquals(true, compiled.isRequired("Y", "X2"));
+        assertEquals(false, compiled.noEdgeRequired("X2", "Y"));
+    }
+
+    @Test
+    public void testCompile() {
+        List<Node> nodes = nodes(5);
+        Knowledge2 knowledge = new Knowledge2(names(nodes));
+        assertSame(knowledge, CompiledKnowledge.compile(knowledge, nodes));
+
+        knowledge.setForbidden("X1", "X2");
+        IKnowledge compiled = CompiledKnowledge.compile(knowledge, nodes);
+        assertEquals(CompiledKnowledge.class, compiled.getClass());
+        assertSame(compiled, CompiledKnowledge.compile(compiled, nodes));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadOnly() {
+        List<Node> nodes = nodes(5);
+        new CompiledKnowledge(new Knowledge2(names(nodes)), nodes).setForbidden("X1", "X2");
+    }
+
+    private Knowledge2 randomKnowledge(List<Node> nodes, Random random) {
+        Knowledge2 knowledge = new Knowledge2(names(nodes));
+        int numTiers = 1 + random.nextInt(5);
+
+        for (Node node : nodes) {
+            int tier = random.nextInt(numTiers + 1);
+
+            // Leave some of the variables out of the tiers.
+            if (tier < numTiers) {
+                knowledge.addToTier(tier, node.getName());
+            }
+        }
+
+        if (random.nextBoolean()) {
+            knowledge.setTierForbiddenWithin(random.nextInt(numTiers), true);
+        }
+
+        if (random.nextBoolean()) {
+            knowledge.setOnlyCanCauseNextTier(0, true);
+        }
+
+        for (int k = 0; k < 20; k++) {
+            String x = nodes.get(random.nextInt(nodes.size())).getName();
+            String y = nodes.get(random.nextInt(nodes.size())).getName();
+
+            if (random.nextBoolean()) {
+                knowledge.setForbidden(x, y);
+            } else {
+                knowledge.setRequired(x, y);
+            }
+        }
+
+        return knowledge;
+    }
+
+    private void checkAgrees(IKnowledge knowledge, CompiledKnowledge compiled, List<Node> nodes) {
+        for (int i = 0; i < nodes.size(); i++) {
+            for (int j = 0; j < nodes.size(); j++) {
+                String x = nodes.get(i).getName();
+                String y = nodes.get(j).getName();
+
+                assertEquals(knowledge.isForbidden(x, y), compiled.isForbidden(i, j));
+                assertEquals(knowledge.isRequired(x, y), compiled.isRequired(i, j));
+                assertEquals(knowledge.isForbidden(x, y), compiled.isForbidden(x, y));
+                assertEquals(knowledge.noEdgeRequired(x, y), compiled.noEdgeRequired(x, y));
+            }
+        }
+    }
+
+    private List<Node> nodes(int numNodes) {
+        List<Node> nodes = new ArrayList<>();
+
+        for (int i = 1; i <= numNodes; i++) {
+            nodes.add(new GraphNode("X" + i));
+        }
+
+        return nodes;
+    }
+
+    private List<String> names(List<Node> nodes) {
+        List<String> names = new ArrayList<>();
+
+        for (Node node : nodes) {
+            names.add(node.getName());
+        }
+
+        return names;
+    }
+}
@@ -0,0 +1,125 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.graph.*;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that DSeparationOracle gives the same answers as GraphUtils.isDConnectedTo.
+ */
+public final class TestDSeparationOracle {
+
+    @Test
+    public void testDags() {
+        Random random = new Random(203948L);
+
+        for (int trial = 0; trial < 10; trial++) {
+            check(randomGraph(random, 15, 25, false), random);
+        }
+    }
+
+    @Test
+    public void testMixedGraphs() {
+        Random random = new Random(9384752L);
+
+        for (int trial = 0; trial < 10; trial++) {
+            check(randomGraph(random, 12, 20, true), random);
+        }
+    }
+
+    @Test
+    public void testUnderlines() {
+        Random random = new Random(3459L);
+
+        for (int trial = 0; trial < 10; trial++) {
+            Graph graph = randomGraph(random, 12, 20, false);
+
+            for (Node b : graph.getNodes()) {
+                List<Node> adj = graph.getAdjacentNodes(b);
+
+                if (adj.size() >= 2 && random.nextBoolean()) {
+                    graph.addUnderlineTriple(adj.get(0), b, adj.get(1));
+                }
+            }
+
+            check(graph, random);
+        }
+    }
+
+    private void check(Graph graph, Random random) {
+        DSeparationOracle oracle = new DSeparationOracle(graph, 50);
+        List<Node> nodes = graph.getNodes();
+
+        for (int q = 0; q < 300; q++) {
+            Node x = nodes.get(random.nextInt(nodes.size()));
+            Node y = nodes.get(random.nextInt(nodes.size()));
+
+            List<Node> z = new ArrayList<>(nodes);
+            Collections.shuffle(z, random);
+            z = z.subList(0, random.nextInt(5));
+
+            boolean expected = GraphUtils.isDConnectedTo(x, y, z, graph);
+            assertEquals(expected, oracle.isDConnectedTo(x, y, z));
+            assertEquals(expected, oracle.isDConnectedTo(y, x, z));
+        }
+    }
+
+    private Graph randomGraph(Random random, int numNodes, int numEdges, boolean mixed) {
+        List<Node> nodes = new ArrayList<>();
+
+        for (int i = 0; i < numNodes; i++) {
+            nodes.add(new GraphNode("X" + (i + 1)));
+        }
+
+        Graph graph = new EdgeListGraph(nodes);
+
+        for (int e = 0; e < numEdges; e++) {
+            int i = random.nextInt(numNodes);
+            int j = random.nextInt(numNodes);
+            if (i == j) continue;
+
+            Node a = nodes.get(Math.min(i, j));
+            Node b = nodes.get(Math.max(i, j));
+            if (graph.isAdjacentTo(a, b)) continue;
+
+            int type = mixed ? random.nextInt(3) : 0;
+
+            if (type == 0) {
+                graph.addDirectedEdge(a, b);
+            } else if (type == 1) {
+                graph.addBidirectedEdge(a, b);
+            } else {
+                graph.addUndirectedEdge(a, b);
+            }
+        }
+
+        return graph;
+    }
+}
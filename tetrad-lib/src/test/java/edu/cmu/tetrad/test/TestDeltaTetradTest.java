@@ -38,6 +38,9 @@ import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -147,6 +150,59 @@ public class TestDeltaTetradTest {
         assertEquals(0.18, pValue, 0.01);
     }
 
+    // getPValue(Tetrad...) leaves the result of calcChiSquare alone and gives the same answers from several threads
+    // at once.
+    @Test
+    public void testPValueWithoutState() throws Exception {
+        CovarianceMatrix cov = getBollenExample1Data();
+        List<Node> v = cov.getVariables();
+
+        final List<Tetrad[]> tests = new ArrayList<>();
+
+        for (int i = 1; i < 4; i++) {
+            tests.add(new Tetrad[]{new Tetrad(v.get(0), v.get(i), v.get(4), v.get(5))});
+            tests.add(new Tetrad[]{new Tetrad(v.get(0), v.get(i), v.get(4), v.get(5)),
+                    new Tetrad(v.get(0), v.get(i), v.get(5), v.get(4))});
+        }
+
+        final DeltaTetradTest test = new DeltaTetradTest(cov);
+        final double[] expected = new double[tests.size()];
+
+        for (int t = 0; t < tests.size(); t++) {
+            expected[t] = test.getPValue(tests.get(t));
+        }
+
+        test.calcChiSquare(tests.get(0));
+        double pValue = test.getPValue();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+
+            for (int thread = 0; thread < 4; thread++) {
+                futures.add(executor.submit(() -> {
+                    for (int rep = 0; rep < 200; rep++) {
+                        for (int t = 0; t < tests.size(); t++) {
+                            if (test.getPValue(tests.get(t)) != expected[t]) return false;
+                        }
+                    }
+
+                    return true;
+                }));
+            }
+
+            for (Future<Boolean> future : futures) {
+                assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(expected[0], pValue, 0.0);
+        assertEquals(pValue, test.getPValue(), 0.0);
+    }
+
     // Bollen and Ting p. 167 (Confirmatory Tetrad Analysis). Union Sentiment.
 
     @Test
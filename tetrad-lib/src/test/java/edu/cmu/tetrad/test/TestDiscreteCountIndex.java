@@ -0,0 +1,225 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.BoxDataSet;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.DiscreteCountIndex;
+import edu.cmu.tetrad.data.DiscreteVariable;
+import edu.cmu.tetrad.data.VerticalIntDataBox;
+import edu.cmu.tetrad.graph.Node;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the counts of DiscreteCountIndex against a plain scan of the data.
+ */
+public final class TestDiscreteCountIndex {
+
+    private static final int[] DIMS = {2, 3, 4, 2, 5};
+    private static final int N = 1000;
+
+    @Test
+    public void testBitmapCounts() {
+        int[][] data = randomData(3728472L);
+        DiscreteCountIndex index = new DiscreteCountIndex(data, DIMS, N, Long.MAX_VALUE);
+        checkCounts(index, data);
+    }
+
+    @Test
+    public void testScanCounts() {
+        int[][] data = randomData(3728472L);
+        DiscreteCountIndex index = new DiscreteCountIndex(data, DIMS, N, 0);
+        checkCounts(index, data);
+    }
+
+    @Test
+    public void testPartiallyIndexedCounts() {
+        int[][] data = randomData(99283L);
+        long memory = 8L * (DIMS[0] + DIMS[1]) * ((N + 63) / 64);
+        DiscreteCountIndex index = new DiscreteCountIndex(data, DIMS, N, memory);
+        checkCounts(index, data);
+    }
+
+    @Test
+    public void testEmptyVariableList() {
+        int[][] data = randomData(12L);
+        DiscreteCountIndex index = new DiscreteCountIndex(data, DIMS, N, Long.MAX_VALUE);
+
+        assertArrayEquals(new int[]{N}, index.getCounts(new int[0]));
+        assertEquals(N, index.getSampleSize());
+        assertEquals(4, index.getNumCategories(2));
+    }
+
+    @Test
+    public void testLargeSparseTables() {
+        // Eight variables with 10 categories have 10^8 cells, more than will be allocated.
+        Random random = new Random(2094L);
+        int n = 500;
+        int[] dims = new int[8];
+        int[][] data = new int[8][n];
+
+        for (int v = 0; v < 8; v++) {
+            dims[v] = 10;
+            for (int i = 0; i < n; i++) data[v][i] = random.nextInt(10);
+        }
+
+        data[3][7] = DiscreteVariable.MISSING_VALUE;
+        int[] vars = {0, 1, 2, 3, 4, 5, 6, 7};
+
+        Map<Long, Integer> expected = new HashMap<>();
+
+        ROWS:
+        for (int i = 0; i < n; i++) {
+            long cell = 0;
+
+            for (int v : vars) {
+                if (data[v][i] == DiscreteVariable.MISSING_VALUE) continue ROWS;
+                cell = cell * 10 + data[v][i];
+            }
+
+            expected.merge(cell, 1, Integer::sum);
+        }
+
+        for (long memory : new long[]{0, Long.MAX_VALUE}) {
+            DiscreteCountIndex index = new DiscreteCountIndex(data, dims, n, memory);
+            Map<Long, Integer> counts = new HashMap<>();
+            long[] last = {-1};
+
+            index.forEachCount(vars, (cell, count) -> {
+                assertTrue(cell > last[0]);
+                last[0] = cell;
+                counts.put(cell, count);
+            });
+
+            assertEquals(expected, counts);
+        }
+    }
+
+    @Test
+    public void testRows() {
+        int[][] data = randomData(5512L);
+        DiscreteCountIndex index = new DiscreteCountIndex(data, DIMS, N, Long.MAX_VALUE);
+        int[] vars = {2, 0, 4};
+        int[] counts = scan(data, vars);
+        int[] rows = new int[counts.length];
+
+        index.forEachRow(vars, (row, rowCounts) -> {
+            assertEquals(DIMS[4], rowCounts.length);
+            System.arraycopy(rowCounts, 0, rows, (int) row * DIMS[4], DIMS[4]);
+        });
+
+        assertArrayEquals(counts, rows);
+    }
+
+    @Test
+    public void testSharedInstance() {
+        int[][] data = randomData(7731L);
+        List<Node> variables = new ArrayList<>();
+
+        for (int v = 0; v < DIMS.length; v++) {
+            variables.add(new DiscreteVariable("X" + v, DIMS[v]));
+        }
+
+        DataSet dataSet = new BoxDataSet(new VerticalIntDataBox(data), variables);
+
+        DiscreteCountIndex index = DiscreteCountIndex.getInstance(dataSet);
+        assertSame(index, DiscreteCountIndex.getInstance(dataSet));
+        checkCounts(index, data);
+
+        // Changing the data rebuilds the index.
+        int value = data[1][0] == 0 ? 1 : 0;
+        dataSet.setInt(0, 1, value);
+        DiscreteCountIndex rebuilt = DiscreteCountIndex.getInstance(dataSet);
+        assertNotSame(index, rebuilt);
+        assertEquals(value, ((VerticalIntDataBox) ((BoxDataSet) dataSet).getDataBox()).getVariableVectors()[1][0]);
+        checkCounts(rebuilt, ((VerticalIntDataBox) ((BoxDataSet) dataSet).getDataBox()).getVariableVectors());
+    }
+
+    private void checkCounts(DiscreteCountIndex index, int[][] data) {
+        int[][] queries = {{0}, {4}, {0, 1}, {1, 0}, {2, 3, 4}, {4, 2, 1, 0}, {0, 1, 2, 3, 4}, {3, 3}};
+
+        for (int[] vars : queries) {
+            int[] expected = scan(data, vars);
+            assertArrayEquals(expected, index.getCounts(vars));
+
+            int[] visited = new int[expected.length];
+            index.forEachCount(vars, (cell, count) -> visited[(int) cell] = count);
+            assertArrayEquals(expected, visited);
+        }
+    }
+
+    private int[] scan(int[][] data, int[] vars) {
+        int size = 1;
+
+        for (int v : vars) {
+            size *= DIMS[v];
+        }
+
+        int[] counts = new int[size];
+
+        ROWS:
+        for (int i = 0; i < N; i++) {
+            int cell = 0;
+
+            for (int v : vars) {
+                int category = data[v][i];
+
+                if (category == DiscreteVariable.MISSING_VALUE) {
+                    continue ROWS;
+                }
+
+                cell = cell * DIMS[v] + category;
+            }
+
+            counts[cell]++;
+        }
+
+        return counts;
+    }
+
+    private int[][] randomData(long seed) {
+        Random random = new Random(seed);
+        int[][] data = new int[DIMS.length][N];
+
+        for (int v = 0; v < DIMS.length; v++) {
+            for (int i = 0; i < N; i++) {
+                data[v][i] = random.nextDouble() < 0.05
+                        ? DiscreteVariable.MISSING_VALUE
+                        : random.nextInt(DIMS[v]);
+            }
+        }
+
+        return data;
+    }
+}
@@ -0,0 +1,121 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.graph.EdgeListGraph;
+import edu.cmu.tetrad.graph.EdgeTypeProbability;
+import edu.cmu.tetrad.graph.EdgeTypeProbability.EdgeType;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphNode;
+import edu.cmu.tetrad.graph.Node;
+import edu.pitt.dbmi.algo.resampling.EdgeFrequencies;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests the edge counts kept by EdgeFrequencies as resampled graphs are added.
+ */
+public final class TestEdgeFrequencies {
+
+    private final Node x1 = new GraphNode("X1");
+    private final Node x2 = new GraphNode("X2");
+    private final Node x3 = new GraphNode("X3");
+
+    @Test
+    public void testProbabilities() {
+        EdgeFrequencies frequencies = new EdgeFrequencies();
+
+        frequencies.add(directed());
+        frequencies.add(directed());
+        frequencies.add(empty());
+        frequencies.add(undirected());
+
+        assertEquals(4, frequencies.getNumGraphs());
+        assertEquals(3, frequencies.getNodes().size());
+
+        assertEquals(0.5, probability(frequencies.getProbabilities(x1, x2), EdgeType.ta), 0.0);
+        assertEquals(0.5, probability(frequencies.getProbabilities(x1, x2), EdgeType.nil), 0.0);
+        assertEquals(0.5, probability(frequencies.getProbabilities(x2, x1), EdgeType.at), 0.0);
+
+        // Undirected edges are counted the same way whichever way round they
+        // were added.
+        assertEquals(0.25, probability(frequencies.getProbabilities(x3, x2), EdgeType.tt), 0.0);
+        assertEquals(0.75, probability(frequencies.getProbabilities(x2, x3), EdgeType.nil), 0.0);
+
+        assertNull(frequencies.getProbabilities(x1, x3));
+    }
+
+    @Test
+    public void testMaxChangeSinceLastCheck() {
+        EdgeFrequencies frequencies = new EdgeFrequencies();
+
+        frequencies.add(directed());
+        frequencies.add(directed());
+        assertEquals(1.0, frequencies.getMaxChangeSinceLastCheck(), 0.0);
+
+        frequencies.add(directed());
+        assertEquals(0.0, frequencies.getMaxChangeSinceLastCheck(), 0.0);
+
+        // X1 --> X2 goes from 3 of 3 to 3 of 4.
+        frequencies.add(empty());
+        assertEquals(0.25, frequencies.getMaxChangeSinceLastCheck(), 1e-12);
+
+        // X2 --- X3 goes from 0 of 4 to 1 of 5; X1 --> X2 from 3/4 to 3/5.
+        frequencies.add(undirected());
+        assertEquals(0.2, frequencies.getMaxChangeSinceLastCheck(), 1e-12);
+    }
+
+    private double probability(List<EdgeTypeProbability> probabilities, EdgeType edgeType) {
+        for (EdgeTypeProbability probability : probabilities) {
+            if (probability.getEdgeType() == edgeType) {
+                return probability.getProbability();
+            }
+        }
+
+        return 0.0;
+    }
+
+    private Graph empty() {
+        List<Node> nodes = new ArrayList<>();
+        nodes.add(x1);
+        nodes.add(x2);
+        nodes.add(x3);
+        return new EdgeListGraph(nodes);
+    }
+
+    private Graph directed() {
+        Graph graph = empty();
+        graph.addDirectedEdge(x1, x2);
+        return graph;
+    }
+
+    private Graph undirected() {
+        Graph graph = empty();
+        graph.addUndirectedEdge(x3, x2);
+        return graph;
+    }
+}
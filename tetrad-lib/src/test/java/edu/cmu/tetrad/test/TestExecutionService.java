@@ -0,0 +1,136 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.util.ExecutionService;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that tasks submitted to ExecutionService from inside its own tasks complete, and that the thread budget
+ * can be changed.
+ */
+public final class TestExecutionService {
+
+    @Test
+    public void testNestedTasks() throws ExecutionException, InterruptedException {
+        ExecutionService executor = ExecutionService.getInstance();
+        executor.resetMetrics();
+
+        List<Future<Integer>> outer = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            outer.add(executor.submit(() -> {
+                List<Callable<Integer>> inner = new ArrayList<>();
+
+                for (int j = 0; j < 10; j++) {
+                    final int _j = j;
+                    inner.add(() -> _j);
+                }
+
+                int sum = 0;
+
+                for (Future<Integer> future : executor.invokeAll(inner)) {
+                    sum += future.get();
+                }
+
+                return sum;
+            }));
+        }
+
+        for (Future<Integer> future : outer) {
+            assertEquals(45, (int) future.get());
+        }
+
+        ExecutionService.Metrics metrics = executor.getMetrics();
+        assertEquals(110, metrics.getNumSubmitted());
+        assertEquals(110, metrics.getNumCompleted());
+        assertEquals(0, metrics.getNumFailed());
+    }
+
+    @Test
+    public void testInvokeAllAndGet() {
+        ExecutionService executor = ExecutionService.getInstance();
+        int parallelism = executor.getParallelism();
+
+        try {
+            for (int threads : new int[]{1, 4}) {
+                executor.setParallelism(threads);
+
+                for (boolean parallel : new boolean[]{true, false}) {
+                    List<Callable<Integer>> tasks = new ArrayList<>();
+
+                    for (int i = 0; i < 20; i++) {
+                        final int _i = i;
+                        tasks.add(() -> _i * _i);
+                    }
+
+                    List<Integer> results = executor.invokeAllAndGet(tasks, parallel);
+                    assertEquals(20, results.size());
+
+                    for (int i = 0; i < 20; i++) {
+                        assertEquals(i * i, (int) results.get(i));
+                    }
+
+                    List<Callable<Integer>> failing = new ArrayList<>(tasks);
+                    failing.add(() -> {
+                        throw new UnsupportedOperationException("failed");
+                    });
+
+                    try {
+                        executor.invokeAllAndGet(failing, parallel);
+                        fail("Expecting the failure of the last task.");
+                    } catch (IllegalStateException e) {
+                        assertTrue(e.getCause() instanceof UnsupportedOperationException);
+                    }
+                }
+            }
+        } finally {
+            executor.setParallelism(parallelism);
+        }
+    }
+
+    @Test
+    public void testParallelism() {
+        ExecutionService executor = ExecutionService.getInstance();
+        int parallelism = executor.getParallelism();
+
+        assertEquals(1, executor.getParallelism(1));
+        assertEquals(parallelism, executor.getParallelism(0));
+        assertEquals(parallelism, executor.getParallelism(parallelism + 5));
+        assertTrue(!executor.isWorkerThread());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadParallelism() {
+        ExecutionService.getInstance().setParallelism(0);
+    }
+}
@@ -27,6 +27,8 @@ import edu.cmu.tetrad.search.*;
 import edu.cmu.tetrad.sem.SemIm;
 import edu.cmu.tetrad.sem.SemPm;
 import edu.cmu.tetrad.util.ChoiceGenerator;
+import edu.cmu.tetrad.util.ExecutionService;
+import edu.cmu.tetrad.util.RandomUtil;
 import edu.cmu.tetrad.util.TextTable;
 import org.junit.Test;
 
@@ -34,8 +36,10 @@ import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -116,15 +120,15 @@ public class TestFci {
     }
 
     /**
-     * A specific graph. This is the test case from p. 142-144 that tests the possible Dsep step of FCI. This doesn't
-     * work in the optimized FCI algorithm. It works in the updated version (FciSearch).  (ekorber)
+     * A specific graph. This is the test case from p. 142-144 that tests the possible Dsep step of FCI. A and E are
+     * separated by {B, D, F}, where F is in Possible-D-Sep(A, E) but is adjacent to neither A nor E, so E<->A is
+     * removed only by the possible Dsep step.
      */
     @Test
     public void testSearch9() {
         checkSearch("Latent(T1),Latent(T2),T1-->A,T1-->B,B-->E,F-->B,C-->F,C-->H," +
                         "H-->D,D-->A,T2-->D,T2-->E",
-//                "A<->B,B-->E,Fo->B,Fo-oC,Co-oH,Ho->D,D<->E,D-->A", new Knowledge2()); // Left out E<->A.
-                "A<->B,B-->E,Co-oH,D-->A,E<->A,E<->D,Fo->B,Fo-oC,Ho->D", new Knowledge2());
+                "A<->B,B-->E,Fo->B,Fo-oC,Co-oH,Ho->D,D<->E,D-->A", new Knowledge2());
     }
 
     /**
@@ -224,6 +228,59 @@ public class TestFci {
         search.search();
     }
 
+    /**
+     * The possible-d-sep step should give the same PAG whether edges are tested one at a time or concurrently, and
+     * should call a test not declared thread-safe only from the searching thread.
+     */
+    @Test
+    public void testParallelPossibleDsep() {
+        RandomUtil.getInstance().setSeed(29402L);
+
+        List<Node> nodes = new ArrayList<>();
+
+        for (int i = 0; i < 30; i++) {
+            nodes.add(new ContinuousVariable("X" + (i + 1)));
+        }
+
+        final Graph dag = new Dag(GraphUtils.randomGraph(nodes, 8, 40, 6, 5, 5, false));
+        final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+
+        IndependenceTest unsafe = new IndTestDSep(dag) {
+            @Override
+            public boolean isIndependent(Node x, Node y, List<Node> z) {
+                threads.add(Thread.currentThread());
+                return super.isIndependent(x, y, z);
+            }
+        };
+
+        ExecutionService service = ExecutionService.getInstance();
+        int parallelism = service.getParallelism();
+
+        try {
+            service.setParallelism(4);
+
+            Fci sequential = new Fci(unsafe);
+            sequential.setCompleteRuleSetUsed(true);
+            Graph pag1 = sequential.search();
+
+            assertEquals(Collections.singleton(Thread.currentThread()), threads);
+
+            Fci parallel = new Fci(new IndTestDSep(dag));
+            parallel.setCompleteRuleSetUsed(true);
+            parallel.setTestThreadSafe(true);
+            Graph pag2 = parallel.search();
+
+            Fci cached = new Fci(new IndTestCache(new IndTestDSep(dag)));
+            cached.setCompleteRuleSetUsed(true);
+            Graph pag3 = cached.search();
+
+            assertEquals(new HashSet<>(pag1.getEdges()), new HashSet<>(pag2.getEdges()));
+            assertEquals(new HashSet<>(pag1.getEdges()), new HashSet<>(pag3.getEdges()));
+        } finally {
+            service.setParallelism(parallelism);
+        }
+    }
+
     /**
      * Presents the input graph to FCI and checks to make sure the output of FCI is equivalent to the given output
      * graph.
@@ -0,0 +1,163 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.DataGraphUtils;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.graph.EdgeListGraph;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphNode;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.graph.NodeType;
+import edu.cmu.tetrad.search.FindOneFactorClusters;
+import edu.cmu.tetrad.search.FindTwoFactorClusters;
+import edu.cmu.tetrad.search.TestType;
+import edu.cmu.tetrad.sem.SemIm;
+import edu.cmu.tetrad.sem.SemPm;
+import edu.cmu.tetrad.util.ExecutionService;
+import edu.cmu.tetrad.util.Parameters;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Tests that FindOneFactorClusters and FindTwoFactorClusters find the same clusters when their searches are split
+ * among threads and their test results cached as when they run sequentially testing every tetrad or sextad afresh,
+ * for both algorithms and, for FOFC, both tetrad tests.
+ */
+public final class TestFindFactorClusters {
+
+    @Test
+    public void testFofc() {
+        RandomUtil.getInstance().setSeed(49283494L);
+        DataSet data = simulate(DataGraphUtils.randomSingleFactorModel(3, 3, 6, 0, 1, 1));
+
+        for (TestType testType : new TestType[]{TestType.TETRAD_DELTA, TestType.TETRAD_WISHART}) {
+            for (FindOneFactorClusters.Algorithm algorithm : FindOneFactorClusters.Algorithm.values()) {
+                Set<Set<String>> sequential = fofc(data, testType, algorithm, 1, 0);
+                Set<Set<String>> parallel = fofc(data, testType, algorithm, 4, 1000000);
+
+                assertFalse(sequential.isEmpty());
+                assertEquals(testType + " " + algorithm, sequential, parallel);
+            }
+        }
+    }
+
+    @Test
+    public void testFtfc() {
+        RandomUtil.getInstance().setSeed(29384729L);
+        DataSet data = simulate(twoFactorModel());
+
+        for (FindTwoFactorClusters.Algorithm algorithm : FindTwoFactorClusters.Algorithm.values()) {
+            Set<Set<String>> sequential = ftfc(data, algorithm, 1, 0);
+            Set<Set<String>> parallel = ftfc(data, algorithm, 4, 1000000);
+
+            assertFalse(sequential.isEmpty());
+            assertEquals(algorithm.toString(), sequential, parallel);
+        }
+    }
+
+    private Set<Set<String>> fofc(DataSet data, TestType testType, FindOneFactorClusters.Algorithm algorithm,
+                                  int parallelism, int maxCachedTests) {
+        ExecutionService executor = ExecutionService.getInstance();
+        int oldParallelism = executor.getParallelism();
+
+        try {
+            executor.setParallelism(parallelism);
+            FindOneFactorClusters fofc = new FindOneFactorClusters(data, testType, algorithm, 0.001);
+            fofc.setMaxCachedTests(maxCachedTests);
+            fofc.search();
+            return names(fofc.getClusters());
+        } finally {
+            executor.setParallelism(oldParallelism);
+        }
+    }
+
+    private Set<Set<String>> ftfc(DataSet data, FindTwoFactorClusters.Algorithm algorithm,
+                                  int parallelism, int maxCachedTests) {
+        ExecutionService executor = ExecutionService.getInstance();
+        int oldParallelism = executor.getParallelism();
+
+        try {
+            executor.setParallelism(parallelism);
+            FindTwoFactorClusters ftfc = new FindTwoFactorClusters(data, algorithm, 0.001);
+            ftfc.setMaxCachedTests(maxCachedTests);
+            ftfc.search();
+            return names(ftfc.getClusters());
+        } finally {
+            executor.setParallelism(oldParallelism);
+        }
+    }
+
+    private Set<Set<String>> names(List<List<Node>> clusters) {
+        Set<Set<String>> names = new HashSet<>();
+
+        for (List<Node> cluster : clusters) {
+            Set<String> _cluster = new HashSet<>();
+            for (Node node : cluster) _cluster.add(node.getName());
+            names.add(_cluster);
+        }
+
+        return names;
+    }
+
+    private DataSet simulate(Graph graph) {
+        Parameters parameters = new Parameters();
+        parameters.set("coefLow", .5);
+        parameters.set("coefHigh", 1.5);
+
+        SemIm im = new SemIm(new SemPm(graph), parameters);
+        return im.simulateData(1000, false);
+    }
+
+    // Two pairs of latents, each pair with six measures, every measure a child of both latents of its pair.
+    private Graph twoFactorModel() {
+        Graph graph = new EdgeListGraph();
+        Node[] latents = new Node[4];
+
+        for (int l = 0; l < 4; l++) {
+            latents[l] = new GraphNode("L" + (l + 1));
+            latents[l].setNodeType(NodeType.LATENT);
+            graph.addNode(latents[l]);
+        }
+
+        graph.addDirectedEdge(latents[0], latents[2]);
+        graph.addDirectedEdge(latents[1], latents[3]);
+
+        for (int i = 0; i < 12; i++) {
+            Node measure = new GraphNode("X" + (i + 1));
+            graph.addNode(measure);
+
+            int pair = i < 6 ? 0 : 2;
+            graph.addDirectedEdge(latents[pair], measure);
+            graph.addDirectedEdge(latents[pair + 1], measure);
+        }
+
+        return graph;
+    }
+}
@@ -0,0 +1,145 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.BoxDataSet;
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.DoubleDataBox;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.DeltaTetradTest;
+import edu.cmu.tetrad.search.FourthMoments;
+import edu.cmu.tetrad.search.Tetrad;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests FourthMoments and its use by DeltaTetradTest.
+ */
+public final class TestFourthMoments {
+
+    @Test
+    public void testMoments() {
+        DataSet data = data(1300, 6);
+        double[][] centered = centeredColumns(data);
+        FourthMoments moments = new FourthMoments(data);
+
+        int[] first = {0, 1, 2, 3, 0};
+        int[] second = {4, 5, 3, 2, 0};
+        double[][] m = moments.getPairMoments(first, second);
+
+        for (int s = 0; s < first.length; s++) {
+            for (int t = 0; t < first.length; t++) {
+                double expected = moment(centered, first[s], second[s], first[t], second[t]);
+                assertEquals(expected, m[s][t], 1e-12 * Math.abs(expected));
+            }
+        }
+
+        int size = moments.size();
+        moments.getPairMoments(second, first);
+        assertEquals(size, moments.size());
+
+        double expected = moment(centered, 1, 3, 4, 5);
+        assertEquals(expected, moments.getValue(5, 4, 3, 1), 1e-12 * Math.abs(expected));
+        assertEquals(moments.getValue(5, 4, 3, 1), moments.getValue(1, 3, 4, 5), 0.0);
+        assertEquals(size + 1, moments.size());
+    }
+
+    @Test
+    public void testSharedMoments() {
+        DataSet data = data(500, 5);
+        List<Node> v = data.getVariables();
+
+        DeltaTetradTest test1 = new DeltaTetradTest(data);
+        DeltaTetradTest test2 = new DeltaTetradTest(data, test1.getFourthMoments());
+
+        Tetrad t1 = new Tetrad(v.get(0), v.get(1), v.get(2), v.get(3));
+        Tetrad t2 = new Tetrad(v.get(0), v.get(1), v.get(3), v.get(2));
+        Tetrad t3 = new Tetrad(v.get(1), v.get(2), v.get(3), v.get(4));
+
+        double p1 = test1.getPValue(t1, t2);
+        int size = test1.getFourthMoments().size();
+
+        assertEquals(p1, test2.getPValue(t1, t2), 0.0);
+        assertEquals(size, test1.getFourthMoments().size());
+        assertEquals(test1.getPValue(t3), new DeltaTetradTest(data).getPValue(t3), 1e-12);
+    }
+
+    private static DataSet data(int n, int p) {
+        Random random = new Random(4922L);
+        DoubleDataBox box = new DoubleDataBox(n, p);
+
+        for (int i = 0; i < n; i++) {
+            double prev = 0.0;
+
+            for (int j = 0; j < p; j++) {
+                double value = random.nextGaussian() + 0.8 * prev + Math.pow(random.nextDouble(), 3);
+                box.set(i, j, value);
+                prev = value;
+            }
+        }
+
+        List<Node> variables = new ArrayList<>();
+
+        for (int j = 0; j < p; j++) {
+            variables.add(new ContinuousVariable("X" + (j + 1)));
+        }
+
+        return new BoxDataSet(box, variables);
+    }
+
+    private static double[][] centeredColumns(DataSet data) {
+        int n = data.getNumRows();
+        double[][] columns = new double[data.getNumColumns()][n];
+
+        for (int j = 0; j < columns.length; j++) {
+            double mean = 0.0;
+
+            for (int i = 0; i < n; i++) {
+                mean += data.getDouble(i, j);
+            }
+
+            mean /= n;
+
+            for (int i = 0; i < n; i++) {
+                columns[j][i] = data.getDouble(i, j) - mean;
+            }
+        }
+
+        return columns;
+    }
+
+    private static double moment(double[][] columns, int i, int j, int k, int l) {
+        double sum = 0.0;
+
+        for (int r = 0; r < columns[i].length; r++) {
+            sum += columns[i][r] * columns[j][r] * columns[k][r] * columns[l][r];
+        }
+
+        return sum / columns[i].length;
+    }
+}
@@ -0,0 +1,135 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.algcomparison.algorithm.Algorithm;
+import edu.cmu.tetrad.data.BoxDataSet;
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.DataModel;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.DataType;
+import edu.cmu.tetrad.data.VerticalDoubleDataBox;
+import edu.cmu.tetrad.graph.EdgeListGraph;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.util.Parameters;
+import edu.cmu.tetrad.util.RandomUtil;
+import edu.pitt.dbmi.algo.resampling.GeneralResamplingSearch;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that GeneralResamplingSearch stops resampling once the edge frequencies settle, at the same point
+ * whether run sequentially or in parallel.
+ */
+public final class TestGeneralResamplingSearch {
+
+    @Test
+    public void testEarlyStopping() {
+        DataSet data = data();
+
+        // The first check, after one window, always reports a change; the
+        // second finds the same graph every time and stops.
+        assertEquals(10, search(data, false, 0.01).size());
+        assertEquals(10, search(data, true, 0.01).size());
+
+        assertEquals(100, search(data, false, 0).size());
+        assertEquals(100, search(data, true, 0).size());
+    }
+
+    @Test
+    public void testEdgeFrequencies() {
+        GeneralResamplingSearch search = newSearch(data(), true, 0.01);
+        search.search();
+
+        assertEquals(10, search.getEdgeFrequencies().getNumGraphs());
+    }
+
+    private List<Graph> search(DataSet data, boolean parallel, double tolerance) {
+        return newSearch(data, parallel, tolerance).search();
+    }
+
+    private GeneralResamplingSearch newSearch(DataSet data, boolean parallel, double tolerance) {
+        GeneralResamplingSearch search = new GeneralResamplingSearch(data);
+        search.setAlgorithm(new FixedGraph());
+        search.setParameters(new Parameters());
+        search.setResamplingWithReplacement(true);
+        search.setNumberResampling(100);
+        search.setRunParallel(parallel);
+        search.setEarlyStoppingTolerance(tolerance);
+        search.setEarlyStoppingWindow(5);
+        return search;
+    }
+
+    private DataSet data() {
+        List<Node> variables = new ArrayList<>();
+        for (int j = 0; j < 3; j++) variables.add(new ContinuousVariable("X" + (j + 1)));
+
+        DataSet data = new BoxDataSet(new VerticalDoubleDataBox(50, 3), variables);
+
+        for (int i = 0; i < data.getNumRows(); i++) {
+            for (int j = 0; j < data.getNumColumns(); j++) {
+                data.setDouble(i, j, RandomUtil.getInstance().nextNormal(0, 1));
+            }
+        }
+
+        return data;
+    }
+
+    /**
+     * Finds X1 --> X2 in any data.
+     */
+    private static class FixedGraph implements Algorithm {
+        static final long serialVersionUID = 23L;
+
+        @Override
+        public Graph search(DataModel dataSet, Parameters parameters) {
+            Graph graph = new EdgeListGraph(dataSet.getVariables());
+            graph.addDirectedEdge(graph.getNode("X1"), graph.getNode("X2"));
+            return graph;
+        }
+
+        @Override
+        public Graph getComparisonGraph(Graph graph) {
+            return new EdgeListGraph(graph);
+        }
+
+        @Override
+        public String getDescription() {
+            return "Fixed graph";
+        }
+
+        @Override
+        public DataType getDataType() {
+            return DataType.Continuous;
+        }
+
+        @Override
+        public List<String> getParameters() {
+            return new ArrayList<>();
+        }
+    }
+}
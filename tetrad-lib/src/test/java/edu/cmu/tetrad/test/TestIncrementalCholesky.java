@@ -0,0 +1,220 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.util.IncrementalCholesky;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the Cholesky factors and residual variances of IncrementalCholesky against direct computations, with and
+ * without remembered factors.
+ */
+public final class TestIncrementalCholesky {
+
+    @Test
+    public void testFactor() {
+        double[][] cov = randomCovariance(6, new Random(3942L));
+
+        for (int maxCached : new int[]{0, 2, 1000}) {
+            IncrementalCholesky cholesky = new IncrementalCholesky(cov, maxCached);
+
+            // Prefixes of each other, then unrelated sets, twice, so that remembered factors are reused.
+            int[][] sets = {{0}, {0, 2}, {0, 2, 3}, {0, 2, 3, 5}, {1, 4}, {0, 1, 2, 3, 4, 5}, {}};
+
+            for (int pass = 0; pass < 2; pass++) {
+                for (int[] indices : sets) {
+                    double[] factor = cholesky.factor(indices);
+                    assertEquals(indices.length * (indices.length + 1) / 2, factor.length);
+
+                    // L L' is the submatrix.
+                    for (int r = 0; r < indices.length; r++) {
+                        for (int c = 0; c <= r; c++) {
+                            double sum = 0.0;
+
+                            for (int k = 0; k <= c; k++) {
+                                sum += factor[r * (r + 1) / 2 + k] * factor[c * (c + 1) / 2 + k];
+                            }
+
+                            assertEquals(cov[indices[r]][indices[c]], sum, 1e-10);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testResidualVariances() {
+        double[][] cov = randomCovariance(7, new Random(2934L));
+        IncrementalCholesky cholesky = new IncrementalCholesky(cov, 1000);
+        double[] result = new double[2];
+
+        int[][] sets = {{}, {3}, {5, 1}, {6, 0, 2}, {1, 2, 4, 6}};
+
+        for (int[] z : sets) {
+            for (int y = 0; y < 7; y++) {
+                if (contains(z, y)) continue;
+
+                double expected = residualVariance(cov, y, z);
+                assertEquals(expected, cholesky.residualVariance(y, z), 1e-10);
+
+                for (int x = 0; x < 7; x++) {
+                    if (x == y || contains(z, x)) continue;
+
+                    cholesky.residualVariances(x, y, z, result);
+                    assertEquals(expected, result[0], 1e-10);
+                    assertEquals(residualVariance(cov, y, append(z, x)), result[1], 1e-10);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSingular() {
+        double[][] cov = randomCovariance(4, new Random(9283L));
+
+        // Make variable 3 the sum of variables 0 and 1.
+        for (int j = 0; j < 3; j++) {
+            cov[3][j] = cov[0][j] + cov[1][j];
+            cov[j][3] = cov[3][j];
+        }
+
+        cov[3][3] = cov[0][0] + 2 * cov[0][1] + cov[1][1];
+
+        IncrementalCholesky cholesky = new IncrementalCholesky(cov, 1000);
+
+        assertNull(cholesky.factor(new int[]{0, 1, 3}));
+        assertNull(cholesky.factor(new int[]{0, 1, 2, 3}));
+        assertTrue(cholesky.factor(new int[]{0, 2, 3}) != null);
+
+        assertTrue(Double.isNaN(cholesky.residualVariance(2, new int[]{3, 1, 0})));
+
+        double[] result = new double[2];
+        cholesky.residualVariances(3, 2, new int[]{0, 1}, result);
+        assertEquals(residualVariance(cov, 2, new int[]{0, 1}), result[0], 1e-10);
+        assertTrue(Double.isNaN(result[1]));
+
+        // A parent set with a repeated variable is singular too.
+        assertTrue(Double.isNaN(cholesky.residualVariance(2, new int[]{1, 1})));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsortedIndices() {
+        new IncrementalCholesky(randomCovariance(4, new Random(1L)), 1000).factor(new int[]{2, 0});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRepeatedIndices() {
+        new IncrementalCholesky(randomCovariance(4, new Random(1L)), 1000).factor(new int[]{0, 2, 2});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIndexOutOfRange() {
+        new IncrementalCholesky(randomCovariance(4, new Random(1L)), 1000).factor(new int[]{0, 4});
+    }
+
+    // A A' + I for a random square A.
+    private double[][] randomCovariance(int p, Random random) {
+        double[][] a = new double[p][p];
+
+        for (int i = 0; i < p; i++) {
+            for (int j = 0; j < p; j++) {
+                a[i][j] = random.nextGaussian();
+            }
+        }
+
+        double[][] cov = new double[p][p];
+
+        for (int i = 0; i < p; i++) {
+            for (int j = 0; j < p; j++) {
+                for (int k = 0; k < p; k++) {
+                    cov[i][j] += a[i][k] * a[j][k];
+                }
+            }
+
+            cov[i][i] += 1.0;
+        }
+
+        return cov;
+    }
+
+    // cov(y, y) - cov(y, z) cov(z, z)^-1 cov(z, y), solving cov(z, z) b = cov(z, y) by Gaussian elimination.
+    private double residualVariance(double[][] cov, int y, int[] z) {
+        int p = z.length;
+        double[][] a = new double[p][p + 1];
+
+        for (int r = 0; r < p; r++) {
+            for (int c = 0; c < p; c++) {
+                a[r][c] = cov[z[r]][z[c]];
+            }
+
+            a[r][p] = cov[z[r]][y];
+        }
+
+        for (int c = 0; c < p; c++) {
+            int pivot = c;
+
+            for (int r = c + 1; r < p; r++) {
+                if (Math.abs(a[r][c]) > Math.abs(a[pivot][c])) pivot = r;
+            }
+
+            double[] tmp = a[c];
+            a[c] = a[pivot];
+            a[pivot] = tmp;
+
+            for (int r = 0; r < p; r++) {
+                if (r == c) continue;
+                double f = a[r][c] / a[c][c];
+
+                for (int k = c; k <= p; k++) {
+                    a[r][k] -= f * a[c][k];
+                }
+            }
+        }
+
+        double s2 = cov[y][y];
+
+        for (int r = 0; r < p; r++) {
+            s2 -= cov[y][z[r]] * a[r][p] / a[r][r];
+        }
+
+        return s2;
+    }
+
+    private boolean contains(int[] z, int x) {
+        for (int i : z) if (i == x) return true;
+        return false;
+    }
+
+    private int[] append(int[] z, int x) {
+        int[] all = new int[z.length + 1];
+        System.arraycopy(z, 0, all, 0, z.length);
+        all[z.length] = x;
+        return all;
+    }
+}
@@ -0,0 +1,186 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphUtils;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.IndTestCache;
+import edu.cmu.tetrad.search.IndTestDSep;
+import edu.cmu.tetrad.search.IndTestFisherZ;
+import edu.cmu.tetrad.sem.SemIm;
+import edu.cmu.tetrad.sem.SemPm;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests IndTestCache over d-separation and Fisher Z.
+ */
+public final class TestIndTestCache {
+
+    @Test
+    public void testCache() throws IOException {
+        RandomUtil.getInstance().setSeed(3492L);
+        Graph graph = GraphUtils.randomGraph(12, 0, 18, 5, 5, 5, false);
+        List<Node> nodes = graph.getNodes();
+
+        AtomicInteger calls = new AtomicInteger();
+        IndTestDSep dsep = new IndTestDSep(graph) {
+            public boolean isIndependent(Node x, Node y, List<Node> z) {
+                calls.incrementAndGet();
+                return super.isIndependent(x, y, z);
+            }
+        };
+
+        IndTestCache cache = new IndTestCache(dsep);
+        IndTestDSep direct = new IndTestDSep(graph);
+        int numFacts = 0;
+
+        for (int i = 0; i < nodes.size(); i++) {
+            for (int j = i + 1; j < nodes.size(); j++) {
+                List<Node> z = new ArrayList<>();
+                for (int k = 0; k < nodes.size(); k++) if (k != i && k != j && (i + j + k) % 3 == 0) z.add(nodes.get(k));
+
+                boolean expected = direct.isIndependent(nodes.get(i), nodes.get(j), z);
+                assertEquals(expected, cache.isIndependent(nodes.get(i), nodes.get(j), z));
+                assertEquals(direct.getPValue(), cache.getPValue(), 0.0);
+                numFacts++;
+
+                // The same fact asked the other way around, with z reordered.
+                Collections.reverse(z);
+                assertEquals(expected, cache.isIndependent(nodes.get(j), nodes.get(i), z));
+                assertEquals(direct.getPValue(), cache.getPValue(), 0.0);
+            }
+        }
+
+        assertEquals(numFacts, calls.get());
+        assertEquals(numFacts, cache.getNumMisses());
+        assertEquals(numFacts, cache.getNumHits());
+        assertEquals(0.5, cache.getHitRate(), 0.0);
+
+        // Saved facts answer a new cache without calling the test.
+        File file = File.createTempFile("indtest", ".cache");
+        file.deleteOnExit();
+        cache.save(file);
+
+        IndTestCache cache2 = new IndTestCache(dsep);
+        assertEquals(numFacts, cache2.load(file));
+        calls.set(0);
+
+        for (int i = 0; i < nodes.size(); i++) {
+            for (int j = i + 1; j < nodes.size(); j++) {
+                List<Node> z = new ArrayList<>();
+                for (int k = 0; k < nodes.size(); k++) if (k != i && k != j && (i + j + k) % 3 == 0) z.add(nodes.get(k));
+                assertEquals(direct.isIndependent(nodes.get(i), nodes.get(j), z),
+                        cache2.isIndependent(nodes.get(i), nodes.get(j), z));
+            }
+        }
+
+        assertEquals(0, calls.get());
+
+        // The cache stays within its maximum size.
+        IndTestCache small = new IndTestCache(dsep);
+        small.setMaxSize(10);
+
+        for (int i = 0; i < nodes.size(); i++) {
+            for (int j = i + 1; j < nodes.size(); j++) {
+                small.isIndependent(nodes.get(i), nodes.get(j));
+            }
+        }
+
+        assertTrue(small.size() <= 10);
+        assertTrue(small.getNumEvictions() > 0);
+    }
+
+    /**
+     * With real p-values, cached facts should report their own p-values and scores, be judged again when alpha
+     * changes and carry over to a saved and loaded cache at another alpha, all without asking the test again.
+     */
+    @Test
+    public void testFisherZ() throws IOException {
+        RandomUtil.getInstance().setSeed(8823L);
+        Graph graph = GraphUtils.randomGraph(8, 0, 10, 5, 5, 5, false);
+        DataSet data = new SemIm(new SemPm(graph)).simulateData(300, false);
+        List<Node> nodes = data.getVariables();
+
+        List<List<Node>> facts = new ArrayList<>();
+
+        for (int i = 0; i < nodes.size(); i++) {
+            for (int j = i + 1; j < nodes.size(); j++) {
+                List<Node> fact = new ArrayList<>();
+                fact.add(nodes.get(i));
+                fact.add(nodes.get(j));
+                for (int k = 0; k < nodes.size(); k++) if (k != i && k != j && (i + j + k) % 3 == 0) fact.add(nodes.get(k));
+                facts.add(fact);
+            }
+        }
+
+        IndTestCache cache = new IndTestCache(new IndTestFisherZ(data, 0.05));
+        IndTestFisherZ direct = new IndTestFisherZ(data, 0.05);
+
+        checkFacts(facts, cache, direct);
+        assertEquals(facts.size(), cache.getNumMisses());
+
+        // Hits report the score of their own fact, not of the last fact the wrapped test computed.
+        checkFacts(facts, cache, direct);
+        assertEquals(facts.size(), cache.getNumHits());
+
+        // Remembered p-values are judged again at a new alpha.
+        cache.setAlpha(0.2);
+        direct.setAlpha(0.2);
+        checkFacts(facts, cache, direct);
+        assertEquals(facts.size(), cache.getNumMisses());
+
+        File file = File.createTempFile("fisherz", ".cache");
+        file.deleteOnExit();
+        cache.save(file);
+
+        IndTestCache cache2 = new IndTestCache(new IndTestFisherZ(data, 0.01));
+        assertEquals(facts.size(), cache2.load(file));
+        direct.setAlpha(0.01);
+        checkFacts(facts, cache2, direct);
+        assertEquals(0, cache2.getNumMisses());
+    }
+
+    private static void checkFacts(List<List<Node>> facts, IndTestCache cache, IndTestFisherZ direct) {
+        for (List<Node> fact : facts) {
+            Node x = fact.get(0);
+            Node y = fact.get(1);
+            List<Node> z = fact.subList(2, fact.size());
+
+            assertEquals(direct.isIndependent(x, y, z), cache.isIndependent(x, y, z));
+            assertEquals(direct.getPValue(), cache.getPValue(), 1e-12);
+            assertEquals(direct.getScore(), cache.getScore(), 1e-9);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.BoxDataSet;
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.VerticalDoubleDataBox;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.IndTestHsic;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that HSIC with rank-limited incomplete Cholesky factors agrees with HSIC on the full Gram matrices.
+ */
+public final class TestIndTestHsic {
+
+    @Test
+    public void testLowRank() {
+        RandomUtil random = RandomUtil.getInstance();
+        random.setSeed(48203L);
+
+        List<Node> variables = new ArrayList<>();
+        for (String name : new String[]{"X", "Y", "Z"}) variables.add(new ContinuousVariable(name));
+        DataSet data = new BoxDataSet(new VerticalDoubleDataBox(150, 3), variables);
+
+        for (int i = 0; i < 150; i++) {
+            double z = random.nextNormal(0, 1);
+            data.setDouble(i, 0, Math.sin(z) + 0.5 * random.nextNormal(0, 1));
+            data.setDouble(i, 1, z * z + 0.5 * random.nextNormal(0, 1));
+            data.setDouble(i, 2, z);
+        }
+
+        Node x = variables.get(0);
+        Node y = variables.get(1);
+        Node z = variables.get(2);
+
+        checkLowRank(data, x, y, Collections.<Node>emptyList());
+        checkLowRank(data, x, z, Collections.<Node>emptyList());
+        checkLowRank(data, x, y, Collections.singletonList(z));
+    }
+
+    // The statistic is deterministic; the p-value depends on random permutations and is not compared.
+    private static void checkLowRank(DataSet data, Node x, Node y, List<Node> z) {
+        IndTestHsic exact = new IndTestHsic(data, 0.05);
+        exact.setIncompleteCholesky(0);
+        exact.setPerms(10);
+        exact.isIndependent(x, y, z);
+
+        IndTestHsic lowRank = new IndTestHsic(data, 0.05);
+        lowRank.setRank(40);
+        lowRank.setPerms(10);
+        lowRank.isIndependent(x, y, z);
+
+        assertEquals(exact.getHsic(), lowRank.getHsic(), 1e-2 * Math.abs(exact.getHsic()));
+    }
+}
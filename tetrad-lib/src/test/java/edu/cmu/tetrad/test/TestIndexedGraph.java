@@ -0,0 +1,126 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.graph.*;
+import edu.cmu.tetrad.search.MeekRules;
+import edu.cmu.tetrad.search.SearchGraphUtils;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests IndexedGraph against EdgeListGraph.
+ */
+public final class TestIndexedGraph {
+
+    @Test
+    public void testSequence1() {
+        Node x1 = new GraphNode("x1");
+        Node x2 = new GraphNode("x2");
+        Node x3 = new GraphNode("x3");
+        Node x4 = new GraphNode("x4");
+
+        IndexedGraph graph = new IndexedGraph();
+
+        graph.addNode(x1);
+        graph.addNode(x2);
+        graph.addNode(x3);
+        graph.addNode(x4);
+
+        graph.addDirectedEdge(x1, x2);
+        graph.addDirectedEdge(x2, x3);
+        graph.addDirectedEdge(x3, x4);
+
+        assertEquals(Collections.singletonList(x2), graph.getChildren(x1));
+        assertEquals(Collections.singletonList(x3), graph.getParents(x4));
+        assertTrue(graph.isDConnectedTo(x1, x3, Collections.<Node>emptyList()));
+        assertFalse(graph.isDConnectedTo(x1, x3, Collections.singletonList(x2)));
+        assertTrue(graph.isAncestorOf(x1, x4));
+
+        // Already adjacent by a different edge.
+        try {
+            graph.addDirectedEdge(x2, x1);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+
+        graph.setEndpoint(x2, x1, Endpoint.ARROW);
+        assertEquals(Edges.bidirectedEdge(x1, x2), graph.getEdge(x1, x2));
+
+        graph.removeNode(x2);
+        assertEquals(3, graph.getNumNodes());
+        assertEquals(1, graph.getNumEdges());
+        assertEquals(2, graph.getIndex(x4));
+        assertTrue(graph.isParentOf(graph.getIndex(x3), graph.getIndex(x4)));
+        assertFalse(graph.isDConnectedTo(x1, x3, Collections.<Node>emptyList()));
+    }
+
+    @Test
+    public void testAgreesWithEdgeListGraph() {
+        RandomUtil.getInstance().setSeed(48283934L);
+
+        for (int run = 0; run < 10; run++) {
+            Graph dag = new EdgeListGraph(GraphUtils.randomGraph(20, 0, 30, 100, 100, 100, false));
+            IndexedGraph graph = new IndexedGraph(dag);
+
+            assertEquals(dag, graph);
+            assertEquals(graph, new EdgeListGraph(graph));
+
+            List<Node> nodes = dag.getNodes();
+
+            for (Node x : nodes) {
+                assertEquals(dag.getParents(x).size(), graph.getParents(x).size());
+                assertEquals(dag.getAdjacentNodes(x).size(), graph.getAdjacentNodes(x).size());
+
+                for (Node y : nodes) {
+                    if (x == y) continue;
+
+                    assertEquals(dag.getEndpoint(x, y), graph.getEndpoint(x, y));
+                    assertEquals(dag.isAncestorOf(x, y), graph.isAncestorOf(x, y));
+
+                    List<Node> z = new ArrayList<>();
+
+                    for (Node w : nodes) {
+                        if (w != x && w != y && RandomUtil.getInstance().nextDouble() < 0.2) z.add(w);
+                    }
+
+                    assertEquals(dag.isDConnectedTo(x, y, z), graph.isDConnectedTo(x, y, z));
+                }
+            }
+
+            // Meek rules give the same pattern on either representation.
+            Graph pattern1 = new EdgeListGraph(dag);
+            Graph pattern2 = new IndexedGraph(dag);
+            SearchGraphUtils.basicPattern(pattern1, false);
+            SearchGraphUtils.basicPattern(pattern2, false);
+            new MeekRules().orientImplied(pattern1);
+            new MeekRules().orientImplied(pattern2);
+            assertEquals(pattern1, pattern2);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.bayes.*;
+import edu.cmu.tetrad.graph.Dag;
+import edu.cmu.tetrad.graph.GraphUtils;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks JunctionTreeUpdater against RowSummingExactUpdater on random networks, with evidence that narrows, widens
+ * and manipulates.
+ */
+public final class TestJunctionTreeUpdater {
+
+    @Test
+    public void testAgainstRowSumming() {
+        RandomUtil.getInstance().setSeed(48382L);
+
+        for (int trial = 0; trial < 5; trial++) {
+            Dag dag = new Dag(GraphUtils.randomGraph(9, 0, 14, 5, 3, 5, false));
+            BayesIm bayesIm = new MlBayesIm(new BayesPm(dag, 2, 3), MlBayesIm.RANDOM);
+
+            RowSummingExactUpdater rowSumming = new RowSummingExactUpdater(bayesIm);
+            JunctionTreeUpdater junctionTree = new JunctionTreeUpdater(bayesIm);
+
+            // No evidence, then evidence that narrows twice, then evidence that is withdrawn.
+            Evidence evidence = Evidence.tautology(bayesIm);
+            check(bayesIm, evidence, rowSumming, junctionTree);
+
+            evidence.getProposition().setCategory(2, 1);
+            check(bayesIm, evidence, rowSumming, junctionTree);
+
+            evidence.getProposition().removeCategory(7, 0);
+            evidence.getProposition().setCategory(5, 0);
+            check(bayesIm, evidence, rowSumming, junctionTree);
+
+            evidence.getProposition().setVariable(2, true);
+            check(bayesIm, evidence, rowSumming, junctionTree);
+
+            // Manipulations.
+            evidence.setManipulated(4, true);
+            evidence.getProposition().setCategory(4, 1);
+            check(bayesIm, evidence, rowSumming, junctionTree);
+
+            evidence.setManipulated(4, false);
+            check(bayesIm, evidence, rowSumming, junctionTree);
+        }
+    }
+
+    @Test
+    public void testImpossibleEvidence() {
+        RandomUtil.getInstance().setSeed(2939L);
+        Dag dag = new Dag(GraphUtils.randomGraph(5, 0, 6, 3, 3, 3, false));
+        BayesIm bayesIm = new MlBayesIm(new BayesPm(dag, 2, 2), MlBayesIm.RANDOM);
+
+        Evidence evidence = Evidence.tautology(bayesIm);
+        evidence.getProposition().setVariable(0, false);
+
+        JunctionTreeUpdater updater = new JunctionTreeUpdater(bayesIm, evidence);
+        assertTrue(Double.isNaN(updater.getMarginal(1, 0)));
+
+        evidence.getProposition().setVariable(0, true);
+        updater.setEvidence(evidence);
+        assertEquals(1.0, updater.getMarginal(1, 0) + updater.getMarginal(1, 1), 1e-10);
+    }
+
+    private void check(BayesIm bayesIm, Evidence evidence, ManipulatingBayesUpdater expected,
+                       ManipulatingBayesUpdater actual) {
+        expected.setEvidence(evidence);
+        actual.setEvidence(evidence);
+
+        for (int node = 0; node < bayesIm.getNumNodes(); node++) {
+            for (int category = 0; category < bayesIm.getNumColumns(node); category++) {
+                assertEquals(expected.getMarginal(node, category), actual.getMarginal(node, category), 1e-10);
+            }
+        }
+
+        int[] variables = {0, 3, 8};
+        int[] values = {1, 0, 1};
+        assertEquals(expected.getJointMarginal(variables, values), actual.getJointMarginal(variables, values), 1e-10);
+
+        BayesIm expectedIm = expected.getUpdatedBayesIm();
+        BayesIm actualIm = actual.getUpdatedBayesIm();
+
+        for (int node = 0; node < expectedIm.getNumNodes(); node++) {
+            for (int row = 0; row < expectedIm.getNumRows(node); row++) {
+                for (int col = 0; col < expectedIm.getNumColumns(node); col++) {
+                    double p = expectedIm.getProbability(node, row, col);
+                    double q = actualIm.getProbability(node, row, col);
+
+                    if (Double.isNaN(p)) {
+                        assertTrue(Double.isNaN(q));
+                    } else {
+                        assertEquals(p, q, 1e-10);
+                    }
+                }
+            }
+        }
+    }
+}
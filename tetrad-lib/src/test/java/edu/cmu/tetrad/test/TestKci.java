@@ -0,0 +1,120 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.BoxDataSet;
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.VerticalDoubleDataBox;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.Kci;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Tests that KCI with low-rank kernel factors agrees with KCI on the full kernel matrices.
+ */
+public final class TestKci {
+
+    @Test
+    public void testLowRankUnconditional() {
+        DataSet data = data(200, 3948L);
+        Node x = data.getVariable("X");
+        Node y = data.getVariable("Y");
+        Node z = data.getVariable("Z");
+        Node w = data.getVariable("W");
+
+        checkLowRank(data, 0.01, x, y, Collections.<Node>emptyList());
+        checkLowRank(data, 0.01, w, z, Collections.<Node>emptyList());
+    }
+
+    @Test
+    public void testLowRankConditional() {
+        DataSet data = data(200, 2917L);
+        Node x = data.getVariable("X");
+        Node y = data.getVariable("Y");
+        Node z = data.getVariable("Z");
+        Node w = data.getVariable("W");
+
+        // With the default threshold U'U is small enough to be formed; with the lower threshold more eigenvalues
+        // are kept, and its eigenvalues are found without forming it.
+        for (double threshold : new double[]{0.01, 1e-4}) {
+            checkLowRank(data, threshold, x, y, Collections.singletonList(z));
+            boolean independent = checkLowRank(data, threshold, x, w, Collections.singletonList(z));
+            assertFalse(independent);
+        }
+    }
+
+    // Checks that the low-rank test gives the same p-value as the exact one, to within the error of the
+    // approximation, and returns the judgment of the low-rank test.
+    private static boolean checkLowRank(DataSet data, double threshold, Node x, Node y, List<Node> z) {
+        Kci exact = new Kci(data, 0.05);
+        exact.setApproximate(true);
+        exact.setThreshold(threshold);
+        boolean exactIndependent = exact.isIndependent(x, y, z);
+
+        Kci lowRank = new Kci(data, 0.05);
+        lowRank.setApproximate(true);
+        lowRank.setThreshold(threshold);
+        lowRank.setRank(60);
+        boolean lowRankIndependent = lowRank.isIndependent(x, y, z);
+
+        assertEquals(exact.getPValue(), lowRank.getPValue(), 0.05);
+
+        if (exact.getPValue() < 0.01 || exact.getPValue() > 0.1) {
+            assertEquals(exactIndependent, lowRankIndependent);
+        }
+
+        return lowRankIndependent;
+    }
+
+    // Z -> X, Z -> Y, X -> W, with nonlinear edges, so X _||_ Y | Z but not X _||_ W | Z.
+    private static DataSet data(int n, long seed) {
+        RandomUtil random = RandomUtil.getInstance();
+        random.setSeed(seed);
+
+        List<Node> variables = new ArrayList<>();
+        for (String name : new String[]{"X", "Y", "Z", "W"}) variables.add(new ContinuousVariable(name));
+        DataSet data = new BoxDataSet(new VerticalDoubleDataBox(n, 4), variables);
+
+        for (int i = 0; i < n; i++) {
+            double z = random.nextNormal(0, 1);
+            double x = Math.sin(z) + 0.5 * random.nextNormal(0, 1);
+            double y = z * z + 0.5 * random.nextNormal(0, 1);
+            double w = Math.tanh(2 * x) + 0.5 * random.nextNormal(0, 1);
+
+            data.setDouble(i, 0, x);
+            data.setDouble(i, 1, y);
+            data.setDouble(i, 2, z);
+            data.setDouble(i, 3, w);
+        }
+
+        return data;
+    }
+}
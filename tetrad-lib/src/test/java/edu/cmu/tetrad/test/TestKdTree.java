@@ -0,0 +1,120 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.util.KdTree;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks KdTree neighbor queries against a scan over all rows.
+ */
+public final class TestKdTree {
+
+    @Test
+    public void testNearest() {
+        Random random = new Random(48203L);
+
+        for (int trial = 0; trial < 20; trial++) {
+            double[][] data = randomData(random, 4, 1 + random.nextInt(2000), trial % 3 == 0);
+            int[] columns = trial % 2 == 0 ? new int[]{0, 1, 3} : new int[]{2};
+            check(random, data, columns, 1 + random.nextInt(100), Double.POSITIVE_INFINITY);
+        }
+    }
+
+    @Test
+    public void testRadius() {
+        Random random = new Random(1029384L);
+
+        for (int trial = 0; trial < 10; trial++) {
+            double[][] data = randomData(random, 3, 1 + random.nextInt(2000), false);
+            check(random, data, new int[]{0, 1, 2}, data[0].length, 0.5);
+            check(random, data, new int[]{0, 2}, 20, 0.3);
+        }
+    }
+
+    @Test
+    public void testMissingValues() {
+        Random random = new Random(39485L);
+        double[][] data = randomData(random, 3, 500, false);
+        data[1][17] = Double.NaN;
+        data[0][250] = Double.NaN;
+        check(random, data, new int[]{0, 1}, 30, Double.POSITIVE_INFINITY);
+    }
+
+    private void check(Random random, double[][] data, int[] columns, int k, double radius) {
+        int n = data[0].length;
+        KdTree tree = new KdTree(data, columns);
+        int[] neighbors = new int[k];
+        double[] distances = new double[k];
+
+        for (int q = 0; q < 30; q++) {
+            int row = random.nextInt(n);
+            int count = tree.nearest(row, k, radius, neighbors, distances);
+
+            double[] all = new double[n];
+
+            for (int j = 0; j < n; j++) {
+                double sum = 0.0;
+
+                for (int c : columns) {
+                    double d = data[c][row] - data[c][j];
+                    if (!Double.isNaN(d)) sum += d * d;
+                }
+
+                all[j] = Math.sqrt(sum);
+            }
+
+            double[] sorted = all.clone();
+            Arrays.sort(sorted);
+
+            int expected = 0;
+            while (expected < Math.min(k, n) && sorted[expected] <= radius) expected++;
+
+            assertEquals(expected, count);
+
+            double[] found = Arrays.copyOf(distances, count);
+            Arrays.sort(found);
+
+            for (int i = 0; i < count; i++) {
+                assertEquals(sorted[i], found[i], 1e-12);
+                assertEquals(all[neighbors[i]], distances[i], 1e-12);
+            }
+        }
+    }
+
+    private double[][] randomData(Random random, int numColumns, int n, boolean ties) {
+        double[][] data = new double[numColumns][n];
+
+        for (int c = 0; c < numColumns; c++) {
+            for (int i = 0; i < n; i++) {
+                data[c][i] = ties ? random.nextInt(5) : random.nextGaussian();
+            }
+        }
+
+        return data;
+    }
+}
@@ -25,6 +25,8 @@ import edu.cmu.tetrad.data.ContinuousVariable;
 import edu.cmu.tetrad.data.DataSet;
 import edu.cmu.tetrad.graph.*;
 import edu.cmu.tetrad.sem.LargeScaleSimulation;
+import edu.cmu.tetrad.util.ExecutionService;
+import edu.cmu.tetrad.util.RandomUtil;
 import org.junit.Test;
 
 import java.util.ArrayList;
@@ -52,9 +54,36 @@ public class TestLargeSemSimulator {
 
         assertEquals(1000, dataset.getNumRows());
     }
-}
 
+    @Test
+    public void testRecursiveSameForAnyParallelism() {
+        ExecutionService executor = ExecutionService.getInstance();
+        int parallelism = executor.getParallelism();
+
+        try {
+            executor.setParallelism(1);
+            DataSet data1 = simulateRecursive(3948234L);
 
+            executor.setParallelism(4);
+            DataSet data4 = simulateRecursive(3948234L);
+
+            for (int i = 0; i < data1.getNumRows(); i++) {
+                for (int j = 0; j < data1.getNumColumns(); j++) {
+                    assertEquals(data1.getDouble(i, j), data4.getDouble(i, j), 0.0);
+                }
+            }
+        } finally {
+            executor.setParallelism(parallelism);
+        }
+    }
 
+    private DataSet simulateRecursive(long seed) {
+        RandomUtil.getInstance().setSeed(seed);
 
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) nodes.add(new ContinuousVariable("X" + i));
 
+        Graph graph = GraphUtils.randomGraph(nodes, 0, 10, 5, 5, 5, false);
+        return new LargeScaleSimulation(graph).simulateDataRecursive(1000);
+    }
+}
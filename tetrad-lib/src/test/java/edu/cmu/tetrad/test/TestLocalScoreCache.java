@@ -0,0 +1,198 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.graph.Dag;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.GraphUtils;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.CachingScore;
+import edu.cmu.tetrad.search.Fges;
+import edu.cmu.tetrad.search.LocalScoreCache;
+import edu.cmu.tetrad.search.SemBicScore;
+import edu.cmu.tetrad.sem.SemIm;
+import edu.cmu.tetrad.sem.SemPm;
+import edu.cmu.tetrad.util.RandomUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the local score cache and the caching score wrapper.
+ */
+public class TestLocalScoreCache {
+
+    @Test
+    public void testParentOrderIgnored() {
+        LocalScoreCache cache = new LocalScoreCache();
+        cache.add(3, new int[]{5, 1, 2}, 1.5);
+
+        assertEquals(1.5, cache.get(3, new int[]{2, 5, 1}), 0.0);
+        assertTrue(Double.isNaN(cache.get(3, new int[]{1, 2})));
+        assertTrue(Double.isNaN(cache.get(4, new int[]{1, 2, 5})));
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testBounded() {
+        LocalScoreCache cache = new LocalScoreCache(1000);
+
+        for (int i = 0; i < 100000; i++) {
+            cache.add(i % 17, new int[]{i}, i);
+        }
+
+        assertTrue(cache.size() <= 1000);
+        assertEquals(99999.0, cache.get(99999 % 17, new int[]{99999}), 0.0);
+    }
+
+    @Test
+    public void testPromotion() {
+        // One segment, with generations of 20 scores.
+        LocalScoreCache cache = new LocalScoreCache(40);
+
+        for (int i = 0; i < 21; i++) {
+            cache.add(i % 3, new int[]{i}, i);
+        }
+
+        // The first 20 scores are now in the old generation; hits move them to the current one.
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, cache.get(i % 3, new int[]{i}), 0.0);
+        }
+
+        assertEquals(21, cache.size());
+
+        for (int i = 0; i < 21; i++) {
+            assertEquals(i, cache.get(i % 3, new int[]{i}), 0.0);
+        }
+
+        assertEquals(21, cache.size());
+    }
+
+    @Test
+    public void testChurn() {
+        LocalScoreCache cache = new LocalScoreCache(40);
+        Random random = new Random(2938L);
+
+        for (int op = 0; op < 20000; op++) {
+            int k = random.nextInt(50);
+            double score = cache.get(k % 5, new int[]{k, k + 1});
+
+            if (Double.isNaN(score)) {
+                cache.add(k % 5, new int[]{k + 1, k}, k);
+            } else {
+                assertEquals(k, score, 0.0);
+            }
+
+            assertTrue(cache.size() <= 40);
+        }
+    }
+
+    @Test
+    public void testDuplicateParents() {
+        LocalScoreCache cache = new LocalScoreCache();
+        cache.add(3, new int[]{1, 2}, 1.0);
+
+        assertTrue(Double.isNaN(cache.get(3, new int[]{1, 1})));
+        assertTrue(Double.isNaN(cache.get(3, new int[]{2, 2})));
+        assertEquals(1.0, cache.get(3, new int[]{2, 1}), 0.0);
+    }
+
+    @Test
+    public void testNaNScoresStored() {
+        LocalScoreCache cache = new LocalScoreCache();
+        int[] calls = new int[1];
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(Double.isNaN(cache.computeIfAbsent(2, new int[]{4, 0}, () -> {
+                calls[0]++;
+                return Double.NaN;
+            })));
+        }
+
+        assertEquals(1, calls[0]);
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testGrowth() {
+        LocalScoreCache cache = new LocalScoreCache();
+
+        for (int i = 0; i < 50000; i++) {
+            cache.add(i % 13, new int[]{i, i + 1}, i);
+        }
+
+        assertEquals(50000, cache.size());
+
+        for (int i = 0; i < 50000; i++) {
+            assertEquals(i, cache.get(i % 13, new int[]{i + 1, i}), 0.0);
+        }
+    }
+
+    @Test
+    public void testCachingScore() {
+        RandomUtil.getInstance().setSeed(492939492L);
+
+        List<Node> nodes = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            nodes.add(new ContinuousVariable("X" + (i + 1)));
+        }
+
+        Graph dag = new Dag(GraphUtils.randomGraph(nodes, 0, 15, 4, 4, 4, false));
+        DataSet data = new SemIm(new SemPm(dag)).simulateData(1000, false);
+
+        SemBicScore score = new SemBicScore(data);
+        CachingScore cachingScore = new CachingScore(score);
+
+        for (int k = 0; k < 2; k++) {
+            for (int i = 0; i < 10; i++) {
+                for (int j = 0; j < 10; j++) {
+                    if (i == j) continue;
+                    int[] z = {(i + 2) % 10 == j ? (i + 3) % 10 : (i + 2) % 10};
+                    if (z[0] == i || z[0] == j) continue;
+
+                    assertEquals(score.localScoreDiff(i, j, z), cachingScore.localScoreDiff(i, j, z), 0.0);
+                    assertEquals(score.localScore(j, z), cachingScore.localScore(j, z), 0.0);
+                }
+            }
+        }
+
+        assertTrue(cachingScore.getHits() > 0);
+
+        Fges fges = new Fges(new SemBicScore(data));
+        fges.setScoreCacheSize(0);
+        Graph uncached = fges.search();
+
+        Graph cached = new Fges(new SemBicScore(data)).search();
+
+        assertEquals(uncached, cached);
+    }
+}
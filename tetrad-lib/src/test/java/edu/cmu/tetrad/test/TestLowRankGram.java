@@ -0,0 +1,137 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.search.kernel.LowRankGram;
+import edu.cmu.tetrad.util.RandomUtil;
+import edu.cmu.tetrad.util.TetradMatrix;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests LowRankGram against the dense matrices it stands for.
+ */
+public final class TestLowRankGram {
+
+    @Test
+    public void testIncompleteCholesky() {
+        RandomUtil.getInstance().setSeed(3928L);
+        TetradMatrix k = gram(randomMatrix(30, 4));
+
+        // K has rank 4, so the factorization stops after 4 columns and reconstructs K.
+        LowRankGram g = LowRankGram.incompleteCholesky(k::get, 30, 1e-10, 30);
+        assertEquals(30, g.size());
+        assertEquals(4, g.rank());
+        assertClose(k, gram(g.toMatrix()), 1e-8);
+
+        // With the rank limited, the largest remaining diagonal bounds every entry of the error.
+        LowRankGram g2 = LowRankGram.incompleteCholesky(k::get, 30, 1e-10, 2);
+        assertEquals(2, g2.rank());
+        TetradMatrix error = k.minus(gram(g2.toMatrix()));
+        double maxDiagonal = 0.0;
+        for (int i = 0; i < 30; i++) maxDiagonal = Math.max(maxDiagonal, error.get(i, i));
+        for (int i = 0; i < 30; i++) {
+            for (int j = 0; j < 30; j++) {
+                assertEquals(0.0, error.get(i, j), maxDiagonal + 1e-10);
+            }
+        }
+    }
+
+    @Test
+    public void testCentered() {
+        RandomUtil.getInstance().setSeed(1093L);
+        TetradMatrix x = randomMatrix(20, 3);
+        TetradMatrix h = TetradMatrix.identity(20);
+
+        for (int i = 0; i < 20; i++) {
+            for (int j = 0; j < 20; j++) h.set(i, j, h.get(i, j) - 1.0 / 20);
+        }
+
+        TetradMatrix expected = h.times(gram(x)).times(h);
+        assertClose(expected, gram(LowRankGram.fromMatrix(x).centered().toMatrix()), 1e-10);
+    }
+
+    @Test
+    public void testProducts() {
+        RandomUtil.getInstance().setSeed(5820L);
+        TetradMatrix x = randomMatrix(15, 3);
+        TetradMatrix y = randomMatrix(15, 3);
+        TetradMatrix m = randomMatrix(3, 2);
+
+        LowRankGram gx = LowRankGram.fromMatrix(x);
+        LowRankGram gy = LowRankGram.fromMatrix(y);
+
+        assertClose(x, gx.toMatrix(), 0.0);
+        assertClose(x.transpose().times(y), gx.crossProduct(gy), 1e-10);
+        assertClose(x.transpose().times(x), gx.crossProduct(gx), 1e-10);
+        assertClose(x.times(m), gx.times(m).toMatrix(), 1e-10);
+        assertClose(x.minus(y), gx.minus(gy).toMatrix(), 1e-10);
+
+        TetradMatrix product = x.transpose().times(y);
+        double squaredNorm = 0.0;
+
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) squaredNorm += product.get(i, j) * product.get(i, j);
+        }
+
+        assertEquals(squaredNorm, LowRankGram.squaredNorm(product), 1e-10);
+
+        double[] diagonal = gx.diagonal();
+        TetradMatrix k = gram(x);
+
+        for (int i = 0; i < 15; i++) {
+            assertEquals(k.get(i, i), diagonal[i], 1e-10);
+            for (int c = 0; c < 3; c++) assertEquals(x.get(i, c), gx.get(i, c), 0.0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSizeMismatch() {
+        LowRankGram.fromMatrix(new TetradMatrix(5, 2)).crossProduct(LowRankGram.fromMatrix(new TetradMatrix(6, 2)));
+    }
+
+    private static TetradMatrix randomMatrix(int rows, int columns) {
+        TetradMatrix x = new TetradMatrix(rows, columns);
+
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) x.set(i, j, RandomUtil.getInstance().nextNormal(0, 1));
+        }
+
+        return x;
+    }
+
+    private static TetradMatrix gram(TetradMatrix x) {
+        return x.times(x.transpose());
+    }
+
+    private static void assertClose(TetradMatrix expected, TetradMatrix actual, double tolerance) {
+        assertEquals(expected.rows(), actual.rows());
+        assertEquals(expected.columns(), actual.columns());
+
+        for (int i = 0; i < expected.rows(); i++) {
+            for (int j = 0; j < expected.columns(); j++) {
+                assertEquals(expected.get(i, j), actual.get(i, j), tolerance);
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import cern.colt.matrix.DoubleMatrix1D;
+import cern.colt.matrix.impl.DenseDoubleMatrix1D;
+import cern.colt.matrix.impl.DenseDoubleMatrix2D;
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.DiscreteVariable;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.Node;
+import edu.pitt.csb.mgm.MGM;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the MGM pseudolikelihood gradient against finite differences and the warm started lambda path.
+ */
+public final class TestMGM {
+
+    private static final int[] LEVELS = {2, 3, 4};
+
+    @Test
+    public void testGradient() {
+        MGM mgm = model(new Random(2302L), 400);
+        Random random = new Random(31L);
+
+        int p = 5;
+        int lsum = 9;
+        int size = p * p + p + p * lsum + lsum * lsum + p + lsum;
+        DoubleMatrix1D par = new DenseDoubleMatrix1D(size);
+
+        for (int i = 0; i < size; i++) {
+            par.set(i, random.nextDouble() < 0.4 ? 0.0 : 0.3 * random.nextGaussian());
+        }
+
+        for (int s = 0; s < p; s++) {
+            par.set(p * p + s, 0.5 + random.nextDouble());
+        }
+
+        DoubleMatrix1D grad = new DenseDoubleMatrix1D(size);
+        double value = mgm.smooth(par, grad);
+
+        assertEquals(mgm.smoothValue(par), value, 1e-12);
+
+        double[] gradOnly = mgm.smoothGradient(par).toArray();
+        double h = 1e-6;
+
+        for (int i = 0; i < size; i++) {
+            double old = par.get(i);
+            par.set(i, old + h);
+            double plus = mgm.smoothValue(par);
+            par.set(i, old - h);
+            double minus = mgm.smoothValue(par);
+            par.set(i, old);
+
+            assertEquals((plus - minus) / (2 * h), grad.get(i), 1e-5);
+            assertEquals(grad.get(i), gradOnly[i], 1e-12);
+        }
+    }
+
+    @Test
+    public void testPath() {
+        MGM mgm = model(new Random(9487L), 500);
+
+        double[][] lambdas = {{.5, .5, .5}, {.3, .3, .3}, {.2, .2, .2}, {.1, .1, .1}};
+        List<Graph> path = mgm.searchPath(lambdas);
+
+        assertEquals(lambdas.length, path.size());
+
+        for (int k = 1; k < path.size(); k++) {
+            assertTrue(path.get(k).getNumEdges() >= path.get(k - 1).getNumEdges() - 1);
+        }
+
+        MGM cold = model(new Random(9487L), 500);
+        Graph coldGraph = cold.search();
+
+        assertEquals(coldGraph.getNumEdges(), path.get(path.size() - 1).getNumEdges(), 2);
+    }
+
+    // Five continuous variables in a chain, with three discrete variables depending on them.
+    private static MGM model(Random random, int n) {
+        int p = 5;
+        int q = LEVELS.length;
+
+        double[][] x = new double[n][p];
+        double[][] y = new double[n][q];
+
+        for (int i = 0; i < n; i++) {
+            x[i][0] = random.nextGaussian();
+
+            for (int k = 1; k < p; k++) {
+                x[i][k] = 0.6 * x[i][k - 1] + random.nextGaussian();
+            }
+
+            for (int r = 0; r < q; r++) {
+                int level = x[i][r] > 0.5 ? 1 : 0;
+                if (random.nextDouble() < 0.3) level = random.nextInt(LEVELS[r]);
+                y[i][r] = level;
+            }
+        }
+
+        // Every level must be observed.
+        for (int r = 0; r < q; r++) {
+            for (int a = 0; a < LEVELS[r]; a++) {
+                y[a][r] = a;
+            }
+        }
+
+        List<Node> variables = new ArrayList<>();
+        for (int k = 0; k < p; k++) variables.add(new ContinuousVariable("X" + (k + 1)));
+        for (int r = 0; r < q; r++) variables.add(new DiscreteVariable("Y" + (r + 1), LEVELS[r]));
+
+        return new MGM(new DenseDoubleMatrix2D(x), new DenseDoubleMatrix2D(y), variables, LEVELS,
+                new double[]{.1, .1, .1});
+    }
+}
@@ -0,0 +1,222 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.util.PartialCorrelationKernel;
+import edu.cmu.tetrad.util.StatUtils;
+import edu.cmu.tetrad.util.TetradMatrix;
+import org.apache.commons.math3.linear.SingularMatrixException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that PartialCorrelationKernel gives the partial correlations of StatUtils.partialCorrelation, including
+ * from several threads at once, and NaN where StatUtils finds the submatrix singular.
+ */
+public final class TestPartialCorrelationKernel {
+
+    @Test
+    public void testEquivalence() {
+        double[][] cov = covariance(randomMatrix(8, new Random(2839L)));
+        PartialCorrelationKernel kernel = new PartialCorrelationKernel(cov);
+
+        for (int[] test : tests(8, new Random(9283L), 500)) {
+            double expected = StatUtils.partialCorrelation(submatrix(cov, test));
+            assertEquals(expected, kernel.partialCorrelation(test[0], test[1], z(test)), 1e-10);
+        }
+    }
+
+    @Test
+    public void testPrefixOfZ() {
+        double[][] cov = covariance(randomMatrix(6, new Random(3829L)));
+        PartialCorrelationKernel kernel = new PartialCorrelationKernel(cov);
+        int[] z = {4, 1, 5, 2};
+
+        for (int numZ = 0; numZ <= z.length; numZ++) {
+            int[] test = new int[numZ + 2];
+            test[0] = 0;
+            test[1] = 3;
+            System.arraycopy(z, 0, test, 2, numZ);
+
+            double expected = StatUtils.partialCorrelation(submatrix(cov, test));
+            assertEquals(expected, kernel.partialCorrelation(0, 3, z, numZ), 1e-10);
+        }
+    }
+
+    @Test
+    public void testSingular() {
+        // Integer entries, with row 3 the sum of rows 0 and 1, so that the covariance matrix is exactly singular.
+        double[][] a = {
+                {1, 2, 0, -1, 3},
+                {0, 1, 2, 1, -2},
+                {2, -1, 1, 0, 1},
+                {1, 3, 2, 0, 1},
+                {-1, 0, 1, 2, 2},
+                {3, 1, -2, 1, 0}
+        };
+
+        double[][] cov = covariance(a);
+        PartialCorrelationKernel kernel = new PartialCorrelationKernel(cov);
+
+        int[][] singular = {{2, 4, 0, 1, 3}, {3, 2, 0, 1}, {0, 2, 1, 3}, {1, 3, 0}, {4, 3, 0, 1}};
+
+        for (int[] test : singular) {
+            assertTrue(Double.isNaN(kernel.partialCorrelation(test[0], test[1], z(test))));
+
+            try {
+                StatUtils.partialCorrelation(submatrix(cov, test));
+                fail("Expecting a singular submatrix.");
+            } catch (SingularMatrixException e) {
+                // Expected.
+            }
+        }
+
+        // Dropping any one of 0, 1 and 3 leaves a nonsingular submatrix.
+        int[][] nonsingular = {{2, 4, 0, 1}, {3, 2, 0}, {0, 2, 1}, {2, 4, 0, 3}};
+
+        for (int[] test : nonsingular) {
+            double expected = StatUtils.partialCorrelation(submatrix(cov, test));
+            assertEquals(expected, kernel.partialCorrelation(test[0], test[1], z(test)), 1e-10);
+        }
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+        final double[][] cov = covariance(randomMatrix(10, new Random(8392L)));
+        final PartialCorrelationKernel kernel = new PartialCorrelationKernel(cov);
+        final List<int[]> tests = tests(10, new Random(2394L), 2000);
+
+        final double[] expected = new double[tests.size()];
+
+        for (int t = 0; t < tests.size(); t++) {
+            expected[t] = StatUtils.partialCorrelation(submatrix(cov, tests.get(t)));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+
+            for (int thread = 0; thread < 8; thread++) {
+                final int offset = thread;
+
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < tests.size(); i++) {
+                        int t = (i + offset * 250) % tests.size();
+                        int[] test = tests.get(t);
+
+                        double r1 = kernel.partialCorrelation(test[0], test[1], z(test));
+                        double r2 = StatUtils.partialCorrelation(submatrix(cov, test));
+
+                        if (Math.abs(r1 - expected[t]) > 1e-10 || r2 != expected[t]) {
+                            return false;
+                        }
+                    }
+
+                    return true;
+                }));
+            }
+
+            for (Future<Boolean> future : futures) {
+                assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Random tests x, y, z..., with up to 5 conditioning variables, all distinct.
+    private List<int[]> tests(int p, Random random, int numTests) {
+        List<int[]> tests = new ArrayList<>();
+
+        for (int t = 0; t < numTests; t++) {
+            int[] test = new int[2 + random.nextInt(Math.min(6, p - 1))];
+            List<Integer> indices = new ArrayList<>();
+            for (int i = 0; i < p; i++) indices.add(i);
+
+            for (int i = 0; i < test.length; i++) {
+                test[i] = indices.remove(random.nextInt(indices.size()));
+            }
+
+            tests.add(test);
+        }
+
+        return tests;
+    }
+
+    private static int[] z(int[] test) {
+        int[] z = new int[test.length - 2];
+        System.arraycopy(test, 2, z, 0, z.length);
+        return z;
+    }
+
+    // The submatrix over x, y, z..., in that order, as StatUtils expects.
+    private static TetradMatrix submatrix(double[][] cov, int[] test) {
+        TetradMatrix submatrix = new TetradMatrix(test.length, test.length);
+
+        for (int i = 0; i < test.length; i++) {
+            for (int j = 0; j < test.length; j++) {
+                submatrix.set(i, j, cov[test[i]][test[j]]);
+            }
+        }
+
+        return submatrix;
+    }
+
+    private double[][] randomMatrix(int p, Random random) {
+        double[][] a = new double[p][p + 3];
+
+        for (int i = 0; i < p; i++) {
+            for (int j = 0; j < p + 3; j++) {
+                a[i][j] = random.nextGaussian();
+            }
+        }
+
+        return a;
+    }
+
+    // A A'.
+    private double[][] covariance(double[][] a) {
+        int p = a.length;
+        double[][] cov = new double[p][p];
+
+        for (int i = 0; i < p; i++) {
+            for (int j = 0; j < p; j++) {
+                for (int k = 0; k < a[0].length; k++) {
+                    cov[i][j] += a[i][k] * a[j][k];
+                }
+            }
+        }
+
+        return cov;
+    }
+}
@@ -0,0 +1,113 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.graph.*;
+import edu.cmu.tetrad.search.IndTestDSep;
+import edu.cmu.tetrad.search.PossibleDsepStable;
+import edu.cmu.tetrad.search.SepsetMap;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests PossibleDsepStable using d-separation.
+ */
+public final class TestPossibleDsepStable {
+
+    // The example from p. 142-144 of Causation, Prediction, and Search.
+    private static final String DAG = "Latent(T1),Latent(T2),T1-->A,T1-->B,B-->E,F-->B,C-->F,C-->H," +
+            "H-->D,D-->A,T2-->D,T2-->E";
+
+    // The adjacency search leaves A *-* E in place, since A and E are separated only by {B, D, F}.
+    private static final String PAG = "A<->B,B-->E,Fo->B,Fo-oC,Co-oH,Ho->D,D<->E,D-->A,E<->A";
+
+    @Test
+    public void testPossibleDsep() {
+        Graph dag = GraphConverter.convert(DAG);
+        Graph pag = GraphUtils.replaceNodes(GraphConverter.convert(PAG), dag.getNodes());
+
+        PossibleDsepStable possibleDsep = new PossibleDsepStable(new IndTestDSep(dag));
+
+        assertEquals(names("B", "D", "F"), names(possibleDsep.getPossibleDsep(pag, dag.getNode("A"), dag.getNode("E"))));
+        assertEquals(names("B", "D", "H"), names(possibleDsep.getPossibleDsep(pag, dag.getNode("E"), dag.getNode("A"))));
+
+        possibleDsep.setMaxPathLength(1);
+        assertEquals(names("B", "D"), names(possibleDsep.getPossibleDsep(pag, dag.getNode("A"), dag.getNode("E"))));
+
+        possibleDsep.setMaxPathLength(-1);
+        SepsetMap sepsets = new SepsetMap();
+
+        assertEquals(1, possibleDsep.search(pag, sepsets));
+        assertFalse(pag.isAdjacentTo(dag.getNode("A"), dag.getNode("E")));
+        assertEquals(names("B", "D", "F"), names(sepsets.get(dag.getNode("A"), dag.getNode("E"))));
+        assertEquals(8, pag.getNumEdges());
+    }
+
+    /**
+     * The edges removed should not depend on the order of the nodes in the graph.
+     */
+    @Test
+    public void testOrderIndependence() {
+        Graph dag = GraphConverter.convert(DAG);
+        Graph pag = GraphUtils.replaceNodes(GraphConverter.convert(PAG), dag.getNodes());
+
+        List<Node> reversed = new ArrayList<>(pag.getNodes());
+        Collections.reverse(reversed);
+        Graph reversedPag = new EdgeListGraph(reversed);
+
+        for (Edge edge : pag.getEdges()) {
+            reversedPag.addEdge(edge);
+        }
+
+        PossibleDsepStable possibleDsep = new PossibleDsepStable(new IndTestDSep(dag));
+        possibleDsep.search(pag, new SepsetMap());
+        possibleDsep.search(reversedPag, new SepsetMap());
+
+        assertEquals(new HashSet<>(pag.getEdges()), new HashSet<>(reversedPag.getEdges()));
+        assertTrue(possibleDsep.getNumIndependenceTests() > 0);
+    }
+
+    private static Set<String> names(String... names) {
+        Set<String> set = new HashSet<>();
+        Collections.addAll(set, names);
+        return set;
+    }
+
+    private static Set<String> names(List<Node> nodes) {
+        Set<String> set = new HashSet<>();
+
+        for (Node node : nodes) {
+            set.add(node.getName());
+        }
+
+        return set;
+    }
+}
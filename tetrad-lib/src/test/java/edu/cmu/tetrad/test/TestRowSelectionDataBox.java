@@ -0,0 +1,149 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.DataBox;
+import edu.cmu.tetrad.data.RowSelectionDataBox;
+import edu.cmu.tetrad.data.VerticalDoubleDataBox;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that RowSelectionDataBox reads through to the selected rows of the underlying box and never writes to
+ * it.
+ */
+public final class TestRowSelectionDataBox {
+
+    @Test
+    public void testGet() {
+        DataBox view = new RowSelectionDataBox(underlying(), new int[]{2, 0, 2});
+
+        assertEquals(3, view.numRows());
+        assertEquals(2, view.numCols());
+        assertEquals(20.0, view.getDouble(0, 0), 0.0);
+        assertEquals(0.0, view.getDouble(1, 0), 0.0);
+        assertEquals(21.0, view.getDouble(2, 1), 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRowOutOfRange() {
+        new RowSelectionDataBox(underlying(), new int[]{0, 4});
+    }
+
+    @Test
+    public void testSetCopiesOnWrite() {
+        DataBox underlying = underlying();
+        RowSelectionDataBox view = new RowSelectionDataBox(underlying, new int[]{2, 0, 2});
+
+        view.set(0, 0, -1.0);
+
+        // The write goes to the view's own copy only, so the repeated row is
+        // now two rows.
+        assertEquals(-1.0, view.getDouble(0, 0), 0.0);
+        assertEquals(20.0, view.getDouble(2, 0), 0.0);
+        assertEquals(0.0, view.getDouble(1, 0), 0.0);
+        assertEquals(20.0, underlying.getDouble(2, 0), 0.0);
+        assertTrue(view.getDataBox() != underlying);
+
+        view.set(1, 1, null);
+        assertNull(view.get(1, 1));
+        assertEquals(1.0, underlying.getDouble(0, 1), 0.0);
+    }
+
+    @Test
+    public void testLike() {
+        DataBox underlying = underlying();
+        DataBox view = new RowSelectionDataBox(underlying, new int[]{1, 1, 3, 0, 2});
+        DataBox like = view.like();
+
+        assertEquals(5, like.numRows());
+        assertEquals(2, like.numCols());
+
+        for (int i = 0; i < like.numRows(); i++) {
+            for (int j = 0; j < like.numCols(); j++) {
+                assertNull(like.get(i, j));
+            }
+        }
+
+        like.set(0, 0, 5.0);
+        assertEquals(5.0, like.getDouble(0, 0), 0.0);
+        assertEquals(10.0, underlying.getDouble(1, 0), 0.0);
+        assertEquals(10.0, view.getDouble(0, 0), 0.0);
+    }
+
+    @Test
+    public void testCopy() {
+        DataBox underlying = underlying();
+        DataBox view = new RowSelectionDataBox(underlying, new int[]{3, 1});
+        DataBox copy = view.copy();
+
+        underlying.set(3, 0, 99.0);
+
+        assertEquals(2, copy.numRows());
+        assertEquals(30.0, copy.getDouble(0, 0), 0.0);
+        assertEquals(11.0, copy.getDouble(1, 1), 0.0);
+        assertEquals(99.0, view.getDouble(0, 0), 0.0);
+
+        copy.set(1, 1, 0.0);
+        assertEquals(11.0, underlying.getDouble(1, 1), 0.0);
+    }
+
+    @Test
+    public void testViewSelection() {
+        DataBox underlying = underlying();
+        DataBox view = new RowSelectionDataBox(underlying, new int[]{3, 1, 2});
+
+        // Rows of a view are again a view of the underlying box.
+        DataBox rows = view.viewSelection(new int[]{2, 0, 0}, new int[]{0, 1});
+        assertTrue(rows instanceof RowSelectionDataBox);
+        assertTrue(((RowSelectionDataBox) rows).getDataBox() == underlying);
+        assertEquals(20.0, rows.getDouble(0, 0), 0.0);
+        assertEquals(31.0, rows.getDouble(2, 1), 0.0);
+
+        DataBox cols = view.viewSelection(new int[]{1, 2}, new int[]{1});
+        assertEquals(2, cols.numRows());
+        assertEquals(1, cols.numCols());
+        assertEquals(11.0, cols.getDouble(0, 0), 0.0);
+        assertEquals(21.0, cols.getDouble(1, 0), 0.0);
+
+        // Once written to, selections are taken from the view's own copy.
+        view.set(0, 0, -3.0);
+        DataBox written = view.viewSelection(new int[]{0}, new int[]{0, 1});
+        assertEquals(-3.0, written.getDouble(0, 0), 0.0);
+        assertEquals(30.0, underlying.getDouble(3, 0), 0.0);
+    }
+
+    // Row i is (10i, 10i + 1).
+    private DataBox underlying() {
+        DataBox box = new VerticalDoubleDataBox(4, 2);
+
+        for (int i = 0; i < 4; i++) {
+            box.set(i, 0, 10.0 * i);
+            box.set(i, 1, 10.0 * i + 1);
+        }
+
+        return box;
+    }
+}
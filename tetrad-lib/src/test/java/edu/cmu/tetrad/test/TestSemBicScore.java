@@ -0,0 +1,150 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.BoxDataSet;
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.CovarianceMatrix;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.ICovarianceMatrix;
+import edu.cmu.tetrad.data.VerticalDoubleDataBox;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.SemBicScore;
+import edu.cmu.tetrad.util.TetradMatrix;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static java.lang.Math.log;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that SemBicScore, which takes its residual variances from Cholesky factors, gives the scores it gave when it
+ * inverted each parent covariance submatrix.
+ */
+public final class TestSemBicScore {
+
+    @Test
+    public void testLocalScore() {
+        DataSet data = data(new Random(2938L), 500, 6, false);
+        ICovarianceMatrix cov = new CovarianceMatrix(data, true);
+        int[][] parentSets = {{}, {0}, {2, 1}, {5, 0, 3}, {1, 2, 3, 4}};
+
+        for (double penaltyDiscount : new double[]{1, 2}) {
+            SemBicScore score = new SemBicScore(data);
+            score.setPenaltyDiscount(penaltyDiscount);
+
+            for (int[] parents : parentSets) {
+                for (int i = 0; i < 6; i++) {
+                    if (contains(parents, i)) continue;
+
+                    double expected = inverseScore(cov, i, parents, penaltyDiscount);
+                    assertEquals(expected, score.localScore(i, parents), 1e-8 * Math.abs(expected));
+
+                    for (int x = 0; x < 6; x++) {
+                        if (x == i || contains(parents, x)) continue;
+
+                        double diff = inverseScore(cov, i, append(parents, x), penaltyDiscount) - expected;
+                        assertEquals(diff, score.localScoreDiff(x, i, parents), 1e-6);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSingular() {
+        // Variable 3 is a copy of variable 0.
+        DataSet data = data(new Random(9382L), 200, 5, true);
+        SemBicScore score = new SemBicScore(data);
+
+        assertTrue(Double.isNaN(score.localScore(4, 0, 3)));
+        assertTrue(Double.isNaN(score.localScore(4, 3, 1, 0)));
+        assertTrue(Double.isNaN(score.localScoreDiff(3, 4, new int[]{0})));
+        assertTrue(!Double.isNaN(score.localScore(4, 1, 3)));
+        assertTrue(!Double.isNaN(score.localScoreDiff(3, 4, new int[]{1})));
+    }
+
+    // The score as computed before Cholesky factors were used, from the inverse of the parent covariance matrix.
+    private double inverseScore(ICovarianceMatrix cov, int i, int[] parents, double penaltyDiscount) {
+        int k = parents.length + 1;
+        double n = cov.getSampleSize();
+
+        TetradMatrix x = cov.getSelection(parents, parents);
+        TetradMatrix y = cov.getSelection(parents, new int[]{i});
+        double s2 = cov.getValue(i, i);
+
+        TetradMatrix coefs = x.inverse().times(y);
+
+        for (int q = 0; q < x.rows(); q++) {
+            for (int r = 0; r < x.columns(); r++) {
+                s2 -= coefs.get(q, 0) * coefs.get(r, 0) * x.get(r, q);
+            }
+        }
+
+        return -n * log(s2) - penaltyDiscount * k * log(n);
+    }
+
+    // Each variable is a random linear combination of the ones before it plus noise.
+    private DataSet data(Random random, int n, int p, boolean copy) {
+        List<Node> variables = new ArrayList<>();
+        for (int j = 0; j < p; j++) variables.add(new ContinuousVariable("X" + j));
+
+        DataSet data = new BoxDataSet(new VerticalDoubleDataBox(n, p), variables);
+        double[][] coefs = new double[p][p];
+
+        for (int j = 0; j < p; j++) {
+            for (int k = 0; k < j; k++) {
+                coefs[j][k] = random.nextDouble() - 0.5;
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < p; j++) {
+                double value = random.nextGaussian();
+
+                for (int k = 0; k < j; k++) {
+                    value += coefs[j][k] * data.getDouble(i, k);
+                }
+
+                data.setDouble(i, j, copy && j == 3 ? data.getDouble(i, 0) : value);
+            }
+        }
+
+        return data;
+    }
+
+    private boolean contains(int[] z, int x) {
+        for (int i : z) if (i == x) return true;
+        return false;
+    }
+
+    private int[] append(int[] z, int x) {
+        int[] all = new int[z.length + 1];
+        System.arraycopy(z, 0, all, 0, z.length);
+        all[z.length] = x;
+        return all;
+    }
+}
@@ -0,0 +1,99 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.util.SplittableRandomGenerator;
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Tests that SplittableRandomGenerator draws the same longs, ints and doubles
+ * as java.util.SplittableRandom, and that its per-task streams are
+ * reproducible.
+ */
+public class TestSplittableRandomGenerator {
+
+    @Test
+    public void testMatchesSplittableRandom() {
+        for (long seed : new long[]{0L, 1L, -1L, 2938L, Long.MIN_VALUE}) {
+            SplittableRandom expected = new SplittableRandom(seed);
+            SplittableRandomGenerator actual = new SplittableRandomGenerator(seed);
+
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(expected.nextLong(), actual.nextLong());
+                assertEquals(expected.nextInt(), actual.nextInt());
+                assertEquals(expected.nextDouble(), actual.nextDouble(), 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void testSplitMatchesSplittableRandom() {
+        SplittableRandom expected = new SplittableRandom(2938L).split();
+        SplittableRandomGenerator actual = new SplittableRandomGenerator(2938L).split();
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(expected.nextLong(), actual.nextLong());
+        }
+    }
+
+    @Test
+    public void testReseed() {
+        SplittableRandomGenerator random = new SplittableRandomGenerator(2938L);
+        long first = random.nextLong();
+        random.nextDouble();
+        random.setSeed(2938L);
+        assertEquals(first, random.nextLong());
+    }
+
+    @Test
+    public void testForStream() {
+        long[][] draws = new long[8][100];
+
+        for (int index = 0; index < draws.length; index++) {
+            SplittableRandomGenerator random = SplittableRandomGenerator.forStream(2938L, index);
+
+            for (int i = 0; i < draws[index].length; i++) {
+                draws[index][i] = random.nextLong();
+            }
+        }
+
+        // Drawing the streams in reverse order gives the same numbers for each stream.
+        for (int index = draws.length - 1; index >= 0; index--) {
+            SplittableRandomGenerator random = SplittableRandomGenerator.forStream(2938L, index);
+
+            for (int i = 0; i < draws[index].length; i++) {
+                assertEquals(draws[index][i], random.nextLong());
+            }
+        }
+
+        for (int index = 1; index < draws.length; index++) {
+            assertNotEquals(draws[0][0], draws[index][0]);
+        }
+
+        assertNotEquals(draws[0][0], SplittableRandomGenerator.forStream(2939L, 0).nextLong());
+    }
+}
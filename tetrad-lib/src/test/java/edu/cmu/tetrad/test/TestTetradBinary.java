@@ -0,0 +1,188 @@
+///////////////////////////////////////////////////////////////////////////////
+// For information as to what this class does, see the Javadoc, below.       //
+// Copyright (C) 1998, 1999, 2000, 2001, 2002, 2003, 2004, 2005, 2006,       //
+// 2007, 2008, 2009, 2010, 2014, 2015 by Peter Spirtes, Richard Scheines, Joseph   //
+// Ramsey, and Clark Glymour.                                                //
+//                                                                           //
+// This program is free software; you can redistribute it and/or modify      //
+// it under the terms of the GNU General Public License as published by      //
+// the Free Software Foundation; either version 2 of the License, or         //
+// (at your option) any later version.                                       //
+//                                                                           //
+// This program is distributed in the hope that it will be useful,           //
+// but WITHOUT ANY WARRANTY; without even the implied warranty of            //
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             //
+// GNU General Public License for more details.                              //
+//                                                                           //
+// You should have received a copy of the GNU General Public License         //
+// along with this program; if not, write to the Free Software               //
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA //
+///////////////////////////////////////////////////////////////////////////////
+
+package edu.cmu.tetrad.test;
+
+import edu.cmu.tetrad.data.BoxDataSet;
+import edu.cmu.tetrad.data.ContinuousVariable;
+import edu.cmu.tetrad.data.CovarianceMatrix;
+import edu.cmu.tetrad.data.DataSet;
+import edu.cmu.tetrad.data.DiscreteVariable;
+import edu.cmu.tetrad.data.ICovarianceMatrix;
+import edu.cmu.tetrad.data.MixedDataBox;
+import edu.cmu.tetrad.graph.Edge;
+import edu.cmu.tetrad.graph.EdgeListGraph;
+import edu.cmu.tetrad.graph.EdgeTypeProbability;
+import edu.cmu.tetrad.graph.Edges;
+import edu.cmu.tetrad.graph.Graph;
+import edu.cmu.tetrad.graph.Node;
+import edu.cmu.tetrad.search.SepsetMap;
+import edu.cmu.tetrad.util.TetradBinaryReader;
+import edu.cmu.tetrad.util.TetradBinaryWriter;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Round trips graphs, data sets, covariance matrices and sepset maps through TetradBinaryWriter and
+ * TetradBinaryReader.
+ */
+public final class TestTetradBinary {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        roundTrip(false);
+        roundTrip(true);
+    }
+
+    private void roundTrip(boolean compress) throws IOException {
+        Random random = new Random(4838L);
+
+        List<Node> variables = new ArrayList<>();
+        variables.add(new ContinuousVariable("X1"));
+        variables.add(new ContinuousVariable("X2"));
+        variables.add(new DiscreteVariable("D1", Arrays.asList("low", "mid", "high")));
+        variables.add(new ContinuousVariable("X3"));
+
+        int numRows = 50;
+        double[][] continuous = new double[4][];
+        int[][] discrete = new int[4][];
+
+        for (int j : new int[]{0, 1, 3}) {
+            continuous[j] = new double[numRows];
+            for (int i = 0; i < numRows; i++) continuous[j][i] = random.nextGaussian();
+        }
+
+        discrete[2] = new int[numRows];
+        for (int i = 0; i < numRows; i++) discrete[2][i] = random.nextInt(3);
+        discrete[2][7] = -99;
+        continuous[1][3] = Double.NaN;
+
+        BoxDataSet data = new BoxDataSet(new MixedDataBox(variables, numRows, continuous, discrete), variables);
+        data.setName("mixed");
+
+        Graph graph = new EdgeListGraph(variables);
+        graph.addDirectedEdge(variables.get(0), variables.get(1));
+        graph.addNondirectedEdge(variables.get(1), variables.get(2));
+
+        Edge edge = Edges.partiallyOrientedEdge(variables.get(2), variables.get(3));
+        edge.addProperty(Edge.Property.dd);
+        edge.addEdgeTypeProbability(new EdgeTypeProbability(EdgeTypeProbability.EdgeType.ca,
+                Collections.singletonList(Edge.Property.nl), 0.75));
+        edge.addEdgeTypeProbability(new EdgeTypeProbability(EdgeTypeProbability.EdgeType.nil, 0.25));
+        graph.addEdge(edge);
+        graph.addUnderlineTriple(variables.get(0), variables.get(1), variables.get(2));
+
+        List<Node> continuousVariables = Arrays.asList(variables.get(0), variables.get(1));
+        ICovarianceMatrix covariances = new CovarianceMatrix(continuousVariables,
+                new double[][]{{2.0, 0.5}, {0.5, 1.0}}, 50);
+
+        SepsetMap sepsets = new SepsetMap();
+        sepsets.set(variables.get(0), variables.get(2), Collections.singletonList(variables.get(1)));
+        sepsets.set(variables.get(0), variables.get(3), new ArrayList<Node>());
+        sepsets.setPValue(variables.get(0), variables.get(2), 0.3);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (TetradBinaryWriter writer = new TetradBinaryWriter(bytes, compress)) {
+            writer.writeDataSet(data);
+            writer.writeGraph(graph);
+            writer.writeCovariance(covariances);
+            writer.writeSepsetMap(sepsets);
+        }
+
+        try (TetradBinaryReader reader = new TetradBinaryReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+            DataSet data2 = reader.readDataSet();
+            Graph graph2 = reader.readGraph();
+            ICovarianceMatrix covariances2 = (ICovarianceMatrix) reader.readNext();
+            SepsetMap sepsets2 = reader.readSepsetMap();
+
+            assertTrue(!reader.hasNext());
+            assertNull(reader.readNext());
+
+            assertEquals("mixed", data2.getName());
+            assertEquals(numRows, data2.getNumRows());
+            assertEquals(variables, data2.getVariables());
+            assertEquals(Arrays.asList("low", "mid", "high"),
+                    ((DiscreteVariable) data2.getVariable(2)).getCategories());
+
+            for (int i = 0; i < numRows; i++) {
+                for (int j = 0; j < variables.size(); j++) {
+                    if (j == 2) {
+                        assertEquals(data.getInt(i, j), data2.getInt(i, j));
+                    } else {
+                        assertEquals(data.getDouble(i, j), data2.getDouble(i, j), 0.0);
+                    }
+                }
+            }
+
+            // The graph shares the variables of the data set.
+            for (int j = 0; j < variables.size(); j++) {
+                assertSame(data2.getVariable(j), graph2.getNodes().get(j));
+            }
+
+            assertEquals(edgeStrings(graph), edgeStrings(graph2));
+
+            Edge edge2 = graph2.getEdge(graph2.getNode("D1"), graph2.getNode("X3"));
+            assertEquals(Collections.singletonList(Edge.Property.dd), edge2.getProperties());
+            assertEquals(2, edge2.getEdgeTypeProbabilities().size());
+            assertEquals(0.75, edge2.getEdgeTypeProbabilities().get(0).getProbability(), 0.0);
+            assertEquals(Collections.singletonList(Edge.Property.nl),
+                    edge2.getEdgeTypeProbabilities().get(0).getProperties());
+            assertTrue(graph2.isUnderlineTriple(graph2.getNode("X1"), graph2.getNode("X2"), graph2.getNode("D1")));
+
+            assertEquals(50, covariances2.getSampleSize());
+            assertEquals(0.5, covariances2.getValue(1, 0), 0.0);
+            assertSame(data2.getVariable(0), covariances2.getVariables().get(0));
+
+            Node x1 = data2.getVariable(0);
+            assertEquals(Collections.singletonList(data2.getVariable(1)), sepsets2.get(x1, data2.getVariable(2)));
+            assertTrue(sepsets2.get(x1, data2.getVariable(3)).isEmpty());
+            assertEquals(0.3, sepsets2.getPValue(x1, data2.getVariable(2)), 0.0);
+            assertEquals(2, sepsets2.size());
+        }
+    }
+
+    private static Set<String> edgeStrings(Graph graph) {
+        Set<String> strings = new HashSet<>();
+        for (Edge edge : graph.getEdges()) strings.add(edge.toString());
+        return strings;
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotBinary() throws IOException {
+        new TetradBinaryReader(new ByteArrayInputStream("graph".getBytes()));
+    }
+}